@@ -20,7 +20,7 @@ package at.ac.tuwien.dsg.smartcom.manager.am;
 import at.ac.tuwien.dsg.smartcom.adapter.*;
 import at.ac.tuwien.dsg.smartcom.adapter.util.TaskScheduler;
 import at.ac.tuwien.dsg.smartcom.broker.*;
-import at.ac.tuwien.dsg.smartcom.broker.policy.DynamicReplicationPolicy;
+import at.ac.tuwien.dsg.smartcom.broker.policy.LatencyReplicationPolicy;
 import at.ac.tuwien.dsg.smartcom.manager.am.adapter.InputAdapterExecution;
 import at.ac.tuwien.dsg.smartcom.manager.am.adapter.OutputAdapterExecution;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
@@ -209,7 +209,7 @@ public class AdapterExecutionEngine implements TaskScheduler{
                 public MessageListener createReplication() {
                     return new OutputAdapterExecution(adapter, addressResolver, id, broker, statistic);
                 }
-            }, new DynamicReplicationPolicy());
+            }, new LatencyReplicationPolicy(), ReplicaScheduler.getSharedBlocking()); //adapters push messages over the network
 
             statefulOutputAdapterMap.put(id, execution);
             statelessOutputAdapterMap.put(id, listener);
@@ -229,6 +229,11 @@ public class AdapterExecutionEngine implements TaskScheduler{
         OutputAdapterExecution remove = statefulOutputAdapterMap.remove(id);
         outputAdapterCancelMap.remove(id).cancel();
 
+        ReplicatingMessageListener listener = statelessOutputAdapterMap.remove(id);
+        if (listener != null) {
+            listener.shutdown();
+        }
+
         return remove.getAdapter();
     }
 
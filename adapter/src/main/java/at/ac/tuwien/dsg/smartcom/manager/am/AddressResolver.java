@@ -29,6 +29,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -44,6 +47,10 @@ import java.util.concurrent.TimeUnit;
  * address resolver keeps a cache whereas each entry is valid for 10 minutes.
  * The cache size can be defined using a parameter of the constructor.
  *
+ * After a restart the cache can be warmed up with the most recently
+ * updated addresses to avoid the database queries of the first messages
+ * to each peer.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
@@ -51,6 +58,7 @@ public class AddressResolver {
     private static final Logger log = LoggerFactory.getLogger(AddressResolver.class);
     private static final int DEFAULT_CACHE_SIZE = 1000;
 
+    private final int cacheSize;
     private final LoadingCache<AddressKey, PeerChannelAddress> cache;
 
     private ExecutorService executor;
@@ -76,6 +84,7 @@ public class AddressResolver {
      * @param cacheSize the maximum size of the cache.
      */
     public AddressResolver(int cacheSize) {
+        this.cacheSize = cacheSize;
 
         //Creates a cache of size *cacheSize* whereas each entry is valid for at most 10 minutes
         cache = CacheBuilder.newBuilder()
@@ -158,6 +167,54 @@ public class AddressResolver {
         cache.put(new AddressKey(address.getPeerId(), address.getChannelType()), address);
     }
 
+    /**
+     * Preloads the cache with the most recently updated peer addresses. The addresses are
+     * streamed from the database in batches. At most as many addresses as fit into the cache
+     * are loaded.
+     *
+     * Addresses that are already in the cache are not replaced.
+     *
+     * @param size number of addresses that should be preloaded
+     * @param batchSize number of addresses that are retrieved from the database at once
+     * @return number of addresses that have been preloaded
+     */
+    public int warmUp(int size, int batchSize) {
+        int limit = Math.min(size, cacheSize);
+        if (limit <= 0) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        Iterator<PeerChannelAddress> addresses = null;
+        try {
+            addresses = dao.findRecent(limit, batchSize);
+            while (addresses.hasNext() && loaded < limit) {
+                PeerChannelAddress address = addresses.next();
+                AddressKey key = new AddressKey(address.getPeerId(), address.getChannelType());
+                if (cache.getIfPresent(key) == null) {
+                    cache.put(key, address);
+                }
+                loaded++;
+            }
+        } catch (Exception e) {
+            log.error("Warm-up of the address cache failed after {} addresses", loaded, e);
+        } finally {
+            //release the cursor of the database
+            if (addresses instanceof Closeable) {
+                try {
+                    ((Closeable) addresses).close();
+                } catch (IOException e) {
+                    log.warn("Could not close the addresses of the warm-up", e);
+                }
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        log.info("Warmed up address cache with {} of {} addresses ({}%) in {} ms", loaded, limit, loaded * 100 / limit, duration);
+        return loaded;
+    }
+
     /**
      * Remove a peer address that matches the peer id and the adapter id from the address resolver.
      *
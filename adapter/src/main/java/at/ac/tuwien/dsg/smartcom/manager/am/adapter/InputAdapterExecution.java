@@ -21,6 +21,7 @@ import at.ac.tuwien.dsg.smartcom.adapter.InputAdapter;
 import at.ac.tuwien.dsg.smartcom.adapter.InputPullAdapter;
 import at.ac.tuwien.dsg.smartcom.adapter.exception.AdapterException;
 import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
@@ -37,6 +38,11 @@ import org.slf4j.LoggerFactory;
 public class InputAdapterExecution implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(InputAdapterExecution.class);
 
+    /**
+     * Time (in ms) to wait before a rejected response is published again
+     */
+    private static final long REJECTED_RETRY_DELAY = 100;
+
     private final InputPullAdapter adapter; //adapter that is handled by this execution environment
     private final Identifier id; //id of the adapter and the execution environment
     private final MessageBroker broker; //broker used to publish received message
@@ -90,7 +96,10 @@ public class InputAdapterExecution implements Runnable {
                 enhanceMessage(response);
                 log.debug("Adapter {}: Received response {}", id.getId(), response);
 
-                broker.publishInput(response);
+                if (!publish(response)) {
+                    log.debug("Adapter {}: Interrupted while publishing response {}", id.getId(), response);
+                    break;
+                }
 
                 if (deleteIfSuccessful) {
                     break;
@@ -101,6 +110,32 @@ public class InputAdapterExecution implements Runnable {
         }
     }
 
+    /**
+     * Publishes the response, the response has already been pulled from the external tool/peer
+     * and would be lost if it is dropped. Hence a rejected response is published again after
+     * a short delay until the middleware accepts it, which also slows down the pulling.
+     *
+     * @param response that should be published
+     * @return false if the execution has been interrupted before the response has been accepted
+     */
+    private boolean publish(Message response) {
+        while (true) {
+            try {
+                broker.publishInput(response);
+                return true;
+            } catch (InputRejectedException e) {
+                log.debug("Adapter {}: Response {} has been rejected because the middleware is overloaded, retrying", id.getId(), response);
+            }
+
+            try {
+                Thread.sleep(REJECTED_RETRY_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     /**
      * no message has been received
      */
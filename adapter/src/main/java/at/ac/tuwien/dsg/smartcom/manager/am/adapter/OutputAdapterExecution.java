@@ -70,6 +70,15 @@ public class OutputAdapterExecution implements MessageListener {
     public void onMessage(Message message) {
         statistic.outputReceived();
         log.debug("Adapter {}: Received task {}", id, message);
+
+        //there is no point in pushing stale messages to peers
+        if (message.isExpired(System.currentTimeMillis())) {
+            log.debug("Adapter {}: Dropping expired message {}", id, message);
+            statistic.messageExpired();
+            broker.publishControl(PredefinedMessageHelper.createTimeoutMessage(message, "Message expired before it could be sent to the peer."));
+            return;
+        }
+
         PeerChannelAddress peerChannelAddress = address.getPeerAddress(message.getReceiverId(), id);
 
         log.debug("Adapter {}: Sending message {} to peer {}", id, message, peerChannelAddress);
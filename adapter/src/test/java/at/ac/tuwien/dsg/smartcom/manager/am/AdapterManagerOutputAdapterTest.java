@@ -186,6 +186,30 @@ public class AdapterManagerOutputAdapterTest {
         assertEquals("ACK", acknowledge2.getSubtype());
     }
 
+    @Test(timeout = 10000l)
+    public void testExpiredMessageIsNotPushed() throws CommunicationException, InterruptedException {
+        manager.registerOutputAdapter(StatefulAdapter.class);
+
+        Identifier routing1 = manager.createEndpointForPeer(peerInfo1).get(0);
+
+        Message msg = new Message();
+        msg.setId(Identifier.message("1"));
+        msg.setReceiverId(peerId1);
+        msg.setTtl(10);
+        msg.setExpiration(System.currentTimeMillis() - 10);
+
+        broker.publishOutput(routing1, msg);
+
+        Message control;
+        while ((control = broker.receiveControl()) == null) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("TIMEOUT", control.getSubtype());
+        assertEquals(msg.getId(), control.getRefersTo());
+        assertEquals(1, pico.getComponent(StatisticBean.class).getStatistic().getExpiredMessage());
+    }
+
     @Test()
     public void testRegisterOutputAdapterWithAdapterThatThrowsException() throws CommunicationException {
         manager.registerOutputAdapter(StatefulExceptionAdapter.class);
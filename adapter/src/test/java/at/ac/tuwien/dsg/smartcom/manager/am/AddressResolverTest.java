@@ -127,4 +127,23 @@ public class AddressResolverTest {
         peerChannelAddress = dao.find(peer1, adapter1);
         assertNull("Address should not be in the database!", peerChannelAddress);
     }
-}
\ No newline at end of file
+
+    @Test(timeout = 5000l)
+    public void testWarmUp() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            dao.insert(new PeerChannelAddress(Identifier.peer("peer"+i), Identifier.adapter("adapter"), Collections.EMPTY_LIST));
+        }
+
+        assertEquals("Wrong number of preloaded addresses!", 50, resolver.warmUp(50, 10));
+        assertEquals("Cursor of the warm-up should be closed!", 0, dao.getOpenCursors());
+
+        //the most recent addresses are in the cache
+        for (int i = 50; i < 100; i++) {
+            assertNotNull("Resolver returns null!", resolver.getPeerAddress(Identifier.peer("peer" + i), Identifier.adapter("adapter")));
+        }
+        assertEquals("Preloaded addresses should not be requested!", 0, dao.getRequests());
+
+        assertNotNull("Resolver returns null!", resolver.getPeerAddress(Identifier.peer("peer0"), Identifier.adapter("adapter")));
+        assertEquals("Address that has not been preloaded should be requested!", 1, dao.getRequests());
+    }
+}
@@ -21,8 +21,8 @@ import at.ac.tuwien.dsg.smartcom.manager.dao.PeerChannelAddressResolverDAO;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Closeable;
+import java.util.*;
 
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
@@ -30,12 +30,22 @@ import java.util.Map;
  */
 public class SimpleAddressPeerChannelAddressResolverDAO implements PeerChannelAddressResolverDAO {
 
-    private Map<String, PeerChannelAddress> addresses = new HashMap<>();
+    private Map<String, PeerChannelAddress> addresses = new LinkedHashMap<>(); //ordered by insertion
     private int requests = 0;
+    private int openCursors = 0;
 
     @Override
     public synchronized void insert(PeerChannelAddress address) {
-        addresses.put(address.getPeerId().getId()+"."+address.getChannelType().getId(), address);
+        String key = address.getPeerId().getId()+"."+address.getChannelType().getId();
+        addresses.remove(key);
+        addresses.put(key, address);
+    }
+
+    @Override
+    public synchronized void insertAll(Collection<PeerChannelAddress> addresses) {
+        for (PeerChannelAddress address : addresses) {
+            insert(address);
+        }
     }
 
     @Override
@@ -49,7 +59,56 @@ public class SimpleAddressPeerChannelAddressResolverDAO implements PeerChannelAd
         addresses.remove(peerId.getId()+"."+adapterId.getId());
     }
 
+    @Override
+    public synchronized Iterator<PeerChannelAddress> findRecent(int limit, int batchSize) {
+        List<PeerChannelAddress> recent = new ArrayList<>(addresses.values());
+        Collections.reverse(recent);
+        Iterator<PeerChannelAddress> iterator = new ArrayList<>(recent.subList(0, Math.min(limit, recent.size()))).iterator();
+        openCursors++;
+
+        //behaves like a cursor of a database that has to be closed
+        return new CursorIterator(iterator);
+    }
+
+    public synchronized int getOpenCursors() {
+        return openCursors;
+    }
+
     public synchronized int getRequests() {
         return requests;
     }
-}
\ No newline at end of file
+
+    private class CursorIterator implements Iterator<PeerChannelAddress>, Closeable {
+        private final Iterator<PeerChannelAddress> iterator;
+        private boolean closed = false;
+
+        private CursorIterator(Iterator<PeerChannelAddress> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public PeerChannelAddress next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            synchronized (SimpleAddressPeerChannelAddressResolverDAO.this) {
+                if (!closed) {
+                    closed = true;
+                    openCursors--;
+                }
+            }
+        }
+    }
+}
@@ -24,9 +24,13 @@ import at.ac.tuwien.dsg.smartcom.adapter.OutputAdapter;
 import at.ac.tuwien.dsg.smartcom.callback.NotificationCallback;
 import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.model.DeliveryResult;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the main API for the SmartSociety Platform to interact with peers and
@@ -56,6 +60,37 @@ public interface Communication {
      */
     public Identifier send(Message message) throws CommunicationException;
 
+    /**
+     * Send a message to a collective or a single peer like send(Message) but return a future
+     * that is completed with the outcome of the delivery as soon as the delivery policies
+     * of the receiver have been resolved, i.e., the receiver acknowledged the message, the
+     * delivery failed or did not resolve in time. The ID of the message is available through
+     * the message as soon as the method returns.
+     *
+     * The outcome is reported through the Notification Callback as well.
+     *
+     * @param message Specifies the message that should be handled by the middleware. The receiver of the message is
+     *                defined by the message.
+     * @return future that will be completed with the outcome of the delivery
+     * @throws CommunicationException a generic exception that will be thrown if something went wrong
+     *                                in the initial handling of the message.
+     * @see Communication#send(at.ac.tuwien.dsg.smartcom.model.Message)
+     */
+    public ListenableFuture<DeliveryResult> sendAsync(Message message) throws CommunicationException;
+
+    /**
+     * Send a message like sendAsync(Message) but complete the future with a TIMEOUT result
+     * if the delivery has not been resolved within the given time.
+     *
+     * @param message Specifies the message that should be handled by the middleware.
+     * @param timeout maximum time to wait for the outcome of the delivery
+     * @param unit unit of the timeout
+     * @return future that will be completed with the outcome of the delivery
+     * @throws CommunicationException a generic exception that will be thrown if something went wrong
+     *                                in the initial handling of the message.
+     */
+    public ListenableFuture<DeliveryResult> sendAsync(Message message, long timeout, TimeUnit unit) throws CommunicationException;
+
     /**
      * Add a special route to the routing rules (e.g., route input from peer A
      * always to peer B). Returns the ID of the routing rule (can be used to delete it).
@@ -19,6 +19,7 @@ package at.ac.tuwien.dsg.smartcom.adapter;
 
 import at.ac.tuwien.dsg.smartcom.adapter.util.TaskScheduler;
 import at.ac.tuwien.dsg.smartcom.broker.InputPublisher;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 
 import java.util.ArrayList;
@@ -52,7 +53,15 @@ public abstract class InputPushAdapter implements InputAdapter {
      * called when implementing a push service to notify the middleware that
      * there was a new message.
      *
+     * The method blocks if the middleware is busy and throws an InputRejectedException
+     * if the message has been rejected because the middleware is overloaded. In this case
+     * the adapter should slow down and signal the external tool/peer to retry later (e.g.,
+     * by responding with an error or by pausing the push notification handler). Whether
+     * messages are rejected at all depends on the message broker, e.g., the ActiveMQ broker
+     * only rejects messages if a send timeout has been configured and blocks otherwise.
+     *
      * @param message Message that has been received.
+     * @throws InputRejectedException if the message has been rejected
      */
     protected final void publishMessage(Message message) {
         inputPublisher.publishInput(message);
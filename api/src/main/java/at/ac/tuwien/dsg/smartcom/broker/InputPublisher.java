@@ -17,6 +17,7 @@
  */
 package at.ac.tuwien.dsg.smartcom.broker;
 
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 
 /**
@@ -32,6 +33,7 @@ public interface InputPublisher {
      * has been received.
      *
      * @param message that has been received
+     * @throws InputRejectedException if the message has been rejected because the middleware is overloaded
      */
     public void publishInput(Message message);
 }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.callback;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.PeerInfo;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * PeerInfoCallback that is able to resolve the information of multiple peers at once
+ * (e.g., with a single request to the peer manager). The middleware uses this method to
+ * resolve the members of a collective. If a PeerInfoCallback does not implement this
+ * interface, the peers are resolved one by one.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface BulkPeerInfoCallback extends PeerInfoCallback {
+
+    /**
+     * Resolves the information about the given peers.
+     *
+     * @param ids ids of the requested peers
+     * @return information about the peers by their id, peers that do not exist are omitted
+     */
+    public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids);
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.callback;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+
+/**
+ * Listener that is notified by the peer manager if collectives change. The middleware
+ * caches the information about collectives, therefore the peer manager should call
+ * this listener to keep the cached information up to date. Changes of the members
+ * are applied directly to the cached information without reloading the collective.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface CollectiveMembershipListener {
+
+    /**
+     * A peer has been added to a collective.
+     *
+     * @param collective id of the collective
+     * @param peer id of the peer
+     */
+    public void memberAdded(Identifier collective, Identifier peer);
+
+    /**
+     * A peer has been removed from a collective.
+     *
+     * @param collective id of the collective
+     * @param peer id of the peer
+     */
+    public void memberRemoved(Identifier collective, Identifier peer);
+
+    /**
+     * A collective has been changed otherwise (e.g., its delivery policy) or has been deleted.
+     *
+     * @param collective id of the collective
+     */
+    public void collectiveChanged(Identifier collective);
+}
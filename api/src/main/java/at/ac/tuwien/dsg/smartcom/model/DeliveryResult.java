@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.model;
+
+/**
+ * Outcome of the delivery of a message, i.e., whether the delivery policies of the
+ * receiver have been fulfilled, failed or did not resolve in time.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class DeliveryResult {
+
+    public enum Status {
+        /**
+         * The delivery policy of the receiver has been fulfilled.
+         */
+        DELIVERED,
+
+        /**
+         * The delivery policy of the receiver failed.
+         */
+        FAILED,
+
+        /**
+         * The delivery policy of the receiver has not been resolved in time.
+         */
+        TIMEOUT
+    }
+
+    private final Identifier messageId;
+    private final Status status;
+    private final String reason;
+
+    public DeliveryResult(Identifier messageId, Status status, String reason) {
+        this.messageId = messageId;
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public Identifier getMessageId() {
+        return messageId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return description why the delivery failed or timed out, null if the message has been delivered
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public boolean isDelivered() {
+        return status == Status.DELIVERED;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryResult{" +
+                "messageId=" + messageId +
+                ", status=" + status +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
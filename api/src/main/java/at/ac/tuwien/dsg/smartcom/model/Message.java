@@ -39,6 +39,7 @@ public class Message implements Serializable, Cloneable {
     private Identifier receiverId;
     private String conversationId;
     private long ttl;
+    private long expiration; //point in time (in ms) after which the message is stale, derived from the ttl when the message enters the middleware
     private String language;
     private String securityToken;
     private DeliveryPolicy.Message delivery = DeliveryPolicy.Message.UNACKNOWLEDGED;
@@ -109,6 +110,24 @@ public class Message implements Serializable, Cloneable {
         this.ttl = ttl;
     }
 
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public void setExpiration(long expiration) {
+        this.expiration = expiration;
+    }
+
+    /**
+     * Checks whether the message has an expiration that lies before the given point in time.
+     *
+     * @param now current time in milliseconds
+     * @return true if the message is expired
+     */
+    public boolean isExpired(long now) {
+        return expiration > 0 && expiration < now;
+    }
+
     public String getLanguage() {
         return language;
     }
@@ -158,6 +177,7 @@ public class Message implements Serializable, Cloneable {
         }
         msg.conversationId = this.conversationId;
         msg.ttl = this.ttl;
+        msg.expiration = this.expiration;
         msg.language = this.language;
         msg.securityToken = this.securityToken;
         msg.delivery = this.delivery;
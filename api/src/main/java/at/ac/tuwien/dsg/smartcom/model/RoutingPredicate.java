@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.model;
+
+/**
+ * Optional condition of a routing rule that has to be fulfilled by the content
+ * or the conversation id of a message. The condition is only evaluated for
+ * messages that already match the type, subtype, receiver and sender of the rule.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class RoutingPredicate {
+
+    public enum Field {
+        CONTENT, CONVERSATION_ID
+    }
+
+    public enum Operator {
+        /**
+         * Value of the field equals the given value
+         */
+        EQUALS,
+
+        /**
+         * Value of the field starts with the given value
+         */
+        PREFIX,
+
+        /**
+         * Value of the field contains a match of the given regular expression
+         */
+        REGEX
+    }
+
+    private final Field field;
+    private final Operator operator;
+    private final String value;
+
+    public RoutingPredicate(Field field, Operator operator, String value) {
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public static RoutingPredicate contentPrefix(String prefix) {
+        return new RoutingPredicate(Field.CONTENT, Operator.PREFIX, prefix);
+    }
+
+    public static RoutingPredicate contentRegex(String regex) {
+        return new RoutingPredicate(Field.CONTENT, Operator.REGEX, regex);
+    }
+
+    public static RoutingPredicate conversationIdRegex(String regex) {
+        return new RoutingPredicate(Field.CONVERSATION_ID, Operator.REGEX, regex);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingPredicate{" +
+                "field=" + field +
+                ", operator=" + operator +
+                ", value='" + value + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RoutingPredicate that = (RoutingPredicate) o;
+
+        if (field != that.field) return false;
+        if (operator != that.operator) return false;
+        if (value != null ? !value.equals(that.value) : that.value != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = field != null ? field.hashCode() : 0;
+        result = 31 * result + (operator != null ? operator.hashCode() : 0);
+        result = 31 * result + (value != null ? value.hashCode() : 0);
+        return result;
+    }
+}
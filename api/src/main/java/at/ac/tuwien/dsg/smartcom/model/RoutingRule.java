@@ -19,7 +19,8 @@ package at.ac.tuwien.dsg.smartcom.model;
 
 /**
  * This class represents a routing rule that handles messages according to their
- * specific type, subtype and receiver.
+ * specific type, subtype and receiver. Optionally, a predicate on the content
+ * or the conversation id of the message can be defined.
  *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
@@ -30,13 +31,20 @@ public class RoutingRule {
     private final Identifier receiver;
     private final Identifier sender;
 
+    private final RoutingPredicate predicate;
+
     private final Identifier route;
 
     public RoutingRule(String type, String subtype, Identifier receiver, Identifier sender, Identifier route) {
+        this(type, subtype, receiver, sender, null, route);
+    }
+
+    public RoutingRule(String type, String subtype, Identifier receiver, Identifier sender, RoutingPredicate predicate, Identifier route) {
         this.type = type;
         this.subtype = subtype;
         this.receiver = receiver;
         this.sender = sender;
+        this.predicate = predicate;
         this.route = route;
     }
 
@@ -60,6 +68,13 @@ public class RoutingRule {
         return sender;
     }
 
+    /**
+     * @return predicate on the content or the conversation id of a message, null if there is none
+     */
+    public RoutingPredicate getPredicate() {
+        return predicate;
+    }
+
     @Override
     public String toString() {
         return "RoutingRule{" +
@@ -67,6 +82,7 @@ public class RoutingRule {
                 ", subtype='" + subtype + '\'' +
                 ", receiver='" + receiver + '\'' +
                 ", sender='" + sender + '\'' +
+                ", predicate=" + predicate +
                 ", route='" + route + '\'' +
                 '}';
     }
@@ -81,6 +97,7 @@ public class RoutingRule {
         if (sender != null ? !sender.equals(that.sender) : that.sender != null) return false;
         if (receiver != null ? !receiver.equals(that.receiver) : that.receiver != null) return false;
         if (route != null ? !route.equals(that.route) : that.route != null) return false;
+        if (predicate != null ? !predicate.equals(that.predicate) : that.predicate != null) return false;
         if (subtype != null ? !subtype.equals(that.subtype) : that.subtype != null) return false;
         if (type != null ? !type.equals(that.type) : that.type != null) return false;
 
@@ -93,6 +110,7 @@ public class RoutingRule {
         result = 31 * result + (subtype != null ? subtype.hashCode() : 0);
         result = 31 * result + (receiver != null ? receiver.hashCode() : 0);
         result = 31 * result + (sender != null ? sender.hashCode() : 0);
+        result = 31 * result + (predicate != null ? predicate.hashCode() : 0);
         result = 31 * result + (route != null ? route.hashCode() : 0);
         return result;
     }
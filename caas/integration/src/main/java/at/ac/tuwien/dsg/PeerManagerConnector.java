@@ -17,9 +17,9 @@
  */
 package at.ac.tuwien.dsg;
 
+import at.ac.tuwien.dsg.smartcom.callback.BulkPeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerAuthenticationCallback;
-import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchPeerException;
 import at.ac.tuwien.dsg.smartcom.callback.exception.PeerAuthenticationException;
@@ -30,15 +30,18 @@ import org.glassfish.jersey.client.ClientProperties;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.*;
 
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
-public class PeerManagerConnector implements PeerInfoCallback, CollectiveInfoCallback, PeerAuthenticationCallback {
+public class PeerManagerConnector implements BulkPeerInfoCallback, CollectiveInfoCallback, PeerAuthenticationCallback {
 
     private final Client client;
     private final String collectiveURL;
@@ -88,4 +91,21 @@ public class PeerManagerConnector implements PeerInfoCallback, CollectiveInfoCal
         return response.readEntity(PeerInfo.class);
     }
 
+    @Override
+    public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids) {
+        List<String> peerIds = new ArrayList<>(ids.size());
+        for (Identifier id : ids) {
+            peerIds.add(id.getId());
+        }
+
+        WebTarget target = client.target(peerURL);
+        List<PeerInfo> peerInfos = target.request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(peerIds), new GenericType<List<PeerInfo>>() {});
+
+        Map<Identifier, PeerInfo> result = new HashMap<>(peerInfos.size());
+        for (PeerInfo peerInfo : peerInfos) {
+            result.put(peerInfo.getId(), peerInfo);
+        }
+        return result;
+    }
 }
@@ -35,6 +35,8 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -88,6 +90,15 @@ public class PeerManagerConnectorTest {
         assertThat(peerInfo.getAddresses(), Matchers.hasSize(0));
     }
 
+    @Test
+    public void testGetPeerInfos() throws Exception {
+        Map<Identifier, PeerInfo> peerInfos = connector.getPeerInfos(Arrays.asList(Identifier.peer("1"), Identifier.peer("2"), Identifier.peer("unknown")));
+        assertEquals(2, peerInfos.size());
+        assertEquals(Identifier.peer("1"), peerInfos.get(Identifier.peer("1")).getId());
+        assertEquals(Identifier.peer("2"), peerInfos.get(Identifier.peer("2")).getId());
+        assertNull(peerInfos.get(Identifier.peer("unknown")));
+    }
+
 
     private class RESTApplication extends ResourceConfig {
         private RESTApplication() {
@@ -21,8 +21,10 @@ import at.ac.tuwien.dsg.smartcom.model.*;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
@@ -54,6 +56,18 @@ public class PeerManagerResource {
         return info;
     }
 
+    @POST
+    @Path("/peerInfo")
+    public List<PeerInfo> getPeerInfos(List<String> ids) {
+        List<PeerInfo> infos = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (!"unknown".equals(id)) {
+                infos.add(getPeerInfo(id));
+            }
+        }
+        return infos;
+    }
+
     @GET
     @Path("/peerAuth/{id}")
     public boolean authenticatePeer(@PathParam("id") String id, @HeaderParam("password") String password) {
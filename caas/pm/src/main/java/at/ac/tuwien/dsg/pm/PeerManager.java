@@ -25,10 +25,13 @@ import at.ac.tuwien.dsg.pm.exceptions.PeerDoesNotExistsException;
 import at.ac.tuwien.dsg.pm.model.Collective;
 import at.ac.tuwien.dsg.pm.model.Peer;
 import at.ac.tuwien.dsg.pm.resources.*;
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveMembershipListener;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.rest.ObjectMapperProvider;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
@@ -41,8 +44,14 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -65,6 +74,8 @@ public class PeerManager {
 
     private final LoadingCache<String, Peer> cache;
 
+    private final List<CollectiveMembershipListener> listeners = new CopyOnWriteArrayList<>();
+
     public PeerManager(int port, String serverURIPostfix) {
         this.serverURI = URI.create("http://0.0.0.0:" + port + "/" + serverURIPostfix);
 
@@ -85,6 +96,21 @@ public class PeerManager {
 
                                 return peer;
                             }
+
+                            @Override
+                            public Map<String, Peer> loadAll(Iterable<? extends String> keys) throws Exception {
+                                List<String> ids = new ArrayList<>();
+                                for (String key : keys) {
+                                    ids.add(key);
+                                }
+                                log.debug("loading {} peers from database", ids.size());
+
+                                Map<String, Peer> peers = new HashMap<>();
+                                for (Peer peer : peerDAO.getPeers(ids)) {
+                                    peers.put(peer.getId(), peer);
+                                }
+                                return peers;
+                            }
                         });
     }
 
@@ -94,6 +120,15 @@ public class PeerManager {
         this.collectiveDAO = collectiveDAO;
     }
 
+    /**
+     * Registers a listener that is notified about changes of collectives (e.g., the cache of SmartCom).
+     *
+     * @param listener that should be notified
+     */
+    public void addCollectiveMembershipListener(CollectiveMembershipListener listener) {
+        listeners.add(listener);
+    }
+
     public void init() {
         server = GrizzlyHttpServerFactory.createHttpServer(serverURI, new RESTApplication());
         try {
@@ -128,6 +163,24 @@ public class PeerManager {
         }
     }
 
+    /**
+     * Retrieves multiple peers, peers that are not cached are loaded with a single query.
+     *
+     * @param ids of the peers
+     * @return the peers that exist by their id
+     */
+    public Map<String, Peer> getPeers(Collection<String> ids) {
+        try {
+            return cache.getAll(ids);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            //some peers do not exist, the others have been loaded into the cache nevertheless
+            log.debug("Could not load some of the peers {}", ids);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("Unknown exception while loading peers {}", ids, e);
+        }
+        return cache.getAllPresent(ids);
+    }
+
     public Peer updatePeer(Peer peer) {
         peer = peerDAO.updatePeer(peer);
         if (peer != null) {
@@ -169,23 +222,53 @@ public class PeerManager {
      * @return
      */
     public Collective updateCollective(Collective collective) {
-        return collectiveDAO.updateCollective(collective);
+        Collective updated = collectiveDAO.updateCollective(collective);
+        if (updated != null) {
+            for (CollectiveMembershipListener listener : listeners) {
+                listener.collectiveChanged(Identifier.collective(updated.getId()));
+            }
+        }
+        return updated;
     }
 
     public Collective addPeerToCollective(String collectiveId, String peerId) {
-        return collectiveDAO.addPeerToCollective(collectiveId, peerId);
+        Collective collective = collectiveDAO.addPeerToCollective(collectiveId, peerId);
+        if (collective != null) {
+            for (CollectiveMembershipListener listener : listeners) {
+                listener.memberAdded(Identifier.collective(collectiveId), Identifier.peer(peerId));
+            }
+        }
+        return collective;
     }
 
     public Collective removePeerToCollective(String collectiveId, String peerId) {
-        return collectiveDAO.removePeerToCollective(collectiveId, peerId);
+        Collective collective = collectiveDAO.removePeerToCollective(collectiveId, peerId);
+        if (collective != null) {
+            for (CollectiveMembershipListener listener : listeners) {
+                listener.memberRemoved(Identifier.collective(collectiveId), Identifier.peer(peerId));
+            }
+        }
+        return collective;
     }
 
     public Collective deleteCollective(String id) {
-        return collectiveDAO.deleteCollective(id);
+        Collective collective = collectiveDAO.deleteCollective(id);
+        if (collective != null) {
+            for (CollectiveMembershipListener listener : listeners) {
+                listener.collectiveChanged(Identifier.collective(id));
+            }
+        }
+        return collective;
     }
 
     public void clearCollectiveData() {
+        List<Collective> collectives = listeners.isEmpty() ? Collections.<Collective>emptyList() : collectiveDAO.getAll();
         collectiveDAO.clearData();
+        for (Collective collective : collectives) {
+            for (CollectiveMembershipListener listener : listeners) {
+                listener.collectiveChanged(Identifier.collective(collective.getId()));
+            }
+        }
     }
 
     private class RESTApplication extends ResourceConfig {
@@ -76,6 +76,18 @@ public class MongoDBPeerDAO implements PeerDAO {
         return deserializePeer(coll.findOne(new BasicDBObject("_id", id)));
     }
 
+    @Override
+    public List<Peer> getPeers(Collection<String> ids) {
+        DBCursor dbObjects = coll.find(new BasicDBObject("_id", new BasicDBObject("$in", ids)));
+        final List<Peer> peers = new ArrayList<>(ids.size());
+
+        for (DBObject dbObject : dbObjects) {
+            peers.add(deserializePeer(dbObject));
+        }
+
+        return peers;
+    }
+
     @Override
     public List<Peer> getAll() {
         DBCursor dbObjects = coll.find(new BasicDBObject());
@@ -20,6 +20,7 @@ package at.ac.tuwien.dsg.pm.dao;
 import at.ac.tuwien.dsg.pm.exceptions.PeerAlreadyExistsException;
 import at.ac.tuwien.dsg.pm.model.Peer;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -32,6 +33,14 @@ public interface PeerDAO {
 
     public Peer getPeer(String id);
 
+    /**
+     * Retrieves multiple peers with a single query.
+     *
+     * @param ids of the peers
+     * @return the peers that exist
+     */
+    public List<Peer> getPeers(Collection<String> ids);
+
     public List<Peer> getAll();
 
     public Peer updatePeer(Peer peer);
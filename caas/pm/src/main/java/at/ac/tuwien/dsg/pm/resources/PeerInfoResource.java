@@ -29,6 +29,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -51,6 +52,31 @@ public class PeerInfoResource {
             throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build());
         }
 
+        return createPeerInfo(peer);
+    }
+
+    /**
+     * Resolves the information of multiple peers with a single request. Peers that
+     * do not exist are omitted in the response.
+     *
+     * @param ids of the peers
+     * @return information about the peers that exist
+     */
+    @POST
+    public List<PeerInfo> getPeerInfos(List<String> ids) {
+        if (ids == null) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).build());
+        }
+
+        Collection<Peer> peers = manager.getPeers(ids).values();
+        List<PeerInfo> infos = new ArrayList<>(peers.size());
+        for (Peer peer : peers) {
+            infos.add(createPeerInfo(peer));
+        }
+        return infos;
+    }
+
+    private PeerInfo createPeerInfo(Peer peer) {
         PeerInfo info = new PeerInfo();
         info.setId(Identifier.peer(peer.getId()));
         info.setDeliveryPolicy(peer.getDeliveryPolicy());
@@ -34,7 +34,9 @@ import org.junit.Test;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Arrays;
@@ -107,6 +109,22 @@ public class PeerManagerPeerInfoResourceTest {
         assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
     }
 
+    @Test
+    public void testPeerInfos() throws Exception {
+        createAndAddPeer("1", "Peer1");
+        createAndAddPeer("2", "Peer2");
+        createAndAddPeer("3", "Peer3");
+
+        WebTarget target = client.target(url);
+        List<PeerInfo> peerInfos = target.request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(Arrays.asList("1", "3", "6")), new GenericType<List<PeerInfo>>() {});
+
+        assertEquals(2, peerInfos.size());
+        for (PeerInfo peerInfo : peerInfos) {
+            assertEquals(2, peerInfo.getAddresses().size());
+        }
+    }
+
     private Peer createAndAddPeer(String id, String name) {
         Peer peer = new Peer();
         peer.setId(id);
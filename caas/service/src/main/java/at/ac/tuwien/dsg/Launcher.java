@@ -74,6 +74,7 @@ public class Launcher {
                 .setMessageInfoServicePort(smartcomMisPort)
                 .useLocalMessageQueue(true)
                 .create();
+        peerManager.addCollectiveMembershipListener(smartCom.getCollectiveMembershipListener());
         System.out.println("Running the the SmartCom rest service on port ["+smartcomApiPort+"] and path 'SmartCom'");
 
         AdapterRestService adapterRestService = new AdapterRestService(adapterRestPort, adapterRestUri, smartCom.getCommunication());
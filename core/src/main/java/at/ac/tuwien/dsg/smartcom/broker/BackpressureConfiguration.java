@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+/**
+ * Settings of the bounded queues between the stages of the middleware, i.e., the
+ * queues of the messaging and routing manager and the queues of replicating listeners.
+ *
+ * If a queue is full, the overflow policy decides whether the sender is blocked, the
+ * message is rejected or messages of a lower priority are shed. Rejections are
+ * signalled to the sender (e.g., Communication.send throws a MessageRejectedException).
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class BackpressureConfiguration {
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+    public static final long DEFAULT_BLOCK_TIMEOUT = 5000;
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+    private long blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+
+    /**
+     * @return maximum number of messages in a queue of a single stage
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the time (in ms) a sender waits for space in a full queue if the
+     * overflow policy is BLOCK. 0 means that the sender waits until there is space.
+     *
+     * @return block timeout in milliseconds
+     */
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public void setBlockTimeout(long blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+}
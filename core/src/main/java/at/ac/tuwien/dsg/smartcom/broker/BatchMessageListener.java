@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import java.util.List;
+
+/**
+ * MessageListener that is able to handle several messages at once, e.g., to persist
+ * them in a single database operation. A ReplicatingMessageListener hands over
+ * batches of messages to such listeners instead of single messages.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface BatchMessageListener extends MessageListener {
+
+    /**
+     * This method will be notified if there are new messages available.
+     * @param messages that have been received, ordered by priority and arrival, never empty
+     */
+    public void onMessages(List<Message> messages);
+}
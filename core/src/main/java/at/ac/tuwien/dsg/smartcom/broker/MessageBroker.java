@@ -20,6 +20,9 @@ package at.ac.tuwien.dsg.smartcom.broker;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * A broker that will be used to send messages using a queue or a
  * similar mechanism. Will only be used internally.
@@ -106,6 +109,16 @@ public interface MessageBroker extends InputPublisher {
      */
     public void publishOutput(Identifier id, Message message);
 
+    /**
+     * Publish output messages for many receiver destination ids at once (e.g., when
+     * a message is sent to a collective). The batch is published as a single unit,
+     * i.e., either all messages of the batch are published or none of them.
+     *
+     * @param messages output messages per receiver destination id
+     * @see #publishOutput(Identifier, Message)
+     */
+    public void publishOutputBatch(Map<Identifier, List<Message>> messages);
+
     /**
      * Publish a control message.
      *
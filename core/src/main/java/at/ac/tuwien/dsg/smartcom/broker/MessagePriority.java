@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+
+/**
+ * Priority classes of messages. Control messages (e.g., acknowledgements and errors)
+ * release resources of pending deliveries and are therefore handled before
+ * authentication messages, which are handled before data messages.
+ *
+ * The priority is derived from the type of a message and is honoured by the broker
+ * (as JMS priority), by the queues of replicating listeners and by the worker pools
+ * of the messaging and routing manager.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public enum MessagePriority {
+    CONTROL(9),
+    AUTH(7),
+    DATA(4);
+
+    private final int jmsPriority;
+
+    MessagePriority(int jmsPriority) {
+        this.jmsPriority = jmsPriority;
+    }
+
+    /**
+     * @return the JMS priority (0-9) of this priority class
+     */
+    public int getJmsPriority() {
+        return jmsPriority;
+    }
+
+    /**
+     * Determines the priority class of a message based on its type.
+     *
+     * @param message the message
+     * @return the priority class of the message
+     */
+    public static MessagePriority of(Message message) {
+        String type = message.getType();
+        if (PredefinedMessageHelper.CONTROL_TYPE.equals(type)) {
+            return CONTROL;
+        }
+        if (PredefinedMessageHelper.AUTH_TYPE.equals(type)) {
+            return AUTH;
+        }
+        return DATA;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+/**
+ * Defines what happens if a bounded queue of the middleware is full.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Waits until there is space in the queue. The message is rejected if there is
+     * still no space after the block timeout.
+     */
+    BLOCK,
+
+    /**
+     * Rejects the message immediately.
+     */
+    REJECT,
+
+    /**
+     * Drops messages of the lowest priority class first to make room for messages
+     * of a higher priority class. The message is rejected if there are no messages
+     * of a lower priority class in the queue.
+     */
+    SHED
+}
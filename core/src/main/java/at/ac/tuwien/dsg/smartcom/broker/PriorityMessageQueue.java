@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking queue of messages that keeps a separate lane for every priority class.
+ * Messages of a higher priority class are always taken before messages of a lower
+ * priority class, messages of the same class are taken in the order of their arrival.
+ *
+ * The queue can be bounded, the overflow policy of the queue decides what happens
+ * if a message is offered to a full queue.
+ *
+ * The queue remembers when a message has been added, hence consumers can measure
+ * how long a message has been waiting in the queue (see {@link #takeEntry()}).
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class PriorityMessageQueue {
+
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+    private final ArrayDeque<Entry>[] lanes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int size = 0;
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long blockTimeout;
+
+    /**
+     * Creates an unbounded queue.
+     */
+    public PriorityMessageQueue() {
+        this(Integer.MAX_VALUE, OverflowPolicy.BLOCK, 0);
+    }
+
+    /**
+     * Creates a bounded queue.
+     *
+     * @param capacity maximum number of messages in the queue
+     * @param policy overflow policy that is applied if the queue is full
+     * @param blockTimeout time (in ms) to wait for space if the policy is BLOCK, 0 waits without timeout
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityMessageQueue(int capacity, OverflowPolicy policy, long blockTimeout) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeout = blockTimeout;
+
+        lanes = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Adds a message to the lane of its priority class regardless of the capacity
+     * of the queue.
+     *
+     * @param message that should be added
+     */
+    public void add(Message message) {
+        lock.lock();
+        try {
+            enqueue(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a message to the lane of its priority class. If the queue is full, the
+     * overflow policy of the queue is applied.
+     *
+     * @param message that should be added
+     * @return null if the message has been added without dropping another message,
+     * otherwise the message that has been dropped. This is either the given message
+     * (if it has been rejected) or a message of a lower priority class that has been shed.
+     * @throws InterruptedException if the thread has been interrupted while waiting for space
+     */
+    public Message offer(Message message) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (size < capacity) {
+                enqueue(message);
+                return null;
+            }
+
+            switch (policy) {
+                case BLOCK:
+                    if (awaitSpace()) {
+                        enqueue(message);
+                        return null;
+                    }
+                    return message;
+                case SHED:
+                    Message shed = shed(MessagePriority.of(message));
+                    if (shed != null) {
+                        enqueue(message);
+                    }
+                    return shed == null ? message : shed;
+                case REJECT:
+                default:
+                    return message;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitSpace() throws InterruptedException {
+        if (blockTimeout <= 0) {
+            while (size >= capacity) {
+                notFull.await();
+            }
+            return true;
+        }
+
+        long nanos = TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+        while (size >= capacity) {
+            if (nanos <= 0) {
+                return false;
+            }
+            nanos = notFull.awaitNanos(nanos);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the newest message of the lowest priority class that is lower than
+     * the given priority class.
+     */
+    private Message shed(MessagePriority priority) {
+        for (int i = lanes.length - 1; i > priority.ordinal(); i--) {
+            Entry entry = lanes[i].pollLast();
+            if (entry != null) {
+                size--;
+                return entry.message;
+            }
+        }
+        return null;
+    }
+
+    private void enqueue(Message message) {
+        lanes[MessagePriority.of(message).ordinal()].add(new Entry(message, System.nanoTime()));
+        size++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes the next message and waits until there is one if the queue is empty.
+     *
+     * @return the message with the highest priority
+     * @throws InterruptedException if the thread has been interrupted while waiting
+     */
+    public Message take() throws InterruptedException {
+        return takeEntry().getMessage();
+    }
+
+    /**
+     * Removes the next entry and waits until there is one if the queue is empty.
+     *
+     * @return the entry of the message with the highest priority
+     * @throws InterruptedException if the thread has been interrupted while waiting
+     */
+    public Entry takeEntry() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next message.
+     *
+     * @return the message with the highest priority or null if the queue is empty
+     */
+    public Message poll() {
+        Entry entry = pollEntry();
+        return entry == null ? null : entry.message;
+    }
+
+    /**
+     * Removes the next entry without waiting.
+     *
+     * @return the entry with the highest priority or null if the queue is empty
+     */
+    public Entry pollEntry() {
+        lock.lock();
+        try {
+            return size == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to the given number of entries without waiting.
+     *
+     * @param entries collection the entries are added to, ordered by priority and arrival
+     * @param maxElements maximum number of entries that are removed
+     * @return number of entries that have been removed
+     */
+    public int drainTo(Collection<Entry> entries, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            for (ArrayDeque<Entry> lane : lanes) {
+                Entry entry;
+                while (drained < maxElements && (entry = lane.poll()) != null) {
+                    entries.add(entry);
+                    drained++;
+                }
+            }
+
+            if (drained > 0) {
+                size -= drained;
+                notFull.signalAll();
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return maximum number of messages in the queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if there are no messages in the queue
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @param priority priority class
+     * @return number of messages of the given priority class in the queue
+     */
+    public int size(MessagePriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry dequeue() {
+        for (ArrayDeque<Entry> lane : lanes) {
+            Entry entry = lane.poll();
+            if (entry != null) {
+                size--;
+                notFull.signal();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Message in the queue together with the point in time it has been added.
+     */
+    public static final class Entry {
+        private final Message message;
+        private final long enqueueTime;
+
+        private Entry(Message message, long enqueueTime) {
+            this.message = message;
+            this.enqueueTime = enqueueTime;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        /**
+         * @return point in time (System.nanoTime()) the message has been added to the queue
+         */
+        public long getEnqueueTime() {
+            return enqueueTime;
+        }
+    }
+}
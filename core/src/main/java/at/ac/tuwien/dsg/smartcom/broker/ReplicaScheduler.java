@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * Scheduler that is shared by all replicating message listeners of the process.
+ *
+ * Replicas do not own a thread, instead they are executed as short tasks on a
+ * pool with a fixed number of threads. A task handles a limited number of
+ * messages and is put at the end of the run queue afterwards if there are still
+ * messages left, hence the listeners take turns on the threads of the pool. The
+ * run queue is shared by all threads, an idle thread takes the next task
+ * regardless of which thread scheduled it. The replication handlers of the
+ * listeners are executed by a single timer thread.
+ *
+ * There are two shared schedulers. Listeners whose handlers block on I/O (e.g.,
+ * output adapters that push messages over the network) use a separate blocking
+ * scheduler, so that they can not occupy all threads that handle the control
+ * and input messages of the middleware.
+ *
+ * Listeners acquire the scheduler when they are created and release it when they
+ * are shut down. If a shared scheduler is replaced, the previous scheduler keeps
+ * executing the replicas of its listeners and is shut down as soon as the last
+ * of them has been shut down.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class ReplicaScheduler {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaScheduler.class);
+
+    /**
+     * Default number of threads of the shared scheduler
+     */
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Default number of threads of the shared scheduler for blocking handlers
+     */
+    public static final int DEFAULT_BLOCKING_PARALLELISM = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+    /**
+     * Maximum number of messages that a replica handles before it yields its thread
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static ReplicaScheduler shared;
+    private static ReplicaScheduler sharedBlocking;
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService timer;
+    private final int batchSize;
+
+    /**
+     * Number of listeners that use the scheduler, guarded by the class lock
+     */
+    private int users = 0;
+
+    /**
+     * Scheduler that replaces this one, guarded by the class lock
+     */
+    private ReplicaScheduler successor;
+
+    public ReplicaScheduler(int parallelism) {
+        this(parallelism, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param parallelism maximum number of threads that execute replicas
+     * @param batchSize maximum number of messages a replica handles before it yields its thread
+     */
+    public ReplicaScheduler(int parallelism, int batchSize) {
+        this(parallelism, batchSize, "REPLICA");
+    }
+
+    private ReplicaScheduler(int parallelism, int batchSize, String name) {
+        this.batchSize = batchSize;
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true)
+                        .setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                            @Override
+                            public void uncaughtException(Thread t, Throwable e) {
+                                log.error("Uncaught exception in replica thread {}", t.getName(), e);
+                            }
+                        }).build());
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-TIMER-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Returns the scheduler that is shared by all listeners of the process,
+     * creates it with the default parallelism if there is none yet.
+     *
+     * @return the shared scheduler
+     */
+    public static synchronized ReplicaScheduler getShared() {
+        if (shared == null) {
+            shared = new ReplicaScheduler(DEFAULT_PARALLELISM);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the scheduler that is shared by all listeners of the process whose
+     * handlers block on I/O, creates it with the default parallelism if there is none yet.
+     *
+     * @return the shared scheduler for blocking handlers
+     */
+    public static synchronized ReplicaScheduler getSharedBlocking() {
+        if (sharedBlocking == null) {
+            sharedBlocking = new ReplicaScheduler(DEFAULT_BLOCKING_PARALLELISM, DEFAULT_BATCH_SIZE, "BLOCKING-REPLICA");
+        }
+        return sharedBlocking;
+    }
+
+    /**
+     * Sets the number of threads of the shared schedulers. Listeners that have
+     * been created before keep using the previous schedulers, which are shut
+     * down as soon as the last of these listeners has been shut down. Listeners
+     * that are created afterwards use the new schedulers.
+     *
+     * @param parallelism maximum number of threads that execute replicas
+     * @param blockingParallelism maximum number of threads that execute replicas of blocking handlers
+     */
+    public static synchronized void configureShared(int parallelism, int blockingParallelism) {
+        if (shared == null || shared.getParallelism() != parallelism) {
+            ReplicaScheduler scheduler = new ReplicaScheduler(parallelism);
+            if (shared != null) {
+                shared.retire(scheduler);
+            }
+            shared = scheduler;
+        }
+
+        if (sharedBlocking == null || sharedBlocking.getParallelism() != blockingParallelism) {
+            ReplicaScheduler scheduler = new ReplicaScheduler(blockingParallelism, DEFAULT_BATCH_SIZE, "BLOCKING-REPLICA");
+            if (sharedBlocking != null) {
+                sharedBlocking.retire(scheduler);
+            }
+            sharedBlocking = scheduler;
+        }
+    }
+
+    /**
+     * Registers a listener that uses the scheduler. If the scheduler has been
+     * replaced in the meantime, the listener is registered at its successor.
+     *
+     * @return the scheduler that has to be used by the listener
+     */
+    ReplicaScheduler acquire() {
+        synchronized (ReplicaScheduler.class) {
+            if (successor != null) {
+                return successor.acquire();
+            }
+            users++;
+            return this;
+        }
+    }
+
+    /**
+     * Deregisters a listener that has been shut down. A replaced
+     * scheduler is shut down as soon as the last listener is released.
+     */
+    void release() {
+        synchronized (ReplicaScheduler.class) {
+            users--;
+            if (successor != null && users == 0) {
+                log.debug("Shutting down replaced scheduler");
+                shutdown();
+            }
+        }
+    }
+
+    /**
+     * Marks the scheduler as replaced, it is shut down immediately if no listener uses it.
+     */
+    private void retire(ReplicaScheduler successor) {
+        this.successor = successor;
+        if (users == 0) {
+            shutdown();
+        }
+    }
+
+    void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return timer.scheduleWithFixedDelay(task, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Previously submitted tasks are still executed but no new tasks are accepted.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        timer.shutdown();
+    }
+
+    boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return maximum number of threads that execute replicas
+     */
+    public int getParallelism() {
+        return pool.getMaximumPoolSize();
+    }
+
+    /**
+     * @return number of threads that are currently executing replicas
+     */
+    public int getActiveThreadCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * @return number of replica tasks that wait for a thread
+     */
+    public long getQueuedTaskCount() {
+        return pool.getQueue().size();
+    }
+}
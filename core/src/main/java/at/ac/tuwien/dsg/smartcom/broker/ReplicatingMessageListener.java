@@ -17,24 +17,47 @@
  */
 package at.ac.tuwien.dsg.smartcom.broker;
 
+import at.ac.tuwien.dsg.smartcom.broker.policy.LatencyAwareReplicationPolicy;
 import at.ac.tuwien.dsg.smartcom.broker.policy.ReplicationPolicy;
 import at.ac.tuwien.dsg.smartcom.broker.policy.ReplicationPolicyResult;
 import at.ac.tuwien.dsg.smartcom.broker.policy.TresholdReplicationPolicy;
 import at.ac.tuwien.dsg.smartcom.model.Message;
-import at.ac.tuwien.dsg.smartcom.utils.ExpiringCounter;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import at.ac.tuwien.dsg.smartcom.utils.SlidingWindowCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MessageListener that handles the scalability of a message listener by replicating
  * it when there is a high load and by removing replicas when there is a low load.
  *
- * It keeps an internal queue of messages which will be consumed by the replicas. A
+ * It keeps an internal queue of messages which will be consumed by the replicas. The
+ * queue has a lane per priority class, so that control messages are not stuck behind
+ * data messages. The queue is bounded, if it is full the overflow policy decides whether
+ * the calling thread (e.g., the consumer of the broker) is blocked, the message is rejected
+ * or messages of a lower priority are shed. Dropped messages are handed to an optional
+ * rejection listener. A
  * replication handler will be called in certain intervals and decides based on
  * the replication policy whether to scale up, down or do not do anyhting at all.
+ * Latency aware policies are additionally informed about the queue wait time and the
+ * service time of every handled message and define the interval of the handler.
+ *
+ * Replicas do not own a thread. They are executed on a scheduler that is shared by all
+ * listeners of the process, hence the number of replicas defines how many messages of
+ * this listener may be handled concurrently and not the number of threads. Listeners
+ * whose handlers block on I/O should use the shared blocking scheduler.
+ *
+ * If the listener is a BatchMessageListener, replicas are handed batches of messages
+ * instead of single messages. A batch is handed over as soon as enough messages are
+ * available or the first message has been waiting for the maximum batch delay.
  *
  * The creating of replicas is handled by a replication factory.
  *
@@ -42,16 +65,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @version 1.0
  */
 public class ReplicatingMessageListener implements MessageListener {
+    private static final Logger log = LoggerFactory.getLogger(ReplicatingMessageListener.class);
     private static final AtomicInteger instanceCounter = new AtomicInteger(0);
 
     /**
-     * Defines the limit of how many messages there should be in the
-     * in-memory queue per listener.
-     */
-    private static final int QUEUE_SIZE_LIMIT_PER_LISTENER = 1000;
-
-    /**
-     * Defines the timeout of the replication handler after one call
+     * Defines the timeout of the replication handler after one call,
+     * unless the policy defines its own evaluation interval
      */
     private static final int COUNTER_TIMER_SECONDS = 10;
 
@@ -60,19 +79,58 @@ public class ReplicatingMessageListener implements MessageListener {
      */
     private static final int MAX_UPSCALE = 30;
 
-    private final ExpiringCounter replicaCounter;
-    private final ExpiringCounter handledCounter;
-    private final BlockingDeque<Message> messageQueue;
-    private final Queue<ReplicaHandler> handlerQueue;
+    /**
+     * Default maximum number of messages that are handed to a BatchMessageListener at once
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * Default time (in ms) messages wait for further messages to fill a batch
+     */
+    public static final long DEFAULT_MAX_BATCH_DELAY = 20;
+
+    private final SlidingWindowCounter replicaCounter;
+    private final SlidingWindowCounter handledCounter;
+    private final PriorityMessageQueue messageQueue;
+
+    /**
+     * Replicas that are currently not handling messages
+     */
+    private final Queue<MessageListener> idleReplicas = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of replicas that may be active at the same time
+     */
+    private final AtomicInteger replicas = new AtomicInteger(0);
+
+    /**
+     * Number of replicas that have been created and not yet been removed
+     */
+    private final AtomicInteger instances = new AtomicInteger(0);
+
+    /**
+     * Number of replicas that are currently scheduled or handling messages
+     */
+    private final AtomicInteger active = new AtomicInteger(0);
+
+    private final boolean batching;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long maxBatchDelay = DEFAULT_MAX_BATCH_DELAY;
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
 
-    private final ExecutorService executor;
-    private final ReplicationTimer replicationTimer;
+    private final ReplicaScheduler scheduler;
+    private final ScheduledFuture<?> replicationTimer;
+    private volatile boolean stopped = false;
 
     private final String name;
     private final ReplicationFactory factory;
     private final ReplicationPolicy policy;
+    private final LatencyAwareReplicationPolicy latencyPolicy;
+
+    private final MessageListener rejectionListener;
 
     private final AtomicInteger counter = new AtomicInteger(0);
+    private final AtomicInteger rejected = new AtomicInteger(0);
 
     public ReplicatingMessageListener(MessageListener listener, ReplicationFactory factory) {
         this(String.valueOf(instanceCounter.getAndIncrement()), listener, factory, new TresholdReplicationPolicy());
@@ -83,109 +141,198 @@ public class ReplicatingMessageListener implements MessageListener {
     }
 
     public ReplicatingMessageListener(String name, MessageListener listener, ReplicationFactory factory, ReplicationPolicy policy) {
+        this(name, listener, factory, policy, blockingConfiguration(), null);
+    }
+
+    public ReplicatingMessageListener(String name, MessageListener listener, ReplicationFactory factory, ReplicationPolicy policy,
+                                      ReplicaScheduler scheduler) {
+        this(name, listener, factory, policy, blockingConfiguration(), null, scheduler);
+    }
+
+    public ReplicatingMessageListener(String name, MessageListener listener, ReplicationFactory factory, ReplicationPolicy policy,
+                                      BackpressureConfiguration configuration, MessageListener rejectionListener) {
+        this(name, listener, factory, policy, configuration, rejectionListener, ReplicaScheduler.getShared());
+    }
+
+    /**
+     * @param name of the listener, used in log messages
+     * @param listener initial replica
+     * @param factory that creates further replicas
+     * @param policy that decides whether to scale up or down
+     * @param configuration of the bounded message queue
+     * @param rejectionListener that is notified about messages that have been dropped because the queue was full, may be null
+     * @param scheduler that executes the replicas
+     */
+    public ReplicatingMessageListener(String name, MessageListener listener, ReplicationFactory factory, ReplicationPolicy policy,
+                                      BackpressureConfiguration configuration, MessageListener rejectionListener,
+                                      ReplicaScheduler scheduler) {
         this.name = name;
         this.factory = factory;
         this.policy = policy;
+        this.rejectionListener = rejectionListener;
+        this.scheduler = scheduler.acquire();
+        this.batching = listener instanceof BatchMessageListener;
+
+        long evaluationInterval;
+        if (policy instanceof LatencyAwareReplicationPolicy) {
+            latencyPolicy = (LatencyAwareReplicationPolicy) policy;
+            evaluationInterval = latencyPolicy.getEvaluationInterval();
+        } else {
+            latencyPolicy = null;
+            evaluationInterval = TimeUnit.SECONDS.toMillis(COUNTER_TIMER_SECONDS);
+        }
 
-        replicaCounter = new ExpiringCounter(10, TimeUnit.SECONDS);
-        handledCounter = new ExpiringCounter(10, TimeUnit.SECONDS);
-        messageQueue = new LinkedBlockingDeque<>();
-        handlerQueue = new LinkedBlockingDeque<>();
+        replicaCounter = new SlidingWindowCounter(COUNTER_TIMER_SECONDS, TimeUnit.SECONDS);
+        handledCounter = new SlidingWindowCounter(COUNTER_TIMER_SECONDS, TimeUnit.SECONDS);
+        messageQueue = new PriorityMessageQueue(configuration.getQueueCapacity(), configuration.getOverflowPolicy(), configuration.getBlockTimeout());
 
-        String format = "REPLICA-"+name+"-%d";
-        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(format).build());
+        replicas.set(1);
+        instances.set(1);
+        idleReplicas.add(listener);
 
-        replicationTimer = new ReplicationTimer();
-        executor.submit(replicationTimer);
-        scaleUp(listener);
+        replicationTimer = this.scheduler.scheduleWithFixedDelay(new ReplicationTimer(), evaluationInterval);
     }
 
-    public void shutdown() {
-        replicaCounter.destroy();
-        handledCounter.destroy();
+    /**
+     * Blocks the caller without timeout if the queue is full, hence messages are never dropped.
+     */
+    private static BackpressureConfiguration blockingConfiguration() {
+        BackpressureConfiguration configuration = new BackpressureConfiguration();
+        configuration.setOverflowPolicy(OverflowPolicy.BLOCK);
+        configuration.setBlockTimeout(0);
+        return configuration;
+    }
 
-        replicationTimer.stop();
-        for (ReplicaHandler replicaHandler : handlerQueue) {
-            replicaHandler.stop();
+    public void shutdown() {
+        if (stopped) {
+            return;
         }
+        stopped = true;
+        replicationTimer.cancel(false);
 
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
-                executor.shutdownNow();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (active.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
         }
+        scheduler.release();
     }
 
     @Override
     public void onMessage(Message message) {
         counter.incrementAndGet();
         replicaCounter.increase();
-        messageQueue.add(message);
 
-        waitIfQueueIsTooFull();
-    }
+        Message dropped;
+        try {
+            dropped = messageQueue.offer(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped = message;
+        }
 
-    void waitIfQueueIsTooFull() {
-        if (messageQueue.size() > QUEUE_SIZE_LIMIT_PER_LISTENER *handlerQueue.size()) {
-            try {
-                synchronized (this) {
-                    wait(1000);
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        if (dropped != null) {
+            rejected.incrementAndGet();
+            log.warn("Queue of listener {} is full, dropped message {}", name, dropped.getId());
+            if (rejectionListener != null) {
+                rejectionListener.onMessage(dropped);
             }
         }
+
+        schedule();
     }
 
-    private class ReplicationTimer implements Runnable {
+    /**
+     * Defines how messages are batched if the replicas are BatchMessageListeners.
+     *
+     * @param maxBatchSize maximum number of messages that are handed over at once
+     * @param maxBatchDelay maximum time (in ms) messages wait for further messages to fill a batch
+     */
+    public void setBatching(int maxBatchSize, long maxBatchDelay) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelay = maxBatchDelay;
+    }
 
-        private boolean run = true;
+    /**
+     * @return number of messages that have been dropped because the queue was full
+     */
+    public int getRejectedMessages() {
+        return rejected.get();
+    }
 
-        protected void stop() {
-            run = false;
+    /**
+     * @return number of replicas that may handle messages concurrently
+     */
+    public int getReplicas() {
+        return replicas.get();
+    }
+
+    private void schedule() {
+        schedule(false);
+    }
+
+    /**
+     * Schedules replicas on the scheduler as long as there are messages in the queue
+     * and the listener has not used up its share of concurrent replicas. Batches that
+     * are not full yet are only scheduled if flush is set, otherwise a flush is scheduled
+     * after the maximum batch delay.
+     */
+    private void schedule(boolean flush) {
+        while (!stopped && !messageQueue.isEmpty()) {
+            if (batching && !flush && messageQueue.size() < maxBatchSize) {
+                scheduleFlush();
+                return;
+            }
+
+            int current = active.get();
+            if (current >= replicas.get()) {
+                return;
+            }
+
+            if (active.compareAndSet(current, current + 1)) {
+                scheduler.execute(new ReplicaTask());
+            }
         }
+    }
 
-        @Override
-        public void run() {
-            while (!Thread.currentThread().isInterrupted() && run) {
-                synchronized (this) {
-                    try {
-                        wait(TimeUnit.SECONDS.toMillis(COUNTER_TIMER_SECONDS));
-                    } catch (InterruptedException e) {
-                        continue;
-                    }
+    private void scheduleFlush() {
+        if (flushPending.compareAndSet(false, true)) {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushPending.set(false);
+                    schedule(true);
                 }
+            }, maxBatchDelay);
+        }
+    }
+
+    private class ReplicationTimer implements Runnable {
 
+        @Override
+        public void run() {
+            try {
                 ReplicationPolicyResult policyResult = policy.determineReplicationPolicy(replicaCounter.getCounter(),
-                        handlerQueue.size(), messageQueue.size(), handledCounter.getCounter());
+                        replicas.get(), messageQueue.size(), handledCounter.getCounter());
 
                 switch(policyResult.getType()) {
                     case UPSCALE:
-                        int times = policyResult.getAmount();
-                        int remain = Math.min(MAX_UPSCALE - handlerQueue.size(), times);
+                        int remain = Math.min(MAX_UPSCALE - replicas.get(), policyResult.getAmount());
 
                         if (remain > 0) {
-//                            System.out.println("UPSCALE "+name+" x" + remain + " (" + handlerQueue.size() + " Instances)");
-
-                            for (int i = 0; i < remain; i++) {
-                                scaleUp(factory.createReplication());
-                            }
+                            scaleUp(remain);
                         }
                         break;
 
                     case DOWNSCALE:
-                        times = policyResult.getAmount();
-                        remain = Math.min(handlerQueue.size() - 1, times);
+                        remain = Math.min(replicas.get() - 1, policyResult.getAmount());
 
                         if (remain > 0) {
-//                            System.out.println("DOWNSCALE "+name+" x" + remain + " (" + handlerQueue.size() + " Instances)");
-
-                            for (int i = 0; i < remain; i++) {
-                                scaleDown();
-                            }
+                            scaleDown(remain);
                         }
                         break;
 
@@ -193,44 +340,136 @@ public class ReplicatingMessageListener implements MessageListener {
                         //do nothing
                         break;
                 }
+            } catch (RuntimeException e) {
+                log.error("Could not determine the replication of listener {}", name, e);
             }
         }
     }
 
-    private void scaleDown() {
-        ReplicaHandler handler = handlerQueue.poll();
-        handler.stop();
-    }
+    private void scaleUp(int amount) {
+        replicas.addAndGet(amount);
 
-    private void scaleUp(MessageListener replication) {
-        ReplicaHandler handler = new ReplicaHandler(replication);
-        handlerQueue.add(handler);
-        executor.submit(handler);
-    }
+        //reuse replicas that have not been removed yet, create the others
+        while (true) {
+            int current = instances.get();
+            if (current >= replicas.get()) {
+                break;
+            }
 
-    private class ReplicaHandler implements Runnable {
+            if (instances.compareAndSet(current, current + 1)) {
+                idleReplicas.add(factory.createReplication());
+            }
+        }
+
+        schedule();
+    }
 
-        private final MessageListener listener;
-        private boolean run = true;
+    private void scaleDown(int amount) {
+        replicas.addAndGet(-amount);
 
-        private ReplicaHandler(MessageListener listener) {
-            this.listener = listener;
+        //remove idle replicas, active ones are removed as soon as they are finished
+        MessageListener replica;
+        while ((replica = idleReplicas.poll()) != null) {
+            if (!retire()) {
+                idleReplicas.add(replica);
+                break;
+            }
         }
+    }
+
+    /**
+     * @return true if there are more replicas than the listener may use and the
+     * caller is allowed to remove one
+     */
+    private boolean retire() {
+        while (true) {
+            int current = instances.get();
+            if (current <= replicas.get()) {
+                return false;
+            }
 
-        protected void stop() {
-            run = false;
+            if (instances.compareAndSet(current, current - 1)) {
+                return true;
+            }
         }
+    }
+
+    /**
+     * Handles up to a batch of messages with an idle replica and yields the thread afterwards.
+     * BatchMessageListeners get the whole batch at once.
+     */
+    private class ReplicaTask implements Runnable {
 
         @Override
         public void run() {
-            while (!Thread.currentThread().isInterrupted() && run) {
-                try {
-                    handledCounter.increase();
-                    this.listener.onMessage(messageQueue.take());
-                } catch (InterruptedException e) {
-                    break;
+            MessageListener replica = idleReplicas.poll();
+            try {
+                if (replica == null) {
+                    return;
+                }
+
+                if (batching && replica instanceof BatchMessageListener) {
+                    List<PriorityMessageQueue.Entry> entries = new ArrayList<>();
+                    if (messageQueue.drainTo(entries, maxBatchSize) > 0) {
+                        handle((BatchMessageListener) replica, entries);
+                    }
+                } else {
+                    for (int i = 0; i < scheduler.getBatchSize() && !stopped; i++) {
+                        PriorityMessageQueue.Entry entry = messageQueue.pollEntry();
+                        if (entry == null) {
+                            break;
+                        }
+
+                        handle(replica, entry);
+                    }
+                }
+            } finally {
+                if (replica != null && !retire()) {
+                    idleReplicas.add(replica);
+                }
+                active.decrementAndGet();
+            }
+
+            //reschedule if there are messages left, the task is queued behind those of other listeners.
+            //messages that arrived in the meantime do not wait for a full batch
+            schedule(true);
+        }
+
+        private void handle(MessageListener replica, PriorityMessageQueue.Entry entry) {
+            try {
+                if (latencyPolicy == null) {
+                    replica.onMessage(entry.getMessage());
+                } else {
+                    long start = System.nanoTime();
+                    replica.onMessage(entry.getMessage());
+                    latencyPolicy.messageHandled(start - entry.getEnqueueTime(), System.nanoTime() - start);
+                }
+            } catch (RuntimeException e) {
+                log.error("Replica of listener {} could not handle message {}", name, entry.getMessage().getId(), e);
+            }
+            handledCounter.increase();
+        }
+
+        private void handle(BatchMessageListener replica, List<PriorityMessageQueue.Entry> entries) {
+            List<Message> messages = new ArrayList<>(entries.size());
+            for (PriorityMessageQueue.Entry entry : entries) {
+                messages.add(entry.getMessage());
+            }
+
+            long start = System.nanoTime();
+            try {
+                replica.onMessages(messages);
+            } catch (RuntimeException e) {
+                log.error("Replica of listener {} could not handle a batch of {} messages", name, messages.size(), e);
+            }
+
+            if (latencyPolicy != null) {
+                long service = (System.nanoTime() - start) / entries.size();
+                for (PriorityMessageQueue.Entry entry : entries) {
+                    latencyPolicy.messageHandled(start - entry.getEnqueueTime(), service);
                 }
             }
+            handledCounter.add(entries.size());
         }
     }
 }
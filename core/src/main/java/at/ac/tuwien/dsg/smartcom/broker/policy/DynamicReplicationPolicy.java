@@ -33,14 +33,15 @@ public class DynamicReplicationPolicy implements ReplicationPolicy {
 
         if ((remainingMessages * 0.99f) > messagesHandled) {
             int deviationPerHandler = remainingMessages/handlers;
-            int handledPerHandler = messagesHandled/handlers;
+            //at least one, nothing might have been handled at all
+            int handledPerHandler = Math.max(messagesHandled/handlers, 1);
 
             return new ReplicationPolicyResult(ReplicationType.UPSCALE, deviationPerHandler/handledPerHandler);
         } else if ((remainingMessages * 1.01f) < messagesHandled || messagesPending < 100) {
             int deviation = messagesHandled - remainingMessages;
-            int handledPerHandler = Math.min(messagesHandled/handlers, 1);
 
-            return new ReplicationPolicyResult(ReplicationType.DOWNSCALE, (deviation/handledPerHandler) - 1);
+            //the deviation is not scaled by the messages handled per handler (which might be 0)
+            return new ReplicationPolicyResult(ReplicationType.DOWNSCALE, deviation - 1);
         } else {
             return new ReplicationPolicyResult(ReplicationType.NOSCALE, 0);
         }
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.policy;
+
+/**
+ * Replication policy that additionally takes the latency of the handled messages
+ * into account. The replicating listener reports the queue wait time and the service
+ * time of every message that has been handled and evaluates the policy in the interval
+ * that is defined by the policy.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface LatencyAwareReplicationPolicy extends ReplicationPolicy {
+
+    /**
+     * Reports a message that has been handled by a replica.
+     *
+     * @param queueWaitNanos time (in ns) the message has been waiting in the queue
+     * @param serviceNanos time (in ns) the replica needed to handle the message
+     */
+    void messageHandled(long queueWaitNanos, long serviceNanos);
+
+    /**
+     * @return interval (in ms) in which the policy should be evaluated
+     */
+    long getEvaluationInterval();
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.policy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy that sizes the number of replicas based on a target latency, i.e., the time
+ * between the arrival of a message and the end of its handling (queue wait time plus
+ * service time).
+ *
+ * According to Little's law the number of messages that are handled concurrently is the
+ * arrival rate times the service time. The policy therefore requires enough replicas to
+ * cope with the arrival rate at a maximum utilisation plus the replicas that are needed to
+ * work off the pending messages within the target latency.
+ *
+ * To prevent oscillation, the policy only scales up if the observed latency exceeds the
+ * target latency and only scales down if the observed latency is below the lower bound
+ * for several consecutive evaluations.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class LatencyReplicationPolicy implements LatencyAwareReplicationPolicy {
+    public static final long DEFAULT_TARGET_LATENCY = 100;
+    public static final long DEFAULT_EVALUATION_INTERVAL = 1000;
+
+    /**
+     * Replicas should not be busy all the time, otherwise the waiting time grows
+     * without bounds.
+     */
+    private static final double MAX_UTILISATION = 0.8;
+
+    /**
+     * The policy scales down only if the latency is below this fraction of the target latency.
+     */
+    private static final double DOWNSCALE_LATENCY_FRACTION = 0.5;
+
+    /**
+     * Number of consecutive evaluations that have to allow a downscale.
+     */
+    private static final int DOWNSCALE_EVALUATIONS = 3;
+
+    private final long targetLatencyNanos;
+    private final long evaluationInterval;
+
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalServiceNanos = new AtomicLong();
+
+    private long lastEvaluation = System.nanoTime();
+    private int lastPending = 0;
+    private double serviceNanos = 0;
+    private int downscaleVotes = 0;
+
+    public LatencyReplicationPolicy() {
+        this(DEFAULT_TARGET_LATENCY, DEFAULT_EVALUATION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param targetLatency latency that should not be exceeded
+     * @param evaluationInterval interval in which the policy is evaluated
+     * @param unit of the target latency and the evaluation interval
+     */
+    public LatencyReplicationPolicy(long targetLatency, long evaluationInterval, TimeUnit unit) {
+        if (targetLatency <= 0 || evaluationInterval <= 0) {
+            throw new IllegalArgumentException("Target latency and evaluation interval must be positive");
+        }
+        this.targetLatencyNanos = unit.toNanos(targetLatency);
+        this.evaluationInterval = unit.toMillis(evaluationInterval);
+    }
+
+    @Override
+    public void messageHandled(long queueWaitNanos, long serviceNanos) {
+        handled.incrementAndGet();
+        totalWaitNanos.addAndGet(queueWaitNanos);
+        totalServiceNanos.addAndGet(serviceNanos);
+    }
+
+    @Override
+    public long getEvaluationInterval() {
+        return evaluationInterval;
+    }
+
+    /**
+     * Evaluates the measurements since the last call, the counters of the listener
+     * are only used to determine the number of handlers and pending messages.
+     */
+    @Override
+    public synchronized ReplicationPolicyResult determineReplicationPolicy(int messagesReceived, int handlers, int messagesPending, int messagesHandled) {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(now - lastEvaluation, 1) / 1e9;
+        lastEvaluation = now;
+
+        long count = handled.getAndSet(0);
+        long waitNanos = totalWaitNanos.getAndSet(0);
+        long service = totalServiceNanos.getAndSet(0);
+
+        if (count > 0) {
+            serviceNanos = (double) service / count;
+        }
+
+        //messages that arrived = messages handled + growth of the queue
+        double arrivalRate = Math.max(count + messagesPending - lastPending, 0) / elapsedSeconds;
+        lastPending = messagesPending;
+
+        double latency = count > 0 ? (double) (waitNanos + service) / count : 0;
+        int desired = desiredReplicas(arrivalRate, handlers, messagesPending);
+
+        if (desired > handlers && (latency > targetLatencyNanos || (count == 0 && messagesPending > 0))) {
+            downscaleVotes = 0;
+            return new ReplicationPolicyResult(ReplicationType.UPSCALE, desired - handlers);
+        }
+
+        if (desired < handlers && latency < targetLatencyNanos * DOWNSCALE_LATENCY_FRACTION) {
+            if (++downscaleVotes >= DOWNSCALE_EVALUATIONS) {
+                downscaleVotes = 0;
+                //remove at most half of the surplus at once
+                return new ReplicationPolicyResult(ReplicationType.DOWNSCALE, Math.max((handlers - desired) / 2, 1));
+            }
+        } else {
+            downscaleVotes = 0;
+        }
+
+        return new ReplicationPolicyResult(ReplicationType.NOSCALE, 0);
+    }
+
+    private int desiredReplicas(double arrivalRate, int handlers, int pending) {
+        if (serviceNanos == 0) {
+            //nothing has been handled yet, add a single replica if messages are waiting
+            return pending > 0 ? handlers + 1 : 1;
+        }
+
+        double serviceSeconds = serviceNanos / 1e9;
+        double busy = arrivalRate * serviceSeconds / MAX_UTILISATION;
+        double backlog = pending * serviceNanos / targetLatencyNanos;
+
+        return (int) Math.max(Math.ceil(busy + backlog), 1);
+    }
+}
@@ -18,10 +18,13 @@
 package at.ac.tuwien.dsg.smartcom.manager;
 
 import at.ac.tuwien.dsg.smartcom.callback.NotificationCallback;
+import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.model.DeliveryResult;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
@@ -37,8 +40,24 @@ public interface MessagingAndRoutingManager {
 
 	 * @param message to send
 	 * @return Returns the internal ID of the middleware to track the message within the system.
+	 * @throws CommunicationException if the message could not be accepted, e.g., a MessageRejectedException
+	 * if the middleware is overloaded
 	 */
-    public Identifier send(Message message);
+    public Identifier send(Message message) throws CommunicationException;
+
+	/**
+	 * Sends a message like send(Message) and tracks the outcome of its delivery. The returned future is
+	 * completed as soon as the delivery policies of the receiver have been resolved, or with a TIMEOUT result
+	 * after the given timeout.
+	 *
+	 * @param message to send
+	 * @param timeout in milliseconds after which the future is completed with a TIMEOUT result, 0 to rely
+	 *                on the delivery timeouts of the middleware only
+	 * @return future that will be completed with the outcome of the delivery
+	 * @throws CommunicationException if the message could not be accepted, e.g., a MessageRejectedException
+	 * if the middleware is overloaded
+	 */
+	public ListenableFuture<DeliveryResult> sendAsync(Message message, long timeout) throws CommunicationException;
 
     public Identifier addRouting(RoutingRule rule) throws InvalidRuleException;
 
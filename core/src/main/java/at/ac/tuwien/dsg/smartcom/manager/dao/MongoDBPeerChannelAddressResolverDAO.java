@@ -23,9 +23,12 @@ import com.mongodb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.Serializable;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -69,6 +72,9 @@ public class MongoDBPeerChannelAddressResolverDAO implements PeerChannelAddressR
      */
     public MongoDBPeerChannelAddressResolverDAO(MongoClient client, String database, String collection) {
         coll = client.getDB(database).getCollection(collection);
+
+        //used to find the most recent addresses
+        coll.createIndex(new BasicDBObject("modified", -1));
     }
 
     @Override
@@ -87,6 +93,22 @@ public class MongoDBPeerChannelAddressResolverDAO implements PeerChannelAddressR
         }
     }
 
+    @Override
+    public void insertAll(Collection<PeerChannelAddress> addresses) {
+        if (addresses.isEmpty()) {
+            return;
+        }
+
+        //upsert all documents in a single round trip
+        BulkWriteOperation bulk = coll.initializeUnorderedBulkOperation();
+        for (PeerChannelAddress address : addresses) {
+            BasicDBObject doc = serializePeerAddress(address);
+            bulk.find(new BasicDBObject("_id", doc.get("_id"))).upsert().replaceOne(doc);
+        }
+        BulkWriteResult result = bulk.execute();
+        log.trace("Upserted {} documents ({} inserted, {} updated)", addresses.size(), result.getUpserts().size(), result.getMatchedCount());
+    }
+
     /**
      * Serializes a peer address into a MongoDB specific document format.
      *
@@ -104,7 +126,8 @@ public class MongoDBPeerChannelAddressResolverDAO implements PeerChannelAddressR
                 .append("_id", address.getPeerId().getId()+"."+address.getChannelType().getId())
                 .append("peerId", address.getPeerId().getId())
                 .append("adapterId", address.getChannelType().getId())
-                .append("contactParameters", contactParams);
+                .append("contactParameters", contactParams)
+                .append("modified", System.currentTimeMillis());
         log.trace("Saving peer address in mongoDB: {}", doc);
         return doc;
     }
@@ -128,6 +151,21 @@ public class MongoDBPeerChannelAddressResolverDAO implements PeerChannelAddressR
         coll.remove(new BasicDBObject("_id", peerId.getId()+"."+adapterId.getId()));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The returned iterator is Closeable and releases the cursor of the database.
+     */
+    @Override
+    public Iterator<PeerChannelAddress> findRecent(int limit, int batchSize) {
+        DBCursor cursor = coll.find()
+                .sort(new BasicDBObject("modified", -1))
+                .limit(limit)
+                .batchSize(batchSize);
+
+        return new CursorIterator(cursor);
+    }
+
     /**
      * Creates a peer address from a retrieved MongoDB specific document object.
      *
@@ -145,4 +183,35 @@ public class MongoDBPeerChannelAddressResolverDAO implements PeerChannelAddressR
         address = new PeerChannelAddress(Identifier.peer((String) dbObject.get("peerId")), Identifier.adapter((String) dbObject.get("adapterId")), list);
         return address;
     }
+
+    /**
+     * Iterator that deserializes the documents of a cursor and closes the cursor.
+     */
+    private class CursorIterator implements Iterator<PeerChannelAddress>, Closeable {
+        private final DBCursor cursor;
+
+        private CursorIterator(DBCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        public PeerChannelAddress next() {
+            return deserializePeerAddress(cursor.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
 }
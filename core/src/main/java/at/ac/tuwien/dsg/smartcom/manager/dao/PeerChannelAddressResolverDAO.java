@@ -20,6 +20,9 @@ package at.ac.tuwien.dsg.smartcom.manager.dao;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
 
+import java.util.Collection;
+import java.util.Iterator;
+
 /**
  * DAO to insert, find and remove peer addresses identified by the id of a peer
  * and of an adapter.
@@ -35,6 +38,14 @@ public interface PeerChannelAddressResolverDAO {
      */
     void insert(PeerChannelAddress address);
 
+    /**
+     * Insert several peer addresses at once. Existing addresses of the same peer
+     * and channel will be replaced.
+     *
+     * @param addresses the peer addresses
+     */
+    void insertAll(Collection<PeerChannelAddress> addresses);
+
     /**
      * Find a peer address identified by the peer id and the adapter id.
      *
@@ -54,4 +65,18 @@ public interface PeerChannelAddressResolverDAO {
      * @param adapterId id of the adapter
      */
     void remove(Identifier peerId, Identifier adapterId);
+
+    /**
+     * Returns the peer addresses that have been inserted or updated most recently,
+     * starting with the most recent one.
+     *
+     * The addresses are streamed from the database in batches of the given size while
+     * the iterator is consumed. If the iterator is Closeable (e.g., because it holds a
+     * database cursor), the caller has to close it after use.
+     *
+     * @param limit maximum number of addresses
+     * @param batchSize number of addresses that are retrieved from the database at once
+     * @return iterator over the most recent peer addresses
+     */
+    Iterator<PeerChannelAddress> findRecent(int limit, int batchSize);
 }
@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.dao;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ResolverDAO that buffers inserted peer addresses and writes them behind to an
+ * underlying DAO.
+ *
+ * Writes are coalesced per peer and channel, i.e., only the latest address of a
+ * peer and channel is written. Addresses that did not change since they have
+ * been written the last time are detected by their fingerprint and skipped.
+ * The buffer is flushed to the underlying DAO as a batch if it reaches its
+ * maximum size or after the flush interval, whatever happens first. Pending
+ * addresses are already visible to find and remove. If the underlying DAO fails,
+ * the batch is put back into the buffer and written by the next flush, unless a
+ * newer address of the same peer and channel has been inserted in the meantime.
+ *
+ * Call cleanUp to write the remaining addresses before the underlying DAO is
+ * closed.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class WriteBehindPeerChannelAddressResolverDAO implements PeerChannelAddressResolverDAO {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindPeerChannelAddressResolverDAO.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /**
+     * Maximum number of fingerprints of written addresses that are remembered.
+     */
+    public static final int FINGERPRINT_CACHE_SIZE = 10000;
+
+    private final PeerChannelAddressResolverDAO dao;
+    private final int bufferSize;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private Map<String, PeerChannelAddress> pending = new LinkedHashMap<>();
+    private Map<String, PeerChannelAddress> flushing = Collections.emptyMap();
+    private final Cache<String, Long> fingerprints;
+
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            flush();
+        }
+    };
+
+    /**
+     * Create a new write-behind DAO.
+     *
+     * @param dao underlying DAO the addresses are written to
+     * @param bufferSize number of pending addresses that triggers a flush
+     * @param flushInterval maximum time in milliseconds an address stays in the buffer
+     */
+    public WriteBehindPeerChannelAddressResolverDAO(PeerChannelAddressResolverDAO dao, int bufferSize, long flushInterval) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size has to be positive but was " + bufferSize);
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval has to be positive but was " + flushInterval);
+        }
+
+        this.dao = dao;
+        this.bufferSize = bufferSize;
+        this.fingerprints = CacheBuilder.newBuilder().maximumSize(FINGERPRINT_CACHE_SIZE).build();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("AddressResolver-write-behind-%d").setDaemon(true).build());
+        this.scheduler.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void insert(PeerChannelAddress address) {
+        String key = key(address.getPeerId(), address.getChannelType());
+        long fingerprint = fingerprint(address);
+
+        int size;
+        synchronized (lock) {
+            Long previous = fingerprints.getIfPresent(key);
+            if (previous != null && previous == fingerprint) {
+                log.trace("Skipping unchanged address {}", address);
+                return;
+            }
+
+            fingerprints.put(key, fingerprint);
+            pending.put(key, address);
+            size = pending.size();
+        }
+
+        if (size >= bufferSize && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(flushTask);
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<PeerChannelAddress> addresses) {
+        for (PeerChannelAddress address : addresses) {
+            insert(address);
+        }
+    }
+
+    @Override
+    public PeerChannelAddress find(Identifier peerId, Identifier adapterId) {
+        String key = key(peerId, adapterId);
+        synchronized (lock) {
+            PeerChannelAddress address = pending.get(key);
+            if (address == null) {
+                address = flushing.get(key);
+            }
+            if (address != null) {
+                return address;
+            }
+        }
+        return dao.find(peerId, adapterId);
+    }
+
+    @Override
+    public void remove(Identifier peerId, Identifier adapterId) {
+        String key = key(peerId, adapterId);
+
+        //wait for a running flush, otherwise it might write the address again
+        synchronized (flushLock) {
+            synchronized (lock) {
+                pending.remove(key);
+                fingerprints.invalidate(key);
+            }
+            dao.remove(peerId, adapterId);
+        }
+    }
+
+    @Override
+    public Iterator<PeerChannelAddress> findRecent(int limit, int batchSize) {
+        //pending addresses are the most recent ones
+        flush();
+        return dao.findRecent(limit, batchSize);
+    }
+
+    /**
+     * Writes all pending addresses to the underlying DAO.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, PeerChannelAddress> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new LinkedHashMap<>();
+            }
+
+            try {
+                dao.insertAll(batch.values());
+                log.debug("Wrote {} peer addresses", batch.size());
+            } catch (Exception e) {
+                log.error("Could not write {} peer addresses, retrying with the next flush", batch.size(), e);
+
+                //the batch is older than the addresses that have been inserted in the meantime
+                synchronized (lock) {
+                    Map<String, PeerChannelAddress> retry = new LinkedHashMap<>(batch);
+                    retry.keySet().removeAll(pending.keySet());
+                    retry.putAll(pending);
+                    pending = retry;
+                }
+            } finally {
+                synchronized (lock) {
+                    flushing = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of addresses that have not been written yet.
+     *
+     * @return number of pending addresses
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Stops the periodic flushes and writes all pending addresses.
+     */
+    public void cleanUp() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.error("Could not await termination of executor. forcing shutdown", e);
+            scheduler.shutdownNow();
+        }
+        flush();
+    }
+
+    private static String key(Identifier peerId, Identifier channelType) {
+        return peerId.getId()+"."+channelType.getId();
+    }
+
+    private static long fingerprint(PeerChannelAddress address) {
+        Hasher hasher = HASH.newHasher()
+                .putString(address.getPeerId().getId(), UTF8)
+                .putString(address.getChannelType().getId(), UTF8);
+
+        List<? extends Serializable> parameters = address.getContactParameters();
+        if (parameters != null) {
+            for (Serializable parameter : parameters) {
+                hasher.putInt(parameter == null ? 0 : parameter.hashCode())
+                        .putString(String.valueOf(parameter), UTF8);
+            }
+        }
+        return hasher.hash().asLong();
+    }
+}
@@ -32,6 +32,9 @@ public class BrokerStatistic {
     private int outputMessagePublished;
     private int requestMessageReceived;
     private int requestMessagePublished;
+    private int consumerCacheHits;
+    private int consumerCacheMisses;
+    private int consumerCacheEvictions;
 
     public BrokerStatistic() {}
 
@@ -39,7 +42,8 @@ public class BrokerStatistic {
                            int logMessageReceived, int logMessagePublished,
                            int controlMessageReceived, int controlMessagePublished,
                            int outputMessageReceived, int outputMessagePublished,
-                           int requestMessageReceived, int requestMessagePublished) {
+                           int requestMessageReceived, int requestMessagePublished,
+                           int consumerCacheHits, int consumerCacheMisses, int consumerCacheEvictions) {
         this.inputMessageReceived = inputMessageReceived;
         this.inputMessagePublished = inputMessagePublished;
         this.logMessageReceived = logMessageReceived;
@@ -50,6 +54,9 @@ public class BrokerStatistic {
         this.outputMessagePublished = outputMessagePublished;
         this.requestMessageReceived = requestMessageReceived;
         this.requestMessagePublished = requestMessagePublished;
+        this.consumerCacheHits = consumerCacheHits;
+        this.consumerCacheMisses = consumerCacheMisses;
+        this.consumerCacheEvictions = consumerCacheEvictions;
     }
 
     public int getInputMessageReceived() {
@@ -132,6 +139,30 @@ public class BrokerStatistic {
         this.requestMessagePublished = requestMessagePublished;
     }
 
+    public int getConsumerCacheHits() {
+        return consumerCacheHits;
+    }
+
+    public void setConsumerCacheHits(int consumerCacheHits) {
+        this.consumerCacheHits = consumerCacheHits;
+    }
+
+    public int getConsumerCacheMisses() {
+        return consumerCacheMisses;
+    }
+
+    public void setConsumerCacheMisses(int consumerCacheMisses) {
+        this.consumerCacheMisses = consumerCacheMisses;
+    }
+
+    public int getConsumerCacheEvictions() {
+        return consumerCacheEvictions;
+    }
+
+    public void setConsumerCacheEvictions(int consumerCacheEvictions) {
+        this.consumerCacheEvictions = consumerCacheEvictions;
+    }
+
     @Override
     public String toString() {
         return "BrokerStatistic{" +
@@ -140,6 +171,7 @@ public class BrokerStatistic {
                 ", control: " + controlMessageReceived + "/" + controlMessagePublished +
                 ", request: " + requestMessageReceived + "/" + requestMessagePublished +
                 ", log: " + logMessageReceived + "/" + logMessagePublished +
+                ", consumer cache (hit/miss/evicted): " + consumerCacheHits + "/" + consumerCacheMisses + "/" + consumerCacheEvictions +
                 '}';
     }
 }
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.statistic;
+
+/**
+ * Counters of a cache of the middleware since it has been created. The average
+ * load penalty is given in milliseconds.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class CacheStatistic {
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long loadSuccessCount;
+    private long loadExceptionCount;
+    private double averageLoadPenalty;
+    private long evictionCount;
+
+    public CacheStatistic() {}
+
+    public CacheStatistic(String name, long size,
+                          long hitCount, long missCount, double hitRate,
+                          long loadSuccessCount, long loadExceptionCount,
+                          double averageLoadPenalty, long evictionCount) {
+        this.name = name;
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.hitRate = hitRate;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadExceptionCount = loadExceptionCount;
+        this.averageLoadPenalty = averageLoadPenalty;
+        this.evictionCount = evictionCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public void setMissCount(long missCount) {
+        this.missCount = missCount;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public void setHitRate(double hitRate) {
+        this.hitRate = hitRate;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public void setLoadSuccessCount(long loadSuccessCount) {
+        this.loadSuccessCount = loadSuccessCount;
+    }
+
+    public long getLoadExceptionCount() {
+        return loadExceptionCount;
+    }
+
+    public void setLoadExceptionCount(long loadExceptionCount) {
+        this.loadExceptionCount = loadExceptionCount;
+    }
+
+    public double getAverageLoadPenalty() {
+        return averageLoadPenalty;
+    }
+
+    public void setAverageLoadPenalty(double averageLoadPenalty) {
+        this.averageLoadPenalty = averageLoadPenalty;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public void setEvictionCount(long evictionCount) {
+        this.evictionCount = evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistic{" +
+                "name='" + name + '\'' +
+                ", size=" + size +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", hitRate=" + hitRate +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadExceptionCount=" + loadExceptionCount +
+                ", averageLoadPenalty=" + averageLoadPenalty +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+}
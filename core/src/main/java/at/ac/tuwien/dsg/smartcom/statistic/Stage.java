@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.statistic;
+
+/**
+ * Stage of the processing of messages that has its own queue and workers
+ * (e.g., the routing stage of the messaging and routing manager). Stages are
+ * registered at the StatisticBean, which exports their gauges and allows to
+ * change the number of workers at runtime.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface Stage {
+
+    /**
+     * @return unique name of the stage
+     */
+    public String getName();
+
+    /**
+     * @return current gauges of the stage
+     */
+    public StageStatistic getStatistic();
+
+    /**
+     * Changes the number of workers of the stage.
+     *
+     * @param workers new number of workers, has to be positive
+     * @throws IllegalArgumentException if the number of workers is not positive or exceeds the maximum of the stage
+     */
+    public void setWorkers(int workers);
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.statistic;
+
+/**
+ * Gauges of a single stage. Times are given in milliseconds and are averaged
+ * over all tasks that have been completed since the stage has been started.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class StageStatistic {
+    private String name;
+    private int workers;
+    private int activeWorkers;
+    private int queueSize;
+    private int queueCapacity;
+    private long completed;
+    private long rejected;
+    private long callerRuns;
+    private double averageWaitTime;
+    private double averageServiceTime;
+
+    public StageStatistic() {}
+
+    public StageStatistic(String name, int workers, int activeWorkers,
+                          int queueSize, int queueCapacity,
+                          long completed, long rejected, long callerRuns,
+                          double averageWaitTime, double averageServiceTime) {
+        this.name = name;
+        this.workers = workers;
+        this.activeWorkers = activeWorkers;
+        this.queueSize = queueSize;
+        this.queueCapacity = queueCapacity;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.callerRuns = callerRuns;
+        this.averageWaitTime = averageWaitTime;
+        this.averageServiceTime = averageServiceTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+
+    public void setActiveWorkers(int activeWorkers) {
+        this.activeWorkers = activeWorkers;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(long completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * @return number of tasks that have been rejected because the queue was full
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return number of tasks that have been executed by the submitting thread because the queue was full
+     */
+    public long getCallerRuns() {
+        return callerRuns;
+    }
+
+    public void setCallerRuns(long callerRuns) {
+        this.callerRuns = callerRuns;
+    }
+
+    /**
+     * @return average time (in ms) a task waited in the queue
+     */
+    public double getAverageWaitTime() {
+        return averageWaitTime;
+    }
+
+    public void setAverageWaitTime(double averageWaitTime) {
+        this.averageWaitTime = averageWaitTime;
+    }
+
+    /**
+     * @return average time (in ms) a worker needed to execute a task
+     */
+    public double getAverageServiceTime() {
+        return averageServiceTime;
+    }
+
+    public void setAverageServiceTime(double averageServiceTime) {
+        this.averageServiceTime = averageServiceTime;
+    }
+
+    @Override
+    public String toString() {
+        return "StageStatistic{" +
+                "name='" + name + '\'' +
+                ", workers=" + workers +
+                ", activeWorkers=" + activeWorkers +
+                ", queueSize=" + queueSize +
+                ", queueCapacity=" + queueCapacity +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                ", callerRuns=" + callerRuns +
+                ", averageWaitTime=" + averageWaitTime +
+                ", averageServiceTime=" + averageServiceTime +
+                '}';
+    }
+}
@@ -17,6 +17,8 @@
  */
 package at.ac.tuwien.dsg.smartcom.statistic;
 
+import java.util.List;
+
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
@@ -30,16 +32,37 @@ public class Statistic {
     private int peerMessage;
     private int callbackMessage;
     private int logMessage;
+    private int expiredMessage;
+    private int rejectedMessage;
+
+    //within the last StatisticBean.RECENT_WINDOW_SECONDS
+    private int recentSendingRequest;
+    private int recentRejectedMessage;
+
+    //cache of the adapters of the peers
+    private int adapterCacheHits;
+    private int adapterCacheMisses;
+    private int adapterCacheEvictions;
 
     private BrokerStatistic broker;
 
+    //stages of the processing of messages
+    private List<StageStatistic> stages;
+
+    //caches of the middleware (e.g., peer information)
+    private List<CacheStatistic> caches;
+
     public Statistic() {}
 
     public Statistic(int sendingRequest, int internalSendingRequest,
                      int externalSendingRequest, int componentMessage,
                      int collectiveMessage, int peerMessage,
                      int callbackMessage, int logMessage,
-                     BrokerStatistic broker) {
+                     int expiredMessage, int rejectedMessage,
+                     int recentSendingRequest, int recentRejectedMessage,
+                     int adapterCacheHits, int adapterCacheMisses,
+                     int adapterCacheEvictions, BrokerStatistic broker,
+                     List<StageStatistic> stages, List<CacheStatistic> caches) {
         this.sendingRequest = sendingRequest;
         this.internalSendingRequest = internalSendingRequest;
         this.externalSendingRequest = externalSendingRequest;
@@ -48,7 +71,16 @@ public class Statistic {
         this.peerMessage = peerMessage;
         this.callbackMessage = callbackMessage;
         this.logMessage = logMessage;
+        this.expiredMessage = expiredMessage;
+        this.rejectedMessage = rejectedMessage;
+        this.recentSendingRequest = recentSendingRequest;
+        this.recentRejectedMessage = recentRejectedMessage;
+        this.adapterCacheHits = adapterCacheHits;
+        this.adapterCacheMisses = adapterCacheMisses;
+        this.adapterCacheEvictions = adapterCacheEvictions;
         this.broker = broker;
+        this.stages = stages;
+        this.caches = caches;
     }
 
     public BrokerStatistic getBroker() {
@@ -59,6 +91,22 @@ public class Statistic {
         this.broker = broker;
     }
 
+    public List<StageStatistic> getStages() {
+        return stages;
+    }
+
+    public void setStages(List<StageStatistic> stages) {
+        this.stages = stages;
+    }
+
+    public List<CacheStatistic> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(List<CacheStatistic> caches) {
+        this.caches = caches;
+    }
+
     public int getSendingRequest() {
         return sendingRequest;
     }
@@ -123,6 +171,62 @@ public class Statistic {
         this.logMessage = logMessage;
     }
 
+    public int getExpiredMessage() {
+        return expiredMessage;
+    }
+
+    public void setExpiredMessage(int expiredMessage) {
+        this.expiredMessage = expiredMessage;
+    }
+
+    public int getRejectedMessage() {
+        return rejectedMessage;
+    }
+
+    public void setRejectedMessage(int rejectedMessage) {
+        this.rejectedMessage = rejectedMessage;
+    }
+
+    public int getRecentSendingRequest() {
+        return recentSendingRequest;
+    }
+
+    public void setRecentSendingRequest(int recentSendingRequest) {
+        this.recentSendingRequest = recentSendingRequest;
+    }
+
+    public int getRecentRejectedMessage() {
+        return recentRejectedMessage;
+    }
+
+    public void setRecentRejectedMessage(int recentRejectedMessage) {
+        this.recentRejectedMessage = recentRejectedMessage;
+    }
+
+    public int getAdapterCacheHits() {
+        return adapterCacheHits;
+    }
+
+    public void setAdapterCacheHits(int adapterCacheHits) {
+        this.adapterCacheHits = adapterCacheHits;
+    }
+
+    public int getAdapterCacheMisses() {
+        return adapterCacheMisses;
+    }
+
+    public void setAdapterCacheMisses(int adapterCacheMisses) {
+        this.adapterCacheMisses = adapterCacheMisses;
+    }
+
+    public int getAdapterCacheEvictions() {
+        return adapterCacheEvictions;
+    }
+
+    public void setAdapterCacheEvictions(int adapterCacheEvictions) {
+        this.adapterCacheEvictions = adapterCacheEvictions;
+    }
+
     @Override
     public String toString() {
         return "Statistic{" +
@@ -134,7 +238,16 @@ public class Statistic {
                 ", peerMessage=" + peerMessage +
                 ", callbackMessage=" + callbackMessage +
                 ", logMessage=" + logMessage +
+                ", expiredMessage=" + expiredMessage +
+                ", rejectedMessage=" + rejectedMessage +
+                ", recentSendingRequest=" + recentSendingRequest +
+                ", recentRejectedMessage=" + recentRejectedMessage +
+                ", adapterCacheHits=" + adapterCacheHits +
+                ", adapterCacheMisses=" + adapterCacheMisses +
+                ", adapterCacheEvictions=" + adapterCacheEvictions +
                 ", broker: "+broker.toString()+
+                ", stages: "+stages+
+                ", caches: "+caches+
                 '}';
     }
 }
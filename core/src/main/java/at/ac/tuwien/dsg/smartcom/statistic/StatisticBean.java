@@ -17,6 +17,15 @@
  */
 package at.ac.tuwien.dsg.smartcom.statistic;
 
+import at.ac.tuwien.dsg.smartcom.utils.SlidingWindowCounter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -25,6 +34,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class StatisticBean {
 
+    /**
+     * Size of the window of the recent counters, i.e., the counters that only
+     * include the events of the last seconds.
+     */
+    public static final int RECENT_WINDOW_SECONDS = 10;
+
     private AtomicInteger sendingRequest = new AtomicInteger(0);
     private AtomicInteger internalSendingRequest = new AtomicInteger(0);
     private AtomicInteger externalSendingRequest = new AtomicInteger(0);
@@ -33,9 +48,20 @@ public class StatisticBean {
     private AtomicInteger peerMessage = new AtomicInteger(0);
     private AtomicInteger callbackMessage = new AtomicInteger(0);
     private AtomicInteger logMessage = new AtomicInteger(0);
+    private AtomicInteger expiredMessage = new AtomicInteger(0);
+    private AtomicInteger rejectedMessage = new AtomicInteger(0);
+    private AtomicInteger adapterCacheHits = new AtomicInteger(0);
+    private AtomicInteger adapterCacheMisses = new AtomicInteger(0);
+    private AtomicInteger adapterCacheEvictions = new AtomicInteger(0);
+    private SlidingWindowCounter recentSendingRequest = new SlidingWindowCounter(RECENT_WINDOW_SECONDS, TimeUnit.SECONDS);
+    private SlidingWindowCounter recentRejectedMessage = new SlidingWindowCounter(RECENT_WINDOW_SECONDS, TimeUnit.SECONDS);
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, Cache<?, ?>> caches = new LinkedHashMap<>();
 
     public void sendingRequestReceived() {
         sendingRequest.incrementAndGet();
+        recentSendingRequest.increase();
     }
 
     public void internalMessageSendingRequest() {
@@ -66,6 +92,115 @@ public class StatisticBean {
         logMessage.incrementAndGet();
     }
 
+    public void messageExpired(){
+        expiredMessage.incrementAndGet();
+    }
+
+    public void messageRejected(){
+        rejectedMessage.incrementAndGet();
+        recentRejectedMessage.increase();
+    }
+
+    public void adapterCacheHit() {
+        adapterCacheHits.incrementAndGet();
+    }
+
+    public void adapterCacheMiss() {
+        adapterCacheMisses.incrementAndGet();
+    }
+
+    public void adapterCacheEviction() {
+        adapterCacheEvictions.incrementAndGet();
+    }
+
+    /**
+     * Registers a stage whose gauges should be part of the statistic. A stage
+     * with the same name is replaced.
+     *
+     * @param stage the stage
+     */
+    public void registerStage(Stage stage) {
+        synchronized (stages) {
+            stages.put(stage.getName(), stage);
+        }
+    }
+
+    public void unregisterStage(Stage stage) {
+        synchronized (stages) {
+            stages.remove(stage.getName());
+        }
+    }
+
+    /**
+     * Changes the number of workers of a registered stage.
+     *
+     * @param name of the stage
+     * @param workers new number of workers
+     * @return the gauges of the stage, null if there is no such stage
+     * @throws IllegalArgumentException if the number of workers is not positive or exceeds the maximum of the stage
+     */
+    public StageStatistic setStageWorkers(String name, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+
+        Stage stage;
+        synchronized (stages) {
+            stage = stages.get(name);
+        }
+        if (stage == null) {
+            return null;
+        }
+
+        stage.setWorkers(workers);
+        return stage.getStatistic();
+    }
+
+    public List<StageStatistic> getStageStatistics() {
+        List<StageStatistic> statistics = new ArrayList<>();
+        synchronized (stages) {
+            for (Stage stage : stages.values()) {
+                statistics.add(stage.getStatistic());
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Registers a cache whose counters should be part of the statistic. The cache
+     * has to record its statistics (see CacheBuilder.recordStats()). A cache with
+     * the same name is replaced.
+     *
+     * @param name of the cache
+     * @param cache the cache
+     */
+    public void registerCache(String name, Cache<?, ?> cache) {
+        synchronized (caches) {
+            caches.put(name, cache);
+        }
+    }
+
+    public void unregisterCache(String name) {
+        synchronized (caches) {
+            caches.remove(name);
+        }
+    }
+
+    public List<CacheStatistic> getCacheStatistics() {
+        List<CacheStatistic> statistics = new ArrayList<>();
+        synchronized (caches) {
+            for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+                CacheStats stats = entry.getValue().stats();
+                statistics.add(new CacheStatistic(entry.getKey(), entry.getValue().size(),
+                        stats.hitCount(), stats.missCount(), stats.hitRate(),
+                        stats.loadSuccessCount(), stats.loadExceptionCount(),
+                        stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1),
+                        stats.evictionCount()));
+            }
+        }
+        return statistics;
+    }
+
     public Statistic getStatistic() {
         return new Statistic(
                 sendingRequest.get(),
@@ -76,6 +211,13 @@ public class StatisticBean {
                 peerMessage.get(),
                 callbackMessage.get(),
                 logMessage.get(),
+                expiredMessage.get(),
+                rejectedMessage.get(),
+                recentSendingRequest.getCounter(),
+                recentRejectedMessage.getCounter(),
+                adapterCacheHits.get(),
+                adapterCacheMisses.get(),
+                adapterCacheEvictions.get(),
                 new BrokerStatistic(
                     inputMessageReceived.get(),
                     inputMessagePublished.get(),
@@ -86,8 +228,13 @@ public class StatisticBean {
                     outputMessageReceived.get(),
                     outputMessagePublished.get(),
                     requestMessageReceived.get(),
-                    requestMessagePublished.get()
-                )
+                    requestMessagePublished.get(),
+                    consumerCacheHits.get(),
+                    consumerCacheMisses.get(),
+                    consumerCacheEvictions.get()
+                ),
+                getStageStatistics(),
+                getCacheStatistics()
 
         );
     }
@@ -114,6 +261,10 @@ public class StatisticBean {
     private AtomicInteger requestMessageReceived = new AtomicInteger(0);
     private AtomicInteger requestMessagePublished = new AtomicInteger(0);
 
+    private AtomicInteger consumerCacheHits = new AtomicInteger(0);
+    private AtomicInteger consumerCacheMisses = new AtomicInteger(0);
+    private AtomicInteger consumerCacheEvictions = new AtomicInteger(0);
+
     public void brokerPublishInput() {
         inputMessagePublished.incrementAndGet();
     }
@@ -142,6 +293,10 @@ public class StatisticBean {
         outputMessagePublished.incrementAndGet();
     }
 
+    public void brokerPublishOutput(int amount) {
+        outputMessagePublished.addAndGet(amount);
+    }
+
     public void outputReceived() {
         outputMessageReceived.incrementAndGet();
     }
@@ -154,4 +309,16 @@ public class StatisticBean {
         requestMessageReceived.incrementAndGet();
     }
 
+    public void consumerCacheHit() {
+        consumerCacheHits.incrementAndGet();
+    }
+
+    public void consumerCacheMiss() {
+        consumerCacheMisses.incrementAndGet();
+    }
+
+    public void consumerCacheEviction() {
+        consumerCacheEvictions.incrementAndGet();
+    }
+
 }
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks after a delay, intended for a large number of timeouts that
+ * are usually cancelled before they expire (e.g., a timeout per pending delivery).
+ *
+ * Time is divided into ticks of a fixed duration. The wheel consists of several
+ * levels of slots, each slot holds a doubly linked list of timeouts. A slot of
+ * the lowest level covers a single tick, a slot of the next level covers all ticks
+ * of the level below and so on. A timeout is put into the lowest level whose range
+ * covers its deadline, hence scheduling and cancelling a timeout take constant time
+ * regardless of the number of pending timeouts. Whenever the lowest level has made
+ * a full turn, the timeouts of the next slot of the upper level are cascaded down.
+ * Timeouts never expire early but up to one tick late.
+ *
+ * The wheel is advanced by a single timer thread that also executes the expired
+ * tasks, hence tasks should be short.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class HierarchicalTimingWheel {
+    private static final Logger log = LoggerFactory.getLogger(HierarchicalTimingWheel.class);
+
+    public static final long DEFAULT_TICK_DURATION = 100;
+
+    /**
+     * Each level has 2^WHEEL_BITS slots, with the default tick duration the
+     * levels cover about 19 days. Timeouts beyond this range are cascaded from
+     * the top level until they are in range.
+     */
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final Timeout[][] wheels = new Timeout[LEVELS][WHEEL_SIZE];
+    private final long tickDuration;
+    private final long start;
+    private final String name;
+
+    private ScheduledExecutorService timer;
+
+    //all ticks before this one have been processed
+    private long nextTick = 0;
+    private int pending = 0;
+
+    public HierarchicalTimingWheel(String name) {
+        this(name, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param name of the timer thread
+     * @param tickDuration duration of a single tick
+     * @param unit of the tick duration
+     */
+    public HierarchicalTimingWheel(String name, long tickDuration, TimeUnit unit) {
+        this.name = name;
+        this.tickDuration = Math.max(unit.toMillis(tickDuration), 1);
+        this.start = currentTimeMillis();
+
+        for (Timeout[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Timeout(null, null, 0);
+            }
+        }
+    }
+
+    /**
+     * Starts the timer thread that advances the wheel once per tick.
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                advance(currentTimeMillis());
+            }
+        }, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timer thread, pending timeouts will not expire anymore.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Schedules a task that is executed after the given delay unless the
+     * returned timeout is cancelled before.
+     *
+     * @param task that should be executed
+     * @param delay after which the task is executed
+     * @param unit of the delay
+     * @return timeout that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = currentTimeMillis() + unit.toMillis(delay);
+
+        //round up, a timeout must not expire before its deadline
+        long tick = (deadline - start + tickDuration - 1) / tickDuration;
+        Timeout timeout = new Timeout(this, task, tick);
+
+        synchronized (this) {
+            add(timeout);
+            pending++;
+        }
+        return timeout;
+    }
+
+    /**
+     * @return number of timeouts that have been neither cancelled nor expired
+     */
+    public synchronized int size() {
+        return pending;
+    }
+
+    /**
+     * Processes all ticks up to the given point in time and executes the tasks
+     * of the expired timeouts.
+     *
+     * @param now current time in milliseconds
+     */
+    void advance(long now) {
+        long currentTick = (now - start) / tickDuration;
+        List<Timeout> expired = new ArrayList<>();
+
+        synchronized (this) {
+            while (nextTick <= currentTick) {
+                int index = (int) (nextTick & WHEEL_MASK);
+
+                //the lowest level has made a full turn, cascade the next slots of the upper levels
+                if (index == 0) {
+                    for (int level = 1; level < LEVELS; level++) {
+                        int slot = (int) ((nextTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+                        cascade(wheels[level][slot]);
+                        if (slot != 0) {
+                            break;
+                        }
+                    }
+                }
+
+                nextTick++;
+
+                Timeout head = wheels[0][index];
+                while (head.next != head) {
+                    Timeout timeout = head.next;
+                    timeout.unlink();
+                    timeout.state = Timeout.EXPIRED;
+                    pending--;
+                    expired.add(timeout);
+                }
+            }
+        }
+
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                log.error("Execution of timeout task failed", e);
+            }
+        }
+    }
+
+    private void cascade(Timeout head) {
+        while (head.next != head) {
+            Timeout timeout = head.next;
+            timeout.unlink();
+            add(timeout);
+        }
+    }
+
+    private void add(Timeout timeout) {
+        long delta = timeout.tick - nextTick;
+        Timeout head;
+
+        if (delta < 0) {
+            //deadline has already passed, expire with the next tick
+            head = wheels[0][(int) (nextTick & WHEEL_MASK)];
+        } else if (delta < WHEEL_SIZE) {
+            head = wheels[0][(int) (timeout.tick & WHEEL_MASK)];
+        } else {
+            int level = (63 - Long.numberOfLeadingZeros(delta)) / WHEEL_BITS;
+            long tick = timeout.tick;
+            if (level >= LEVELS) {
+                //out of range, put it into the last slot of the top level and cascade it again later
+                level = LEVELS - 1;
+                tick = nextTick + MAX_DELTA;
+            }
+            head = wheels[level][(int) ((tick >> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        }
+
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HierarchicalTimingWheel wheel;
+        private final Runnable task;
+        private final long tick;
+
+        private Timeout prev = this;
+        private Timeout next = this;
+        private int state = PENDING;
+
+        private Timeout(HierarchicalTimingWheel wheel, Runnable task, long tick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.tick = tick;
+        }
+
+        /**
+         * Cancels the timeout, the task will not be executed.
+         *
+         * @return false if the timeout has already expired or has been cancelled before
+         */
+        public boolean cancel() {
+            synchronized (wheel) {
+                if (state != PENDING) {
+                    return false;
+                }
+                unlink();
+                state = CANCELLED;
+                wheel.pending--;
+                return true;
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (wheel) {
+                return state == CANCELLED;
+            }
+        }
+
+        public boolean isExpired() {
+            synchronized (wheel) {
+                return state == EXPIRED;
+            }
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events within a sliding time window (e.g., the number of messages that
+ * have been received in the last 10 seconds).
+ *
+ * The window is divided into a fixed number of buckets that are organised as a ring.
+ * Each bucket holds the time slot it belongs to and the number of events in this slot,
+ * both packed into a single long that is updated with compare-and-set. A bucket that
+ * belongs to an old slot is reset by the first event of a new slot, hence the counter
+ * uses constant memory and does not need a background thread to expire events. The
+ * window moves in steps of one bucket.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class SlidingWindowCounter {
+
+    public static final int DEFAULT_BUCKETS = 10;
+
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray buckets;
+    private final long bucketMillis;
+    private final long start;
+
+    public SlidingWindowCounter(long duration, TimeUnit unit) {
+        this(duration, unit, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param duration of the window
+     * @param unit of the duration
+     * @param buckets number of buckets the window is divided into
+     */
+    public SlidingWindowCounter(long duration, TimeUnit unit, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Number of buckets must be positive");
+        }
+        this.buckets = new AtomicLongArray(buckets);
+        this.bucketMillis = Math.max(unit.toMillis(duration) / buckets, 1);
+        this.start = currentTimeMillis();
+    }
+
+    public void increase() {
+        add(1);
+    }
+
+    /**
+     * Adds the given amount of events to the current time slot.
+     *
+     * @param amount number of events
+     */
+    public void add(int amount) {
+        int slot = currentSlot();
+        int index = index(slot);
+
+        while (true) {
+            long bucket = buckets.get(index);
+            long updated = slot(bucket) == slot ? bucket + amount : pack(slot, amount);
+            if (buckets.compareAndSet(index, bucket, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return number of events within the window
+     */
+    public int getCounter() {
+        int slot = currentSlot();
+        int oldest = slot - buckets.length();
+
+        long sum = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long bucket = buckets.get(i);
+            int bucketSlot = slot(bucket);
+            if (bucketSlot > oldest && bucketSlot <= slot) {
+                sum += bucket & COUNT_MASK;
+            }
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    public void clear() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the current time in milliseconds, can be overridden for testing.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private int currentSlot() {
+        //slots start at 1, hence an empty bucket (slot 0) never belongs to the window
+        return (int) ((currentTimeMillis() - start) / bucketMillis) + 1;
+    }
+
+    private int index(int slot) {
+        return (int) ((slot & COUNT_MASK) % buckets.length());
+    }
+
+    private static int slot(long bucket) {
+        return (int) (bucket >>> 32);
+    }
+
+    private static long pack(int slot, int count) {
+        return ((long) slot << 32) | (count & COUNT_MASK);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.broker.policy.TresholdReplicationPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchMessageListenerTest {
+
+    private ReplicaScheduler scheduler;
+    private ReplicatingMessageListener listener;
+    private TestBatchListener batchListener;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ReplicaScheduler(1);
+        batchListener = new TestBatchListener();
+        listener = new ReplicatingMessageListener("test", batchListener, new ReplicationFactory() {
+            @Override
+            public MessageListener createReplication() {
+                return batchListener;
+            }
+        }, new TresholdReplicationPolicy(), new BackpressureConfiguration(), null, scheduler);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        listener.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testFullBatchIsHandedOverImmediately() throws Exception {
+        listener.setBatching(10, 10000);
+        batchListener.expect(10);
+
+        for (int i = 0; i < 10; i++) {
+            listener.onMessage(new Message());
+        }
+
+        assertTrue(batchListener.await());
+        assertEquals(1, batchListener.batches.size());
+        assertEquals(10, batchListener.batches.get(0).intValue());
+        assertEquals(0, batchListener.single);
+    }
+
+    @Test(timeout = 5000)
+    public void testPartialBatchIsHandedOverAfterDelay() throws Exception {
+        listener.setBatching(10, 100);
+        batchListener.expect(3);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            listener.onMessage(new Message());
+        }
+
+        assertTrue(batchListener.await());
+        assertTrue(System.currentTimeMillis() - start >= 90);
+        assertEquals(1, batchListener.batches.size());
+        assertEquals(3, batchListener.batches.get(0).intValue());
+    }
+
+    private static class TestBatchListener implements BatchMessageListener {
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private volatile int single = 0;
+        private volatile CountDownLatch latch;
+
+        void expect(int messages) {
+            latch = new CountDownLatch(messages);
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onMessages(List<Message> messages) {
+            batches.add(messages.size());
+            for (Message ignored : messages) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            single++;
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PriorityMessageQueueTest {
+
+    @Test
+    public void testHigherPriorityIsTakenFirst() throws Exception {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+
+        queue.add(createMessage("data1", PredefinedMessageHelper.DATA_TYPE));
+        queue.add(createMessage("auth1", PredefinedMessageHelper.AUTH_TYPE));
+        queue.add(createMessage("data2", null));
+        queue.add(createMessage("control1", PredefinedMessageHelper.CONTROL_TYPE));
+        queue.add(createMessage("control2", PredefinedMessageHelper.CONTROL_TYPE));
+
+        assertEquals(5, queue.size());
+        assertEquals(2, queue.size(MessagePriority.CONTROL));
+
+        assertEquals(Identifier.message("control1"), queue.take().getId());
+        assertEquals(Identifier.message("control2"), queue.take().getId());
+        assertEquals(Identifier.message("auth1"), queue.take().getId());
+        assertEquals(Identifier.message("data1"), queue.take().getId());
+        assertEquals(Identifier.message("data2"), queue.poll().getId());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testDrainTo() throws Exception {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+
+        queue.add(createMessage("data1", PredefinedMessageHelper.DATA_TYPE));
+        queue.add(createMessage("data2", PredefinedMessageHelper.DATA_TYPE));
+        queue.add(createMessage("control1", PredefinedMessageHelper.CONTROL_TYPE));
+
+        List<PriorityMessageQueue.Entry> entries = new ArrayList<>();
+        assertEquals(2, queue.drainTo(entries, 2));
+        assertEquals(Identifier.message("control1"), entries.get(0).getMessage().getId());
+        assertEquals(Identifier.message("data1"), entries.get(1).getMessage().getId());
+        assertEquals(1, queue.size());
+
+        assertEquals(1, queue.drainTo(entries, 2));
+        assertEquals(0, queue.drainTo(entries, 2));
+        assertEquals(0, queue.size());
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeWaitsForMessage() throws Exception {
+        final PriorityMessageQueue queue = new PriorityMessageQueue();
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                queue.add(createMessage("data", PredefinedMessageHelper.DATA_TYPE));
+            }
+        }.start();
+
+        assertEquals(Identifier.message("data"), queue.take().getId());
+    }
+
+    @Test
+    public void testRejectIfFull() throws Exception {
+        PriorityMessageQueue queue = new PriorityMessageQueue(2, OverflowPolicy.REJECT, 0);
+
+        Message data3 = createMessage("data3", PredefinedMessageHelper.DATA_TYPE);
+        assertNull(queue.offer(createMessage("data1", PredefinedMessageHelper.DATA_TYPE)));
+        assertNull(queue.offer(createMessage("data2", PredefinedMessageHelper.DATA_TYPE)));
+        assertSame(data3, queue.offer(data3));
+        assertEquals(2, queue.size());
+
+        queue.take();
+        assertNull(queue.offer(data3));
+        assertEquals(2, queue.size());
+    }
+
+    @Test(timeout = 5000)
+    public void testBlockIfFull() throws Exception {
+        final PriorityMessageQueue queue = new PriorityMessageQueue(1, OverflowPolicy.BLOCK, 100);
+
+        assertNull(queue.offer(createMessage("data1", PredefinedMessageHelper.DATA_TYPE)));
+
+        //no consumer, the message is rejected after the timeout
+        Message data2 = createMessage("data2", PredefinedMessageHelper.DATA_TYPE);
+        assertSame(data2, queue.offer(data2));
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    queue.take();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }.start();
+
+        assertNull(queue.offer(data2));
+        assertEquals(Identifier.message("data2"), queue.take().getId());
+    }
+
+    @Test
+    public void testShedLowestPriority() throws Exception {
+        PriorityMessageQueue queue = new PriorityMessageQueue(2, OverflowPolicy.SHED, 0);
+
+        assertNull(queue.offer(createMessage("data1", PredefinedMessageHelper.DATA_TYPE)));
+        assertNull(queue.offer(createMessage("auth1", PredefinedMessageHelper.AUTH_TYPE)));
+
+        //the data message is shed in favour of the control message
+        assertEquals(Identifier.message("data1"), queue.offer(createMessage("control1", PredefinedMessageHelper.CONTROL_TYPE)).getId());
+        //then the auth message is shed
+        assertEquals(Identifier.message("auth1"), queue.offer(createMessage("control2", PredefinedMessageHelper.CONTROL_TYPE)).getId());
+
+        //there is nothing with a lower priority left, hence the new message is rejected
+        Message data2 = createMessage("data2", PredefinedMessageHelper.DATA_TYPE);
+        assertSame(data2, queue.offer(data2));
+        assertEquals(2, queue.size(MessagePriority.CONTROL));
+    }
+
+    private static Message createMessage(String id, String type) {
+        return new Message.MessageBuilder().setId(Identifier.message(id)).setType(type).create();
+    }
+}
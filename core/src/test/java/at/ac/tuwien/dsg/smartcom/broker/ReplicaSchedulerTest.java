@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker;
+
+import at.ac.tuwien.dsg.smartcom.broker.policy.TresholdReplicationPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicaSchedulerTest {
+
+    private ReplicaScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ReplicaScheduler(1, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testListenersShareThreads() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(10);
+
+        ReplicatingMessageListener slow = createListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        ReplicatingMessageListener fast = createListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                handled.countDown();
+            }
+        });
+
+        slow.onMessage(new Message());
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            fast.onMessage(new Message());
+        }
+
+        //the only thread of the scheduler is occupied by the slow listener
+        assertEquals(10, handled.getCount());
+
+        release.countDown();
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+        slow.shutdown();
+        fast.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testListenersTakeTurns() throws Exception {
+        final AtomicInteger firstHandled = new AtomicInteger(0);
+        final AtomicInteger firstHandledBeforeSecond = new AtomicInteger(-1);
+        final CountDownLatch secondHandled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ReplicatingMessageListener first = createListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                firstHandled.incrementAndGet();
+            }
+        });
+        ReplicatingMessageListener second = createListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                firstHandledBeforeSecond.set(firstHandled.get());
+                secondHandled.countDown();
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            first.onMessage(new Message());
+        }
+        second.onMessage(new Message());
+        release.countDown();
+
+        //batches of a single message, hence the second listener does not wait for all messages of the first one
+        assertTrue(secondHandled.await(5, TimeUnit.SECONDS));
+        assertTrue(firstHandledBeforeSecond.get() < 100);
+
+        first.shutdown();
+        second.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testReconfiguredSchedulerDrains() throws Exception {
+        ReplicaScheduler previous = ReplicaScheduler.getShared();
+        int parallelism = previous.getParallelism();
+        int blockingParallelism = ReplicaScheduler.getSharedBlocking().getParallelism();
+
+        final CountDownLatch handled = new CountDownLatch(2);
+        MessageListener listener = new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                handled.countDown();
+            }
+        };
+        ReplicatingMessageListener old = createSharedListener(listener);
+
+        try {
+            ReplicaScheduler.configureShared(parallelism + 1, blockingParallelism);
+            ReplicaScheduler current = ReplicaScheduler.getShared();
+
+            //the listener that has been created before keeps using the previous scheduler
+            assertFalse(previous.isShutdown());
+            old.onMessage(new Message());
+
+            ReplicatingMessageListener created = createSharedListener(listener);
+            created.onMessage(new Message());
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+            old.shutdown();
+            assertTrue(previous.isShutdown());
+            assertFalse(current.isShutdown());
+
+            created.shutdown();
+            assertFalse(current.isShutdown());
+        } finally {
+            ReplicaScheduler.configureShared(parallelism, blockingParallelism);
+        }
+    }
+
+    private ReplicatingMessageListener createSharedListener(final MessageListener listener) {
+        return new ReplicatingMessageListener("shared", listener, new ReplicationFactory() {
+            @Override
+            public MessageListener createReplication() {
+                return listener;
+            }
+        }, new TresholdReplicationPolicy(), new BackpressureConfiguration(), null);
+    }
+
+    private ReplicatingMessageListener createListener(final MessageListener listener) {
+        return new ReplicatingMessageListener("test", listener, new ReplicationFactory() {
+            @Override
+            public MessageListener createReplication() {
+                return listener;
+            }
+        }, new TresholdReplicationPolicy(), new BackpressureConfiguration(), null, scheduler);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.policy;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyReplicationPolicyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testUpscaleIfTargetLatencyIsExceeded() throws Exception {
+        LatencyReplicationPolicy policy = new LatencyReplicationPolicy(100, 1000, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 100; i++) {
+            policy.messageHandled(200 * MS, 10 * MS);
+        }
+
+        ReplicationPolicyResult result = policy.determineReplicationPolicy(0, 1, 50, 0);
+        assertEquals(ReplicationType.UPSCALE, result.getType());
+        //working off the pending messages within the target latency alone requires 5 replicas
+        assertTrue(result.getAmount() >= 5);
+    }
+
+    @Test
+    public void testDownscaleOnlyAfterConsecutiveEvaluations() throws Exception {
+        LatencyReplicationPolicy policy = new LatencyReplicationPolicy(100, 1000, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 2; i++) {
+            policy.messageHandled(0, 1000);
+            assertEquals(ReplicationType.NOSCALE, policy.determineReplicationPolicy(0, 10, 0, 0).getType());
+        }
+
+        policy.messageHandled(0, 1000);
+        ReplicationPolicyResult result = policy.determineReplicationPolicy(0, 10, 0, 0);
+        assertEquals(ReplicationType.DOWNSCALE, result.getType());
+        //only half of the surplus is removed at once
+        assertEquals(4, result.getAmount());
+    }
+
+    @Test
+    public void testNoScaleWithinHysteresis() throws Exception {
+        LatencyReplicationPolicy policy = new LatencyReplicationPolicy(100, 1000, TimeUnit.MILLISECONDS);
+
+        //latency between half of the target and the target, neither up- nor downscale
+        for (int i = 0; i < 5; i++) {
+            policy.messageHandled(60 * MS, 10 * MS);
+            assertEquals(ReplicationType.NOSCALE, policy.determineReplicationPolicy(0, 10, 0, 0).getType());
+        }
+    }
+}
@@ -28,7 +28,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -107,6 +109,35 @@ public class ResolverMongoDBDAOTest {
         assertTrue("Address3 not found!", address2found);
     }
 
+    @Test
+    public void testInsertAll() throws Exception {
+        PeerChannelAddress address1 = new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first"));
+        PeerChannelAddress address2 = new PeerChannelAddress(peer1, adapter2, Collections.EMPTY_LIST);
+
+        collection.insert(resolver.serializePeerAddress(address1));
+
+        PeerChannelAddress updated1 = new PeerChannelAddress(peer1, adapter1, Collections.singletonList("second"));
+        resolver.insertAll(Arrays.asList(updated1, address2));
+
+        assertEquals("Wrong number of addresses saved!", 2, collection.count());
+        assertEquals("Address has not been updated!", "second", resolver.find(peer1, adapter1).getContactParameters().get(0));
+        assertEquals("Address has not been inserted!", address2, resolver.find(peer1, adapter2));
+    }
+
+    @Test
+    public void testFindRecent() throws Exception {
+        PeerChannelAddress address1 = new PeerChannelAddress(peer1, adapter1, Collections.EMPTY_LIST);
+        PeerChannelAddress address2 = new PeerChannelAddress(peer2, adapter1, Collections.EMPTY_LIST);
+
+        collection.insert(resolver.serializePeerAddress(address1).append("modified", 1L));
+        resolver.insert(address2);
+
+        Iterator<PeerChannelAddress> recent = resolver.findRecent(1, 1);
+        assertTrue("No address found!", recent.hasNext());
+        assertEquals("Most recent address not returned!", address2, recent.next());
+        assertFalse("Too many addresses returned!", recent.hasNext());
+    }
+
     @Test
     public void testFind() throws Exception {
         PeerChannelAddress address1 = new PeerChannelAddress(peer1, adapter1, Collections.EMPTY_LIST);
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.dao;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindPeerChannelAddressResolverDAOTest {
+
+    private final Identifier peer1 = Identifier.peer("peer1");
+    private final Identifier peer2 = Identifier.peer("peer2");
+    private final Identifier adapter1 = Identifier.adapter("adapter1");
+
+    private RecordingDAO delegate;
+    private WriteBehindPeerChannelAddressResolverDAO resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new RecordingDAO();
+        resolver = new WriteBehindPeerChannelAddressResolverDAO(delegate, 3, 60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.cleanUp();
+    }
+
+    @Test
+    public void testCoalesceWrites() throws Exception {
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first")));
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("second")));
+
+        assertEquals("Writes of the same peer and channel should be combined!", 1, resolver.getPendingCount());
+        assertEquals("Pending address should be visible!", "second", resolver.find(peer1, adapter1).getContactParameters().get(0));
+        assertTrue("Nothing should have been written yet!", delegate.batches.isEmpty());
+
+        resolver.flush();
+
+        assertEquals(1, delegate.batches.size());
+        assertEquals(1, delegate.batches.get(0).size());
+        assertEquals("second", delegate.find(peer1, adapter1).getContactParameters().get(0));
+    }
+
+    @Test
+    public void testSkipUnchangedAddresses() throws Exception {
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first")));
+        resolver.flush();
+
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first")));
+        assertEquals("Unchanged address should not be written again!", 0, resolver.getPendingCount());
+
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("changed")));
+        assertEquals("Changed address has to be written!", 1, resolver.getPendingCount());
+
+        resolver.remove(peer1, adapter1);
+        assertEquals(0, resolver.getPendingCount());
+        assertNull(resolver.find(peer1, adapter1));
+
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first")));
+        assertEquals("Removed address has to be written again!", 1, resolver.getPendingCount());
+    }
+
+    @Test(timeout = 5000)
+    public void testFlushWhenBufferIsFull() throws Exception {
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.EMPTY_LIST));
+        resolver.insert(new PeerChannelAddress(peer2, adapter1, Collections.EMPTY_LIST));
+        resolver.insert(new PeerChannelAddress(Identifier.peer("peer3"), adapter1, Collections.EMPTY_LIST));
+
+        while (delegate.getBatchCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, resolver.getPendingCount());
+        assertEquals(3, delegate.batches.get(0).size());
+    }
+
+    @Test
+    public void testFlushOnCleanUp() throws Exception {
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.EMPTY_LIST));
+        resolver.cleanUp();
+
+        assertNotNull("Pending address has not been written!", delegate.find(peer1, adapter1));
+    }
+
+    @Test
+    public void testRetryFailedFlush() throws Exception {
+        resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("first")));
+        resolver.insert(new PeerChannelAddress(peer2, adapter1, Collections.singletonList("first")));
+
+        //the address of peer1 changes while the failing batch is written
+        delegate.failOnce(new Runnable() {
+            @Override
+            public void run() {
+                resolver.insert(new PeerChannelAddress(peer1, adapter1, Collections.singletonList("second")));
+            }
+        });
+        resolver.flush();
+
+        assertNull("Nothing should have been written!", delegate.find(peer1, adapter1));
+        assertEquals("Failed batch should be pending again!", 2, resolver.getPendingCount());
+        assertEquals("Newer address should not be overwritten!", "second", resolver.find(peer1, adapter1).getContactParameters().get(0));
+        assertEquals("first", resolver.find(peer2, adapter1).getContactParameters().get(0));
+
+        resolver.flush();
+
+        assertEquals(0, resolver.getPendingCount());
+        assertEquals("second", delegate.find(peer1, adapter1).getContactParameters().get(0));
+        assertEquals("first", delegate.find(peer2, adapter1).getContactParameters().get(0));
+    }
+
+    private class RecordingDAO implements PeerChannelAddressResolverDAO {
+
+        private final Map<String, PeerChannelAddress> addresses = new HashMap<>();
+        private final List<Collection<PeerChannelAddress>> batches = new ArrayList<>();
+        private Runnable failure;
+
+        /**
+         * The next batch fails after the given action has been executed.
+         */
+        void failOnce(Runnable action) {
+            this.failure = action;
+        }
+
+        @Override
+        public synchronized void insert(PeerChannelAddress address) {
+            addresses.put(address.getPeerId().getId()+"."+address.getChannelType().getId(), address);
+        }
+
+        @Override
+        public synchronized void insertAll(Collection<PeerChannelAddress> addresses) {
+            if (failure != null) {
+                Runnable action = failure;
+                failure = null;
+                action.run();
+                throw new IllegalStateException("Database is not available");
+            }
+            batches.add(new ArrayList<>(addresses));
+            for (PeerChannelAddress address : addresses) {
+                insert(address);
+            }
+        }
+
+        @Override
+        public synchronized PeerChannelAddress find(Identifier peerId, Identifier adapterId) {
+            return addresses.get(peerId.getId()+"."+adapterId.getId());
+        }
+
+        @Override
+        public synchronized void remove(Identifier peerId, Identifier adapterId) {
+            addresses.remove(peerId.getId()+"."+adapterId.getId());
+        }
+
+        @Override
+        public Iterator<PeerChannelAddress> findRecent(int limit, int batchSize) {
+            throw new UnsupportedOperationException();
+        }
+
+        synchronized int getBatchCount() {
+            return batches.size();
+        }
+    }
+}
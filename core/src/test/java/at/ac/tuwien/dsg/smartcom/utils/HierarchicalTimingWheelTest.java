@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HierarchicalTimingWheelTest {
+
+    @Test
+    public void testTimeoutExpiresAfterDeadline() throws Exception {
+        ManualClockWheel wheel = new ManualClockWheel();
+        RecordingTask task = new RecordingTask(wheel);
+
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(task, 250, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.size());
+
+        wheel.advanceTo(200);
+        assertFalse(timeout.isExpired());
+
+        wheel.advanceTo(300);
+        assertTrue(timeout.isExpired());
+        assertEquals(300, task.executedAt);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotExpire() throws Exception {
+        ManualClockWheel wheel = new ManualClockWheel();
+        RecordingTask task = new RecordingTask(wheel);
+
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(task, 1, TimeUnit.SECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.size());
+
+        wheel.advanceTo(2000);
+        assertEquals(-1, task.executedAt);
+    }
+
+    @Test
+    public void testExpiredTimeoutCannotBeCancelled() throws Exception {
+        ManualClockWheel wheel = new ManualClockWheel();
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(new RecordingTask(wheel), 0, TimeUnit.MILLISECONDS);
+
+        wheel.advanceTo(100);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testTimeoutsAreCascadedFromUpperLevels() throws Exception {
+        ManualClockWheel wheel = new ManualClockWheel();
+        Random random = new Random(42);
+
+        //delays up to 30 days exceed the range of the levels
+        List<RecordingTask> tasks = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long delay = (long) (Math.pow(random.nextDouble(), 4) * TimeUnit.DAYS.toMillis(30));
+            RecordingTask task = new RecordingTask(wheel);
+            wheel.schedule(task, delay, TimeUnit.MILLISECONDS);
+            tasks.add(task);
+            deadlines.add(delay);
+        }
+
+        long step = 100;
+        for (long now = step; now <= TimeUnit.DAYS.toMillis(30) + step; now += step) {
+            wheel.advanceTo(now);
+        }
+
+        assertEquals(0, wheel.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            long executedAt = tasks.get(i).executedAt;
+            long deadline = deadlines.get(i);
+            assertTrue("Timeout " + i + " expired at " + executedAt + " before its deadline " + deadline, executedAt >= deadline);
+            assertTrue("Timeout " + i + " expired at " + executedAt + " too late for its deadline " + deadline, executedAt < deadline + 2 * step);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testTimerThreadAdvancesTheWheel() throws Exception {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("TEST-WHEEL", 10, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        wheel.start();
+        try {
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+
+            latch.await();
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    private static class ManualClockWheel extends HierarchicalTimingWheel {
+        private long now = 0;
+
+        private ManualClockWheel() {
+            super("TEST-WHEEL", 100, TimeUnit.MILLISECONDS);
+        }
+
+        private void advanceTo(long now) {
+            this.now = now;
+            advance(now);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class RecordingTask implements Runnable {
+        private final ManualClockWheel wheel;
+        private long executedAt = -1;
+
+        private RecordingTask(ManualClockWheel wheel) {
+            this.wheel = wheel;
+        }
+
+        @Override
+        public void run() {
+            assertEquals("Task executed twice", -1, executedAt);
+            executedAt = wheel.now;
+        }
+    }
+}
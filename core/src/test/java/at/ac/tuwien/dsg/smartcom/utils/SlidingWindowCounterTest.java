@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlidingWindowCounterTest {
+
+    @Test
+    public void testEventsExpireWithTheWindow() throws Exception {
+        ManualClockCounter counter = new ManualClockCounter();
+
+        counter.increase();
+        counter.increase();
+        assertEquals(2, counter.getCounter());
+
+        counter.now = 4500;
+        counter.add(3);
+        assertEquals(5, counter.getCounter());
+
+        //the bucket of the first events moves out of the window
+        counter.now = 10000;
+        assertEquals(3, counter.getCounter());
+
+        //the window moves in steps of one bucket (one second)
+        counter.now = 13999;
+        assertEquals(3, counter.getCounter());
+
+        counter.now = 14000;
+        assertEquals(0, counter.getCounter());
+    }
+
+    @Test
+    public void testBucketIsReusedAfterOneRound() throws Exception {
+        ManualClockCounter counter = new ManualClockCounter();
+
+        counter.add(5);
+
+        //same bucket index, but a new time slot
+        counter.now = 10000;
+        counter.increase();
+        assertEquals(1, counter.getCounter());
+
+        counter.clear();
+        assertEquals(0, counter.getCounter());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentIncrease() throws Exception {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(1, TimeUnit.HOURS);
+        final int threads = 8;
+        final int increments = 100000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < increments; j++) {
+                        counter.increase();
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        latch.await();
+        assertEquals(threads * increments, counter.getCounter());
+    }
+
+    private static class ManualClockCounter extends SlidingWindowCounter {
+        private long now = 0;
+
+        private ManualClockCounter() {
+            super(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -26,13 +26,17 @@ import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
 import at.ac.tuwien.dsg.smartcom.manager.AdapterManager;
 import at.ac.tuwien.dsg.smartcom.manager.MessagingAndRoutingManager;
+import at.ac.tuwien.dsg.smartcom.model.DeliveryResult;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
 import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.picocontainer.annotations.Inject;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
@@ -55,6 +59,20 @@ public class CommunicationImpl implements Communication {
         return marManager.send(message);
     }
 
+    @Override
+    public ListenableFuture<DeliveryResult> sendAsync(Message message) throws CommunicationException {
+        return sendAsync(message, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ListenableFuture<DeliveryResult> sendAsync(Message message, long timeout, TimeUnit unit) throws CommunicationException {
+        if (PredefinedMessageHelper.isPredefinedType(message)){ //prevent external users from setting the message to be a control type
+            message.setType(null);
+        }
+
+        return marManager.sendAsync(message, unit.toMillis(timeout));
+    }
+
     @Override
     public Identifier addRouting(RoutingRule rule) throws InvalidRuleException {
         return marManager.addRouting(rule);
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer for messages that supports multiple producers and consumers
+ * without locking. All slots are allocated when the ring is created.
+ *
+ * Every slot carries a sequence number that tells producers and consumers whether
+ * the slot may be written or read in the current round. Producers and consumers claim
+ * a position by advancing the tail or head with a single compare-and-set.
+ *
+ * Consumers that block in {@link #take()} are parked on a condition which is only
+ * signalled if there are waiting consumers, hence producers do not acquire a lock
+ * in the common case. Producers that find the ring full back off until a consumer
+ * has freed a slot.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+final class MessageRing {
+
+    private static final int SPINS = 100;
+    private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int mask;
+    private final AtomicReferenceArray<Message> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+
+    private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * @param capacity of the ring, will be rounded up to the next power of two
+     */
+    MessageRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a message to the ring if there is a free slot.
+     *
+     * @param message that should be added
+     * @return true if the message has been added, false if the ring is full
+     */
+    boolean offer(Message message) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, message);
+                    //volatile write, must not be reordered with the read of the waiting consumers
+                    sequences.set(index, position + 1);
+                    signalConsumers();
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds a message to the ring and waits for a free slot if the ring is full.
+     *
+     * @param message that should be added
+     * @throws InterruptedException if the thread has been interrupted while waiting
+     */
+    void put(Message message) throws InterruptedException {
+        int spins = 0;
+        long backoff = 1000;
+        while (!offer(message)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins++ < SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(backoff);
+                backoff = Math.min(backoff << 1, MAX_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest message from the ring.
+     *
+     * @return the message or null if the ring is empty
+     */
+    Message poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Message message = slots.get(index);
+                    slots.lazySet(index, null);
+                    //the slot can be used again in the next round
+                    sequences.lazySet(index, position + mask + 1);
+                    return message;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest message from the ring and waits until there is
+     * a message if the ring is empty.
+     *
+     * @return the message
+     * @throws InterruptedException if the thread has been interrupted while waiting
+     */
+    Message take() throws InterruptedException {
+        for (int i = 0; i < SPINS; i++) {
+            Message message = poll();
+            if (message != null) {
+                return message;
+            }
+            Thread.yield();
+        }
+
+        waitingConsumers.incrementAndGet();
+        try {
+            lock.lockInterruptibly();
+            try {
+                Message message;
+                while ((message = poll()) == null) {
+                    notEmpty.await();
+                }
+                return message;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            waitingConsumers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes up to max messages from the ring and adds them to the list.
+     *
+     * @param messages list that will receive the messages
+     * @param max maximum number of messages that will be removed
+     * @return number of removed messages
+     */
+    int drainTo(List<Message> messages, int max) {
+        int drained = 0;
+        Message message;
+        while (drained < max && (message = poll()) != null) {
+            messages.add(message);
+            drained++;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    int size() {
+        return (int) Math.max(tail.get() - head.get(), 0);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    private void signalConsumers() {
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom;
+
+import at.ac.tuwien.dsg.smartcom.broker.CancelableListener;
+import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
+import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process message broker that is based on pre-allocated ring buffers. It can be used
+ * instead of a message broker that runs in a separate process if all components of the
+ * middleware run in the same JVM.
+ *
+ * There is one ring for every logical channel (i.e., input, control, auth, message info,
+ * metrics and log) and for the requests and output of every adapter. Published messages
+ * are always added to the ring of their channel. If there is a listener registered for
+ * the channel, a drain task is scheduled that delivers the messages of the ring in batches
+ * to the listener. There is at most one drain task per channel at a time, hence a listener
+ * receives the messages of its channel in order and is never called concurrently.
+ * Publishers block if the ring of a channel is full, except for the listener of the channel
+ * itself: it can not wait for the ring to be drained by its own drain task, hence its
+ * messages are put aside and added to the ring by the drain task as soon as there is room.
+ * The rings of an adapter are released when the listener of the adapter is cancelled.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public final class RingBufferMessageBroker implements MessageBroker {
+    private static final Logger log = LoggerFactory.getLogger(RingBufferMessageBroker.class);
+
+    public static final int DEFAULT_CHANNEL_CAPACITY = 8192;
+    public static final int DEFAULT_ADAPTER_CAPACITY = 256;
+    public static final int DEFAULT_THREADS = 40;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final int adapterCapacity;
+    private final int batchSize;
+    private final StatisticBean statistic;
+
+    private final Channel input;
+    private final Channel control;
+    private final Channel auth;
+    private final Channel messageInfo;
+    private final Channel metrics;
+    private final Channel logs;
+    private final ConcurrentMap<Identifier, Channel> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Identifier, Channel> tasks = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+
+    public RingBufferMessageBroker(StatisticBean statistic) {
+        this(statistic, DEFAULT_CHANNEL_CAPACITY, DEFAULT_ADAPTER_CAPACITY, DEFAULT_THREADS, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param statistic that records the published messages
+     * @param channelCapacity capacity of the rings of the global channels
+     * @param adapterCapacity capacity of the rings of a single adapter
+     * @param threads number of threads that deliver messages to listeners
+     * @param batchSize maximum number of messages that are delivered to a listener by one drain task
+     */
+    public RingBufferMessageBroker(StatisticBean statistic, int channelCapacity, int adapterCapacity, int threads, int batchSize) {
+        this.statistic = statistic;
+        this.adapterCapacity = adapterCapacity;
+        this.batchSize = batchSize;
+
+        input = new Channel("input", channelCapacity);
+        control = new Channel("control", channelCapacity);
+        auth = new Channel("auth", channelCapacity);
+        messageInfo = new Channel("messageInfo", channelCapacity);
+        metrics = new Channel("metrics", channelCapacity);
+        logs = new Channel("log", channelCapacity);
+
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("RingBroker-thread-%d").build());
+    }
+
+    /**
+     * Stops the delivery of messages to listeners.
+     */
+    public void cleanUp() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return number of channels of adapters that are currently allocated
+     */
+    int getAdapterChannelCount() {
+        return requests.size() + tasks.size();
+    }
+
+    private Channel requestChannel(Identifier id) {
+        return adapterChannel(requests, id, "request");
+    }
+
+    private Channel taskChannel(Identifier id) {
+        return adapterChannel(tasks, id, "task");
+    }
+
+    private Channel adapterChannel(ConcurrentMap<Identifier, Channel> channels, Identifier id, String prefix) {
+        Channel channel = channels.get(id);
+        if (channel == null) {
+            Channel created = new Channel(prefix + "." + id.getId(), adapterCapacity, channels, id);
+            channel = channels.putIfAbsent(id, created);
+            if (channel == null) {
+                channel = created;
+            }
+        }
+        return channel;
+    }
+
+    @Override
+    public void publishInput(Message message) {
+        statistic.brokerPublishInput();
+        if (!input.publish(message)) {
+            throw new InputRejectedException("Input message " + message.getId() + " could not be published to channel input.");
+        }
+    }
+
+    @Override
+    public Message receiveInput() {
+        return input.receive();
+    }
+
+    @Override
+    public CancelableListener registerInputListener(MessageListener listener) {
+        return input.register(listener);
+    }
+
+    @Override
+    public Message receiveRequests(Identifier id) {
+        return requestChannel(id).receive();
+    }
+
+    @Override
+    public CancelableListener registerRequestListener(Identifier id, MessageListener listener) {
+        return requestChannel(id).register(listener);
+    }
+
+    @Override
+    public void publishRequest(Identifier id, Message message) {
+        requestChannel(id).publish(message);
+        statistic.brokerPublishRequest();
+    }
+
+    @Override
+    public Message receiveOutput(Identifier id) {
+        return taskChannel(id).receive();
+    }
+
+    @Override
+    public CancelableListener registerOutputListener(Identifier id, MessageListener listener) {
+        return taskChannel(id).register(listener);
+    }
+
+    @Override
+    public void publishOutput(Identifier id, Message message) {
+        taskChannel(id).publish(message);
+        statistic.brokerPublishOutput();
+    }
+
+    @Override
+    public void publishOutputBatch(Map<Identifier, List<Message>> messages) {
+        int amount = 0;
+        for (Map.Entry<Identifier, List<Message>> entry : messages.entrySet()) {
+            Channel channel = taskChannel(entry.getKey());
+            for (Message message : entry.getValue()) {
+                channel.publish(message);
+                amount++;
+            }
+        }
+        statistic.brokerPublishOutput(amount);
+    }
+
+    @Override
+    public void publishControl(Message message) {
+        control.publish(message);
+        statistic.brokerPublishControl();
+    }
+
+    @Override
+    public Message receiveControl() {
+        return control.receive();
+    }
+
+    @Override
+    public CancelableListener registerControlListener(MessageListener listener) {
+        return control.register(listener);
+    }
+
+    @Override
+    public void publishAuthRequest(Message message) {
+        auth.publish(message);
+    }
+
+    @Override
+    public Message receiveAuthRequest() {
+        return auth.receive();
+    }
+
+    @Override
+    public CancelableListener registerAuthListener(MessageListener listener) {
+        return auth.register(listener);
+    }
+
+    @Override
+    public void publishMessageInfoRequest(Message message) {
+        messageInfo.publish(message);
+    }
+
+    @Override
+    public Message receiveMessageInfoRequest() {
+        return messageInfo.receive();
+    }
+
+    @Override
+    public CancelableListener registerMessageInfoListener(MessageListener listener) {
+        return messageInfo.register(listener);
+    }
+
+    @Override
+    public void publishMetricsRequest(Message message) {
+        metrics.publish(message);
+    }
+
+    @Override
+    public Message receiveMetricsRequest() {
+        return metrics.receive();
+    }
+
+    @Override
+    public CancelableListener registerMetricsListener(MessageListener listener) {
+        return metrics.register(listener);
+    }
+
+    @Override
+    public void publishLog(Message message) {
+        logs.publish(message);
+        statistic.brokerPublishLog();
+    }
+
+    @Override
+    public Message receiveLog() {
+        return logs.receive();
+    }
+
+    @Override
+    public CancelableListener registerLogListener(MessageListener listener) {
+        return logs.register(listener);
+    }
+
+    /**
+     * A logical channel of the broker that consists of a ring and an optional listener.
+     */
+    private final class Channel implements Runnable {
+        private final String name;
+        private final MessageRing ring;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile MessageListener listener;
+
+        /**
+         * Thread that currently executes the drain task
+         */
+        private volatile Thread drainer;
+
+        /**
+         * Messages that the listener published to its own channel while the ring was full
+         */
+        private final Queue<Message> overflow = new ConcurrentLinkedQueue<>();
+
+        //channels of adapters are removed from their map if the listener is cancelled
+        private final ConcurrentMap<Identifier, Channel> channels;
+        private final Identifier id;
+
+        private Channel(String name, int capacity) {
+            this(name, capacity, null, null);
+        }
+
+        private Channel(String name, int capacity, ConcurrentMap<Identifier, Channel> channels, Identifier id) {
+            this.name = name;
+            this.ring = new MessageRing(capacity);
+            this.channels = channels;
+            this.id = id;
+        }
+
+        /**
+         * Publishes the message, blocks while the ring is full. If the message is published
+         * by the listener of the channel, it is put aside instead because the ring would never
+         * be drained while the listener waits.
+         *
+         * @return false if the thread has been interrupted before the message could be published
+         */
+        boolean publish(Message message) {
+            if (Thread.currentThread() == drainer) {
+                if (!ring.offer(message)) {
+                    log.debug("Channel {} is full, message {} of its own listener is published later", name, message);
+                    overflow.add(message);
+                }
+                return true;
+            }
+
+            try {
+                ring.put(message);
+                log.trace("Published message {} to channel {}", message, name);
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while publishing message {} to channel {}", message, name);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            if (listener != null) {
+                schedule();
+            }
+            return true;
+        }
+
+        Message receive() {
+            try {
+                log.trace("Receiving message from channel {}", name);
+                return ring.take();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        CancelableListener register(final MessageListener listener) {
+            log.trace("Registered listener for channel {}", name);
+            this.listener = listener;
+
+            //there might be messages that have been published before the registration
+            if (!ring.isEmpty()) {
+                schedule();
+            }
+
+            return new CancelableListener() {
+                @Override
+                public void cancel() {
+                    if (Channel.this.listener == listener) {
+                        Channel.this.listener = null;
+
+                        if (channels != null && channels.remove(id, Channel.this)) {
+                            log.trace("Removed channel {}", name);
+                        }
+                    }
+                }
+            };
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    log.debug("Broker has been shut down, can't deliver messages of channel {}", name);
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Delivers a batch of messages to the listener. Reschedules itself afterwards
+         * if there are still messages left, so that other channels get their turn.
+         */
+        @Override
+        public void run() {
+            drainer = Thread.currentThread();
+            MessageListener current = listener;
+            if (current != null) {
+                List<Message> batch = new ArrayList<>(batchSize);
+                ring.drainTo(batch, batchSize);
+                for (Message message : batch) {
+                    try {
+                        current.onMessage(message);
+                    } catch (RuntimeException e) {
+                        log.error("Listener of channel {} failed to handle message {}", name, message, e);
+                    }
+                }
+            }
+            drainer = null;
+
+            //the batch made room for messages that have been put aside
+            Message message;
+            while ((message = overflow.peek()) != null && ring.offer(message)) {
+                overflow.poll();
+            }
+
+            scheduled.set(false);
+            if (listener != null && (!ring.isEmpty() || !overflow.isEmpty())) {
+                schedule();
+            }
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutorService;
@@ -230,6 +231,15 @@ public final class SimpleMessageBroker implements MessageBroker {
         }
     }
 
+    @Override
+    public void publishOutputBatch(Map<Identifier, List<Message>> messages) {
+        for (Map.Entry<Identifier, List<Message>> entry : messages.entrySet()) {
+            for (Message message : entry.getValue()) {
+                publishOutput(entry.getKey(), message);
+            }
+        }
+    }
+
     @Override
     public void publishControl(Message message) {
         publishSpecial(CONTROL_QUEUE, message);
@@ -21,9 +21,11 @@ import at.ac.tuwien.dsg.smartcom.adapters.AndroidOutputAdapter;
 import at.ac.tuwien.dsg.smartcom.adapters.DropboxOutputAdapter;
 import at.ac.tuwien.dsg.smartcom.adapters.EmailOutputAdapter;
 import at.ac.tuwien.dsg.smartcom.adapters.RESTOutputAdapter;
+import at.ac.tuwien.dsg.smartcom.broker.ReplicaScheduler;
 import at.ac.tuwien.dsg.smartcom.broker.impl.ApacheActiveMQMessageBroker;
 import at.ac.tuwien.dsg.smartcom.broker.utils.ApacheActiveMQUtils;
 import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveMembershipListener;
 import at.ac.tuwien.dsg.smartcom.callback.PeerAuthenticationCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
@@ -36,6 +38,9 @@ import at.ac.tuwien.dsg.smartcom.manager.auth.AuthenticationManagerImpl;
 import at.ac.tuwien.dsg.smartcom.manager.auth.AuthenticationRequestHandler;
 import at.ac.tuwien.dsg.smartcom.manager.auth.dao.MongoDBAuthenticationSessionDAO;
 import at.ac.tuwien.dsg.smartcom.manager.dao.MongoDBPeerChannelAddressResolverDAO;
+import at.ac.tuwien.dsg.smartcom.manager.dao.WriteBehindPeerChannelAddressResolverDAO;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.CollectiveInfoService;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.CollectiveInfoServiceImpl;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.MessagingAndRoutingManagerImpl;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.PeerInfoService;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.PeerInfoServiceImpl;
@@ -82,6 +87,7 @@ public class SmartCom {
     public void initializeSmartCom() throws CommunicationException {
         log.info("Initializing SmartCom Communication Middleware...");
         pico = new PicoBuilder().withAnnotatedFieldInjection().withJavaEE5Lifecycle().withCaching().build();
+        ReplicaScheduler.configureShared(this.configuration.replicaThreads, this.configuration.blockingReplicaThreads);
 
         log.info("Adding external components...");
         //add external components
@@ -102,6 +108,11 @@ public class SmartCom {
 
         pico.start();
 
+        if (this.configuration.addressWarmUpSize > 0) {
+            log.info("Warming up address cache...");
+            pico.getComponent(AddressResolver.class).warmUp(this.configuration.addressWarmUpSize, this.configuration.addressWarmUpBatchSize);
+        }
+
         log.info("Adding default adapters...");
         if (this.configuration.initAdapters) {
             addDefaultAdapters();
@@ -163,8 +174,13 @@ public class SmartCom {
 
         //Messaging and Routing Manager
         pico.addComponent(MessageLogLevel.class, this.configuration.messageLogLevel);
+        pico.addComponent(this.configuration.backpressureConfiguration);
+        pico.addComponent(this.configuration.deliveryConfiguration);
+        pico.addComponent(this.configuration.pipelineConfiguration);
+        pico.addComponent(this.configuration.peerInfoConfiguration);
         pico.addComponent(MessagingAndRoutingManager.class, MessagingAndRoutingManagerImpl.class);
         pico.addComponent(PeerInfoService.class, PeerInfoServiceImpl.class);
+        pico.addComponent(CollectiveInfoService.class, CollectiveInfoServiceImpl.class);
 
         //Logging
         pico.addComponent(LoggingDAO.class, new MongoDBLoggingDAO(this.configuration.mongoClient, this.configuration.mongoDBDatabaseName, "logging"));
@@ -173,7 +189,10 @@ public class SmartCom {
 
     private void initAdapterManager() throws CommunicationException {
         log.debug("Initializing adapter manager");
-        pico.as(Characteristics.CACHE).addComponent(new MongoDBPeerChannelAddressResolverDAO(this.configuration.mongoClient, this.configuration.mongoDBDatabaseName, "resolver"));
+        addressResolverDAO = new WriteBehindPeerChannelAddressResolverDAO(
+                new MongoDBPeerChannelAddressResolverDAO(this.configuration.mongoClient, this.configuration.mongoDBDatabaseName, "resolver"),
+                this.configuration.addressBufferSize, this.configuration.addressFlushInterval);
+        pico.as(Characteristics.CACHE).addComponent(addressResolverDAO);
         pico.as(Characteristics.CACHE).addComponent(AdapterManagerImpl.class);
         pico.as(Characteristics.CACHE).addComponent(AdapterExecutionEngine.class);
         pico.as(Characteristics.CACHE).addComponent(AddressResolver.class);
@@ -185,10 +204,18 @@ public class SmartCom {
         communicationREST.init();
     }
 
+    private WriteBehindPeerChannelAddressResolverDAO addressResolverDAO;
     private ApacheActiveMQMessageBroker messageBroker;
+    private RingBufferMessageBroker inProcessBroker;
 
     private void initMessageBroker() throws CommunicationException {
         log.debug("Initializing message broker");
+        if (this.configuration.useInProcessBroker) {
+            inProcessBroker = new RingBufferMessageBroker(pico.getComponent(StatisticBean.class));
+            pico.addComponent(inProcessBroker);
+            return;
+        }
+
         if (this.configuration.initActiveMQ) {
             try {
                 ApacheActiveMQUtils.startActiveMQWithoutPersistence(this.configuration.activeMQPort); //uses standard port
@@ -196,9 +223,8 @@ public class SmartCom {
                 throw new CommunicationException(e, new ErrorCode(10, "Could not initialize message broker"));
             }
         }
-        messageBroker = new ApacheActiveMQMessageBroker(this.configuration.activeMqHost, this.configuration.activeMQPort, this.configuration.useLocalMQ, pico.getComponent(StatisticBean.class));
+        messageBroker = new ApacheActiveMQMessageBroker(this.configuration.activeMqHost, this.configuration.activeMQPort, this.configuration.useLocalMQ, pico.getComponent(StatisticBean.class), this.configuration.messageCodec, this.configuration.activeMQConfiguration);
         pico.addComponent(messageBroker);
-//        pico.addComponent(MessageBroker.class, SimpleMessageBroker.class); //enables this line and disable the ones above for a fast local execution
     }
 
     public void tearDownSmartCom() throws CommunicationException {
@@ -208,17 +234,26 @@ public class SmartCom {
         pico.stop();
         pico.dispose();
 
+        //write the remaining peer addresses before the database connection is closed
+        if (addressResolverDAO != null) {
+            addressResolverDAO.cleanUp();
+        }
+
         if (messageBroker != null) {
             messageBroker.cleanUp();
         }
 
+        if (inProcessBroker != null) {
+            inProcessBroker.cleanUp();
+        }
+
         this.configuration.mongoClient.close();
 
         if (this.configuration.mongoDB != null) {
             this.configuration.mongoDB.tearDown();
         }
 
-        if (this.configuration.initActiveMQ) {
+        if (this.configuration.initActiveMQ && !this.configuration.useInProcessBroker) {
             try {
                 ApacheActiveMQUtils.stopActiveMQ();
             } catch (Exception e) {
@@ -238,4 +273,15 @@ public class SmartCom {
     public MessageQueryService getQueryService() {
         return queryService;
     }
+
+    /**
+     * Returns the listener that should be notified if the members of a collective change.
+     * SmartCom caches the information about collectives, hence the peer manager should
+     * report changes to keep the cached information up to date.
+     *
+     * @return listener for changes of collectives
+     */
+    public CollectiveMembershipListener getCollectiveMembershipListener() {
+        return pico.getComponent(CollectiveInfoService.class);
+    }
 }
@@ -17,6 +17,8 @@
  */
 package at.ac.tuwien.dsg.smartcom;
 
+import at.ac.tuwien.dsg.smartcom.broker.OverflowPolicy;
+import at.ac.tuwien.dsg.smartcom.broker.codec.MessageCodec;
 import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerAuthenticationCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
@@ -42,6 +44,224 @@ public class SmartComBuilder {
         this.configuration.collectiveInfoCallback = collectiveInfoCallback;
     }
 
+    /**
+     * Use the in-process ring buffer broker instead of Apache ActiveMQ. This is only
+     * possible if all components of the middleware run in the same JVM. The ActiveMQ
+     * settings of the builder are ignored if the in-process broker is used.
+     *
+     * @param useInProcessBroker true if the in-process broker should be used
+     * @return the builder
+     */
+    public SmartComBuilder useInProcessMessageBroker(boolean useInProcessBroker) {
+        this.configuration.useInProcessBroker = useInProcessBroker;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of messages in the queue of a single stage of the
+     * middleware (e.g., the queue of a priority class of the messaging and routing manager).
+     *
+     * @param capacity maximum number of messages per queue
+     * @return the builder
+     */
+    public SmartComBuilder setQueueCapacity(int capacity) {
+        this.configuration.backpressureConfiguration.setQueueCapacity(capacity);
+        return this;
+    }
+
+    /**
+     * Sets the policy that is applied if a queue is full. Rejected messages are signalled
+     * to the sender, i.e., Communication.send throws a MessageRejectedException. Messages
+     * that have been received from adapters are never dropped, the adapters are blocked
+     * instead (see {@link #setActiveMqSendTimeout(int)}).
+     *
+     * @param policy overflow policy
+     * @return the builder
+     */
+    public SmartComBuilder setOverflowPolicy(OverflowPolicy policy) {
+        this.configuration.backpressureConfiguration.setOverflowPolicy(policy);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) a sender waits for space in a full queue if the overflow
+     * policy is BLOCK. 0 waits until there is space.
+     *
+     * @param timeout block timeout in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setBlockTimeout(long timeout) {
+        this.configuration.backpressureConfiguration.setBlockTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) after which the delivery of a message to a peer is considered as
+     * failed if the peer has neither acknowledged the message nor reported an error. The ttl
+     * of a message overrides this timeout. 0 disables the timeout.
+     *
+     * @param timeout delivery timeout in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setPeerDeliveryTimeout(long timeout) {
+        this.configuration.deliveryConfiguration.setPeerTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) after which the delivery of a message to a collective is considered
+     * as failed if its delivery policy has not been resolved yet. The ttl of a message overrides
+     * this timeout. 0 disables the timeout.
+     *
+     * @param timeout delivery timeout in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setCollectiveDeliveryTimeout(long timeout) {
+        this.configuration.deliveryConfiguration.setCollectiveTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the initial number of workers of a stage of the messaging and routing manager
+     * (see {@link at.ac.tuwien.dsg.smartcom.manager.messaging.PipelineConfiguration}).
+     * The number can be changed at runtime using the statistic API.
+     *
+     * @param stage name of the stage
+     * @param workers number of workers
+     * @return the builder
+     */
+    public SmartComBuilder setStageWorkers(String stage, int workers) {
+        this.configuration.pipelineConfiguration.setWorkers(stage, workers);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of workers of a stage of the messaging and routing manager.
+     * Requests of the statistic API that exceed it are rejected.
+     *
+     * @param workers maximum number of workers
+     * @return the builder
+     */
+    public SmartComBuilder setMaxStageWorkers(int workers) {
+        this.configuration.pipelineConfiguration.setMaxWorkers(workers);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of peers whose information is cached.
+     *
+     * @param size maximum number of cached peers
+     * @return the builder
+     */
+    public SmartComBuilder setPeerInfoCacheSize(int size) {
+        this.configuration.peerInfoConfiguration.setCacheSize(size);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) after which cached peer information is reloaded in the background.
+     * The cached information is used until the reload has finished.
+     *
+     * @param refresh refresh interval in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setPeerInfoRefresh(long refresh) {
+        this.configuration.peerInfoConfiguration.setRefresh(refresh);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) after which cached peer information is removed if it has not been reloaded.
+     *
+     * @param expiration expiration interval in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setPeerInfoExpiration(long expiration) {
+        this.configuration.peerInfoConfiguration.setExpiration(expiration);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) for which peers that are unknown to the peer manager are remembered.
+     * Messages to such peers fail without asking the peer manager again within this time.
+     *
+     * @param expiration expiration interval in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setUnknownPeerExpiration(long expiration) {
+        this.configuration.peerInfoConfiguration.setNegativeExpiration(expiration);
+        return this;
+    }
+
+    /**
+     * Sets the number of peer addresses that are buffered before they are written to the database.
+     * Multiple writes of the address of a peer and channel are combined into one.
+     *
+     * @param size size of the buffer
+     * @return the builder
+     */
+    public SmartComBuilder setAddressBufferSize(int size) {
+        this.configuration.addressBufferSize = size;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time (in ms) a buffered peer address waits until it is written to the database.
+     *
+     * @param interval flush interval in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setAddressFlushInterval(long interval) {
+        this.configuration.addressFlushInterval = interval;
+        return this;
+    }
+
+    /**
+     * Sets the number of peer addresses that are loaded into the address cache at startup.
+     * The most recently updated addresses are loaded first. Zero disables the warm-up.
+     *
+     * @param size number of addresses
+     * @return the builder
+     */
+    public SmartComBuilder setAddressWarmUpSize(int size) {
+        this.configuration.addressWarmUpSize = size;
+        return this;
+    }
+
+    /**
+     * Sets the number of peer addresses that are retrieved from the database at once during the warm-up.
+     *
+     * @param batchSize size of a batch
+     * @return the builder
+     */
+    public SmartComBuilder setAddressWarmUpBatchSize(int batchSize) {
+        this.configuration.addressWarmUpBatchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads that are shared by the replicas of all message listeners.
+     *
+     * @param threads maximum number of threads
+     * @return the builder
+     */
+    public SmartComBuilder setReplicaThreads(int threads) {
+        this.configuration.replicaThreads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads that are shared by the replicas of listeners whose
+     * handlers block on I/O (i.e., the output adapters that push messages).
+     *
+     * @param threads maximum number of threads
+     * @return the builder
+     */
+    public SmartComBuilder setBlockingReplicaThreads(int threads) {
+        this.configuration.blockingReplicaThreads = threads;
+        return this;
+    }
+
     public SmartComBuilder initializeActiveMQ(boolean initActiveMQ) {
         this.configuration.initActiveMQ = initActiveMQ;
         return this;
@@ -57,6 +277,59 @@ public class SmartComBuilder {
         return this;
     }
 
+    public SmartComBuilder setMessageCodec(MessageCodec codec) {
+        this.configuration.messageCodec = codec;
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqProducerConnections(int connections) {
+        this.configuration.activeMQConfiguration.setProducerConnections(connections);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqConsumerConnections(int connections) {
+        this.configuration.activeMQConfiguration.setConsumerConnections(connections);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqConsumersPerDestination(int consumers) {
+        this.configuration.activeMQConfiguration.setConsumersPerDestination(consumers);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqListenerPrefetch(int prefetch) {
+        this.configuration.activeMQConfiguration.setListenerPrefetch(prefetch);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqReceivePrefetch(int prefetch) {
+        this.configuration.activeMQConfiguration.setReceivePrefetch(prefetch);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqConsumerIdleTimeout(long timeout) {
+        this.configuration.activeMQConfiguration.setConsumerIdleTimeout(timeout);
+        return this;
+    }
+
+    public SmartComBuilder setActiveMqDestinationCacheSize(int size) {
+        this.configuration.activeMQConfiguration.setDestinationCacheSize(size);
+        return this;
+    }
+
+    /**
+     * Sets the time (in ms) the ActiveMQ broker may block a sender if it is out of resources.
+     * If the timeout expires, InputPushAdapter.publishMessage throws an InputRejectedException.
+     * 0 (default) blocks the sender until the message is accepted, i.e., input is never rejected.
+     *
+     * @param timeout send timeout in milliseconds
+     * @return the builder
+     */
+    public SmartComBuilder setActiveMqSendTimeout(int timeout) {
+        this.configuration.activeMQConfiguration.setSendTimeout(timeout);
+        return this;
+    }
+
     public SmartComBuilder setRestApiPort(int port) {
         this.configuration.restAPIPort = port;
         return this;
@@ -17,9 +17,17 @@
  */
 package at.ac.tuwien.dsg.smartcom;
 
+import at.ac.tuwien.dsg.smartcom.broker.BackpressureConfiguration;
+import at.ac.tuwien.dsg.smartcom.broker.ReplicaScheduler;
+import at.ac.tuwien.dsg.smartcom.broker.codec.BinaryMessageCodec;
+import at.ac.tuwien.dsg.smartcom.broker.codec.MessageCodec;
+import at.ac.tuwien.dsg.smartcom.broker.impl.ApacheActiveMQConfiguration;
 import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerAuthenticationCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.DeliveryConfiguration;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.PeerInfoConfiguration;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.PipelineConfiguration;
 import at.ac.tuwien.dsg.smartcom.model.MessageLogLevel;
 import at.ac.tuwien.dsg.smartcom.utils.MongoDBInstance;
 import com.mongodb.MongoClient;
@@ -36,6 +44,9 @@ public class SmartComConfiguration {
     public static final int MIS_API_DEFAULT_PORT = 8081;
     public static final boolean ADAPTER_INITIALISATION_DEFAULT = true;
     public static final MessageLogLevel DEFAULT_MESSAGE_LOGLEVEL = MessageLogLevel.NONE;
+    public static final int ADDRESS_BUFFER_DEFAULT_SIZE = 500;
+    public static final long ADDRESS_FLUSH_DEFAULT_INTERVAL = 1000;
+    public static final int ADDRESS_WARM_UP_DEFAULT_BATCH_SIZE = 100;
 
     //Dependencies configuration
     PeerAuthenticationCallback peerManager;
@@ -47,11 +58,40 @@ public class SmartComConfiguration {
     MongoDBInstance mongoDB;
     String mongoDBDatabaseName = MONGODB_DATABASE;
 
+    //Message broker configuration
+    boolean useInProcessBroker = false;
+
+    //Bounded queues between the stages of the middleware
+    BackpressureConfiguration backpressureConfiguration = new BackpressureConfiguration();
+
+    //Timeouts of pending deliveries
+    DeliveryConfiguration deliveryConfiguration = new DeliveryConfiguration();
+
+    //Workers of the stages of the messaging and routing manager
+    PipelineConfiguration pipelineConfiguration = new PipelineConfiguration();
+
+    //Cache of the peer information
+    PeerInfoConfiguration peerInfoConfiguration = new PeerInfoConfiguration();
+
+    //Write-behind buffer of the peer addresses
+    int addressBufferSize = ADDRESS_BUFFER_DEFAULT_SIZE;
+    long addressFlushInterval = ADDRESS_FLUSH_DEFAULT_INTERVAL;
+
+    //Warm-up of the address cache at startup (disabled by default)
+    int addressWarmUpSize = 0;
+    int addressWarmUpBatchSize = ADDRESS_WARM_UP_DEFAULT_BATCH_SIZE;
+
+    //Threads that are shared by the replicas of all listeners, blocking handlers have their own threads
+    int replicaThreads = ReplicaScheduler.DEFAULT_PARALLELISM;
+    int blockingReplicaThreads = ReplicaScheduler.DEFAULT_BLOCKING_PARALLELISM;
+
     //ActiveMQ configuration
     boolean useLocalMQ = false;
     boolean initActiveMQ = true;
     String activeMqHost = ACTIVE_MQ_DEFAULT_HOST;
     int activeMQPort = ACTIVE_MQ_DEFAULT_PORT;
+    MessageCodec messageCodec = new BinaryMessageCodec();
+    ApacheActiveMQConfiguration activeMQConfiguration = new ApacheActiveMQConfiguration();
     MessageLogLevel messageLogLevel = DEFAULT_MESSAGE_LOGLEVEL;
 
     int restAPIPort = REST_API_DEFAULT_PORT;
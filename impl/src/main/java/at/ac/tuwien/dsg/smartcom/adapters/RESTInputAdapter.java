@@ -22,6 +22,7 @@ import at.ac.tuwien.dsg.smartcom.adapter.util.TaskScheduler;
 import at.ac.tuwien.dsg.smartcom.adapters.rest.JsonMessageDTO;
 import at.ac.tuwien.dsg.smartcom.adapters.rest.ObjectMapperProvider;
 import at.ac.tuwien.dsg.smartcom.broker.InputPublisher;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
@@ -49,6 +50,7 @@ import java.net.URI;
 @Singleton
 public class RESTInputAdapter extends InputPushAdapter {
     private static final Logger log = LoggerFactory.getLogger(RESTOutputAdapter.class);
+    private static final int RETRY_AFTER_SECONDS = 1;
 
     private HttpServer server;
     private final URI serverURI;
@@ -104,7 +106,12 @@ public class RESTInputAdapter extends InputPushAdapter {
             throw new WebApplicationException();
         }
 
-        publishMessage(message.createMessage());
+        try {
+            publishMessage(message.createMessage());
+        } catch (InputRejectedException e) {
+            //the middleware is overloaded, the client should retry later
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", RETRY_AFTER_SECONDS).build();
+        }
 
         return Response.status(Response.Status.OK).build();
     }
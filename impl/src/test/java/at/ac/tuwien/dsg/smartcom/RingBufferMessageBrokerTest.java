@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom;
+
+import at.ac.tuwien.dsg.smartcom.broker.CancelableListener;
+import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RingBufferMessageBrokerTest {
+
+    private RingBufferMessageBroker broker;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new RingBufferMessageBroker(new StatisticBean(), 16, 4, 4, 8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        broker.cleanUp();
+    }
+
+    @Test(timeout = 5000)
+    public void testReceiveInOrder() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            broker.publishInput(createMessage(i));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Identifier.message("" + i), broker.receiveInput().getId());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testReceiveWaitsForMessage() throws Exception {
+        final Identifier adapter = Identifier.adapter("adapter");
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                broker.publishRequest(adapter, createMessage(1));
+            }
+        }.start();
+
+        assertEquals(Identifier.message("1"), broker.receiveRequests(adapter).getId());
+    }
+
+    @Test(timeout = 5000)
+    public void testReceiveReturnsNullIfInterrupted() throws Exception {
+        final AtomicInteger nullMessages = new AtomicInteger(0);
+        Thread receiver = new Thread() {
+            @Override
+            public void run() {
+                if (broker.receiveOutput(Identifier.adapter("adapter")) == null) {
+                    nullMessages.incrementAndGet();
+                }
+            }
+        };
+        receiver.start();
+        Thread.sleep(100);
+        receiver.interrupt();
+        receiver.join();
+
+        assertEquals(1, nullMessages.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testListenerReceivesPendingAndNewMessagesInOrder() throws Exception {
+        final Identifier adapter = Identifier.adapter("adapter");
+        final List<Message> received = Collections.synchronizedList(new ArrayList<Message>());
+        final CountDownLatch latch = new CountDownLatch(20);
+
+        //adapter rings are small, publish the first messages before the listener is registered
+        for (int i = 0; i < 4; i++) {
+            broker.publishOutput(adapter, createMessage(i));
+        }
+
+        broker.registerOutputListener(adapter, new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                received.add(message);
+                latch.countDown();
+            }
+        });
+
+        for (int i = 4; i < 20; i++) {
+            broker.publishOutput(adapter, createMessage(i));
+        }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Identifier.message("" + i), received.get(i).getId());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelledListenerLeavesMessagesInRing() throws Exception {
+        final AtomicInteger counter = new AtomicInteger(0);
+        CancelableListener listener = broker.registerControlListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                counter.incrementAndGet();
+            }
+        });
+        listener.cancel();
+
+        broker.publishControl(createMessage(1));
+
+        assertEquals(Identifier.message("1"), broker.receiveControl().getId());
+        assertEquals(0, counter.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelledAdapterListenerReleasesChannel() throws Exception {
+        Identifier adapter = Identifier.adapter("adapter");
+        MessageListener listener = new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+            }
+        };
+
+        CancelableListener output = broker.registerOutputListener(adapter, listener);
+        CancelableListener requests = broker.registerRequestListener(adapter, listener);
+        assertEquals(2, broker.getAdapterChannelCount());
+
+        output.cancel();
+        requests.cancel();
+        assertEquals(0, broker.getAdapterChannelCount());
+    }
+
+    @Test(timeout = 5000)
+    public void testListenerPublishesToOwnFullChannel() throws Exception {
+        final Identifier adapter = Identifier.adapter("adapter");
+        final CountDownLatch latch = new CountDownLatch(9);
+
+        //the capacity of the ring of an adapter is 4, the listener publishes more messages than fit
+        broker.registerOutputListener(adapter, new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                if (Identifier.message("0").equals(message.getId())) {
+                    for (int i = 1; i <= 8; i++) {
+                        broker.publishOutput(adapter, createMessage(i));
+                    }
+                }
+                latch.countDown();
+            }
+        });
+        broker.publishOutput(adapter, createMessage(0));
+
+        assertTrue("Listener should not block on its own channel!", latch.await(4, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testOutputBatch() throws Exception {
+        Identifier adapter1 = Identifier.adapter("adapter1");
+        Identifier adapter2 = Identifier.adapter("adapter2");
+
+        Map<Identifier, List<Message>> batch = new HashMap<>();
+        batch.put(adapter1, Arrays.asList(createMessage(1), createMessage(2)));
+        batch.put(adapter2, Arrays.asList(createMessage(3)));
+        broker.publishOutputBatch(batch);
+
+        assertEquals(Identifier.message("1"), broker.receiveOutput(adapter1).getId());
+        assertEquals(Identifier.message("2"), broker.receiveOutput(adapter1).getId());
+        assertEquals(Identifier.message("3"), broker.receiveOutput(adapter2).getId());
+    }
+
+    @Test(timeout = 20000)
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int messagesPerProducer = 10000;
+        final CyclicBarrier barrier = new CyclicBarrier(producers + consumers);
+        final Set<Identifier> received = Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<Identifier, Boolean>());
+        final CountDownLatch done = new CountDownLatch(producers * messagesPerProducer);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread() {
+                @Override
+                public void run() {
+                    await(barrier);
+                    for (int i = 0; i < messagesPerProducer; i++) {
+                        broker.publishLog(new Message.MessageBuilder().setId(Identifier.message(producer + "." + i)).create());
+                    }
+                }
+            }.start();
+        }
+
+        for (int c = 0; c < consumers; c++) {
+            Thread consumer = new Thread() {
+                @Override
+                public void run() {
+                    await(barrier);
+                    Message message;
+                    while ((message = broker.receiveLog()) != null) {
+                        received.add(message.getId());
+                        done.countDown();
+                    }
+                }
+            };
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        assertTrue("Not all messages have been received", done.await(15, TimeUnit.SECONDS));
+        assertEquals(producers * messagesPerProducer, received.size());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Message createMessage(int id) {
+        return new Message.MessageBuilder().setId(Identifier.message("" + id)).setContent("content" + id).create();
+    }
+}
@@ -21,6 +21,7 @@ import at.ac.tuwien.dsg.smartcom.adapter.PushTask;
 import at.ac.tuwien.dsg.smartcom.adapter.util.TaskScheduler;
 import at.ac.tuwien.dsg.smartcom.adapters.rest.JsonMessageDTO;
 import at.ac.tuwien.dsg.smartcom.broker.InputPublisher;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
@@ -156,10 +157,28 @@ public class RESTInputAdapterTest {
 
     }
 
+    @Test(timeout = 20000l)
+    public void testRESTInputAdapter_rejected() throws Exception {
+        WebTarget target = client.target("http://localhost:"+port+"/test");
+
+        Message message = new Message.MessageBuilder()
+                .setContent("testContent")
+                .setType("testType")
+                .create();
+
+        publisher.setLatch(new CountDownLatch(1));
+        publisher.setAccept(false);
+
+        Response response = target.request(MediaType.APPLICATION_JSON).post(Entity.json(new JsonMessageDTO(message)), Response.class);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertNotNull(response.getHeaderString("Retry-After"));
+    }
+
     private class Publisher implements InputPublisher {
 
         private CountDownLatch latch;
         private List<Message> messages = new ArrayList<>();
+        private boolean accept = true;
 
         public void setLatch(CountDownLatch latch) {
             this.latch = latch;
@@ -169,6 +188,13 @@ public class RESTInputAdapterTest {
         public void publishInput(Message message) {
             messages.add(message);
             latch.countDown();
+            if (!accept) {
+                throw new InputRejectedException("Rejected message " + message.getId());
+            }
+        }
+
+        public void setAccept(boolean accept) {
+            this.accept = accept;
         }
 
         public List<Message> getMessages() {
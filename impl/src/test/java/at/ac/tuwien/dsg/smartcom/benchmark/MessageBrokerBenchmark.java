@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.benchmark;
+
+import at.ac.tuwien.dsg.smartcom.RingBufferMessageBroker;
+import at.ac.tuwien.dsg.smartcom.SimpleMessageBroker;
+import at.ac.tuwien.dsg.smartcom.adapters.FreePortProviderUtil;
+import at.ac.tuwien.dsg.smartcom.broker.CancelableListener;
+import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
+import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.broker.impl.ApacheActiveMQMessageBroker;
+import at.ac.tuwien.dsg.smartcom.broker.utils.ApacheActiveMQUtils;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the message brokers that can be used by the middleware. Each invocation
+ * publishes a burst of output messages for an adapter and waits until the listener
+ * of the adapter has received all of them.
+ *
+ * The benchmark can be started using the main method with the test classpath.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageBrokerBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"ring", "simple", "activemq"})
+    public String brokerType;
+
+    private MessageBroker broker;
+    private CancelableListener registration;
+    private final Identifier adapter = Identifier.adapter("benchmark");
+    private final AtomicReference<CountDownLatch> latch = new AtomicReference<>();
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        switch (brokerType) {
+            case "ring":
+                broker = new RingBufferMessageBroker(new StatisticBean());
+                break;
+            case "simple":
+                SimpleMessageBroker simple = new SimpleMessageBroker();
+                simple.init();
+                broker = simple;
+                break;
+            default:
+                int port = FreePortProviderUtil.getFreePort();
+                ApacheActiveMQUtils.startActiveMQWithoutPersistence(port);
+                broker = new ApacheActiveMQMessageBroker("localhost", port, true, new StatisticBean());
+        }
+
+        registration = broker.registerOutputListener(adapter, new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                latch.get().countDown();
+            }
+        });
+
+        message = new Message.MessageBuilder()
+                .setId(Identifier.message("benchmark"))
+                .setType("type")
+                .setSubtype("subtype")
+                .setSenderId(Identifier.component("sender"))
+                .setReceiverId(Identifier.peer("receiver"))
+                .setContent("content")
+                .create();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        registration.cancel();
+        if (broker instanceof RingBufferMessageBroker) {
+            ((RingBufferMessageBroker) broker).cleanUp();
+        } else if (broker instanceof SimpleMessageBroker) {
+            ((SimpleMessageBroker) broker).destroy();
+        } else {
+            ((ApacheActiveMQMessageBroker) broker).cleanUp();
+            ApacheActiveMQUtils.stopActiveMQ();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void publishOutput() throws InterruptedException {
+        CountDownLatch current = new CountDownLatch(BURST);
+        latch.set(current);
+        for (int i = 0; i < BURST; i++) {
+            broker.publishOutput(adapter, message);
+        }
+        current.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MessageBrokerBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.codec;
+
+import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.IdentifierType;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codec that writes messages in a compact binary layout into a JMS BytesMessage
+ * instead of relying on Java serialization.
+ *
+ * The layout starts with a version byte and a bitmask that indicates which fields
+ * of the message are present, followed by the present fields in a fixed order.
+ * Strings that are known to the middleware (e.g., predefined types and subtypes)
+ * are written as a single byte, all other strings are written as UTF-8 bytes
+ * prefixed by their length. Types, subtypes and identifiers are interned when
+ * they are decoded because they are repeated in almost every message.
+ *
+ * Messages that are received as an ObjectMessage (e.g., sent by an older version
+ * of the middleware) are still decoded.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    /**
+     * Version of the binary layout, has to be increased if the layout changes.
+     */
+    public static final byte VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int ID = 1;
+    private static final int CONTENT = 1 << 1;
+    private static final int TYPE = 1 << 2;
+    private static final int SUBTYPE = 1 << 3;
+    private static final int SENDER = 1 << 4;
+    private static final int RECEIVER = 1 << 5;
+    private static final int CONVERSATION = 1 << 6;
+    private static final int TTL = 1 << 7;
+    private static final int LANGUAGE = 1 << 8;
+    private static final int SECURITY_TOKEN = 1 << 9;
+    private static final int DELIVERY = 1 << 10;
+    private static final int REFERS_TO = 1 << 11;
+    private static final int EXPIRATION = 1 << 12;
+
+    private static final byte NULL_STRING = 0;
+    private static final byte LITERAL_STRING = 1;
+    private static final byte NULL_IDENTIFIER_TYPE = -1;
+
+    /**
+     * Strings that are encoded as a single byte. New entries must only be appended
+     * to keep the layout compatible.
+     */
+    private static final String[] DICTIONARY = {
+            null, //NULL_STRING
+            null, //LITERAL_STRING
+            "",
+            PredefinedMessageHelper.AUTH_TYPE,
+            PredefinedMessageHelper.CONTROL_TYPE,
+            PredefinedMessageHelper.DATA_TYPE,
+            PredefinedMessageHelper.ACK_SUBTYPE,
+            PredefinedMessageHelper.ACK_SUBTYPE_CHECKED,
+            PredefinedMessageHelper.COMERROR_SUBTYPE,
+            PredefinedMessageHelper.DELIVERY_ERROR_SUBTYPE,
+            PredefinedMessageHelper.TIMEOUT_SUBTYPE,
+            PredefinedMessageHelper.REQUEST_SUBTYPE,
+            PredefinedMessageHelper.REPLY_SUBTYPE,
+            PredefinedMessageHelper.FAILED_SUBTYPE,
+            PredefinedMessageHelper.ERROR_SUBTYPE,
+            PredefinedMessageHelper.taskExecutionEngine.getId(),
+            PredefinedMessageHelper.authenticationManager.getId()
+    };
+
+    private static final Map<String, Byte> DICTIONARY_CODES = new HashMap<>();
+
+    static {
+        for (int i = LITERAL_STRING + 1; i < DICTIONARY.length; i++) {
+            DICTIONARY_CODES.put(DICTIONARY[i], (byte) i);
+        }
+    }
+
+    private static final IdentifierType[] IDENTIFIER_TYPES = IdentifierType.values();
+    private static final DeliveryPolicy.Message[] DELIVERY_POLICIES = DeliveryPolicy.Message.values();
+
+    private final Interner<String> interner = Interners.newWeakInterner();
+    private final MessageCodec fallback = new ObjectMessageCodec();
+
+    @Override
+    public javax.jms.Message encode(Session session, Message message) throws JMSException {
+        BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.writeBytes(toBytes(message));
+        return bytesMessage;
+    }
+
+    @Override
+    public Message decode(javax.jms.Message message) throws JMSException {
+        if (message instanceof ObjectMessage) {
+            return fallback.decode(message);
+        }
+
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+        return fromBytes(bytes);
+    }
+
+    /**
+     * Writes the message into its binary representation.
+     *
+     * @param message that should be encoded
+     * @return binary representation of the message
+     * @throws JMSException if the message could not be encoded
+     */
+    public byte[] toBytes(Message message) throws JMSException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            int mask = 0;
+            if (message.getId() != null) mask |= ID;
+            if (message.getContent() != null) mask |= CONTENT;
+            if (message.getType() != null) mask |= TYPE;
+            if (message.getSubtype() != null) mask |= SUBTYPE;
+            if (message.getSenderId() != null) mask |= SENDER;
+            if (message.getReceiverId() != null) mask |= RECEIVER;
+            if (message.getConversationId() != null) mask |= CONVERSATION;
+            if (message.getTtl() != 0) mask |= TTL;
+            if (message.getLanguage() != null) mask |= LANGUAGE;
+            if (message.getSecurityToken() != null) mask |= SECURITY_TOKEN;
+            if (message.getDelivery() != null) mask |= DELIVERY;
+            if (message.getRefersTo() != null) mask |= REFERS_TO;
+            if (message.getExpiration() != 0) mask |= EXPIRATION;
+
+            out.writeByte(VERSION);
+            out.writeShort(mask);
+
+            if ((mask & ID) != 0) writeIdentifier(out, message.getId());
+            if ((mask & CONTENT) != 0) writeString(out, message.getContent());
+            if ((mask & TYPE) != 0) writeString(out, message.getType());
+            if ((mask & SUBTYPE) != 0) writeString(out, message.getSubtype());
+            if ((mask & SENDER) != 0) writeIdentifier(out, message.getSenderId());
+            if ((mask & RECEIVER) != 0) writeIdentifier(out, message.getReceiverId());
+            if ((mask & CONVERSATION) != 0) writeString(out, message.getConversationId());
+            if ((mask & TTL) != 0) out.writeLong(message.getTtl());
+            if ((mask & LANGUAGE) != 0) writeString(out, message.getLanguage());
+            if ((mask & SECURITY_TOKEN) != 0) writeString(out, message.getSecurityToken());
+            if ((mask & DELIVERY) != 0) out.writeByte(message.getDelivery().ordinal());
+            if ((mask & REFERS_TO) != 0) writeIdentifier(out, message.getRefersTo());
+            //fields that are added later on have to be written at the end of the layout
+            if ((mask & EXPIRATION) != 0) out.writeLong(message.getExpiration());
+
+            out.flush();
+        } catch (IOException e) {
+            throw createException("Could not encode message " + message.getId(), e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a message from its binary representation.
+     *
+     * @param bytes binary representation of the message
+     * @return the decoded message
+     * @throws JMSException if the message could not be decoded
+     */
+    public Message fromBytes(byte[] bytes) throws JMSException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new JMSException("Unsupported message layout version " + version);
+            }
+
+            int mask = in.readUnsignedShort();
+
+            Message message = new Message();
+            if ((mask & ID) != 0) message.setId(readIdentifier(in));
+            if ((mask & CONTENT) != 0) message.setContent(readString(in, false));
+            if ((mask & TYPE) != 0) message.setType(readString(in, true));
+            if ((mask & SUBTYPE) != 0) message.setSubtype(readString(in, true));
+            if ((mask & SENDER) != 0) message.setSenderId(readIdentifier(in));
+            if ((mask & RECEIVER) != 0) message.setReceiverId(readIdentifier(in));
+            if ((mask & CONVERSATION) != 0) message.setConversationId(readString(in, false));
+            if ((mask & TTL) != 0) message.setTtl(in.readLong());
+            if ((mask & LANGUAGE) != 0) message.setLanguage(readString(in, true));
+            if ((mask & SECURITY_TOKEN) != 0) message.setSecurityToken(readString(in, false));
+            message.setDelivery((mask & DELIVERY) != 0 ? DELIVERY_POLICIES[in.readByte()] : null);
+            if ((mask & REFERS_TO) != 0) message.setRefersTo(readIdentifier(in));
+            if ((mask & EXPIRATION) != 0) message.setExpiration(in.readLong());
+
+            return message;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw createException("Could not decode message", e);
+        }
+    }
+
+    private void writeIdentifier(DataOutput out, Identifier id) throws IOException {
+        out.writeByte(id.getType() == null ? NULL_IDENTIFIER_TYPE : (byte) id.getType().ordinal());
+        writeString(out, id.returnIdWithoutPostfix());
+        writeString(out, id.getPostfix());
+    }
+
+    private Identifier readIdentifier(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String id = readString(in, true);
+        String postfix = readString(in, true);
+        return new Identifier(type == NULL_IDENTIFIER_TYPE ? null : IDENTIFIER_TYPES[type], id, postfix);
+    }
+
+    private void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_STRING);
+            return;
+        }
+
+        Byte code = DICTIONARY_CODES.get(value);
+        if (code != null) {
+            out.writeByte(code);
+        } else {
+            byte[] bytes = value.getBytes(UTF8);
+            out.writeByte(LITERAL_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private String readString(DataInputStream in, boolean intern) throws IOException {
+        byte code = in.readByte();
+        switch (code) {
+            case NULL_STRING:
+                return null;
+            case LITERAL_STRING:
+                int length = in.readInt();
+                //the length is not trusted, corrupt input must not allocate arbitrary arrays
+                if (length < 0 || length > in.available()) {
+                    throw new IOException("Invalid string length " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                String value = new String(bytes, UTF8);
+                return intern ? interner.intern(value) : value;
+            default:
+                return DICTIONARY[code];
+        }
+    }
+
+    private static JMSException createException(String reason, Exception e) {
+        JMSException exception = new JMSException(reason);
+        exception.setLinkedException(e);
+        exception.initCause(e);
+        return exception;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.codec;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+/**
+ * Converts SmartCom messages into JMS messages and back. The codec is used by
+ * the broker whenever a message is published to or consumed from a queue.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface MessageCodec {
+
+    /**
+     * Creates a JMS message that carries the given message.
+     *
+     * @param session that should be used to create the JMS message
+     * @param message that should be encoded
+     * @return JMS message that can be sent by a producer of the session
+     * @throws JMSException if the JMS message could not be created
+     */
+    public javax.jms.Message encode(Session session, Message message) throws JMSException;
+
+    /**
+     * Extracts the message from a JMS message that has been created by
+     * this codec.
+     *
+     * @param message JMS message that has been received
+     * @return the decoded message
+     * @throws JMSException if the JMS message could not be read
+     */
+    public Message decode(javax.jms.Message message) throws JMSException;
+}
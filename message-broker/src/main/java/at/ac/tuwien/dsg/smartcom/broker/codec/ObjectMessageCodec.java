@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.codec;
+
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import javax.jms.JMSException;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+
+/**
+ * Codec that wraps the message in a JMS ObjectMessage and therefore
+ * relies on Java serialization.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class ObjectMessageCodec implements MessageCodec {
+
+    @Override
+    public javax.jms.Message encode(Session session, Message message) throws JMSException {
+        return session.createObjectMessage(message);
+    }
+
+    @Override
+    public Message decode(javax.jms.Message message) throws JMSException {
+        return (Message) ((ObjectMessage) message).getObject();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.impl;
+
+/**
+ * Connection and consumer settings of the Apache ActiveMQ Message Broker.
+ *
+ * Producers use a fixed set of connections that are shared by the sending threads.
+ * Listeners are distributed over a bounded pool of consumer connections, each listener
+ * creates a configurable number of sessions (i.e., concurrent consumers) on a pooled
+ * connection instead of opening a connection of its own.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class ApacheActiveMQConfiguration {
+    public static final int DEFAULT_TCP_PRODUCER_CONNECTIONS = 50;
+    public static final int DEFAULT_VM_PRODUCER_CONNECTIONS = 10;
+    public static final int DEFAULT_CONSUMER_CONNECTIONS = 10;
+    public static final int DEFAULT_CONSUMERS_PER_DESTINATION = 1;
+    public static final int DEFAULT_LISTENER_PREFETCH = 1000;
+    //cached consumers must not hold messages while they are idle, otherwise competing consumers starve
+    public static final int DEFAULT_RECEIVE_PREFETCH = 0;
+    public static final long DEFAULT_CONSUMER_IDLE_TIMEOUT = 60000;
+    public static final int DEFAULT_DESTINATION_CACHE_SIZE = 10000;
+    //0 blocks the sender until the broker has enough resources to accept the message
+    public static final int DEFAULT_SEND_TIMEOUT = 0;
+
+    private int producerConnections = -1;
+    private int consumerConnections = DEFAULT_CONSUMER_CONNECTIONS;
+    private int consumersPerDestination = DEFAULT_CONSUMERS_PER_DESTINATION;
+    private int listenerPrefetch = DEFAULT_LISTENER_PREFETCH;
+    private int receivePrefetch = DEFAULT_RECEIVE_PREFETCH;
+    private long consumerIdleTimeout = DEFAULT_CONSUMER_IDLE_TIMEOUT;
+    private int destinationCacheSize = DEFAULT_DESTINATION_CACHE_SIZE;
+    private int sendTimeout = DEFAULT_SEND_TIMEOUT;
+
+    /**
+     * Returns the number of connections that are used to send messages. If no
+     * value has been set, the default of the transport will be used.
+     *
+     * @param local true if the broker is connected using the VM transport
+     * @return number of producer connections
+     */
+    public int getProducerConnections(boolean local) {
+        if (producerConnections > 0) {
+            return producerConnections;
+        }
+        return local ? DEFAULT_VM_PRODUCER_CONNECTIONS : DEFAULT_TCP_PRODUCER_CONNECTIONS;
+    }
+
+    public void setProducerConnections(int producerConnections) {
+        this.producerConnections = producerConnections;
+    }
+
+    public int getConsumerConnections() {
+        return consumerConnections;
+    }
+
+    public void setConsumerConnections(int consumerConnections) {
+        this.consumerConnections = consumerConnections;
+    }
+
+    public int getConsumersPerDestination() {
+        return consumersPerDestination;
+    }
+
+    public void setConsumersPerDestination(int consumersPerDestination) {
+        this.consumersPerDestination = consumersPerDestination;
+    }
+
+    public int getListenerPrefetch() {
+        return listenerPrefetch;
+    }
+
+    public void setListenerPrefetch(int listenerPrefetch) {
+        this.listenerPrefetch = listenerPrefetch;
+    }
+
+    public int getReceivePrefetch() {
+        return receivePrefetch;
+    }
+
+    public void setReceivePrefetch(int receivePrefetch) {
+        this.receivePrefetch = receivePrefetch;
+    }
+
+    public long getConsumerIdleTimeout() {
+        return consumerIdleTimeout;
+    }
+
+    public void setConsumerIdleTimeout(long consumerIdleTimeout) {
+        this.consumerIdleTimeout = consumerIdleTimeout;
+    }
+
+    public int getDestinationCacheSize() {
+        return destinationCacheSize;
+    }
+
+    public void setDestinationCacheSize(int destinationCacheSize) {
+        this.destinationCacheSize = destinationCacheSize;
+    }
+
+    /**
+     * Returns the time (in ms) a producer waits for the broker if the broker is
+     * out of resources (producer flow control). If the timeout expires, the message
+     * is rejected. 0 means that the producer waits until the message is accepted.
+     *
+     * Note that input messages are only rejected (i.e., publishing input throws an
+     * InputRejectedException) if a send timeout has been configured or if the broker
+     * itself has been configured to fail sends if it is out of space (sendFailIfNoSpace).
+     * With the default settings, adapters that publish input are blocked instead.
+     *
+     * @return send timeout in milliseconds
+     */
+    public int getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public void setSendTimeout(int sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+}
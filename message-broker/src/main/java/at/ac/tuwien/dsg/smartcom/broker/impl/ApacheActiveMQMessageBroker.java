@@ -20,12 +20,21 @@ package at.ac.tuwien.dsg.smartcom.broker.impl;
 import at.ac.tuwien.dsg.smartcom.broker.CancelableListener;
 import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
 import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.broker.MessagePriority;
+import at.ac.tuwien.dsg.smartcom.broker.codec.BinaryMessageCodec;
+import at.ac.tuwien.dsg.smartcom.broker.codec.MessageCodec;
 import at.ac.tuwien.dsg.smartcom.broker.utils.BrokerErrorUtils;
 import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
+import at.ac.tuwien.dsg.smartcom.exception.InputRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.transport.RequestTimedOutIOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,7 +42,11 @@ import javax.jms.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Apache ActiveMQ Message Broker
@@ -45,15 +58,15 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
     private static final Logger log = LoggerFactory.getLogger(ApacheActiveMQMessageBroker.class);
     private static final String requestQueuePrefix = "SmartCom.request.";
     private static final String taskQueuePrefix = "SmartCom.task.";
-    public static final int TCP_CONNECTIONS = 50;
-    public static final int VM_CONNECTIONS = 10;
 
     private Connection connection;
     private Session session;
 
     private ThreadLocal<Session> localSession;
     private ThreadLocal<MessageProducer> localProducer;
-    private List<Session> sessions;
+    private ThreadLocal<Session> localTransactedSession;
+    private ThreadLocal<MessageProducer> localTransactedProducer;
+    private Set<Session> sessions;
 
     private Queue inputQueue;
     private Queue controlQueue;
@@ -62,17 +75,34 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
     private Queue metricsQueue;
     private Queue logQueue;
 
+    private LoadingCache<Identifier, Queue> requestDestinations;
+    private LoadingCache<Identifier, Queue> taskDestinations;
+
     private java.util.Queue<Connection> connectionQueue;
     private List<Connection> consumerConnections;
+    private final AtomicInteger nextConsumerConnection = new AtomicInteger(0);
+    private ConsumerCache consumerCache;
 
     private final StatisticBean statistic;
+    private final MessageCodec codec;
+    private final ApacheActiveMQConfiguration configuration;
     private ActiveMQConnectionFactory connectionFactory;
 
-    public ApacheActiveMQMessageBroker(String host, int port, boolean local, StatisticBean statistic) throws CommunicationException {
+    public ApacheActiveMQMessageBroker(String host, int port, boolean local, StatisticBean statistic, MessageCodec codec, ApacheActiveMQConfiguration configuration) throws CommunicationException {
         this.statistic = statistic;
+        this.codec = codec;
+        this.configuration = configuration;
         setUp(host, port, local);
     }
 
+    public ApacheActiveMQMessageBroker(String host, int port, boolean local, StatisticBean statistic, MessageCodec codec) throws CommunicationException {
+        this(host, port, local, statistic, codec, new ApacheActiveMQConfiguration());
+    }
+
+    public ApacheActiveMQMessageBroker(String host, int port, boolean local, StatisticBean statistic) throws CommunicationException {
+        this(host, port, local, statistic, new BinaryMessageCodec());
+    }
+
     public ApacheActiveMQMessageBroker(String host, int port, StatisticBean statistic) throws CommunicationException {
         this(host, port, false, statistic);
     }
@@ -93,14 +123,16 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
             //ConnectionFactory for the Apache ActiveMQ instance
             connectionQueue = new LinkedBlockingDeque<>();
             consumerConnections = new ArrayList<>();
-            int connections = 0;
             if (local) {
-                connectionFactory = new ActiveMQConnectionFactory("vm://" + host + "?create=false&jms.prefetchPolicy.all=1000");
-                connections = VM_CONNECTIONS;
+                connectionFactory = new ActiveMQConnectionFactory("vm://" + host + "?create=false");
             } else {
                 connectionFactory = new ActiveMQConnectionFactory("tcp://" + host + ":" + port);
-                connections = TCP_CONNECTIONS;
             }
+            connectionFactory.getPrefetchPolicy().setAll(configuration.getListenerPrefetch());
+            //prefetched messages are dispatched according to their priority
+            connectionFactory.setMessagePrioritySupported(true);
+            connectionFactory.setSendTimeout(configuration.getSendTimeout());
+            int connections = configuration.getProducerConnections(local);
 //            connectionFactory.setOptimizeAcknowledge(true);
 //            connectionFactory.setAlwaysSessionAsync(false);
 
@@ -114,17 +146,30 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
                 connectionQueue.add(con);
             }
 
+            //listeners share a bounded set of connections, each listener uses sessions of its own
+            for (int i = 0; i < configuration.getConsumerConnections(); i++) {
+                Connection con = connectionFactory.createConnection();
+                con.start();
+                consumerConnections.add(con);
+            }
+
             //since one connection per thread is allowed by AMQ
-            sessions = Collections.synchronizedList(new ArrayList<Session>());
+            sessions = Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
 
             //Sessions for this broker
             session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
             
             //see down
             setUpDestinations(session);
+            requestDestinations = createDestinationCache(requestQueuePrefix);
+            taskDestinations = createDestinationCache(taskQueuePrefix);
 
             localSession = new ThreadLocal<>();
             localProducer = new ThreadLocal<>();
+            localTransactedSession = new ThreadLocal<>();
+            localTransactedProducer = new ThreadLocal<>();
+
+            consumerCache = new ConsumerCache(configuration.getReceivePrefetch(), configuration.getConsumerIdleTimeout(), statistic);
         } catch (JMSException e) {
             throw BrokerErrorUtils.createBrokerException(e);
         }
@@ -140,8 +185,30 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
         logQueue = session.createQueue("SmartCom.log");
     }
 
+    /**
+     * Creates a cache for the queues of adapters. ActiveMQ queues are immutable and
+     * can therefore be shared by all threads. The cache is bounded to keep the memory
+     * footprint small if there are many adapters, queues of adapters that have not been
+     * used recently will be created again when they are needed.
+     *
+     * @param prefix of the queues in the cache
+     * @return cache for the queues
+     */
+    private LoadingCache<Identifier, Queue> createDestinationCache(final String prefix) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(configuration.getDestinationCacheSize())
+                .build(new CacheLoader<Identifier, Queue>() {
+                    @Override
+                    public Queue load(Identifier id) throws Exception {
+                        return new ActiveMQQueue(prefix + id.getId());
+                    }
+                });
+    }
+
     public void cleanUp() throws CommunicationException {
         try {
+            consumerCache.cleanUp();
+
             for (Session session : sessions) {
                 try {
                     session.close();
@@ -179,35 +246,45 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
     @Override
     public void publishInput(Message message) {
         statistic.brokerPublishInput();
-        sendMessage(message, inputQueue);
+        try {
+            initLocalSessionAndProducer();
+
+            send(localProducer.get(), inputQueue, codec.encode(localSession.get(), message), message);
+        } catch (ResourceAllocationException e) {
+            log.warn("Input message {} has been rejected because the broker is out of resources", message.getId());
+            throw new InputRejectedException("Broker is out of resources, input message " + message.getId() + " has been rejected.", e);
+        } catch (JMSException e) {
+            if (e.getCause() instanceof RequestTimedOutIOException) {
+                log.warn("Input message {} has been rejected because the broker did not accept it in time", message.getId());
+                throw new InputRejectedException("Broker did not accept input message " + message.getId() + " in time.", e);
+            }
+            log.error("Error while sending " + inputQueue.toString() + " message", e);
+            throw BrokerErrorUtils.createRuntimeBrokerException(e);
+        }
     }
 
     /**
      * Receive a message from a destination. Invoked by the consumer on the queue. Blocks until a msg is available.
+     * The consumer of the current thread for this destination is kept open for subsequent calls.
      * @param destination of the message
-     * @return the received message
+     * @return the received message or null if the consumer has been closed in the meantime
      */
-    private Message receiveMessage(Destination destination) {
+    private Message receiveMessage(Queue destination) {
         log.trace("Waiting for message in queue {}", destination);
-        MessageConsumer consumer = null;
+        ConsumerCache.CachedConsumer consumer = null;
         try {
             initLocalSessionAndProducer();
 
-            consumer = localSession.get().createConsumer(destination);
-
-            Message msg =  (Message) ((ObjectMessage) consumer.receive()).getObject();
+            consumer = consumerCache.acquire(localSession.get(), destination);
 
-            consumer.close();
+            javax.jms.Message received = consumer.getConsumer().receive();
+            consumerCache.release(consumer);
 
-            return msg;
+            return received == null ? null : codec.decode(received);
         } catch (JMSException e) {
             log.error("Error while receiving "+destination.toString(), e);
             if (consumer != null) {
-                try {
-                    consumer.close();
-                } catch (JMSException e1) {
-                    throw BrokerErrorUtils.createRuntimeBrokerException(e);
-                }
+                consumerCache.invalidate(consumer);
             }
             throw BrokerErrorUtils.createRuntimeBrokerException(e);
         }
@@ -215,37 +292,44 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
 
     /**
      * registers a listener on the destination. This should be the preferred way to receive messages from a queue, rather that calling receiveMessage(), 
-     * also because it is cancelable,
+     * also because it is cancelable.
+     * The listener does not get a connection of its own but creates its sessions on one of the pooled consumer connections.
+     * Each session has its own consumer, hence the listener may be called concurrently if more than one consumer per destination is configured.
      * @param listener that has to be registered
      * @param destination for the listener
      */
-    private CancelableListener setListener(final MessageListener listener, final Destination destination) {
-        try {
-            log.trace("Setting listener for destination {}", destination);
+    private CancelableListener setListener(final MessageListener listener, final Queue destination) {
+        log.trace("Setting listener for destination {}", destination);
 
-            Connection connection = connectionFactory.createConnection();
-            connection.start();
-            consumerConnections.add(connection);
-
-            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            sessions.add(session);
-
-            MessageConsumer consumer = session.createConsumer(destination);
-            consumer.setMessageListener(new javax.jms.MessageListener() {
-                @Override
-                public void onMessage(javax.jms.Message message) {
-                    try {
-                        listener.onMessage((Message) ((ObjectMessage) message).getObject());
-                    } catch (JMSException e) {
-                        log.error("Error in message listener for "+destination.toString(), e);
-                        throw BrokerErrorUtils.createRuntimeBrokerException(e);
-                    }
+        Connection connection = consumerConnections.get(Math.abs(nextConsumerConnection.getAndIncrement() % consumerConnections.size()));
+        javax.jms.MessageListener jmsListener = new javax.jms.MessageListener() {
+            @Override
+            public void onMessage(javax.jms.Message message) {
+                try {
+                    listener.onMessage(codec.decode(message));
+                } catch (JMSException e) {
+                    log.error("Error in message listener for "+destination.toString(), e);
+                    throw BrokerErrorUtils.createRuntimeBrokerException(e);
                 }
-            });
+            }
+        };
+
+        CancelableListenerImpl cancelable = new CancelableListenerImpl();
+        try {
+            for (int i = 0; i < configuration.getConsumersPerDestination(); i++) {
+                Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                sessions.add(session);
+                cancelable.sessions.add(session);
+
+                MessageConsumer consumer = session.createConsumer(destination);
+                consumer.setMessageListener(jmsListener);
+                cancelable.consumers.add(consumer);
+            }
             //differently than in receiveMessage, we now do not close the consumer, but rather return a cancellable listener.
-            return new CancelableListenerImpl(consumer, session);
+            return cancelable;
         } catch (JMSException e) {
             log.error("Error while setting "+destination.toString()+" listener", e);
+            cancelable.cancel();
             throw BrokerErrorUtils.createRuntimeBrokerException(e);
         }
     }
@@ -253,6 +337,8 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
     /**
      * Send a message to a specific destination. It uses thread local sessions and
      * producers for the sending of messages and creates them if they are not present.
+     * The message is encoded by the codec of this broker and sent with the JMS priority
+     * of its priority class.
      *
      * @param message that should be sent
      * @param destination of the message
@@ -262,14 +348,27 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
         try {
             initLocalSessionAndProducer();
 
-            ObjectMessage msg = localSession.get().createObjectMessage(message);
-            localProducer.get().send(destination, msg);
+            javax.jms.Message msg = codec.encode(localSession.get(), message);
+            send(localProducer.get(), destination, msg, message);
         } catch (JMSException e) {
             log.error("Error while sending " + destination.toString() + " message", e);
             throw BrokerErrorUtils.createRuntimeBrokerException(e);
         }
     }
 
+    /**
+     * Sends the JMS message with the priority of the message. If the message expires, the remaining
+     * time to live is used as JMS time to live, hence ActiveMQ discards the message if it is not
+     * consumed in time.
+     */
+    private void send(MessageProducer producer, Destination destination, javax.jms.Message msg, Message message) throws JMSException {
+        long timeToLive = producer.getTimeToLive();
+        if (message.getExpiration() > 0) {
+            timeToLive = Math.max(message.getExpiration() - System.currentTimeMillis(), 1);
+        }
+        producer.send(destination, msg, producer.getDeliveryMode(), MessagePriority.of(message).getJmsPriority(), timeToLive);
+    }
+
     /**
      * initialize thread local session and producer if there are no such
      * @throws JMSException
@@ -289,47 +388,88 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
         }
     }
 
-    @Override
-    public Message receiveRequests(Identifier id) {
-        return receiveMessage(createDestination(requestQueuePrefix, id));
-    }
+    /**
+     * initialize thread local transacted session and producer if there are no such.
+     * These are used to publish batches of messages with a single commit.
+     * @throws JMSException
+     */
+    private void initLocalTransactedSessionAndProducer() throws JMSException {
+        if (localTransactedSession.get() == null) {
+            Connection connection = connectionQueue.poll();
+            localTransactedSession.set(connection.createSession(true, Session.SESSION_TRANSACTED));
+            sessions.add(localTransactedSession.get());
+            connectionQueue.add(connection);
 
-    private Destination createDestination(String prefix, Identifier id) {
-        try {
-            return session.createQueue(prefix + id.getId());
-        } catch (JMSException e) {
-            log.error("Error while sending message to queue '{}' with id {} message", prefix, id, e);
-            throw BrokerErrorUtils.createRuntimeBrokerException(e);
+            localTransactedProducer.set(localTransactedSession.get().createProducer(null));
         }
     }
 
+    @Override
+    public Message receiveRequests(Identifier id) {
+        return receiveMessage(requestDestinations.getUnchecked(id));
+    }
+
     @Override
     public CancelableListener registerRequestListener(Identifier id, MessageListener listener) {
-        return setListener(listener, createDestination(requestQueuePrefix, id));
+        return setListener(listener, requestDestinations.getUnchecked(id));
     }
 
     @Override
     public void publishRequest(Identifier id, Message message) {
-        sendMessage(message, createDestination(requestQueuePrefix, id));
+        sendMessage(message, requestDestinations.getUnchecked(id));
         statistic.brokerPublishRequest();
     }
 
     @Override
     public Message receiveOutput(Identifier id) {
-        return receiveMessage(createDestination(taskQueuePrefix, id));
+        return receiveMessage(taskDestinations.getUnchecked(id));
     }
 
     @Override
     public CancelableListener registerOutputListener(Identifier id, MessageListener listener) {
-        return setListener(listener, createDestination(taskQueuePrefix, id));
+        return setListener(listener, taskDestinations.getUnchecked(id));
     }
 
     @Override
     public void publishOutput(Identifier id, Message message) {
-        sendMessage(message, createDestination(taskQueuePrefix, id));
+        sendMessage(message, taskDestinations.getUnchecked(id));
         statistic.brokerPublishOutput();
     }
 
+    @Override
+    public void publishOutputBatch(Map<Identifier, List<Message>> messages) {
+        log.trace("Sending batch of output messages to {} queues", messages.size());
+        Session session = null;
+        try {
+            initLocalTransactedSessionAndProducer();
+            session = localTransactedSession.get();
+            MessageProducer producer = localTransactedProducer.get();
+
+            int amount = 0;
+            for (Map.Entry<Identifier, List<Message>> entry : messages.entrySet()) {
+                Destination destination = taskDestinations.getUnchecked(entry.getKey());
+                for (Message message : entry.getValue()) {
+                    send(producer, destination, codec.encode(session, message), message);
+                    amount++;
+                }
+            }
+
+            //the messages of the batch will not be delivered until the session has been committed
+            session.commit();
+            statistic.brokerPublishOutput(amount);
+        } catch (JMSException e) {
+            log.error("Error while sending batch of output messages", e);
+            if (session != null) {
+                try {
+                    session.rollback();
+                } catch (JMSException e1) {
+                    log.warn("Could not rollback batch of output messages", e1);
+                }
+            }
+            throw BrokerErrorUtils.createRuntimeBrokerException(e);
+        }
+    }
+
     @Override
     public void publishControl(Message message) {
         sendMessage(message, controlQueue);
@@ -409,21 +549,25 @@ public class ApacheActiveMQMessageBroker implements MessageBroker {
 
     private class CancelableListenerImpl implements CancelableListener {
 
-        private final MessageConsumer consumer;
-        private final Session session;
-
-        private CancelableListenerImpl(MessageConsumer consumer, Session session) {
-            this.consumer = consumer;
-            this.session = session;
-        }
+        private final List<MessageConsumer> consumers = new ArrayList<>();
+        private final List<Session> sessions = new ArrayList<>();
 
         @Override
         public void cancel() {
-            try {
-                this.consumer.close();
-                this.session.close();
-            } catch (JMSException e) {
-                log.error("Could not close consumer", e);
+            for (MessageConsumer consumer : consumers) {
+                try {
+                    consumer.close();
+                } catch (JMSException e) {
+                    log.error("Could not close consumer", e);
+                }
+            }
+            for (Session session : sessions) {
+                ApacheActiveMQMessageBroker.this.sessions.remove(session);
+                try {
+                    session.close();
+                } catch (JMSException e) {
+                    log.error("Could not close session", e);
+                }
             }
         }
     }
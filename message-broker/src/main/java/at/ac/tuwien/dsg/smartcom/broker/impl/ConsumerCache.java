@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.impl;
+
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache for message consumers that are used to receive single messages from a queue.
+ * Consumers are kept open per thread and destination, hence a thread that repeatedly
+ * receives messages from the same queue (e.g., an input adapter that waits for pull
+ * requests) reuses its consumer instead of creating and closing one for every message.
+ *
+ * Consumers are created with the configured prefetch. A prefetch of zero turns them into
+ * pull consumers that request a single message on every receive, which keeps messages
+ * available to other consumers of the same queue while the cached consumer is idle.
+ * Consumers that have not been used for longer than the idle timeout are closed by a
+ * background task, which also returns any prefetched messages to the queue.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+class ConsumerCache {
+    private static final Logger log = LoggerFactory.getLogger(ConsumerCache.class);
+
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int CLOSED = 2;
+
+    private final int prefetch;
+    private final long idleTimeout;
+
+    private final ThreadLocal<Map<String, CachedConsumer>> localConsumers = new ThreadLocal<>();
+    private final Set<CachedConsumer> consumers = Collections.newSetFromMap(new ConcurrentHashMap<CachedConsumer, Boolean>());
+    private final ScheduledExecutorService evictor;
+
+    private final StatisticBean statistic;
+
+    /**
+     * @param prefetch number of messages that are delivered to a consumer in advance
+     * @param idleTimeout time in milliseconds after which an unused consumer will be closed
+     * @param statistic that records hits, misses and evictions of the cache
+     */
+    ConsumerCache(int prefetch, long idleTimeout, StatisticBean statistic) {
+        this.prefetch = prefetch;
+        this.idleTimeout = idleTimeout;
+        this.statistic = statistic;
+
+        evictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Consumer-evictor-%d").setDaemon(true).build());
+        long period = Math.max(idleTimeout / 2, 1);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConsumers();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the consumer of the current thread for the queue and creates one
+     * using the session if there is none. The consumer has to be released
+     * after it has been used.
+     *
+     * @param session of the current thread
+     * @param queue that should be consumed
+     * @return a consumer that is reserved for the current thread
+     * @throws JMSException if a new consumer could not be created
+     */
+    CachedConsumer acquire(Session session, Queue queue) throws JMSException {
+        Map<String, CachedConsumer> map = localConsumers.get();
+        if (map == null) {
+            map = new HashMap<>();
+            localConsumers.set(map);
+        }
+
+        String name = queue.getQueueName();
+        CachedConsumer consumer = map.get(name);
+        if (consumer != null && consumer.state.compareAndSet(IDLE, BUSY)) {
+            statistic.consumerCacheHit();
+            return consumer;
+        }
+
+        //either there is no consumer yet or it has been evicted in the meantime
+        statistic.consumerCacheMiss();
+        consumer = new CachedConsumer(session.createConsumer(session.createQueue(name + "?consumer.prefetchSize=" + prefetch)));
+        map.put(name, consumer);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * Releases a consumer that has been acquired before, so that it can be evicted.
+     *
+     * @param consumer that is not used anymore
+     */
+    void release(CachedConsumer consumer) {
+        consumer.lastUsed = System.currentTimeMillis();
+        consumer.state.compareAndSet(BUSY, IDLE);
+    }
+
+    /**
+     * Closes a consumer that has been acquired before, e.g., because an error occurred
+     * while receiving a message. The next acquire will create a new consumer.
+     *
+     * @param consumer that should be closed
+     */
+    void invalidate(CachedConsumer consumer) {
+        consumer.state.set(CLOSED);
+        close(consumer);
+    }
+
+    void evictIdleConsumers() {
+        long threshold = System.currentTimeMillis() - idleTimeout;
+        for (Iterator<CachedConsumer> iterator = consumers.iterator(); iterator.hasNext(); ) {
+            CachedConsumer consumer = iterator.next();
+            if (consumer.state.get() == CLOSED) {
+                iterator.remove();
+            } else if (consumer.lastUsed < threshold && consumer.state.compareAndSet(IDLE, CLOSED)) {
+                log.trace("Evicting idle consumer {}", consumer.consumer);
+                statistic.consumerCacheEviction();
+                iterator.remove();
+                close(consumer);
+            }
+        }
+    }
+
+    /**
+     * Stops the eviction of idle consumers and closes all consumers.
+     */
+    void cleanUp() {
+        evictor.shutdownNow();
+        for (CachedConsumer consumer : consumers) {
+            consumer.state.set(CLOSED);
+            close(consumer);
+        }
+        consumers.clear();
+    }
+
+    private void close(CachedConsumer consumer) {
+        consumers.remove(consumer);
+        try {
+            consumer.consumer.close();
+        } catch (JMSException e) {
+            log.warn("Could not close consumer", e);
+        }
+    }
+
+    int size() {
+        return consumers.size();
+    }
+
+    static class CachedConsumer {
+        private final MessageConsumer consumer;
+        private final AtomicInteger state = new AtomicInteger(BUSY);
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private CachedConsumer(MessageConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        MessageConsumer getConsumer() {
+            return consumer;
+        }
+    }
+}
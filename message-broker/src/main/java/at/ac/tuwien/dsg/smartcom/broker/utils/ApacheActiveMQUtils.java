@@ -19,6 +19,8 @@ package at.ac.tuwien.dsg.smartcom.broker.utils;
 
 import org.apache.activemq.broker.BrokerFactory;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
 
 import java.net.URI;
 
@@ -49,6 +51,14 @@ public class ApacheActiveMQUtils {
         broker = BrokerFactory.createBroker(new URI("broker:tcp://localhost:"+port));
         broker.setPersistent(persistence);
 
+        //queues dispatch messages with a higher priority first (e.g., control before data messages)
+        PolicyEntry policy = new PolicyEntry();
+        policy.setQueue(">");
+        policy.setPrioritizedMessages(true);
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policy);
+        broker.setDestinationPolicy(policyMap);
+
         broker.deleteAllMessages();
         broker.start();
         broker.waitUntilStarted();
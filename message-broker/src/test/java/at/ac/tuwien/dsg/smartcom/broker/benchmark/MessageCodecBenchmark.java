@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.benchmark;
+
+import at.ac.tuwien.dsg.smartcom.broker.codec.BinaryMessageCodec;
+import at.ac.tuwien.dsg.smartcom.broker.codec.MessageCodec;
+import at.ac.tuwien.dsg.smartcom.broker.codec.ObjectMessageCodec;
+import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ObjectMessage path (Java serialization) with the binary codec.
+ * Each invocation encodes a message, marshals it the same way the broker does
+ * when a message is sent and decodes it again on the consumer side.
+ *
+ * The benchmark can be started using the main method with the test classpath.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private Connection connection;
+    private Session session;
+    private Message message;
+
+    private final MessageCodec objectCodec = new ObjectMessageCodec();
+    private final MessageCodec binaryCodec = new BinaryMessageCodec();
+
+    @Setup
+    public void setUp() throws JMSException {
+        connection = new ActiveMQConnectionFactory("vm://benchmark?broker.persistent=false").createConnection();
+        connection.start();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        message = new Message.MessageBuilder()
+                .setId(Identifier.message("a0f8b2c4-9d3e-11e4-89d3-123b93f75cba"))
+                .setContent("Do some stuff and respond!")
+                .setType(PredefinedMessageHelper.DATA_TYPE)
+                .setSubtype("REQUEST")
+                .setSenderId(Identifier.component("DEMO"))
+                .setReceiverId(Identifier.adapter("Email", "peer1"))
+                .setConversationId("conversation-42")
+                .setDeliveryPolicy(DeliveryPolicy.Message.ACKNOWLEDGED)
+                .create();
+    }
+
+    @TearDown
+    public void tearDown() throws JMSException {
+        session.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public Message objectMessage() throws JMSException {
+        return roundTrip(objectCodec);
+    }
+
+    @Benchmark
+    public Message binaryMessage() throws JMSException {
+        return roundTrip(binaryCodec);
+    }
+
+    private Message roundTrip(MessageCodec codec) throws JMSException {
+        ActiveMQMessage sent = (ActiveMQMessage) codec.encode(session, message);
+        sent.onSend();
+        return codec.decode((javax.jms.Message) sent.copy());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.codec;
+
+import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import org.junit.Test;
+
+import javax.jms.JMSException;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Message message = new Message.MessageBuilder()
+                .setId(Identifier.message("id"))
+                .setContent("Content with umlauts \u00e4\u00f6\u00fc")
+                .setType(PredefinedMessageHelper.CONTROL_TYPE)
+                .setSubtype("CUSTOM")
+                .setSenderId(Identifier.peer("sender"))
+                .setReceiverId(Identifier.adapter("adapter", "instance"))
+                .setConversationId("conversation")
+                .setTtl(1000)
+                .setLanguage("en")
+                .setSecurityToken("token")
+                .setRefersTo(Identifier.message("other"))
+                .setDeliveryPolicy(DeliveryPolicy.Message.ACKNOWLEDGED)
+                .create();
+        message.setExpiration(123456789L);
+
+        Message decoded = codec.fromBytes(codec.toBytes(message));
+
+        assertEquals(message, decoded);
+        assertEquals(message.getContent(), decoded.getContent());
+        assertEquals(message.getSenderId(), decoded.getSenderId());
+        assertEquals(message.getReceiverId(), decoded.getReceiverId());
+        assertEquals(message.getReceiverId().getId(), decoded.getReceiverId().getId());
+        assertEquals(message.getConversationId(), decoded.getConversationId());
+        assertEquals(message.getTtl(), decoded.getTtl());
+        assertEquals(message.getExpiration(), decoded.getExpiration());
+        assertEquals(message.getLanguage(), decoded.getLanguage());
+        assertEquals(message.getSecurityToken(), decoded.getSecurityToken());
+        assertEquals(message.getRefersTo(), decoded.getRefersTo());
+        assertEquals(message.getDelivery(), decoded.getDelivery());
+    }
+
+    @Test
+    public void testRoundTrip_emptyMessage() throws Exception {
+        Message message = new Message();
+        message.setDelivery(null);
+
+        Message decoded = codec.fromBytes(codec.toBytes(message));
+
+        assertNull(decoded.getId());
+        assertNull(decoded.getContent());
+        assertNull(decoded.getType());
+        assertNull(decoded.getSenderId());
+        assertNull(decoded.getDelivery());
+        assertEquals(0, decoded.getTtl());
+    }
+
+    @Test
+    public void testInternedStrings() throws Exception {
+        Message message = new Message.MessageBuilder()
+                .setType("COMPUTE")
+                .setSenderId(Identifier.peer("peer"))
+                .create();
+
+        Message decoded1 = codec.fromBytes(codec.toBytes(message));
+        Message decoded2 = codec.fromBytes(codec.toBytes(message));
+
+        assertSame(decoded1.getType(), decoded2.getType());
+        assertSame(decoded1.getSenderId().getId(), decoded2.getSenderId().getId());
+    }
+
+    @Test
+    public void testSmallerThanSerialization() throws Exception {
+        Message message = new Message.MessageBuilder()
+                .setId(Identifier.message("id"))
+                .setContent("content")
+                .setType(PredefinedMessageHelper.DATA_TYPE)
+                .setSenderId(Identifier.peer("sender"))
+                .setReceiverId(Identifier.peer("receiver"))
+                .create();
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(message);
+        }
+
+        assertTrue(codec.toBytes(message).length < serialized.size());
+    }
+
+    @Test(expected = JMSException.class)
+    public void testUnknownVersion() throws Exception {
+        byte[] bytes = codec.toBytes(new Message());
+        bytes[0] = BinaryMessageCodec.VERSION + 1;
+
+        codec.fromBytes(bytes);
+    }
+
+    @Test(expected = JMSException.class)
+    public void testNegativeStringLength() throws Exception {
+        codec.fromBytes(contentWithLength(-1));
+    }
+
+    @Test(expected = JMSException.class)
+    public void testStringLengthExceedsInput() throws Exception {
+        codec.fromBytes(contentWithLength(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Encodes a message that only has a content and overwrites the length of the content.
+     * The content is the first field after the version (1 byte), the mask (2 bytes) and
+     * the string code (1 byte).
+     */
+    private byte[] contentWithLength(int length) throws JMSException {
+        Message message = new Message();
+        message.setContent("content that is not part of the dictionary");
+
+        byte[] bytes = codec.toBytes(message);
+        ByteBuffer.wrap(bytes).putInt(4, length);
+        return bytes;
+    }
+}
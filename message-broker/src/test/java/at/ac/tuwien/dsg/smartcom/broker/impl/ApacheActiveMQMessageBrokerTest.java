@@ -17,35 +17,49 @@
  */
 package at.ac.tuwien.dsg.smartcom.broker.impl;
 
+import at.ac.tuwien.dsg.smartcom.broker.CancelableListener;
 import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.broker.codec.BinaryMessageCodec;
 import at.ac.tuwien.dsg.smartcom.broker.util.FreePortProviderUtil;
 import at.ac.tuwien.dsg.smartcom.broker.utils.ApacheActiveMQUtils;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class ApacheActiveMQMessageBrokerTest {
 
     ApacheActiveMQMessageBroker broker;
+    StatisticBean statistic;
+    int port;
 
     @Before
     public void setUp() throws Exception {
-        int port = FreePortProviderUtil.getFreePort();
+        port = FreePortProviderUtil.getFreePort();
 
         ApacheActiveMQUtils.startActiveMQWithoutPersistence(port); //uses standard port
-        broker = new ApacheActiveMQMessageBroker("localhost", port, new StatisticBean());
+        statistic = new StatisticBean();
+        broker = new ApacheActiveMQMessageBroker("localhost", port, statistic);
     }
 
     @After
@@ -87,6 +101,109 @@ public class ApacheActiveMQMessageBrokerTest {
         parametrizedTest(receive, publish, listener, Identifier.adapter("test"));
     }
 
+    @Test
+    public void testReceiveReusesConsumer() throws Exception {
+        Identifier adapter = Identifier.adapter("pull");
+
+        for (int i = 0; i < 5; i++) {
+            broker.publishRequest(adapter, new Message.MessageBuilder().setId(Identifier.message(""+i)).create());
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Identifier.message(""+i), broker.receiveRequests(adapter).getId());
+        }
+
+        assertEquals(1, statistic.getStatistic().getBroker().getConsumerCacheMisses());
+        assertEquals(4, statistic.getStatistic().getBroker().getConsumerCacheHits());
+    }
+
+    @Test
+    public void testListenersSharePooledConnections() throws Exception {
+        ApacheActiveMQConfiguration configuration = new ApacheActiveMQConfiguration();
+        configuration.setConsumerConnections(2);
+        configuration.setConsumersPerDestination(2);
+        ApacheActiveMQMessageBroker pooledBroker = new ApacheActiveMQMessageBroker("localhost", port, false, statistic, new BinaryMessageCodec(), configuration);
+
+        try {
+            int listeners = 50;
+            final CountDownLatch latch = new CountDownLatch(listeners);
+            List<CancelableListener> registered = new ArrayList<>();
+            for (int i = 0; i < listeners; i++) {
+                registered.add(pooledBroker.registerOutputListener(Identifier.adapter("pooled" + i), new MessageListener() {
+                    @Override
+                    public void onMessage(Message message) {
+                        latch.countDown();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < listeners; i++) {
+                pooledBroker.publishOutput(Identifier.adapter("pooled" + i), new Message.MessageBuilder().setContent("TestOutput" + i).create());
+            }
+
+            assertTrue("Not all listeners received their message", latch.await(10, TimeUnit.SECONDS));
+
+            for (CancelableListener listener : registered) {
+                listener.cancel();
+            }
+        } finally {
+            pooledBroker.cleanUp();
+        }
+    }
+
+    @Test
+    public void testEvictedDestinationsAreRecreated() throws Exception {
+        ApacheActiveMQConfiguration configuration = new ApacheActiveMQConfiguration();
+        configuration.setDestinationCacheSize(2);
+        ApacheActiveMQMessageBroker smallCacheBroker = new ApacheActiveMQMessageBroker("localhost", port, false, statistic, new BinaryMessageCodec(), configuration);
+
+        try {
+            for (int i = 0; i < 5; i++) {
+                smallCacheBroker.publishOutput(Identifier.adapter("adapter" + i), new Message.MessageBuilder().setId(Identifier.message("" + i)).create());
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals(Identifier.message("" + i), smallCacheBroker.receiveOutput(Identifier.adapter("adapter" + i)).getId());
+            }
+        } finally {
+            smallCacheBroker.cleanUp();
+        }
+    }
+
+    @Test
+    public void testControlMessagesArePrioritized() throws Exception {
+        Identifier adapter = Identifier.adapter("priority");
+
+        for (int i = 0; i < 5; i++) {
+            broker.publishRequest(adapter, new Message.MessageBuilder().setId(Identifier.message("data" + i)).setType(PredefinedMessageHelper.DATA_TYPE).create());
+        }
+        broker.publishRequest(adapter, new Message.MessageBuilder().setId(Identifier.message("control")).setType(PredefinedMessageHelper.CONTROL_TYPE).create());
+
+        assertEquals(Identifier.message("control"), broker.receiveRequests(adapter).getId());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Identifier.message("data" + i), broker.receiveRequests(adapter).getId());
+        }
+    }
+
+    @Test
+    public void testOutputBatch() throws Exception {
+        Identifier adapter1 = Identifier.adapter("adapter1");
+        Identifier adapter2 = Identifier.adapter("adapter2");
+
+        Map<Identifier, List<Message>> batch = new HashMap<>();
+        batch.put(adapter1, Arrays.asList(
+                new Message.MessageBuilder().setId(Identifier.message("1")).setContent("TestOutput1").create(),
+                new Message.MessageBuilder().setId(Identifier.message("2")).setContent("TestOutput2").create()));
+        batch.put(adapter2, Arrays.asList(
+                new Message.MessageBuilder().setId(Identifier.message("3")).setContent("TestOutput3").create()));
+
+        broker.publishOutputBatch(batch);
+
+        assertEquals(Identifier.message("1"), broker.receiveOutput(adapter1).getId());
+        assertEquals(Identifier.message("2"), broker.receiveOutput(adapter1).getId());
+        assertEquals(Identifier.message("3"), broker.receiveOutput(adapter2).getId());
+    }
+
     @Test
     public void testControl() throws Exception {
         Method receive = broker.getClass().getMethod("receiveControl");
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.broker.impl;
+
+import at.ac.tuwien.dsg.smartcom.broker.util.FreePortProviderUtil;
+import at.ac.tuwien.dsg.smartcom.broker.utils.ApacheActiveMQUtils;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jms.Connection;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import static org.junit.Assert.*;
+
+public class ConsumerCacheTest {
+
+    private Connection connection;
+    private Session session;
+    private StatisticBean statistic;
+    private ConsumerCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        int port = FreePortProviderUtil.getFreePort();
+        ApacheActiveMQUtils.startActiveMQWithoutPersistence(port);
+
+        connection = new ActiveMQConnectionFactory("tcp://localhost:" + port).createConnection();
+        connection.start();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        statistic = new StatisticBean();
+        cache = new ConsumerCache(10, 100, statistic);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.cleanUp();
+        connection.close();
+        ApacheActiveMQUtils.stopActiveMQ();
+    }
+
+    @Test
+    public void testAcquireReusesConsumer() throws Exception {
+        Queue queue = session.createQueue("test");
+
+        ConsumerCache.CachedConsumer first = cache.acquire(session, queue);
+        cache.release(first);
+        ConsumerCache.CachedConsumer second = cache.acquire(session, queue);
+        cache.release(second);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+        assertEquals(1, statistic.getStatistic().getBroker().getConsumerCacheHits());
+        assertEquals(1, statistic.getStatistic().getBroker().getConsumerCacheMisses());
+    }
+
+    @Test
+    public void testIdleConsumerIsEvicted() throws Exception {
+        Queue queue = session.createQueue("test");
+
+        ConsumerCache.CachedConsumer consumer = cache.acquire(session, queue);
+        cache.release(consumer);
+
+        Thread.sleep(500);
+
+        assertEquals(0, cache.size());
+        assertEquals(1, statistic.getStatistic().getBroker().getConsumerCacheEvictions());
+
+        //evicted consumer must not be handed out again
+        ConsumerCache.CachedConsumer next = cache.acquire(session, queue);
+        assertNotSame(consumer, next);
+        assertEquals(2, statistic.getStatistic().getBroker().getConsumerCacheMisses());
+    }
+
+    @Test
+    public void testBusyConsumerIsNotEvicted() throws Exception {
+        Queue queue = session.createQueue("test");
+
+        cache.acquire(session, queue);
+
+        Thread.sleep(500);
+
+        assertEquals(1, cache.size());
+        assertEquals(0, statistic.getStatistic().getBroker().getConsumerCacheEvictions());
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveMembershipListener;
+
+/**
+ * Service that provides collective information internally. Usually provides a cache of
+ * already retrieved collective information from the peer manager, which is kept up to
+ * date by notifications about membership changes.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public interface CollectiveInfoService extends CollectiveInfoCallback, CollectiveMembershipListener {
+}
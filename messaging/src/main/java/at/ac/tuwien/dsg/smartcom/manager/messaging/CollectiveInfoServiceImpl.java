@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
+import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
+import at.ac.tuwien.dsg.smartcom.model.CollectiveInfo;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.picocontainer.annotations.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Caches the collective information that is provided by the CollectiveInfoCallback.
+ *
+ * Entries are refreshed in the background if they are requested after the refresh interval,
+ * in the meantime the old entry is still served. Entries that have not been refreshed within
+ * the expiration interval are removed. Membership changes that are reported by the peer manager
+ * are applied to the cached entries directly, other changes remove the entry from the cache.
+ *
+ * Every change increases the version of the collective. Entries carry the version the collective
+ * had when they have been loaded, hence an entry whose load was still in progress during a change
+ * (e.g., the initial load or a refresh) is detected as outdated and loaded again.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class CollectiveInfoServiceImpl implements CollectiveInfoService {
+    private static final Logger log = LoggerFactory.getLogger(CollectiveInfoService.class);
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final long DEFAULT_REFRESH = 60 * 1000;
+    private static final long DEFAULT_EXPIRATION = 10 * 60 * 1000;
+
+    private ExecutorService executor;
+
+    private final LoadingCache<Identifier, VersionedCollectiveInfo> cache;
+    private final ConcurrentMap<Identifier, Long> versions = new ConcurrentHashMap<>();
+
+    @Inject
+    private CollectiveInfoCallback callback;
+
+    public CollectiveInfoServiceImpl() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_REFRESH, DEFAULT_EXPIRATION);
+    }
+
+    /**
+     * @param cacheSize maximum number of cached collectives
+     * @param refresh time (in ms) after which an entry is reloaded in the background
+     * @param expiration time (in ms) after which an entry is removed if it has not been reloaded
+     */
+    public CollectiveInfoServiceImpl(int cacheSize, long refresh, long expiration) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .refreshAfterWrite(refresh, TimeUnit.MILLISECONDS)
+                .expireAfterWrite(expiration, TimeUnit.MILLISECONDS)
+                .build(
+                        new CacheLoader<Identifier, VersionedCollectiveInfo>() {
+                            @Override
+                            public VersionedCollectiveInfo load(Identifier id) throws Exception {
+                                log.debug("loading collective info for collective {} from peer manager", id);
+
+                                //changes during the load are detected by the version
+                                long version = version(id);
+                                CollectiveInfo info = callback.getCollectiveInfo(id);
+                                if (info == null) {
+                                    throw new NoSuchCollectiveException();
+                                }
+                                return new VersionedCollectiveInfo(info, version);
+                            }
+
+                            @Override
+                            public ListenableFuture<VersionedCollectiveInfo> reload(final Identifier id, VersionedCollectiveInfo oldValue) throws Exception {
+                                //the old value is served until the new one has been loaded
+                                ListenableFutureTask<VersionedCollectiveInfo> task = ListenableFutureTask.create(new Callable<VersionedCollectiveInfo>() {
+                                    @Override
+                                    public VersionedCollectiveInfo call() throws Exception {
+                                        return load(id);
+                                    }
+                                });
+                                executor.execute(task);
+                                return task;
+                            }
+                        });
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("CollectiveInfoService-refresh-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        //shut down the executor
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.error("Could not await termination of executor. forcing shutdown", e);
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public CollectiveInfo getCollectiveInfo(Identifier collective) throws NoSuchCollectiveException {
+        try {
+            while (true) {
+                VersionedCollectiveInfo entry = cache.get(collective);
+                if (entry.version == version(collective)) {
+                    return entry.info;
+                }
+
+                //the collective has been changed while the entry was loaded
+                log.debug("Reloading outdated collective info for collective {}", collective);
+                cache.asMap().remove(collective, entry);
+            }
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof NoSuchCollectiveException) {
+                throw (NoSuchCollectiveException) e.getCause();
+            }
+            log.error("Error while retrieving collective info for collective {}", collective, e);
+            throw new NoSuchCollectiveException();
+        }
+    }
+
+    @Override
+    public synchronized void memberAdded(Identifier collective, Identifier peer) {
+        VersionedCollectiveInfo entry = changed(collective);
+        if (entry == null) {
+            return;
+        }
+
+        List<Identifier> peers = new ArrayList<>(entry.info.getPeers().size() + 1);
+        peers.addAll(entry.info.getPeers());
+        if (!peers.contains(peer)) {
+            peers.add(peer);
+        }
+        replace(entry, peers);
+    }
+
+    @Override
+    public synchronized void memberRemoved(Identifier collective, Identifier peer) {
+        VersionedCollectiveInfo entry = changed(collective);
+        if (entry == null) {
+            return;
+        }
+
+        List<Identifier> peers = new ArrayList<>(entry.info.getPeers());
+        peers.remove(peer);
+        replace(entry, peers);
+    }
+
+    /**
+     * Increases the version of the collective.
+     *
+     * @return the cached entry if it reflects all previous changes and can be updated, null otherwise
+     */
+    private VersionedCollectiveInfo changed(Identifier collective) {
+        long version = version(collective);
+        versions.put(collective, version + 1);
+
+        VersionedCollectiveInfo entry = cache.getIfPresent(collective);
+        if (entry == null || entry.version != version) {
+            //not cached, still loading or already outdated, the entry is loaded again on the next request
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Cached entries are never modified because they might be used by other threads,
+     * a modified copy of the entry is cached instead, even if the members did not change,
+     * so that the entry reflects the new version. The entries are compared by identity,
+     * hence the copy is not cached if the entry has been reloaded in the meantime.
+     */
+    private void replace(VersionedCollectiveInfo entry, List<Identifier> peers) {
+        CollectiveInfo info = entry.info;
+        log.debug("Updating members of cached collective {}", info.getId());
+        CollectiveInfo copy = new CollectiveInfo(info.getId(), peers, info.getDeliveryPolicy());
+        cache.asMap().replace(info.getId(), entry, new VersionedCollectiveInfo(copy, entry.version + 1));
+    }
+
+    @Override
+    public synchronized void collectiveChanged(Identifier collective) {
+        versions.put(collective, version(collective) + 1);
+        cache.invalidate(collective);
+    }
+
+    private long version(Identifier collective) {
+        Long version = versions.get(collective);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * Collective info and the version of the collective it reflects.
+     */
+    private static final class VersionedCollectiveInfo {
+        private final CollectiveInfo info;
+        private final long version;
+
+        private VersionedCollectiveInfo(CollectiveInfo info, long version) {
+            this.info = info;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.utils.HierarchicalTimingWheel;
+
+/**
+ * Settings of the delivery policy enforcement of the messaging and routing manager.
+ *
+ * A delivery that has neither been acknowledged nor failed within its timeout (e.g., because
+ * an adapter dropped the message) is considered as failed. The timeout of a message can be
+ * overridden by its ttl. A timeout of 0 disables the timeouts.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class DeliveryConfiguration {
+    public static final long DEFAULT_PEER_TIMEOUT = 5 * 60 * 1000;
+    public static final long DEFAULT_COLLECTIVE_TIMEOUT = 10 * 60 * 1000;
+    public static final long DEFAULT_TIMER_TICK = HierarchicalTimingWheel.DEFAULT_TICK_DURATION;
+
+    private long peerTimeout = DEFAULT_PEER_TIMEOUT;
+    private long collectiveTimeout = DEFAULT_COLLECTIVE_TIMEOUT;
+    private long timerTick = DEFAULT_TIMER_TICK;
+
+    /**
+     * @return time (in ms) after which the delivery of a message to a peer is considered as failed
+     */
+    public long getPeerTimeout() {
+        return peerTimeout;
+    }
+
+    public void setPeerTimeout(long peerTimeout) {
+        this.peerTimeout = peerTimeout;
+    }
+
+    /**
+     * @return time (in ms) after which the delivery of a message to a collective is considered as failed
+     */
+    public long getCollectiveTimeout() {
+        return collectiveTimeout;
+    }
+
+    public void setCollectiveTimeout(long collectiveTimeout) {
+        this.collectiveTimeout = collectiveTimeout;
+    }
+
+    /**
+     * Returns the resolution (in ms) of the delivery timeouts, a delivery expires
+     * at most one tick after its timeout.
+     *
+     * @return duration of a tick of the timer in milliseconds
+     */
+    public long getTimerTick() {
+        return timerTick;
+    }
+
+    public void setTimerTick(long timerTick) {
+        this.timerTick = timerTick;
+    }
+}
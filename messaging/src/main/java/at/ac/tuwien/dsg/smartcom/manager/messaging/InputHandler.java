@@ -18,16 +18,26 @@
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
 import at.ac.tuwien.dsg.smartcom.broker.*;
-import at.ac.tuwien.dsg.smartcom.broker.policy.DynamicReplicationPolicy;
+import at.ac.tuwien.dsg.smartcom.broker.policy.LatencyReplicationPolicy;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
 import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Handles the messages that are received from the input and control queues of the broker
+ * and hands them over to the messaging and routing manager. Received messages are never
+ * dropped (e.g., acknowledgements and errors release pending deliveries), hence the listeners
+ * do not use the backpressure configuration of the middleware but block the consumers of the
+ * broker without timeout if their queues are full. This propagates the backpressure to the
+ * adapters that publish the input.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
 public class InputHandler implements MessageListener{
+    private static final Logger log = LoggerFactory.getLogger(InputHandler.class);
 
     private final MessagingAndRoutingManagerImpl manager;
     private final MessageBroker broker;
@@ -50,7 +60,7 @@ public class InputHandler implements MessageListener{
             public MessageListener createReplication() {
                 return InputHandler.this;
             }
-        }, new DynamicReplicationPolicy());
+        }, new LatencyReplicationPolicy());
         cancelableInputListener = broker.registerInputListener(inputListener);
 
         controlListener = new ReplicatingMessageListener("control", this, new ReplicationFactory() {
@@ -58,7 +68,7 @@ public class InputHandler implements MessageListener{
             public MessageListener createReplication() {
                 return InputHandler.this;
             }
-        }, new DynamicReplicationPolicy());
+        }, new LatencyReplicationPolicy());
         cancelableControlListener = broker.registerControlListener(controlListener);
     }
 
@@ -77,6 +87,6 @@ public class InputHandler implements MessageListener{
         } else {
             statistic.inputReceived();
         }
-        manager.send(message);
+        manager.sendInternal(message);
     }
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.model.RoutingPredicate;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled form of a RoutingPredicate that is created once when a routing rule
+ * is added and evaluated for every message that matches the other fields of the rule.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+abstract class MessagePredicate {
+
+    private final RoutingPredicate.Field field;
+
+    private MessagePredicate(RoutingPredicate.Field field) {
+        this.field = field;
+    }
+
+    /**
+     * @param message that should be checked
+     * @return true if the field of the message fulfills the predicate
+     */
+    boolean matches(Message message) {
+        String value = (field == RoutingPredicate.Field.CONTENT ? message.getContent() : message.getConversationId());
+        return value != null && matches(value);
+    }
+
+    protected abstract boolean matches(String value);
+
+    static MessagePredicate compile(RoutingPredicate predicate) throws InvalidRuleException {
+        if (predicate.getField() == null || predicate.getOperator() == null || predicate.getValue() == null) {
+            throw new InvalidRuleException("Field, operator and value of the predicate of the routing rule have to be defined!");
+        }
+
+        final String expected = predicate.getValue();
+        switch (predicate.getOperator()) {
+            case EQUALS:
+                return new MessagePredicate(predicate.getField()) {
+                    @Override
+                    protected boolean matches(String value) {
+                        return expected.equals(value);
+                    }
+                };
+            case PREFIX:
+                return new MessagePredicate(predicate.getField()) {
+                    @Override
+                    protected boolean matches(String value) {
+                        return value.startsWith(expected);
+                    }
+                };
+            case REGEX:
+                final Pattern pattern;
+                try {
+                    pattern = Pattern.compile(expected);
+                } catch (PatternSyntaxException e) {
+                    throw new InvalidRuleException("Regular expression of the predicate of the routing rule is invalid: " + e.getDescription());
+                }
+
+                return new MessagePredicate(predicate.getField()) {
+                    @Override
+                    protected boolean matches(String value) {
+                        return pattern.matcher(value).find();
+                    }
+                };
+            default:
+                throw new InvalidRuleException("Unknown operator of the predicate of the routing rule: " + predicate.getOperator());
+        }
+    }
+}
@@ -17,24 +17,33 @@
  */
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
+import at.ac.tuwien.dsg.smartcom.broker.BackpressureConfiguration;
 import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
-import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
+import at.ac.tuwien.dsg.smartcom.broker.MessagePriority;
+import at.ac.tuwien.dsg.smartcom.broker.OverflowPolicy;
 import at.ac.tuwien.dsg.smartcom.callback.NotificationCallback;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchPeerException;
 import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
 import at.ac.tuwien.dsg.smartcom.exception.ErrorCode;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.exception.MessageRejectedException;
 import at.ac.tuwien.dsg.smartcom.exception.RoutingException;
 import at.ac.tuwien.dsg.smartcom.manager.AdapterManager;
 import at.ac.tuwien.dsg.smartcom.manager.MessagingAndRoutingManager;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.util.KeyProvider;
-import at.ac.tuwien.dsg.smartcom.manager.messaging.util.Pair;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.util.TimeBasedUUID;
 import at.ac.tuwien.dsg.smartcom.model.*;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
 import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.picocontainer.annotations.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +56,17 @@ import java.util.concurrent.*;
 /**
  * Default implementation of the Messaging & Routing Manager.
  *
+ * Messages are handled by a pipeline of stages (ingest, route, policy, dispatch and log, see
+ * {@link PipelineConfiguration}), each stage has its own workers and a bounded queue that
+ * is ordered by the priority class of the messages. If the ingest queue is full, the overflow
+ * policy of the backpressure configuration decides whether the sender is blocked or the message
+ * is rejected. Messages that are created by the middleware itself are never rejected, they are
+ * handled by the sending thread instead. The queues of the following stages let the submitting
+ * thread do the work if they are full, which slows down the preceding stage.
+ *
+ * The stages are registered at the StatisticBean, which exports their queue sizes and latencies
+ * and allows to change the number of their workers at runtime.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @author Ognjen Scekic
  * @version 1.0
@@ -54,21 +74,36 @@ import java.util.concurrent.*;
 public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManager {
 	private static final Logger log = LoggerFactory.getLogger(MessagingAndRoutingManager.class);
 	
-	private final static int MAP_SIZE_LIMIT = 20000;
+	/**
+	 * Maximum number of peers whose adapters are cached
+	 */
+	private final static int ADAPTER_CACHE_SIZE = 20000;
 
-	private ExecutorService executor;
-    private ExecutorService brokerExecutor;
-    private ExecutorService logExecutor;
+	private PipelineStage ingestStage;
+	private PipelineStage routeStage;
+	private PipelineStage policyStage;
+	private PipelineStage dispatchStage;
+	private PipelineStage logStage;
 
 	private final Map<Identifier, NotificationCallback> callbacks = new HashMap<>();
 
-	private final Map<PeerInfo, Pair<List<Identifier>, PeerInfo>>  peerToAdaptersMappings = new ConcurrentHashMap<>();
+	private final Cache<Identifier, AdapterMapping> peerToAdaptersMappings = CacheBuilder.newBuilder()
+			.maximumSize(ADAPTER_CACHE_SIZE)
+			.removalListener(new RemovalListener<Identifier, AdapterMapping>() {
+				@Override
+				public void onRemoval(RemovalNotification<Identifier, AdapterMapping> notification) {
+					if (notification.wasEvicted()) {
+						statistic.adapterCacheEviction();
+					}
+				}
+			})
+			.build();
 
 	@Inject
 	private PeerInfoService peerInfoProvider;
 	
 	@Inject
-	private CollectiveInfoCallback collectiveInfoProvider;
+	private CollectiveInfoService collectiveInfoProvider;
 		
 	@Inject
     private MessageBroker broker; 
@@ -82,6 +117,15 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 	@Inject
 	private MessageLogLevel logLevel;
 
+	@Inject
+	private BackpressureConfiguration backpressure;
+
+	@Inject
+	private DeliveryConfiguration delivery;
+
+	@Inject
+	private PipelineConfiguration pipeline;
+
     private final Identifier localId = Identifier.component(this.hashCode() + "");
 
 	private InputHandler inputHandler;
@@ -89,82 +133,197 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 	private PolicyEnforcer policyEnforcer;
 
 	/**
-    * Initializes the executors for message sending.
+    * Initializes the stages of the message handling.
     */
 	@PostConstruct
     public void init() {
-    	ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("MARM-thread-%d").build();
-    	executor = Executors.newFixedThreadPool(10, namedThreadFactory);
-
-        ThreadFactory brokerThreadFactory = new ThreadFactoryBuilder().setNameFormat("Broker-thread-%d").build();
-        brokerExecutor = Executors.newFixedThreadPool(10, brokerThreadFactory);
-
-        ThreadFactory logThreadFactory = new ThreadFactoryBuilder().setNameFormat("LOG-thread-%d").setPriority(Thread.MIN_PRIORITY).build();
-        logExecutor = Executors.newFixedThreadPool(10, logThreadFactory);
+		ingestStage = createStage(PipelineConfiguration.INGEST, Thread.NORM_PRIORITY);
+		routeStage = createStage(PipelineConfiguration.ROUTE, Thread.NORM_PRIORITY);
+		policyStage = createStage(PipelineConfiguration.POLICY, Thread.NORM_PRIORITY);
+		dispatchStage = createStage(PipelineConfiguration.DISPATCH, Thread.NORM_PRIORITY);
+		logStage = createStage(PipelineConfiguration.LOG, Thread.MIN_PRIORITY);
 
 		inputHandler = new InputHandler(this, broker, statistic);
 		inputHandler.init();
 
 		routingRuleEngine = new RoutingRuleEngine();
-		policyEnforcer = new PolicyEnforcer(this);
+		policyEnforcer = new PolicyEnforcer(this, delivery);
     }
 
     /**
-     * Stops the executors for and cancels all active Futures.
+     * Stops the stages, starting with the first one so that the following stages can finish the pending tasks.
      */
 	@PreDestroy
     public void destroy() {
-        log.info("Executor will be shut down");
+        log.info("Stages will be shut down");
 
 		inputHandler.destroy();
 		routingRuleEngine.clear();
+		policyEnforcer.destroy();
 
-        brokerExecutor.shutdown();
-        try {
-            if (!brokerExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
-                brokerExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            log.error("Could not await termination of executor. forcing shutdown", e);
-            brokerExecutor.shutdownNow();
-        }
+		for (PipelineStage stage : new PipelineStage[] {ingestStage, routeStage, policyStage, dispatchStage, logStage}) {
+			stage.shutdown();
+			statistic.unregisterStage(stage);
+		}
 
-        logExecutor.shutdown();
-        try {
-            if (!logExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
-                logExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            log.error("Could not await termination of executor. forcing shutdown", e);
-            logExecutor.shutdownNow();
-        }
+        log.info("Stage shutdown complete!");
+    }
 
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
-                executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            log.error("Could not await termination of executor. forcing shutdown", e);
-            executor.shutdownNow();
-        }
+	private PipelineStage createStage(String name, int threadPriority) {
+		PipelineStage stage = new PipelineStage(name, pipeline.getWorkers(name), pipeline.getMaxWorkers(), backpressure.getQueueCapacity(), threadPriority);
+		statistic.registerStage(stage);
+		return stage;
+	}
 
-        log.info("Executor shutdown complete!");
-    }
+	@Override
+	public Identifier send(Message message) throws CommunicationException {
+		if (!accept(message)) {
+			return null;
+		}
+
+		enqueue(message);
+		return message.getId();
+	}
 
 	@Override
-	public Identifier send(final Message message) {
+	public ListenableFuture<DeliveryResult> sendAsync(Message message, long timeout) throws CommunicationException {
+		if (message.getSenderId() == null) {
+			throw new IllegalArgumentException("The sender of the message is required to track its delivery.");
+		}
+
+		if (!accept(message)) {
+			return Futures.immediateFuture(new DeliveryResult(message.getId(), DeliveryResult.Status.FAILED, "Message with a pre-set ID has been discarded."));
+		}
+
+		//the outcome might be available before the message has been enqueued
+		ListenableFuture<DeliveryResult> outcome = policyEnforcer.registerDeliveryOutcome(message, timeout);
+		try {
+			enqueue(message);
+		} catch (MessageRejectedException e) {
+			outcome.cancel(false);
+			throw e;
+		}
+		return outcome;
+	}
+
+	private void enqueue(Message message) throws MessageRejectedException {
+		MessagePriority priority = MessagePriority.of(message);
+		if (!submit(createHandler(message), priority)) {
+			statistic.messageRejected();
+			log.debug("Rejected message {}, the queue of priority class {} is full", message.getId(), priority);
+			throw new MessageRejectedException("Queue of priority class " + priority + " is full, message " + message.getId().getId() + " has been rejected.");
+		}
+
+		logMessage(message);
+	}
+
+	/**
+	 * Sends a message that has been created by the middleware itself (e.g., error and timeout messages)
+	 * or that has been received from the broker. Such messages release resources of pending deliveries
+	 * or have already been accepted from an adapter and are therefore never rejected. If the queue is
+	 * full, the message is handled by the calling thread instead.
+	 *
+	 * @param message to send
+	 */
+	void sendInternal(Message message) {
+		if (!accept(message)) {
+			return;
+		}
+
+		if (ingestStage.isShutdown()) {
+			log.debug("Discarding message {}, the manager has been shut down", message.getId());
+			return;
+		}
+
+		ingestStage.execute(MessagePriority.of(message), createHandler(message));
+
+		logMessage(message);
+	}
+
+	/**
+	 * Assigns an id to a new message and derives its expiration from the ttl.
+	 *
+	 * @return false if the message has already an id and should be discarded
+	 */
+	private boolean accept(Message message) {
         statistic.sendingRequestReceived();
 
 		if (message.getId() == null){
 			message.setId(new Identifier(IdentifierType.MESSAGE, KeyProvider.generateUniqueIdString(), ""));
 		}else{
 			log.warn("Message with a pre-set ID {} received. Discarding.", message.getId().getId());
-			return null;
+			return false;
+		}
+
+		//the ttl is relative to the point in time the message enters the middleware
+		if (message.getTtl() > 0 && message.getExpiration() == 0) {
+			message.setExpiration(System.currentTimeMillis() + message.getTtl());
 		}
 
         log.trace("Received message: {}", message);
-		logExecutor.submit(new Runnable() {
+		return true;
+	}
+
+	/**
+	 * Puts the task into the queue of the ingest stage according to the overflow policy.
+	 * The policy SHED sheds data messages first, i.e., they are rejected immediately
+	 * while control and authentication messages wait for space in their queues.
+	 *
+	 * @return true if the task has been accepted, false if it has been rejected
+	 */
+	private boolean submit(Runnable task, MessagePriority priority) {
+		if (ingestStage.isShutdown()) {
+			return false;
+		}
+
+		OverflowPolicy policy = backpressure.getOverflowPolicy();
+		if (policy == OverflowPolicy.SHED) {
+			policy = (priority == MessagePriority.DATA) ? OverflowPolicy.REJECT : OverflowPolicy.BLOCK;
+		}
+
+		if (policy != OverflowPolicy.BLOCK) {
+			return ingestStage.offer(priority, task);
+		}
+
+		try {
+			return ingestStage.offer(priority, task, backpressure.getBlockTimeout());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private Runnable createHandler(final Message message) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				if (PredefinedMessageHelper.CONTROL_TYPE.equals(message.getType()) &&
+						(PredefinedMessageHelper.ACK_SUBTYPE.equals(message.getSubtype()) ||
+						PredefinedMessageHelper.COMERROR_SUBTYPE.equals(message.getSubtype()))) {
+					statistic.internalMessageSendingRequest();
+					policyEnforcer.enforcePeerDeliveryPolicy(message);
+				} else if (message.isExpired(System.currentTimeMillis())) {
+					log.debug("Dropping expired message {}", message);
+					statistic.messageExpired();
+					Message timeoutMsg = PredefinedMessageHelper.createTimeoutMessage(message, "Message expired before it could be routed.");
+					policyEnforcer.completeDeliveryOutcome(message.getId(), message.getSenderId(), DeliveryResult.Status.TIMEOUT, timeoutMsg.getContent());
+					sendInternal(timeoutMsg);
+				} else {
+					statistic.externalMessageSendingRequest();
+					routeStage.execute(MessagePriority.of(message), new Runnable() {
+						@Override
+						public void run() {
+							MessagingAndRoutingManagerImpl.this.handleMessage(message);
+						}
+					});
+				}
+			}
+		};
+	}
+
+	private void logMessage(final Message message) {
+		logStage.execute(MessagePriority.of(message), new Runnable() {
 
 			@Override
 			public void run() {
@@ -202,29 +361,6 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 				broker.publishLog(message.clone());
 			}
 		});
-
-        executor.submit(
-            new Runnable() {
-
-                @Override
-                public void run() {
-                    if (PredefinedMessageHelper.CONTROL_TYPE.equals(message.getType()) &&
-                            (PredefinedMessageHelper.ACK_SUBTYPE.equals(message.getSubtype()) ||
-                            PredefinedMessageHelper.COMERROR_SUBTYPE.equals(message.getSubtype()))) {
-                        statistic.internalMessageSendingRequest();
-						policyEnforcer.enforcePeerDeliveryPolicy(message);
-                    } else {
-                        statistic.externalMessageSendingRequest();
-						MessagingAndRoutingManagerImpl.this.handleMessage(message);
-                    }
-                }
-					
-        });
-		//futureList.add(future); //we probably won't need this at all, as sending should mean ultimately just 
-		//passing the msg to the appropriate broker. 
-		//Therefore, it would be just wasting time to track futures just to be able to cancel them.
-	
-		return message.getId();
 	}
 
 	@Override
@@ -278,6 +414,7 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 
 		if (receiverList.isEmpty()){
 			notifyCallbacks(msg);
+			policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.DELIVERED, null);
 			return;
 		}
 
@@ -285,14 +422,21 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 			if (rec.getType() == IdentifierType.COMPONENT){
                 statistic.componentMessageSendingRequest();
 				handleComponentMessage(msg, rec);
+				if (isPrimaryRecipient) {
+					//components do not acknowledge messages
+					policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.DELIVERED, null);
+				}
 			}else if (rec.getType() == IdentifierType.COLLECTIVE){
 				try {
                     statistic.collectiveMessageSendingRequest();
 					deliverToCollective(msg, rec, isPrimaryRecipient);
 				} catch (NoSuchCollectiveException e) {
 					Message errorMsg = PredefinedMessageHelper.createDeliveryErrorMessage(msg, "Attempted delivery to unknown or non-existent collective " + rec.getId() + ".", localId);
-					send(errorMsg);
-					if (isPrimaryRecipient) return; //delivery to the original recipient failed. No need to loop over secondary recipients as well.
+					sendInternal(errorMsg);
+					if (isPrimaryRecipient) {
+						policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.FAILED, errorMsg.getContent());
+						return; //delivery to the original recipient failed. No need to loop over secondary recipients as well.
+					}
 				}
 			}else if (rec.getType() == IdentifierType.PEER){
 				try {
@@ -301,49 +445,137 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 				} catch (CommunicationException e) {
 					Message errorMsg = PredefinedMessageHelper.createCommunicationErrorMessage(msg, "Delivery to peer " + rec.getId() + " failed.");
 					policyEnforcer.enforcePeerDeliveryPolicy(errorMsg);
+					if (isPrimaryRecipient) {
+						//the delivery has been refused before it was registered (e.g., by a privacy policy of the peer)
+						policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.FAILED, errorMsg.getContent());
+					}
 				} catch (Exception e){ //in case the peer was not found or adapter could not be instantiated
 					Message errorMsg = PredefinedMessageHelper.createDeliveryErrorMessage(msg, "Delivery to peer " + rec.getId() + " failed.", localId);
-					send(errorMsg);
+					sendInternal(errorMsg);
+					if (isPrimaryRecipient) {
+						policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.FAILED, errorMsg.getContent());
+					}
 				}
 
 				if (isPrimaryRecipient) return; //delivery to the original recipient failed. No need to loop over secondary recipients as well.
 			}else {
 				Message errorMsg = PredefinedMessageHelper.createDeliveryErrorMessage(msg, "Recipient type not supported", localId);
-				send(errorMsg);
-				if (isPrimaryRecipient) return; //delivery to the original recipient failed. No need to loop over secondary recipients as well.
+				sendInternal(errorMsg);
+				if (isPrimaryRecipient) {
+					policyEnforcer.completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.FAILED, errorMsg.getContent());
+					return; //delivery to the original recipient failed. No need to loop over secondary recipients as well.
+				}
 			}
 			isPrimaryRecipient = false; //should hold true just for 1st loop, i.e., for the original receiver.
 
 		}//end for loop
 	}
 
-	private void deliverToCollective(Message msg, Identifier recipient, boolean createDataStruct) throws NoSuchCollectiveException {
-		CollectiveInfo colInfo = collectiveInfoProvider.getCollectiveInfo(recipient);
-		if (createDataStruct){
-			policyEnforcer.registerCollectiveMessageDeliveryAttempt(msg, colInfo);
-		}
+	/**
+	 * Resolves the members of the collective and their adapters. Registering the delivery attempts and
+	 * reporting members that could not be resolved is left to the policy stage, which hands the messages
+	 * for all members as one batch to the dispatch stage afterwards.
+	 */
+	private void deliverToCollective(final Message msg, Identifier recipient, final boolean createDataStruct) throws NoSuchCollectiveException {
+		final CollectiveInfo colInfo = collectiveInfoProvider.getCollectiveInfo(recipient);
+
+		//resolve all members at once, a cold cache would need a request per member otherwise
+		Map<Identifier, PeerInfo> peerInfos = peerInfoProvider.getPeerInfos(colInfo.getPeers());
+
+		//collect the messages for all members and publish them as one batch instead of one by one
+		final Map<Identifier, List<Message>> batch = new HashMap<>();
+		final List<PeerDelivery> deliveries = new ArrayList<>(colInfo.getPeers().size());
+		final List<Message> failures = new ArrayList<>();
 
 		for (Identifier peer : colInfo.getPeers()){
 			try {
                 Message localMessage = msg.clone();
                 localMessage.setReceiverId(peer);
-				deliverToPeer(localMessage, peer, createDataStruct, true);
+				PeerDelivery delivery = prepareDeliveryToPeer(localMessage, peer, peerInfos.get(peer), createDataStruct);
+				deliveries.add(delivery);
+
+				for (Identifier adapter : delivery.adapters) {
+					List<Message> messages = batch.get(adapter);
+					if (messages == null) {
+						messages = new ArrayList<>();
+						batch.put(adapter, messages);
+					}
+					messages.add(localMessage);
+				}
 			} catch (Exception e) {
-
-				Message m = PredefinedMessageHelper.createCommunicationErrorMessage(msg, "Delivery to peer " + peer.getId() + " failed.");
-				policyEnforcer.enforceCollectiveDeliveryPolicy(m);
+				failures.add(PredefinedMessageHelper.createCommunicationErrorMessage(msg, "Delivery to peer " + peer.getId() + " failed."));
 				if (colInfo.getDeliveryPolicy() == DeliveryPolicy.Collective.TO_ALL_MEMBERS){
 					break;
 				}
 			}
 		}
+
+		final MessagePriority priority = MessagePriority.of(msg);
+		policyStage.execute(priority, new Runnable() {
+
+			@Override
+			public void run() {
+				if (createDataStruct) {
+					policyEnforcer.registerCollectiveMessageDeliveryAttempt(msg, colInfo);
+					for (PeerDelivery delivery : deliveries) {
+						policyEnforcer.registerPeerMessageDeliveryAttempt(delivery.message, delivery.peerInfo, true);
+					}
+				}
+
+				for (Message failure : failures) {
+					policyEnforcer.enforceCollectiveDeliveryPolicy(failure);
+				}
+
+				if (!batch.isEmpty()) {
+					dispatchStage.execute(priority, new Runnable() {
+
+						@Override
+						public void run() {
+							broker.publishOutputBatch(batch);
+						}
+					});
+				}
+			}
+		});
 	}
 	
-	private void deliverToPeer(final Message msg, Identifier recipient, boolean writeToDataStruct, boolean isIntendedForCollective) throws CommunicationException, NoSuchPeerException {
+	private void deliverToPeer(Message msg, Identifier recipient, final boolean writeToDataStruct, final boolean isIntendedForCollective) throws CommunicationException, NoSuchPeerException {
+		final PeerDelivery delivery = prepareDeliveryToPeer(msg, recipient, peerInfoProvider.getPeerInfo(recipient), writeToDataStruct);
 
-		boolean doSend = true;
+		final MessagePriority priority = MessagePriority.of(msg);
+		policyStage.execute(priority, new Runnable() {
+
+			@Override
+			public void run() {
+				if (writeToDataStruct) {
+					policyEnforcer.registerPeerMessageDeliveryAttempt(delivery.message, delivery.peerInfo, isIntendedForCollective);
+				}
 
-		PeerInfo peerInfo = peerInfoProvider.getPeerInfo(recipient);
+				dispatchStage.execute(priority, new Runnable() {
+
+					@Override
+					public void run() {
+						for (Identifier adapter : delivery.adapters) {
+							broker.publishOutput(adapter, delivery.message);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Checks the privacy policies of the peer and determines the adapters that should be used to deliver
+	 * the message to the peer. Neither registers the delivery attempt nor publishes the message.
+	 *
+	 * @return the peer and the adapters that should be used for the delivery
+	 */
+	private PeerDelivery prepareDeliveryToPeer(Message msg, Identifier recipient, PeerInfo peerInfo, boolean writeToDataStruct) throws CommunicationException, NoSuchPeerException {
+		if (peerInfo == null) {
+			throw new NoSuchPeerException(recipient);
+		}
+
+		boolean doSend = true;
 
         if (peerInfo.getPrivacyPolicies() != null) {
             for (PrivacyPolicy privacyPolicy : peerInfo.getPrivacyPolicies()) {
@@ -359,12 +591,8 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 			throw new CommunicationException(new ErrorCode(1, "Delivery to peer " + recipient.getId() + "failed due to peer's privacy policy."));
 		}
 
-		if (writeToDataStruct){
-			policyEnforcer.registerPeerMessageDeliveryAttempt(msg, peerInfo, isIntendedForCollective);
-		}
-
 		//returned values will be according to the peer delivery policy (e.g., only one ID for DeliveryPolicy.PREFERRED)
-		final List<Identifier> listOfAdapterIDs = determineAdapters(peerInfo);
+		List<Identifier> listOfAdapterIDs = determineAdapters(peerInfo);
 		if (listOfAdapterIDs.size() == 0){
 			throw new RoutingException(new ErrorCode(2, "Unable to determine the adapter for message delivery to peer " + peerInfo.getId()));
 		}
@@ -373,93 +601,125 @@ public class MessagingAndRoutingManagerImpl implements MessagingAndRoutingManage
 			msg.setSubtype(""); //because writeToDataStruct = false means this is not a primary receiver. Therefore, no need to ACK.
 		}
 
-        brokerExecutor.submit(new Runnable() {
+		return new PeerDelivery(msg, peerInfo, listOfAdapterIDs);
+	}
 
-            @Override
-            public void run() {
-                for (Identifier adapter : listOfAdapterIDs){
-                    broker.publishOutput(adapter, msg);
-                }
-            }
-        });
+	/**
+	 * Message to a peer that has been resolved by the route stage.
+	 */
+	private static final class PeerDelivery {
+		private final Message message;
+		private final PeerInfo peerInfo;
+		private final List<Identifier> adapters;
+
+		private PeerDelivery(Message message, PeerInfo peerInfo, List<Identifier> adapters) {
+			this.message = message;
+			this.peerInfo = peerInfo;
+			this.adapters = adapters;
+		}
 	}
 
 	/**
-	 * Takes the provided PeerInfo argument and determines whether there have been previous attempts to send messages to this peer.
-	 * If not, then appropriate adapters will be created for the provided channels in PeerInfo and their Identifiers returned.
-	 * If yes, then the method performs a deep comparison PeerInfo.equalsByDeepCoparison() to see if the stored instance of PeerInfo 
-	 * differs from the new one. If they differ, then the AdapterManager's createEndpointForPeer() method is invoked anew,
-	 * to create potentially missing adapters, and dispose those that will not be necessary anymore. The new PeerInfo instance is
-	 * saved for subsequent checks. The resulting list of adapter identifiers is further restricted based on the peer delivery policy
-	 * found in the provided PeerInfo parmeter.
+	 * Determines the adapters that should be used to deliver a message to the given peer. The adapters
+	 * of a peer are created by the AdapterManager the first time a message is sent to the peer and are
+	 * cached afterwards, together with a fingerprint of the PeerInfo they have been created for. If the
+	 * fingerprint of the provided PeerInfo differs from the cached one (e.g., the peer has new addresses),
+	 * the AdapterManager's createEndpointForPeer() method is invoked anew to create potentially missing
+	 * adapters and to dispose those that will not be necessary anymore. The cache is bounded and evicts
+	 * the least recently used peers. The resulting list of adapter identifiers is further restricted based
+	 * on the peer delivery policy found in the provided PeerInfo parameter.
 	 *
 	 * @param peerInfo information of a peer
-	 * @return The list of adapters to which to perform delivery. 
+	 * @return The list of adapters to which to perform delivery.
 	 */
-	private List<Identifier> determineAdapters(PeerInfo peerInfo){
-		
-		if (peerToAdaptersMappings.size() > MAP_SIZE_LIMIT) peerToAdaptersMappings.clear();
-		
-		if (peerToAdaptersMappings.containsKey(peerInfo)){ //uses just peer id comparison here.
-			//this is a known recipient
-			//However, we still need to check if the available list of adapters (routing list) is valid.
-			
-			Pair<List<Identifier>, PeerInfo> p;
-			p = peerToAdaptersMappings.get(peerInfo);
-			
-			int i = 1;
-			while (p == null && i<4) { //this can happen if another thread flushed the entry in the meantime. That same thread should also update the value, though
-				try {
-					Thread.sleep(i*20);
-				} catch (InterruptedException ignored) {}
-				p = peerToAdaptersMappings.get(peerInfo);
-				i++;
-			}
+	private List<Identifier> determineAdapters(final PeerInfo peerInfo){
+		final long fingerprint = fingerprint(peerInfo);
 
-			if (i < 4 && p != null) {
-				PeerInfo oldPeerInfo = p.second;
-				if (peerInfo.equalsByDeepCoparison(oldPeerInfo)){
-					return p.first; //return the existing list of adapters, since nothing changed in the PeerInfo from last time
-				}
+		AdapterMapping mapping = peerToAdaptersMappings.getIfPresent(peerInfo.getId());
+		if (mapping != null && mapping.fingerprint == fingerprint) {
+			statistic.adapterCacheHit();
+		} else {
+			statistic.adapterCacheMiss();
+
+			//the information we have is outdated, remove it unless another thread has already replaced it
+			if (mapping != null) {
+				peerToAdaptersMappings.asMap().remove(peerInfo.getId(), mapping);
 			}
-		} 
-		
-		// if we arrived here it means, either:
-		// sending message to this peer for the first time 
-		// OR
-		// the information we have is outdated, so let's update it
-		
 
-		List<Identifier> adapters = adapterMgr.createEndpointForPeer(peerInfo); //need not be synced, since invoking createEndpointForPeer multiple times should be fine
-		Pair<List<Identifier>, PeerInfo> p = new Pair<>(adapters, peerInfo);
-		
-		synchronized(peerToAdaptersMappings){ //just using ConcurrentHashMap is not enough, because we need to save the reference to the map's key in the second object of the Pair, which is the object of the map, and if 2 thread repeat put, the value will get updated, but that value will contain the wrong reference to the key, meaning that subsequently the deep comparison between the old and the new PeerInfo object will not be possible
-			peerToAdaptersMappings.remove(peerInfo); //in reality, we remove an existing entry, if any. Since the PeerInfo.equals just compares Ids, it should locate the exact entry.
-			peerToAdaptersMappings.put(peerInfo, p); //we now put in the new value, which is a Pair, whose second element points to the key of the entry in the peerToAdaptersMappings where the Pair value belongs
+			//only one thread per peer creates the adapters, the others wait for the result
+			try {
+				mapping = peerToAdaptersMappings.get(peerInfo.getId(), new Callable<AdapterMapping>() {
+					@Override
+					public AdapterMapping call() throws Exception {
+						return new AdapterMapping(fingerprint, adapterMgr.createEndpointForPeer(peerInfo));
+					}
+				});
+			} catch (ExecutionException | UncheckedExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
 		}
-		
-		
+
+		List<Identifier> adapters = mapping.adapters;
+
 		// Now we have the list of all possible Adapters trough which we can deliver the message to the peer.
 		// However, depending on peer's stated delivery policy we may want to restrict this list.
 		// For example, in case of DeliveryPolicy.PREFERRED, we will just return the first Adapter.
 		// But, in case of either TO_ALL_CHANNELS or AT_LEAST_ONE, we return all adapters, because in either case
-		// the policy foresees sending to multiple adapters, but interpreting responses from all/one channel as ultimate success, respectively. 
-		
-		
-		if (peerInfo.getDeliveryPolicy() == DeliveryPolicy.Peer.PREFERRED){
+		// the policy foresees sending to multiple adapters, but interpreting responses from all/one channel as ultimate success, respectively.
+
+		if (peerInfo.getDeliveryPolicy() == DeliveryPolicy.Peer.PREFERRED && !adapters.isEmpty()){
 			Identifier preferred = adapters.get(0);
 			List<Identifier> prefList = new ArrayList<>();
 			prefList.add(preferred);
 			return prefList;
-			
+
 		}
-		
+
 		return adapters;
 	}
 
+	/**
+	 * Creates a fingerprint of the information of a peer that is relevant for the creation of its adapters.
+	 * Like PeerInfo.equalsByDeepCoparison(), the order of the addresses and privacy policies is not considered.
+	 */
+	private static long fingerprint(PeerInfo peerInfo) {
+		long fingerprint = peerInfo.getDeliveryPolicy() == null ? -1 : peerInfo.getDeliveryPolicy().ordinal();
+		fingerprint = 31 * fingerprint + unorderedHash(peerInfo.getAddresses());
+		fingerprint = 31 * fingerprint + unorderedHash(peerInfo.getPrivacyPolicies());
+		return fingerprint;
+	}
+
+	private static long unorderedHash(Collection<?> elements) {
+		if (elements == null) {
+			return -1;
+		}
+
+		long sum = 0;
+		long xor = 0;
+		for (Object element : elements) {
+			int hash = (element == null ? 0 : element.hashCode());
+			sum += hash;
+			xor ^= hash * 0x9E3779B97F4A7C15L;
+		}
+		return (sum * 31 + xor) * 31 + elements.size();
+	}
+
+	/**
+	 * Adapters of a peer and the fingerprint of the PeerInfo they have been created for.
+	 */
+	private static final class AdapterMapping {
+		private final long fingerprint;
+		private final List<Identifier> adapters;
+
+		private AdapterMapping(long fingerprint, List<Identifier> adapters) {
+			this.fingerprint = fingerprint;
+			this.adapters = adapters;
+		}
+	}
+
 	public void handleComponentMessage(final Message msg, Identifier receiver){
 		if (PredefinedMessageHelper.AUTH_TYPE.equals(msg.getType())) {
-			brokerExecutor.submit(new Runnable() {
+			dispatchStage.execute(MessagePriority.AUTH, new Runnable() {
 
 				@Override
 				public void run() {
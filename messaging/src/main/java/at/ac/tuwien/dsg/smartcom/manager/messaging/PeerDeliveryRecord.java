@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.utils.HierarchicalTimingWheel;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Delivery state of a message to one or more peers (e.g., the members of a collective).
+ *
+ * Every peer gets a slot that is determined upfront by an immutable index, hence finding
+ * the slot of a peer does not require a scan of all peers. The state of a slot (unregistered,
+ * pending, acknowledged or failed) is stored in two bits that are packed into an array of
+ * longs and updated with compare-and-set, hence a delivery is resolved exactly once without
+ * any locks even if acknowledgements, errors and timeouts arrive concurrently.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+class PeerDeliveryRecord {
+    static final int UNREGISTERED = 0;
+    static final int PENDING = 1;
+    static final int ACKNOWLEDGED = 2;
+    static final int FAILED = 3;
+
+    private static final int BITS = 2;
+    private static final int SLOTS_PER_WORD = Long.SIZE / BITS;
+    private static final long STATE_MASK = (1L << BITS) - 1;
+
+    private final Map<String, Integer> index;
+    private final Identifier[] peers;
+    private final AtomicLongArray states;
+    private final AtomicReferenceArray<DeliveryPolicy> policies;
+    private final AtomicReferenceArray<HierarchicalTimingWheel.Timeout> timeouts;
+    private final boolean intendedForCollective;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger acknowledged = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param peers that might be registered, duplicates share a slot
+     * @param intendedForCollective true if the message has been sent to a collective
+     */
+    PeerDeliveryRecord(Collection<Identifier> peers, boolean intendedForCollective) {
+        this.index = new HashMap<>(peers.size() * 2);
+        this.peers = new Identifier[peers.size()];
+
+        int slots = 0;
+        for (Identifier peer : peers) {
+            if (!index.containsKey(peer.getId())) {
+                index.put(peer.getId(), slots);
+                this.peers[slots++] = peer;
+            }
+        }
+
+        this.states = new AtomicLongArray((slots + SLOTS_PER_WORD - 1) / SLOTS_PER_WORD);
+        this.policies = new AtomicReferenceArray<>(slots);
+        this.timeouts = new AtomicReferenceArray<>(slots);
+        this.intendedForCollective = intendedForCollective;
+    }
+
+    /**
+     * @return slot of the peer, -1 if the peer is not part of this delivery
+     */
+    int slot(Identifier peer) {
+        Integer slot = index.get(peer.getId());
+        return slot == null ? -1 : slot;
+    }
+
+    Identifier getPeer(int slot) {
+        return peers[slot];
+    }
+
+    /**
+     * Registers a delivery attempt to the peer of the slot. The policy is only set if the
+     * slot has been claimed, hence a repeated registration can not replace the policy of
+     * a pending delivery.
+     *
+     * @return false if the slot has already been registered
+     */
+    boolean register(int slot, DeliveryPolicy policy) {
+        if (!transition(slot, UNREGISTERED, PENDING)) {
+            return false;
+        }
+        pending.incrementAndGet();
+        policies.set(slot, policy);
+
+        //the delivery might have been resolved in the meantime
+        if (getState(slot) != PENDING) {
+            policies.compareAndSet(slot, policy, null);
+        }
+        return true;
+    }
+
+    void setTimeout(int slot, HierarchicalTimingWheel.Timeout timeout) {
+        timeouts.set(slot, timeout);
+
+        //the delivery might have been resolved in the meantime
+        if (getState(slot) != PENDING) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @return the delivery policy of the peer, null if the slot is not pending
+     */
+    DeliveryPolicy getPolicy(int slot) {
+        return getState(slot) == PENDING ? policies.get(slot) : null;
+    }
+
+    /**
+     * Resolves the delivery to the peer of the slot and cancels its timeout.
+     *
+     * @param slot of the peer
+     * @param success true if the delivery has been acknowledged
+     * @return true if the delivery was pending, false if it has been resolved before
+     */
+    boolean resolve(int slot, boolean success) {
+        if (!transition(slot, PENDING, success ? ACKNOWLEDGED : FAILED)) {
+            return false;
+        }
+
+        (success ? acknowledged : failed).incrementAndGet();
+        pending.decrementAndGet();
+
+        HierarchicalTimingWheel.Timeout timeout = timeouts.getAndSet(slot, null);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        policies.set(slot, null);
+        return true;
+    }
+
+    /**
+     * Resolves all pending deliveries as failed.
+     */
+    void resolveAll() {
+        for (int slot = 0; slot < peers.length; slot++) {
+            resolve(slot, false);
+        }
+    }
+
+    int getState(int slot) {
+        int shift = (slot % SLOTS_PER_WORD) * BITS;
+        return (int) ((states.get(slot / SLOTS_PER_WORD) >>> shift) & STATE_MASK);
+    }
+
+    private boolean transition(int slot, int expected, int state) {
+        int word = slot / SLOTS_PER_WORD;
+        int shift = (slot % SLOTS_PER_WORD) * BITS;
+
+        while (true) {
+            long current = states.get(word);
+            if (((current >>> shift) & STATE_MASK) != expected) {
+                return false;
+            }
+            long updated = (current & ~(STATE_MASK << shift)) | ((long) state << shift);
+            if (states.compareAndSet(word, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if no delivery is pending anymore
+     */
+    boolean isResolved() {
+        return pending.get() == 0;
+    }
+
+    boolean isIntendedForCollective() {
+        return intendedForCollective;
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    int getAcknowledged() {
+        return acknowledged.get();
+    }
+
+    int getFailed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+/**
+ * Settings of the cache of the peer information.
+ *
+ * An entry is reloaded in the background if it is requested after the refresh interval,
+ * the old entry is served in the meantime. Entries that have not been reloaded within the
+ * expiration interval are removed. Peers that are unknown to the peer manager are cached
+ * as well, but only for a short time, so that new peers are available soon.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class PeerInfoConfiguration {
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    public static final long DEFAULT_REFRESH = 60 * 1000;
+    public static final long DEFAULT_EXPIRATION = 10 * 60 * 1000;
+    public static final int DEFAULT_NEGATIVE_CACHE_SIZE = 1000;
+    public static final long DEFAULT_NEGATIVE_EXPIRATION = 10 * 1000;
+    public static final int DEFAULT_REFRESH_THREADS = 2;
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private long refresh = DEFAULT_REFRESH;
+    private long expiration = DEFAULT_EXPIRATION;
+    private int negativeCacheSize = DEFAULT_NEGATIVE_CACHE_SIZE;
+    private long negativeExpiration = DEFAULT_NEGATIVE_EXPIRATION;
+    private int refreshThreads = DEFAULT_REFRESH_THREADS;
+
+    /**
+     * @return maximum number of cached peers
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * @return time (in ms) after which an entry is reloaded in the background
+     */
+    public long getRefresh() {
+        return refresh;
+    }
+
+    public void setRefresh(long refresh) {
+        this.refresh = refresh;
+    }
+
+    /**
+     * @return time (in ms) after which an entry is removed if it has not been reloaded
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public void setExpiration(long expiration) {
+        this.expiration = expiration;
+    }
+
+    /**
+     * @return maximum number of cached unknown peers
+     */
+    public int getNegativeCacheSize() {
+        return negativeCacheSize;
+    }
+
+    public void setNegativeCacheSize(int negativeCacheSize) {
+        this.negativeCacheSize = negativeCacheSize;
+    }
+
+    /**
+     * @return time (in ms) after which an unknown peer is requested from the peer manager again
+     */
+    public long getNegativeExpiration() {
+        return negativeExpiration;
+    }
+
+    public void setNegativeExpiration(long negativeExpiration) {
+        this.negativeExpiration = negativeExpiration;
+    }
+
+    /**
+     * @return number of threads that reload entries in the background
+     */
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+}
@@ -17,14 +17,16 @@
  */
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
-import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
+import at.ac.tuwien.dsg.smartcom.callback.BulkPeerInfoCallback;
 
 /**
  * Service that provides peer information internally. Usually provides a cache of
- * already retrieved peer information from the peer manager.
+ * already retrieved peer information from the peer manager. The information of
+ * multiple peers can be resolved at once, even if the PeerInfoCallback of the
+ * peer manager does not support bulk requests.
  *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
-public interface PeerInfoService extends PeerInfoCallback {
+public interface PeerInfoService extends BulkPeerInfoCallback {
 }
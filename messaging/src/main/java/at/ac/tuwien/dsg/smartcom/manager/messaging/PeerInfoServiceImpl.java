@@ -17,37 +17,54 @@
  */
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
+import at.ac.tuwien.dsg.smartcom.callback.BulkPeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchPeerException;
 import at.ac.tuwien.dsg.smartcom.manager.dao.PeerChannelAddressResolverDAO;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
-import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
 import at.ac.tuwien.dsg.smartcom.model.PeerInfo;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.picocontainer.annotations.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
+ * Caches the peer information that is provided by the PeerInfoCallback. If the information
+ * of multiple peers is requested at once, the missing entries are loaded with a single call
+ * to the callback if it is a BulkPeerInfoCallback, otherwise they are loaded one by one.
+ *
+ * Entries are reloaded by a dedicated pool after the refresh interval of the configuration,
+ * the stale entry is served until the reload has finished. Peers that are unknown to the
+ * callback are remembered for a short time, so that messages to unknown peers do not hit
+ * the peer manager every time. The statistics of both caches are exported by the StatisticBean.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
 public class PeerInfoServiceImpl implements PeerInfoService {
     private static final Logger log = LoggerFactory.getLogger(PeerInfoService.class);
-    private static final int DEFAULT_CACHE_SIZE = 1000;
+
+    public static final String CACHE_NAME = "peerInfo";
+    public static final String UNKNOWN_PEER_CACHE_NAME = "peerInfo-unknown";
 
     private ExecutorService executor;
+    private ExecutorService refreshExecutor;
 
-    private final LoadingCache<Identifier, PeerInfo> cache;
+    private LoadingCache<Identifier, PeerInfo> cache;
+    private Cache<Identifier, Boolean> unknownPeers;
 
     @Inject
     private PeerInfoCallback callback;
@@ -55,67 +72,65 @@ public class PeerInfoServiceImpl implements PeerInfoService {
     @Inject
     private PeerChannelAddressResolverDAO dao;
 
-    public PeerInfoServiceImpl() {
-        this(DEFAULT_CACHE_SIZE);
-    }
-
-    public PeerInfoServiceImpl(int cacheSize) {
-        this.cache = CacheBuilder.newBuilder()
-                .maximumSize(cacheSize)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .build(
-                        //load entries from the database in case of a cache miss
-                        new CacheLoader<Identifier, PeerInfo>() {
-                            @Override
-                            public PeerInfo load(Identifier id) throws Exception {
-                                log.debug("loading peerinfo for peer {} from peer manager", id);
-
-                                final PeerInfo peerInfo = callback.getPeerInfo(id);
-
-                                if (peerInfo == null) {
-                                    throw new PeerInfoUnavailableException();
-                                }
-
-                                //speed up the retrieval (saving the data in the db might be expensive
-                                executor.submit(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        for (PeerChannelAddress address : peerInfo.getAddresses()) {
-                                            dao.insert(address);
-                                        }
-                                    }
-                                });
-
-                                return peerInfo;
-                            }
-                        });
-    }
+    @Inject
+    private PeerInfoConfiguration configuration;
 
+    @Inject
+    private StatisticBean statistic;
 
     @PostConstruct
     public void init() {
         executor  = Executors.newSingleThreadExecutor();
+        refreshExecutor = Executors.newFixedThreadPool(configuration.getRefreshThreads(),
+                new ThreadFactoryBuilder().setNameFormat("PeerInfoService-refresh-%d").setDaemon(true).build());
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getCacheSize())
+                .refreshAfterWrite(configuration.getRefresh(), TimeUnit.MILLISECONDS)
+                .expireAfterWrite(configuration.getExpiration(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(new PeerInfoLoader());
+
+        this.unknownPeers = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getNegativeCacheSize())
+                .expireAfterWrite(configuration.getNegativeExpiration(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        statistic.registerCache(CACHE_NAME, cache);
+        statistic.registerCache(UNKNOWN_PEER_CACHE_NAME, unknownPeers);
     }
 
     @PreDestroy
     public void destroy() {
-        //shut down the executor
-        executor.shutdown();
-        try {
-            executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            log.error("Could not await termination of executor. forcing shutdown", e);
-            executor.shutdownNow();
+        statistic.unregisterCache(CACHE_NAME);
+        statistic.unregisterCache(UNKNOWN_PEER_CACHE_NAME);
+
+        //shut down the executors
+        for (ExecutorService service : Arrays.asList(refreshExecutor, executor)) {
+            service.shutdown();
+            try {
+                service.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                log.error("Could not await termination of executor. forcing shutdown", e);
+                service.shutdownNow();
+            }
         }
     }
 
     @Override
     public PeerInfo getPeerInfo(Identifier id) throws NoSuchPeerException {
+        if (unknownPeers.getIfPresent(id) != null) {
+            log.debug("No PeerInfo available for peer {} (cached)", id);
+            return null;
+        }
+
         try {
             return cache.get(id);
         } catch (ExecutionException e) {
-            if (e.getCause() instanceof PeerInfoUnavailableException) {
+            if (isUnknownPeer(e.getCause())) {
                 log.debug("No PeerInfo available for peer {}", id);
+                unknownPeers.put(id, Boolean.TRUE);
             } else {
                 log.error("Error while retrieving peerinfo for peer {}", id, e);
             }
@@ -123,6 +138,133 @@ public class PeerInfoServiceImpl implements PeerInfoService {
         }
     }
 
-    private class PeerInfoUnavailableException extends Exception {
+    @Override
+    public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids) {
+        List<Identifier> candidates = new ArrayList<>(ids.size());
+        for (Identifier id : ids) {
+            if (unknownPeers.getIfPresent(id) == null) {
+                candidates.add(id);
+            }
+        }
+
+        try {
+            return cache.getAll(candidates);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            //some peers do not exist, the others have been loaded into the cache nevertheless
+            Map<Identifier, PeerInfo> peerInfos = cache.getAllPresent(candidates);
+            for (Identifier id : candidates) {
+                if (!peerInfos.containsKey(id)) {
+                    log.debug("No PeerInfo available for peer {}", id);
+                    unknownPeers.put(id, Boolean.TRUE);
+                }
+            }
+            return peerInfos;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("Error while retrieving peerinfo for peers {}", ids, e);
+        }
+        return cache.getAllPresent(candidates);
+    }
+
+    private static boolean isUnknownPeer(Throwable cause) {
+        return cause instanceof PeerInfoUnavailableException || cause instanceof NoSuchPeerException;
+    }
+
+    private void storeAddresses(final PeerInfo peerInfo) {
+        //speed up the retrieval (saving the data in the db might be expensive
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                dao.insertAll(peerInfo.getAddresses());
+            }
+        });
+    }
+
+    /**
+     * Loads entries from the peer manager in case of a cache miss.
+     */
+    private class PeerInfoLoader extends CacheLoader<Identifier, PeerInfo> {
+
+        @Override
+        public PeerInfo load(Identifier id) throws Exception {
+            log.debug("loading peerinfo for peer {} from peer manager", id);
+
+            final PeerInfo peerInfo = callback.getPeerInfo(id);
+
+            if (peerInfo == null) {
+                throw new PeerInfoUnavailableException();
+            }
+
+            storeAddresses(peerInfo);
+
+            return peerInfo;
+        }
+
+        @Override
+        public Map<Identifier, PeerInfo> loadAll(Iterable<? extends Identifier> keys) throws Exception {
+            Collection<Identifier> ids = new ArrayList<>();
+            for (Identifier key : keys) {
+                ids.add(key);
+            }
+            log.debug("loading peerinfo for {} peers from peer manager", ids.size());
+
+            Map<Identifier, PeerInfo> peerInfos = null;
+            if (callback instanceof BulkPeerInfoCallback) {
+                try {
+                    peerInfos = ((BulkPeerInfoCallback) callback).getPeerInfos(ids);
+                } catch (RuntimeException e) {
+                    //e.g., a single malformed peer fails the whole request, the others can still be resolved one by one
+                    log.warn("Could not load peerinfo for {} peers at once, loading them one by one", ids.size(), e);
+                }
+            }
+            if (peerInfos == null) {
+                peerInfos = loadEach(ids);
+            }
+
+            for (PeerInfo peerInfo : peerInfos.values()) {
+                storeAddresses(peerInfo);
+            }
+
+            return peerInfos;
+        }
+
+        private Map<Identifier, PeerInfo> loadEach(Collection<Identifier> ids) throws Exception {
+            Map<Identifier, PeerInfo> peerInfos = new HashMap<>();
+            for (Identifier id : ids) {
+                try {
+                    PeerInfo peerInfo = callback.getPeerInfo(id);
+                    if (peerInfo != null) {
+                        peerInfos.put(id, peerInfo);
+                    }
+                } catch (NoSuchPeerException e) {
+                    log.debug("No PeerInfo available for peer {}", id);
+                }
+            }
+            return peerInfos;
+        }
+
+        @Override
+        public ListenableFuture<PeerInfo> reload(final Identifier id, PeerInfo oldValue) throws Exception {
+            //the stale value is served until the new one has been loaded
+            ListenableFutureTask<PeerInfo> task = ListenableFutureTask.create(new Callable<PeerInfo>() {
+                @Override
+                public PeerInfo call() throws Exception {
+                    try {
+                        return load(id);
+                    } catch (Exception e) {
+                        if (isUnknownPeer(e)) {
+                            //the peer has been removed in the meantime
+                            cache.invalidate(id);
+                            unknownPeers.put(id, Boolean.TRUE);
+                        }
+                        throw e;
+                    }
+                }
+            });
+            refreshExecutor.execute(task);
+            return task;
+        }
+    }
+
+    private static class PeerInfoUnavailableException extends Exception {
     }
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of workers of the stages of the messaging and routing manager. A message passes
+ * the stages in the following order:
+ * <ol>
+ *     <li>ingest: accepts messages and handles acknowledgements and errors of adapters</li>
+ *     <li>route: determines the receivers, resolves peers and collectives and their adapters</li>
+ *     <li>policy: registers the delivery attempts at the policy enforcer</li>
+ *     <li>dispatch: publishes the messages to the broker</li>
+ *     <li>log: publishes the messages to the logging queue</li>
+ * </ol>
+ * The capacity of the queues of the stages is defined by the BackpressureConfiguration.
+ * The number of workers of a stage can never exceed the maximum number of workers,
+ * neither initially nor if it is changed at runtime.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class PipelineConfiguration {
+    public static final String INGEST = "ingest";
+    public static final String ROUTE = "route";
+    public static final String POLICY = "policy";
+    public static final String DISPATCH = "dispatch";
+    public static final String LOG = "log";
+
+    public static final int DEFAULT_MAX_WORKERS = 100;
+
+    private final Map<String, Integer> workers = new LinkedHashMap<>();
+    private int maxWorkers = DEFAULT_MAX_WORKERS;
+
+    public PipelineConfiguration() {
+        workers.put(INGEST, 4);
+        workers.put(ROUTE, 10);
+        workers.put(POLICY, 4);
+        workers.put(DISPATCH, 10);
+        workers.put(LOG, 4);
+    }
+
+    /**
+     * @param stage name of the stage
+     * @return number of workers of the stage
+     */
+    public int getWorkers(String stage) {
+        Integer count = workers.get(stage);
+        if (count == null) {
+            throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+        return count;
+    }
+
+    /**
+     * Sets the number of workers of a stage.
+     *
+     * @param stage name of the stage
+     * @param count number of workers, has to be positive
+     */
+    public void setWorkers(String stage, int count) {
+        if (!workers.containsKey(stage)) {
+            throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        if (count > maxWorkers) {
+            throw new IllegalArgumentException("Number of workers must not exceed " + maxWorkers);
+        }
+        workers.put(stage, count);
+    }
+
+    /**
+     * @return maximum number of workers of a stage
+     */
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    /**
+     * Sets the maximum number of workers of a stage.
+     *
+     * @param maxWorkers maximum number of workers, has to be at least the number of workers of every stage
+     */
+    public void setMaxWorkers(int maxWorkers) {
+        for (Map.Entry<String, Integer> entry : workers.entrySet()) {
+            if (entry.getValue() > maxWorkers) {
+                throw new IllegalArgumentException("Stage " + entry.getKey() + " has more than " + maxWorkers + " workers");
+            }
+        }
+        this.maxWorkers = maxWorkers;
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.broker.MessagePriority;
+import at.ac.tuwien.dsg.smartcom.statistic.Stage;
+import at.ac.tuwien.dsg.smartcom.statistic.StageStatistic;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage of the messaging and routing manager, i.e., a pool of workers with a bounded queue.
+ *
+ * Tasks are taken in the order of the priority class of their message, tasks of the same
+ * class in the order of their arrival. Every priority class may have at most the given
+ * capacity of tasks in the queue, hence data messages cannot take away the space of control
+ * messages. If the queue of a priority class is full, the caller decides whether the task is
+ * rejected, whether it waits for space or whether it executes the task itself (which slows
+ * down the preceding stage).
+ *
+ * The stage measures how long tasks wait in the queue and how long they take to be executed.
+ * The number of workers can be changed at runtime up to the maximum number of workers.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class PipelineStage implements Stage {
+    private static final Logger log = LoggerFactory.getLogger(PipelineStage.class);
+
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+    private final String name;
+    private final int maxWorkers;
+    private final int capacity;
+    private final Semaphore[] space = new Semaphore[PRIORITIES.length];
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong serviceTime = new AtomicLong();
+
+    public PipelineStage(String name, int workers, int capacity, int threadPriority) {
+        this(name, workers, PipelineConfiguration.DEFAULT_MAX_WORKERS, capacity, threadPriority);
+    }
+
+    /**
+     * @param name of the stage
+     * @param workers number of workers
+     * @param maxWorkers maximum number of workers that can be set at runtime
+     * @param capacity maximum number of queued tasks per priority class
+     * @param threadPriority priority of the worker threads
+     */
+    public PipelineStage(String name, int workers, int maxWorkers, int capacity, int threadPriority) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        if (workers > maxWorkers) {
+            throw new IllegalArgumentException("Number of workers must not exceed " + maxWorkers);
+        }
+        this.name = name;
+        this.maxWorkers = maxWorkers;
+        this.capacity = capacity;
+        for (int i = 0; i < space.length; i++) {
+            space[i] = new Semaphore(capacity);
+        }
+
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("MARM-" + name + "-thread-%d").setPriority(threadPriority).build());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Puts the task into the queue if there is space.
+     *
+     * @return false if the task has been rejected
+     */
+    public boolean offer(MessagePriority priority, Runnable task) {
+        if (!space[priority.ordinal()].tryAcquire()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return enqueue(priority, task);
+    }
+
+    /**
+     * Puts the task into the queue, waits for space if necessary.
+     *
+     * @param timeout maximum time (in ms) to wait for space, 0 waits until there is space
+     * @return false if the task has been rejected
+     */
+    public boolean offer(MessagePriority priority, Runnable task, long timeout) throws InterruptedException {
+        Semaphore semaphore = space[priority.ordinal()];
+        if (timeout <= 0) {
+            semaphore.acquire();
+        } else if (!semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return enqueue(priority, task);
+    }
+
+    /**
+     * Puts the task into the queue. If the queue is full, the task is executed
+     * by the calling thread instead.
+     */
+    public void execute(MessagePriority priority, Runnable task) {
+        if (executor.isShutdown()) {
+            log.debug("Discarding task, stage {} has been shut down", name);
+            return;
+        }
+
+        if (space[priority.ordinal()].tryAcquire() && enqueue(priority, task)) {
+            return;
+        }
+
+        callerRuns.incrementAndGet();
+        task.run();
+    }
+
+    private boolean enqueue(MessagePriority priority, Runnable task) {
+        try {
+            executor.execute(new StageTask(priority, task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            //the stage has been shut down
+            space[priority.ordinal()].release();
+            return false;
+        }
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            log.error("Could not await termination of stage {}. forcing shutdown", name, e);
+            executor.shutdownNow();
+        }
+    }
+
+    public int getWorkers() {
+        return executor.getCorePoolSize();
+    }
+
+    @Override
+    public synchronized void setWorkers(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        if (workers > maxWorkers) {
+            throw new IllegalArgumentException("Number of workers must not exceed " + maxWorkers);
+        }
+
+        //the maximum pool size must never be smaller than the core pool size
+        if (workers > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(workers);
+            executor.setCorePoolSize(workers);
+        } else {
+            executor.setCorePoolSize(workers);
+            executor.setMaximumPoolSize(workers);
+        }
+        executor.prestartAllCoreThreads();
+        log.info("Stage {} uses {} workers", name, workers);
+    }
+
+    /**
+     * @return number of tasks in the queue
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public StageStatistic getStatistic() {
+        long completed = this.completed.get();
+        return new StageStatistic(name, getWorkers(), executor.getActiveCount(),
+                getQueueSize(), capacity * PRIORITIES.length,
+                completed, rejected.get(), callerRuns.get(),
+                average(waitTime.get(), completed), average(serviceTime.get(), completed));
+    }
+
+    private static double average(long nanos, long count) {
+        return count == 0 ? 0 : (double) nanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private final class StageTask implements Runnable, Comparable<StageTask> {
+        private final MessagePriority priority;
+        private final Runnable task;
+        private final long sequence;
+        private final long enqueueTime;
+
+        private StageTask(MessagePriority priority, Runnable task) {
+            this.priority = priority;
+            this.task = task;
+            this.sequence = PipelineStage.this.sequence.getAndIncrement();
+            this.enqueueTime = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            space[priority.ordinal()].release();
+
+            long start = System.nanoTime();
+            waitTime.addAndGet(start - enqueueTime);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Task of stage {} failed", name, e);
+            } finally {
+                serviceTime.addAndGet(System.nanoTime() - start);
+                completed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(StageTask o) {
+            if (priority != o.priority) {
+                return priority.ordinal() < o.priority.ordinal() ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
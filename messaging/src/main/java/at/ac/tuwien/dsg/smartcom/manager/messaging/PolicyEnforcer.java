@@ -23,17 +23,31 @@ import at.ac.tuwien.dsg.smartcom.manager.messaging.policies.delivery.peer.Simple
 import at.ac.tuwien.dsg.smartcom.manager.messaging.policies.delivery.peer.SimplePreferredPeerPolicy;
 import at.ac.tuwien.dsg.smartcom.manager.messaging.policies.delivery.peer.SimpleToAllChannelsPeerPolicy;
 import at.ac.tuwien.dsg.smartcom.model.*;
+import at.ac.tuwien.dsg.smartcom.utils.HierarchicalTimingWheel;
 import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Keeps track of pending deliveries and enforces the delivery policies of peers and collectives
+ * whenever an acknowledgement or an error is received.
+ *
+ * Every pending delivery has a timeout that is registered in a hierarchical timing wheel. If neither
+ * an acknowledgement nor an error is received in time (e.g., because an adapter dropped the message),
+ * the delivery is considered as failed, its entries are purged and a timeout message is sent. The
+ * timeout is cancelled as soon as the delivery policy has been resolved.
+ *
+ * Senders can register a future for the outcome of a delivery, which is completed as soon as the
+ * delivery policy of the receiver has been resolved.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @author Ognjen Scekic
  * @version 1.0
@@ -44,13 +58,94 @@ public class PolicyEnforcer {
     private final static int COL_DS_SIZE = 1000;
     private final static int PEER_DS_SIZE = 10 * COL_DS_SIZE;
 
-    private final Map<DeliveryPolicyDataStructureKey, DeliveryPolicy> collectiveDatastruct = new ConcurrentHashMap<>(COL_DS_SIZE);
-    private final Map<DeliveryPolicyDataStructureKey, List<PeerPolicyDataStructureValueElement>> peerDatastruct = new ConcurrentHashMap<>(PEER_DS_SIZE);
+    private final ConcurrentMap<DeliveryPolicyDataStructureKey, CollectivePolicyDataStructureValue> collectiveDatastruct = new ConcurrentHashMap<>(COL_DS_SIZE);
+    private final ConcurrentMap<DeliveryPolicyDataStructureKey, PeerDeliveryRecord> peerDatastruct = new ConcurrentHashMap<>(PEER_DS_SIZE);
+    private final ConcurrentMap<DeliveryPolicyDataStructureKey, SettableFuture<DeliveryResult>> outcomes = new ConcurrentHashMap<>();
 
     private final MessagingAndRoutingManagerImpl marm;
+    private final DeliveryConfiguration configuration;
+    private final HierarchicalTimingWheel timeouts;
 
     public PolicyEnforcer(MessagingAndRoutingManagerImpl marm) {
+        this(marm, new DeliveryConfiguration());
+    }
+
+    public PolicyEnforcer(MessagingAndRoutingManagerImpl marm, DeliveryConfiguration configuration) {
         this.marm = marm;
+        this.configuration = configuration;
+        this.timeouts = new HierarchicalTimingWheel("DELIVERY-TIMEOUT", configuration.getTimerTick(), TimeUnit.MILLISECONDS);
+        this.timeouts.start();
+    }
+
+    /**
+     * Stops the timer of the delivery timeouts, pending deliveries will not expire anymore.
+     */
+    public void destroy() {
+        timeouts.stop();
+
+        //outcomes of pending deliveries will not be available anymore
+        for (SettableFuture<DeliveryResult> outcome : outcomes.values()) {
+            outcome.cancel(false);
+        }
+    }
+
+    /**
+     * Registers a future that is completed with the outcome of the delivery of a message. The future has
+     * to be registered before the message is routed, otherwise the outcome might be missed.
+     *
+     * @param msg message that has an id and a sender
+     * @param timeout in milliseconds after which the future is completed with a TIMEOUT result, 0 for no timeout
+     * @return future for the outcome of the delivery
+     */
+    ListenableFuture<DeliveryResult> registerDeliveryOutcome(final Message msg, final long timeout) {
+        final DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId());
+        final SettableFuture<DeliveryResult> outcome = SettableFuture.create();
+        outcomes.put(key, outcome);
+
+        //futures that are cancelled by the sender must not remain in the data structure
+        outcome.addListener(new Runnable() {
+            @Override
+            public void run() {
+                outcomes.remove(key, outcome);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        if (timeout > 0) {
+            final HierarchicalTimingWheel.Timeout expiration = timeouts.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.TIMEOUT, "No outcome of the delivery within " + timeout + " ms.");
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            outcome.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    expiration.cancel();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return outcome;
+    }
+
+    /**
+     * Completes the future for the outcome of the delivery of a message, if there is one.
+     *
+     * @param msgId id of the original message
+     * @param senderId sender of the original message
+     * @param status outcome of the delivery
+     * @param reason why the delivery failed or timed out, null otherwise
+     */
+    void completeDeliveryOutcome(Identifier msgId, Identifier senderId, DeliveryResult.Status status, String reason) {
+        if (msgId == null || senderId == null || outcomes.isEmpty()) {
+            return;
+        }
+
+        SettableFuture<DeliveryResult> outcome = outcomes.remove(new DeliveryPolicyDataStructureKey(msgId, senderId));
+        if (outcome != null) {
+            log.trace("Delivery of message {} resolved: {}", msgId, status);
+            outcome.set(new DeliveryResult(msgId, status, reason));
+        }
     }
 
     /**
@@ -58,21 +153,47 @@ public class PolicyEnforcer {
      * @param msg message
      * @param colInfo collective info
      */
-    public void registerCollectiveMessageDeliveryAttempt(Message msg, CollectiveInfo colInfo){
+    public void registerCollectiveMessageDeliveryAttempt(final Message msg, CollectiveInfo colInfo){
+        DeliveryPolicy deliveryPolicy;
 
         switch (colInfo.getDeliveryPolicy()){
             case TO_ANY:
-                collectiveDatastruct.put(new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId()), new SimpleToAnyCollectivePolicy(colInfo.getPeers().size()));
+                deliveryPolicy = new SimpleToAnyCollectivePolicy(colInfo.getPeers().size());
                 break;
 
             case TO_ALL_MEMBERS:
             default:
-                collectiveDatastruct.put(new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId()), new SimpleToAllCollectivePolicy(colInfo.getPeers().size()));
+                deliveryPolicy = new SimpleToAllCollectivePolicy(colInfo.getPeers().size());
                 break;
         }
+
+        final DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId());
+        final CollectivePolicyDataStructureValue value = new CollectivePolicyDataStructureValue(deliveryPolicy);
+        cancelTimeout(collectiveDatastruct.put(key, value));
+
+        //the members are known upfront, hence the slots of all members are created at once
+        PeerDeliveryRecord previous = peerDatastruct.put(key, new PeerDeliveryRecord(colInfo.getPeers(), true));
+        if (previous != null) {
+            previous.resolveAll();
+        }
+
+        long timeout = getTimeout(msg, configuration.getCollectiveTimeout());
+        if (timeout >= 0) {
+            value.timeout = timeouts.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expireCollectiveDelivery(msg, key, value);
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            //the delivery might have been resolved in the meantime
+            if (collectiveDatastruct.get(key) != value) {
+                value.timeout.cancel();
+            }
+        }
     }
 
-    public void registerPeerMessageDeliveryAttempt(Message msg, PeerInfo peerInfo, boolean isIntendedForCollective){
+    public void registerPeerMessageDeliveryAttempt(final Message msg, PeerInfo peerInfo, boolean isIntendedForCollective){
         DeliveryPolicy.Peer deliveryPolicyType = peerInfo.getDeliveryPolicy();
         DeliveryPolicy deliveryPolicy;
 
@@ -89,22 +210,118 @@ public class PolicyEnforcer {
                 break;
         }
 
-        DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId());
-        PeerPolicyDataStructureValueElement valEl = new PeerPolicyDataStructureValueElement(msg.getReceiverId(), deliveryPolicy, isIntendedForCollective);
+        final DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msg.getId(), msg.getSenderId());
+
+        PeerDeliveryRecord record = peerDatastruct.get(key);
+        if (record == null) {
+            PeerDeliveryRecord created = new PeerDeliveryRecord(Collections.singletonList(msg.getReceiverId()), isIntendedForCollective);
+            record = peerDatastruct.putIfAbsent(key, created);
+            if (record == null) {
+                record = created;
+            }
+        }
 
-        List<PeerPolicyDataStructureValueElement> values = peerDatastruct.get(key);
+        final int slot = record.slot(msg.getReceiverId());
+        if (slot < 0 || !record.register(slot, deliveryPolicy)) {
+            log.debug("Peer {} is not part of the delivery of message {} or has already been registered", msg.getReceiverId(), msg.getId());
+            return;
+        }
 
-        if (values == null) {
-            synchronized(peerDatastruct) {
-                values = peerDatastruct.get(key);
-                if (values == null) {
-                    values = Collections.synchronizedList(new ArrayList<PeerPolicyDataStructureValueElement>());
-                    peerDatastruct.put(key, values);
+        long timeout = getTimeout(msg, configuration.getPeerTimeout());
+        if (timeout >= 0) {
+            final PeerDeliveryRecord expiringRecord = record;
+            record.setTimeout(slot, timeouts.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expirePeerDelivery(msg, key, expiringRecord, slot);
                 }
+            }, timeout, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Returns the timeout of a delivery. The ttl of a message overrides the default timeout,
+     * i.e., the delivery expires together with the message.
+     *
+     * @return timeout in milliseconds, -1 if the delivery should not expire
+     */
+    private long getTimeout(Message msg, long defaultTimeout) {
+        if (msg.getExpiration() > 0) {
+            return Math.max(msg.getExpiration() - System.currentTimeMillis(), 0);
+        }
+        return defaultTimeout > 0 ? defaultTimeout : -1;
+    }
+
+    /**
+     * Invoked by the timer if a peer did neither acknowledge a message nor report an error in time.
+     * The delivery to the peer is considered as failed. If the message has been sent to a collective,
+     * the failure is reported to the delivery policy of the collective, otherwise a timeout message
+     * is sent to the original sender.
+     */
+    private void expirePeerDelivery(Message msg, DeliveryPolicyDataStructureKey key, PeerDeliveryRecord record, int slot) {
+        if (!resolve(key, record, slot, false)) {
+            return; //resolved in the meantime
+        }
+
+        Identifier peer = record.getPeer(slot);
+        log.debug("Delivery of message {} to peer {} timed out", msg.getId(), peer);
+        Message timeoutMsg = PredefinedMessageHelper.createTimeoutMessage(msg, "Delivery to peer " + peer.getId() + " timed out.");
+
+        if (record.isIntendedForCollective()) {
+            //the timeout counts as a failed delivery to a member of the collective
+            Message response = PredefinedMessageHelper.createCommunicationErrorMessage(msg, timeoutMsg.getContent());
+            if (collectiveDeliveryPolicyHasEntry(response)) {
+                enforceCollectiveDeliveryPolicy(response, timeoutMsg);
             }
+        } else {
+            completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.TIMEOUT, timeoutMsg.getContent());
+            marm.sendInternal(timeoutMsg);
+        }
+    }
+
+    /**
+     * Resolves the delivery to a single peer and evicts the record if no delivery is pending anymore.
+     *
+     * @return false if the delivery has already been resolved
+     */
+    private boolean resolve(DeliveryPolicyDataStructureKey key, PeerDeliveryRecord record, int slot, boolean success) {
+        if (!record.resolve(slot, success)) {
+            return false;
+        }
+        if (record.isResolved()) {
+            peerDatastruct.remove(key, record);
+        }
+        return true;
+    }
+
+    /**
+     * Invoked by the timer if the delivery policy of a collective has not been resolved in time.
+     * The delivery is considered as failed, all entries are purged and a timeout message is sent
+     * to the original sender.
+     */
+    private void expireCollectiveDelivery(Message msg, DeliveryPolicyDataStructureKey key, CollectivePolicyDataStructureValue value) {
+        if (!collectiveDatastruct.remove(key, value)) {
+            return; //resolved in the meantime
         }
+        discardAllCorrespondingEntriesInPeerDeliveryPolicyDataStructure(key);
+
+        log.debug("Delivery of message {} to collective {} timed out", msg.getId(), msg.getReceiverId());
+        Message timeoutMsg = PredefinedMessageHelper.createTimeoutMessage(msg, "Delivery to collective " + msg.getReceiverId().getId() + " timed out.");
+        completeDeliveryOutcome(msg.getId(), msg.getSenderId(), DeliveryResult.Status.TIMEOUT, timeoutMsg.getContent());
+        marm.sendInternal(timeoutMsg);
+    }
+
+    private void cancelTimeout(CollectivePolicyDataStructureValue value) {
+        if (value != null && value.timeout != null) {
+            value.timeout.cancel();
+        }
+    }
 
-        values.add(valEl);
+    /**
+     * @return number of deliveries that have not been resolved yet and will time out
+     */
+    int getPendingTimeouts() {
+        return timeouts.size();
     }
 
     /**
@@ -116,6 +333,14 @@ public class PolicyEnforcer {
      * @param msg -- response message received from and input adapter, containing: sender:=adapter/peer(original receiver), receiver:=original sender, refersTo:=original message id
      */
     void enforceCollectiveDeliveryPolicy(Message msg){
+        enforceCollectiveDeliveryPolicy(msg, null);
+    }
+
+    /**
+     * @param msg -- response message, see enforceCollectiveDeliveryPolicy(Message)
+     * @param failureMsg -- message that is sent if the policy failed, null to send a delivery error message
+     */
+    private void enforceCollectiveDeliveryPolicy(Message msg, Message failureMsg){
         //from the message obtained from msg.getRefersTo() get the message id, while from msg.getSenderId() we get the sender to look up the entry in the data structure
         try{
             boolean policySucceeded = checkCollectiveDeliveryPolicy(msg); //return true if policy conclusively succeeded, false if still valid but still not succeeded, Exception if conclusively failed.
@@ -123,6 +348,7 @@ public class PolicyEnforcer {
                 //collectiveDiscardCondition.lock(); //with the concurrent map should also work without this
                 discardAllCorrespondingEntriesInPeerDeliveryPolicyDataStructure(msg);
                 discardCollectivePolicyEntry(msg.getRefersTo(), msg.getReceiverId());
+                completeDeliveryOutcome(msg.getRefersTo(), msg.getReceiverId(), DeliveryResult.Status.DELIVERED, null);
 
                 if (DeliveryPolicy.Message.ACKNOWLEDGED.equals(msg.getDelivery())) {
                     marm.handleMessage(PredefinedMessageHelper.createAcknowledgeMessageFromAdaptersAcknowledgeMessage(msg));
@@ -137,7 +363,13 @@ public class PolicyEnforcer {
             //this implies that I want the broker to deliver me messages which will have:
             //sender=the actual peer that failed/succeeded, receiver: the component who originally sent the message to which they are replying to
             //plus refersTo field, containing the id of the original message
-            marm.handleMessage(PredefinedMessageHelper.createDeliveryErrorMessageFromAdaptersCommunicationErrorMessage(msg, "Collective delivery policy failed."));
+            if (failureMsg != null) {
+                completeDeliveryOutcome(msg.getRefersTo(), msg.getReceiverId(), DeliveryResult.Status.TIMEOUT, failureMsg.getContent());
+                marm.sendInternal(failureMsg);
+            } else {
+                completeDeliveryOutcome(msg.getRefersTo(), msg.getReceiverId(), DeliveryResult.Status.FAILED, "Collective delivery policy failed.");
+                marm.handleMessage(PredefinedMessageHelper.createDeliveryErrorMessageFromAdaptersCommunicationErrorMessage(msg, "Collective delivery policy failed."));
+            }
         }
     }
 
@@ -157,6 +389,7 @@ public class PolicyEnforcer {
                 }else{
                     if (isMessagePartOfOriginalCollectiveDelivery) return; //if the original message was for collective and there is no collective entry anymore, then no ACKs should be sent, because it should have been sent already
 
+                    completeDeliveryOutcome(msg.getRefersTo(), msg.getReceiverId(), DeliveryResult.Status.DELIVERED, null);
                     if (DeliveryPolicy.Message.ACKNOWLEDGED.equals(msg.getDelivery())){
                         marm.handleMessage(PredefinedMessageHelper.createAcknowledgeMessageFromAdaptersAcknowledgeMessage(msg));
                     }
@@ -172,6 +405,7 @@ public class PolicyEnforcer {
             }else{
                 //send ERR to TEE
                 Message errMsg = PredefinedMessageHelper.createDeliveryErrorMessageFromAdaptersCommunicationErrorMessage(msg, "Peer delivery policy failed.");
+                completeDeliveryOutcome(msg.getRefersTo(), msg.getReceiverId(), DeliveryResult.Status.FAILED, "Peer delivery policy failed.");
                 marm.handleMessage(errMsg);
             }
         }
@@ -187,18 +421,17 @@ public class PolicyEnforcer {
         Identifier senderID_keypart = msg.getReceiverId();
 
         DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msgID_keypart, senderID_keypart);
-        if (!peerDatastruct.containsKey(key))
-            return true; //if entry is not there, it was evicted by the response message fulfilling the collective policy
+        PeerDeliveryRecord record = peerDatastruct.get(key);
 
-        List<PeerPolicyDataStructureValueElement> valEls = peerDatastruct.get(key);
-        //someone else just purged the data structure, so return true, as it will send the ACK
-        return (valEls == null || valEls.size() == 0 || valEls.get(0).isIntendedForCollective);
+        //if entry is not there, it was evicted by the response message fulfilling the collective policy
+        return record == null || record.isIntendedForCollective();
     }
 
     /**
      * Invalidates a particular entry from the peer delivery data structure.
-     * Returns false immediately if there is no such entry, otherwise evicts and returns true.
-     * Covers the case that another thread deleted the entry in the meantime
+     * Returns false immediately if there is no such entry or if it has already been invalidated
+     * (e.g., by another thread in the meantime), otherwise invalidates it and returns true.
+     * The whole record is evicted as soon as no entry is valid anymore.
      *
      * @param msg message
      */
@@ -208,39 +441,17 @@ public class PolicyEnforcer {
         Identifier senderID_keypart = msg.getReceiverId();
 
         DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msgID_keypart, senderID_keypart);
-        if (!peerDatastruct.containsKey(key)) return false;
-        //Although here a race-condition may happen, since HashMap.remove is idempotent,
-        //so trying to remove again will make no harm. Returning true will just cost another check in the collectiveDeliveryDatastructure
-
-        List<PeerPolicyDataStructureValueElement> valEls = peerDatastruct.get(key);
-
-        if (valEls == null || valEls.size() == 0) return false;
-
-        boolean returnVal = false;
-
-        int n, i;
-        synchronized (valEls){
-            n = valEls.size();
-            i = 0;
-            for (PeerPolicyDataStructureValueElement e : valEls){
-                if (e.peer.getId().equals(msg.getSenderId().getId())) {
-                    e.valid = false; //invalidate that particular entry
-                    returnVal = true;
-                }
-                if (!e.valid) i++;
-            }
-
-        }
-        if (n == i){ //evict all
-            peerDatastruct.remove(key);
-        }
+        PeerDeliveryRecord record = peerDatastruct.get(key);
+        if (record == null) return false;
 
-        //returnVal should be TRUE here. Otherwise, an incorrect msg.getSenderId() was supplied
-        if(!returnVal) {
+        int slot = record.slot(msg.getSenderId());
+        if (slot < 0) {
+            //an incorrect msg.getSenderId() was supplied
             log.debug("Unclean attempt at evicting the peer entry: <{},{},{}> ", msgID_keypart.toString(), senderID_keypart.toString(), msg.getSenderId().toString());
+            return false;
         }
 
-        return returnVal;
+        return resolve(key, record, slot, PredefinedMessageHelper.ACK_SUBTYPE.equals(msg.getSubtype()));
     }
 
 
@@ -252,30 +463,19 @@ public class PolicyEnforcer {
      */
     boolean discardAllCorrespondingEntriesInPeerDeliveryPolicyDataStructure(Message msg){
 
-        Identifier msgID_keypart = msg.getRefersTo();
-        Identifier senderID_keypart = msg.getReceiverId();
-
-        DeliveryPolicyDataStructureKey key = new DeliveryPolicyDataStructureKey(msgID_keypart, senderID_keypart);
-        if (!peerDatastruct.containsKey(key)) return false;
-        //Although here a race-condition may happen, since HashMap.remove is idempotent,
-        //so trying to remove again will make no harm. Returning true will just cost another check in the collectiveDeliveryDatastructure
-
-        List<PeerPolicyDataStructureValueElement> valEls = peerDatastruct.get(key);
-
-        if (valEls == null || valEls.size() == 0) return false;
+        return discardAllCorrespondingEntriesInPeerDeliveryPolicyDataStructure(new DeliveryPolicyDataStructureKey(msg.getRefersTo(), msg.getReceiverId()));
+    }
 
-        peerDatastruct.remove(key);
+    private boolean discardAllCorrespondingEntriesInPeerDeliveryPolicyDataStructure(DeliveryPolicyDataStructureKey key){
+        PeerDeliveryRecord record = peerDatastruct.remove(key);
+        if (record == null) return false;
 
-        synchronized (valEls){
-            for (PeerPolicyDataStructureValueElement e : valEls){
-                e.valid = false;
-            }
-        }
+        record.resolveAll();
         return true;
     }
 
     void discardCollectivePolicyEntry(Identifier msgID_keypart, Identifier senderID_keypart){
-        collectiveDatastruct.remove(new DeliveryPolicyDataStructureKey(msgID_keypart, senderID_keypart));
+        cancelTimeout(collectiveDatastruct.remove(new DeliveryPolicyDataStructureKey(msgID_keypart, senderID_keypart)));
     }
 
     /**
@@ -287,12 +487,14 @@ public class PolicyEnforcer {
      */
     boolean checkCollectiveDeliveryPolicy(Message msg) throws Exception {
 
-        DeliveryPolicy policy = collectiveDatastruct.get(new DeliveryPolicyDataStructureKey(msg.getRefersTo(), msg.getReceiverId()));
+        CollectivePolicyDataStructureValue value = collectiveDatastruct.get(new DeliveryPolicyDataStructureKey(msg.getRefersTo(), msg.getReceiverId()));
 
-        if (policy == null) {
+        if (value == null) {
             return false;
         }
 
+        DeliveryPolicy policy = value.policy;
+
         if (PredefinedMessageHelper.ACK_SUBTYPE.equals(msg.getSubtype())){
             return policy.check(DeliveryPolicy.CHECK_ACK);
         } else {
@@ -309,28 +511,19 @@ public class PolicyEnforcer {
      */
     boolean checkPeerDeliveryPolicy(Message msg) throws Exception {
 
-        List<PeerPolicyDataStructureValueElement> list = peerDatastruct.get(new DeliveryPolicyDataStructureKey(msg.getRefersTo(), msg.getReceiverId())); //we switch places of sender and receiver here, because the input param msg is the one received back prom input adapter, meaning that the sender is the original receiver, and vice versa
+        PeerDeliveryRecord record = peerDatastruct.get(new DeliveryPolicyDataStructureKey(msg.getRefersTo(), msg.getReceiverId())); //we switch places of sender and receiver here, because the input param msg is the one received back prom input adapter, meaning that the sender is the original receiver, and vice versa
 
-        if (list == null) {
+        if (record == null) {
             return false; //entry already evicted
         }
 
-        PeerPolicyDataStructureValueElement searchedFor = null;
-        synchronized(list){ //must be synchronized, in case another thread tries to write into the list
-            for (PeerPolicyDataStructureValueElement el : list){ //should be fairly quick, considering the average size of a collective <100
-                if (el.peer.equals(msg.getSenderId())) {
-                    searchedFor = el;
-                    break;
-                }
-            }
-        }
+        int slot = record.slot(msg.getSenderId());
+        DeliveryPolicy policy = slot < 0 ? null : record.getPolicy(slot);
 
-        if (searchedFor == null) {
+        if (policy == null) {
             return false; //entry already evicted
         }
 
-        DeliveryPolicy policy = searchedFor.policy;
-
         if (PredefinedMessageHelper.ACK_SUBTYPE.equals(msg.getSubtype())){
             return policy.check(DeliveryPolicy.CHECK_ACK);
         } else {
@@ -387,17 +580,12 @@ public class PolicyEnforcer {
         }
     }
 
-    public class PeerPolicyDataStructureValueElement{
-        final Identifier peer;
+    public class CollectivePolicyDataStructureValue {
         final DeliveryPolicy policy;
-        boolean valid;
-        boolean isIntendedForCollective;
+        volatile HierarchicalTimingWheel.Timeout timeout;
 
-        public PeerPolicyDataStructureValueElement(Identifier peer, DeliveryPolicy policy, boolean forCollective){
-            this.peer = peer;
+        public CollectivePolicyDataStructureValue(DeliveryPolicy policy) {
             this.policy = policy;
-            this.valid = true;
-            this.isIntendedForCollective = forCollective;
         }
     }
 }
@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+
+import java.util.*;
+
+/**
+ * Immutable index of the routing rules that is compiled from the rules of the
+ * RoutingRuleEngine and replaced as a whole whenever the rules change.
+ *
+ * The routes of all rules that share the same type, subtype, receiver and sender
+ * are stored in a single open addressing table. Fields of a rule that are not
+ * defined act as a wildcard. A bitmask records which combinations of wildcards
+ * are used by at least one rule, so that a lookup only probes the table for
+ * combinations that can actually match. Routes of rules with a predicate are
+ * kept apart from the others and their predicate is only evaluated for the
+ * entries that have been found this way.
+ *
+ * Lookups do not lock and do not allocate anything if at most one entry of the
+ * table matches and it has no predicates, otherwise a single result array is allocated.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+final class RoutingIndex {
+
+    static final RoutingIndex EMPTY = new RoutingIndex(Collections.<Key, Collection<Route>>emptyMap());
+
+    private static final int TYPE = 1;
+    private static final int SUBTYPE = 1 << 1;
+    private static final int RECEIVER = 1 << 2;
+    private static final int SENDER = 1 << 3;
+    private static final int COMBINATIONS = 1 << 4;
+
+    /**
+     * Results with more routes are deduplicated using a hash set instead of a linear scan
+     */
+    private static final int LINEAR_DEDUPLICATION_LIMIT = 32;
+
+    private final String[] types;
+    private final String[] subtypes;
+    private final Identifier[] receivers;
+    private final Identifier[] senders;
+    private final List<Identifier>[] routes;
+    private final Route[][] conditionalRoutes;
+    private final int mask;
+
+    /**
+     * Bit i is set if there is a rule whose undefined fields correspond to the wildcard combination i
+     */
+    private final int wildcards;
+
+    /**
+     * @param entries routes per key
+     */
+    @SuppressWarnings("unchecked")
+    RoutingIndex(Map<Key, ? extends Collection<Route>> entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries.size() * 2, 1) * 2 - 1);
+        if (capacity < 2) {
+            capacity = 2;
+        }
+
+        types = new String[capacity];
+        subtypes = new String[capacity];
+        receivers = new Identifier[capacity];
+        senders = new Identifier[capacity];
+        routes = new List[capacity];
+        conditionalRoutes = new Route[capacity][];
+        mask = capacity - 1;
+
+        int wildcards = 0;
+        for (Map.Entry<Key, ? extends Collection<Route>> entry : entries.entrySet()) {
+            Key key = entry.getKey();
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+
+            int i = hash(key.type, key.subtype, key.receiver, key.sender) & mask;
+            while (routes[i] != null) {
+                i = (i + 1) & mask;
+            }
+
+            types[i] = key.type;
+            subtypes[i] = key.subtype;
+            receivers[i] = key.receiver;
+            senders[i] = key.sender;
+
+            Set<Identifier> unconditional = new LinkedHashSet<>();
+            List<Route> conditional = new ArrayList<>();
+            for (Route route : entry.getValue()) {
+                if (route.predicate == null) {
+                    unconditional.add(route.route);
+                } else {
+                    conditional.add(route);
+                }
+            }
+
+            routes[i] = Collections.unmodifiableList(Arrays.asList(unconditional.toArray(new Identifier[unconditional.size()])));
+            if (!conditional.isEmpty()) {
+                conditionalRoutes[i] = conditional.toArray(new Route[conditional.size()]);
+            }
+
+            wildcards |= 1 << wildcardsOf(key.type, key.subtype, key.receiver, key.sender);
+        }
+        this.wildcards = wildcards;
+    }
+
+    /**
+     * Returns the distinct routes of all rules that match a message with the given fields.
+     * Fields that are null only match rules where the field is not defined, all other
+     * fields match rules with the same value or where the field is not defined. Predicates
+     * of the rules are evaluated on the message.
+     *
+     * @return unmodifiable collection of routes
+     */
+    Collection<Identifier> lookup(String type, String subtype, Identifier receiver, Identifier sender, Message message) {
+        int undefined = wildcardsOf(type, subtype, receiver, sender);
+
+        int first = -1;
+        int matches = 0;
+        int total = 0;
+        boolean conditional = false;
+
+        for (int combination = 0; combination < COMBINATIONS; combination++) {
+            if ((combination & undefined) != undefined || (wildcards & (1 << combination)) == 0) {
+                continue;
+            }
+
+            int slot = find(combination, type, subtype, receiver, sender);
+            if (slot >= 0) {
+                if (first < 0) {
+                    first = slot;
+                }
+                matches++;
+                total += routes[slot].size();
+
+                if (conditionalRoutes[slot] != null) {
+                    conditional = true;
+                    total += conditionalRoutes[slot].length;
+                }
+            }
+        }
+
+        if (matches == 0) {
+            return Collections.emptyList();
+        } else if (matches == 1 && !conditional) {
+            return routes[first];
+        }
+
+        return merge(undefined, total, type, subtype, receiver, sender, message);
+    }
+
+    private Collection<Identifier> merge(int undefined, int total, String type, String subtype, Identifier receiver, Identifier sender, Message message) {
+        if (total > LINEAR_DEDUPLICATION_LIMIT) {
+            Set<Identifier> result = new LinkedHashSet<>(total * 2);
+            for (int combination = 0; combination < COMBINATIONS; combination++) {
+                if ((combination & undefined) != undefined || (wildcards & (1 << combination)) == 0) {
+                    continue;
+                }
+
+                int slot = find(combination, type, subtype, receiver, sender);
+                if (slot < 0) {
+                    continue;
+                }
+
+                result.addAll(routes[slot]);
+                if (conditionalRoutes[slot] != null) {
+                    for (Route route : conditionalRoutes[slot]) {
+                        if (route.predicate.matches(message)) {
+                            result.add(route.route);
+                        }
+                    }
+                }
+            }
+            return Collections.unmodifiableSet(result);
+        }
+
+        Identifier[] result = new Identifier[total];
+        int size = 0;
+        for (int combination = 0; combination < COMBINATIONS; combination++) {
+            if ((combination & undefined) != undefined || (wildcards & (1 << combination)) == 0) {
+                continue;
+            }
+
+            int slot = find(combination, type, subtype, receiver, sender);
+            if (slot < 0) {
+                continue;
+            }
+
+            List<Identifier> found = routes[slot];
+            for (int i = 0; i < found.size(); i++) {
+                Identifier route = found.get(i);
+                if (!contains(result, size, route)) {
+                    result[size++] = route;
+                }
+            }
+
+            if (conditionalRoutes[slot] != null) {
+                for (Route route : conditionalRoutes[slot]) {
+                    if (!contains(result, size, route.route) && route.predicate.matches(message)) {
+                        result[size++] = route.route;
+                    }
+                }
+            }
+        }
+        return size == 0 ? Collections.<Identifier>emptyList() : new ResultList(result, size);
+    }
+
+    /**
+     * @return slot of the entry with the given fields, where the fields of the combination
+     * are treated as undefined, or -1 if there is no such entry
+     */
+    private int find(int combination, String type, String subtype, Identifier receiver, Identifier sender) {
+        if ((combination & TYPE) != 0) type = null;
+        if ((combination & SUBTYPE) != 0) subtype = null;
+        if ((combination & RECEIVER) != 0) receiver = null;
+        if ((combination & SENDER) != 0) sender = null;
+
+        int i = hash(type, subtype, receiver, sender) & mask;
+        while (routes[i] != null) {
+            if (equal(types[i], type) && equal(subtypes[i], subtype)
+                    && equal(receivers[i], receiver) && equal(senders[i], sender)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean contains(Identifier[] array, int size, Identifier value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    private static int wildcardsOf(String type, String subtype, Identifier receiver, Identifier sender) {
+        int combination = 0;
+        if (type == null) combination |= TYPE;
+        if (subtype == null) combination |= SUBTYPE;
+        if (receiver == null) combination |= RECEIVER;
+        if (sender == null) combination |= SENDER;
+        return combination;
+    }
+
+    private static int hash(String type, String subtype, Identifier receiver, Identifier sender) {
+        int h = type == null ? 0 : type.hashCode();
+        h = 31 * h + (subtype == null ? 0 : subtype.hashCode());
+        h = 31 * h + (receiver == null ? 0 : receiver.hashCode());
+        h = 31 * h + (sender == null ? 0 : sender.hashCode());
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Type, subtype, receiver and sender of a routing rule, used to compile the index.
+     */
+    static final class Key {
+        private final String type;
+        private final String subtype;
+        private final Identifier receiver;
+        private final Identifier sender;
+
+        Key(String type, String subtype, Identifier receiver, Identifier sender) {
+            this.type = type;
+            this.subtype = subtype;
+            this.receiver = receiver;
+            this.sender = sender;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+            return equal(type, that.type) && equal(subtype, that.subtype)
+                    && equal(receiver, that.receiver) && equal(sender, that.sender);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash(type, subtype, receiver, sender);
+        }
+    }
+
+    /**
+     * Route of a routing rule and its compiled predicate, if there is one.
+     */
+    static final class Route {
+        private final Identifier route;
+        private final MessagePredicate predicate;
+
+        Route(Identifier route, MessagePredicate predicate) {
+            this.route = route;
+            this.predicate = predicate;
+        }
+    }
+
+    private static final class ResultList extends AbstractList<Identifier> implements RandomAccess {
+        private final Identifier[] elements;
+        private final int size;
+
+        private ResultList(Identifier[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        public Identifier get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
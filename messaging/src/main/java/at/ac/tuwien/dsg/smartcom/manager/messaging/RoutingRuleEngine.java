@@ -27,69 +27,80 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Routes messages according to routing rules that match their type, subtype,
+ * receiver and sender, where undefined fields of a rule act as a wildcard.
+ * Rules may additionally define a predicate on the content or the conversation
+ * id of a message, which is compiled when the rule is added.
+ *
+ * The rules are kept in nested maps that are only accessed when rules are added
+ * or removed. Messages are routed using an immutable RoutingIndex that is compiled
+ * from these maps and replaced whenever the rules change, hence routing does
+ * neither lock nor traverse the maps. The index is compiled lazily by the first
+ * message that is routed after a change, so that adding many rules at once does
+ * not compile the index over and over again.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
 public class RoutingRuleEngine {
 
-    protected final Map<String, Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>>> routing =
-            Collections.synchronizedMap(new HashMap<String, Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>>>());
+    /**
+     * Rules grouped by type, subtype, receiver and sender, guarded by itself
+     */
+    protected final Map<String, Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>>> routing = new HashMap<>();
 
     private final Map<Identifier, RoutingRule> rules = new ConcurrentHashMap<>();
+    private final Map<Identifier, MessagePredicate> predicates = new ConcurrentHashMap<>();
+
+    /**
+     * Compiled index of the current rules, null if the rules have changed since the last compilation
+     */
+    private volatile RoutingIndex index = RoutingIndex.EMPTY;
 
     public Identifier addRouting(RoutingRule rule) throws InvalidRuleException {
 
         validateRule(rule);
 
+        MessagePredicate predicate = null;
+        if (rule.getPredicate() != null) {
+            predicate = MessagePredicate.compile(rule.getPredicate());
+        }
+
         Identifier id = Identifier.routing(KeyProvider.generateUniqueIdString());
 
-        Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>> step1 = routing.get(rule.getType());
-        if (step1 == null) {
-            synchronized (routing) {
-                step1 = routing.get(rule.getType());
-                if (step1 == null) {
-                    step1 = Collections.synchronizedMap(new HashMap<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>>());
-                    routing.put(rule.getType(), step1);
-                }
+        synchronized (routing) {
+            Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>> step1 = routing.get(rule.getType());
+            if (step1 == null) {
+                step1 = new HashMap<>();
+                routing.put(rule.getType(), step1);
             }
-        }
 
-        Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>> step2 = step1.get(rule.getSubtype());
-        if (step2 == null) {
-            synchronized (step1) {
-                step2 = step1.get(rule.getSubtype());
-                if (step2 == null) {
-                    step2 = Collections.synchronizedMap(new HashMap<Identifier, Map<Identifier, Map<Identifier, Identifier>>>());
-                    step1.put(rule.getSubtype(), step2);
-                }
+            Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>> step2 = step1.get(rule.getSubtype());
+            if (step2 == null) {
+                step2 = new HashMap<>();
+                step1.put(rule.getSubtype(), step2);
             }
-        }
 
-        Map<Identifier, Map<Identifier, Identifier>> step3 = step2.get(rule.getReceiver());
-        if (step3 == null) {
-            synchronized (step2) {
-                step3 = step2.get(rule.getReceiver());
-                if (step3 == null) {
-                    step3 = Collections.synchronizedMap(new HashMap<Identifier, Map<Identifier, Identifier>>());
-                    step2.put(rule.getReceiver(), step3);
-                }
+            Map<Identifier, Map<Identifier, Identifier>> step3 = step2.get(rule.getReceiver());
+            if (step3 == null) {
+                step3 = new HashMap<>();
+                step2.put(rule.getReceiver(), step3);
             }
-        }
 
-        Map<Identifier, Identifier> step4 = step3.get(rule.getSender());
-        if (step4 == null) {
-            synchronized (step3) {
-                step4 = step3.get(rule.getSender());
-                if (step4 == null) {
-                    step4 = Collections.synchronizedMap(new HashMap<Identifier, Identifier>());
-                    step3.put(rule.getSender(), step4);
-                }
+            Map<Identifier, Identifier> step4 = step3.get(rule.getSender());
+            if (step4 == null) {
+                step4 = new HashMap<>();
+                step3.put(rule.getSender(), step4);
             }
-        }
 
-        step4.put(id, rule.getRoute());
+            step4.put(id, rule.getRoute());
 
-        rules.put(id, rule);
+            rules.put(id, rule);
+            if (predicate != null) {
+                predicates.put(id, predicate);
+            }
+            index = null;
+        }
 
         return id;
     }
@@ -99,7 +110,7 @@ public class RoutingRuleEngine {
             throw new InvalidRuleException("Endpoint of the routing rule is not defined!");
         }
 
-        if (rule.getType() == null || rule.getType().isEmpty()) {
+        if (rule.getPredicate() == null && (rule.getType() == null || rule.getType().isEmpty())) {
             if (rule.getSubtype() == null || rule.getSubtype().isEmpty()) {
                 if (rule.getReceiver() == null || rule.getReceiver().getId() == null || rule.getReceiver().getId().isEmpty()) {
                     if (rule.getSender() == null || rule.getSender().getId() == null || rule.getSender().getId().isEmpty()) {
@@ -116,70 +127,39 @@ public class RoutingRuleEngine {
         Identifier receiver = (message.getReceiverId() == null || message.getReceiverId().getId() == null || message.getReceiverId().getId().isEmpty() ? null : message.getReceiverId());
         Identifier sender = (message.getSenderId() == null || message.getSenderId().getId() == null || message.getSenderId().getId().isEmpty() ? null : message.getSenderId());
 
-        return handleStep1(type, subtype, receiver, sender);
-    }
-
-    private Collection<Identifier> handleStep1(String type, String subtype, Identifier receiver, Identifier sender) {
-        Set<Identifier> list = new HashSet<>();
-
-        list.addAll(handleStep2(routing.get(type), subtype, receiver, sender));
-        if (type != null) {
-            list.addAll(handleStep2(routing.get(null), subtype, receiver, sender));
+        RoutingIndex current = index;
+        if (current == null) {
+            current = compile();
         }
 
-        return list;
+        return current.lookup(type, subtype, receiver, sender, message);
     }
 
-    private Collection<Identifier> handleStep2(Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>> step1, String subtype, Identifier receiver, Identifier sender) {
-        if (step1 == null) {
-            return Collections.emptyList();
-        }
-
-        Set<Identifier> list = new HashSet<>();
-
-        list.addAll(handleStep3(step1.get(subtype), receiver, sender));
-        if (subtype != null) {
-            list.addAll(handleStep3(step1.get(null), receiver, sender));
-        }
-
-        return list;
-    }
-
-    private Collection<Identifier> handleStep3(Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>> step2, Identifier receiver, Identifier sender) {
-        if (step2 == null) {
-            return Collections.emptyList();
-        }
-
-        Set<Identifier> list = new HashSet<>();
-
-        list.addAll(handleStep4(step2.get(receiver), sender));
-        if (receiver != null) {
-            list.addAll(handleStep4(step2.get(null), sender));
-        }
-
-        return list;
-    }
-
-    private Collection<Identifier> handleStep4(Map<Identifier, Map<Identifier, Identifier>> step3, Identifier sender) {
-        if (step3 == null) {
-            return Collections.emptyList();
-        }
-
-        Set<Identifier> list = new HashSet<>();
-
-        list.addAll(handleStep5(step3.get(sender)));
-        if (sender != null) {
-            list.addAll(handleStep5(step3.get(null)));
-        }
+    private RoutingIndex compile() {
+        synchronized (routing) {
+            if (index != null) {
+                return index;
+            }
 
-        return list;
-    }
+            Map<RoutingIndex.Key, Collection<RoutingIndex.Route>> entries = new HashMap<>();
+            for (Map.Entry<String, Map<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>>> step1 : routing.entrySet()) {
+                for (Map.Entry<String, Map<Identifier, Map<Identifier, Map<Identifier, Identifier>>>> step2 : step1.getValue().entrySet()) {
+                    for (Map.Entry<Identifier, Map<Identifier, Map<Identifier, Identifier>>> step3 : step2.getValue().entrySet()) {
+                        for (Map.Entry<Identifier, Map<Identifier, Identifier>> step4 : step3.getValue().entrySet()) {
+                            List<RoutingIndex.Route> routes = new ArrayList<>(step4.getValue().size());
+                            for (Map.Entry<Identifier, Identifier> route : step4.getValue().entrySet()) {
+                                routes.add(new RoutingIndex.Route(route.getValue(), predicates.get(route.getKey())));
+                            }
+                            entries.put(new RoutingIndex.Key(step1.getKey(), step2.getKey(), step3.getKey(), step4.getKey()), routes);
+                        }
+                    }
+                }
+            }
 
-    private Collection<Identifier> handleStep5(Map<Identifier, Identifier> step4) {
-        if (step4 != null) {
-            return step4.values();
+            RoutingIndex compiled = new RoutingIndex(entries);
+            index = compiled;
+            return compiled;
         }
-        return Collections.emptyList();
     }
 
     public RoutingRule removeRouting(Identifier routeId) {
@@ -196,6 +176,7 @@ public class RoutingRuleEngine {
                             Map<Identifier, Identifier> step4 = step3.get(rule.getSender());
                             if (step4 != null) {
                                 step4.remove(routeId);
+                                predicates.remove(routeId);
 
                                 //clean up if they are empty
                                 if (step4.size() == 0) {
@@ -214,6 +195,7 @@ public class RoutingRuleEngine {
                         }
                     }
                 }
+                index = null;
             }
         }
 
@@ -221,6 +203,11 @@ public class RoutingRuleEngine {
     }
 
     public void clear() {
-        rules.clear();
+        synchronized (routing) {
+            rules.clear();
+            predicates.clear();
+            routing.clear();
+            index = RoutingIndex.EMPTY;
+        }
     }
 }
@@ -26,12 +26,16 @@ import org.picocontainer.annotations.Inject;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.List;
 
 /**
+ * Persists all messages that are published to the log queue. Messages are persisted
+ * in batches to reduce the number of database operations.
+ *
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
  */
-public class LoggingService implements MessageListener {
+public class LoggingService implements BatchMessageListener {
 
     @Inject
     private LoggingDAO dao;
@@ -67,4 +71,12 @@ public class LoggingService implements MessageListener {
         statistic.logReceived();
         dao.persist(message);
     }
+
+    @Override
+    public void onMessages(List<Message> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            statistic.logReceived();
+        }
+        dao.persist(messages);
+    }
 }
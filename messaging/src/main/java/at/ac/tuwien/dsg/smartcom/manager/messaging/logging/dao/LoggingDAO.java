@@ -19,6 +19,8 @@ package at.ac.tuwien.dsg.smartcom.manager.messaging.logging.dao;
 
 import at.ac.tuwien.dsg.smartcom.model.Message;
 
+import java.util.List;
+
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
  * @version 1.0
@@ -31,4 +33,11 @@ public interface LoggingDAO {
      * @param message
      */
     public void persist(Message message);
+
+    /**
+     * Persists several messages at once in an underlying database system.
+     *
+     * @param messages
+     */
+    public void persist(List<Message> messages);
 }
@@ -21,12 +21,15 @@ import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
@@ -54,6 +57,16 @@ public class MongoDBLoggingDAO implements LoggingDAO {
         coll.insert(dbObject);
     }
 
+    @Override
+    public void persist(List<Message> messages) {
+        log.trace("Persisting {} messages to log", messages.size());
+        List<DBObject> dbObjects = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            dbObjects.add(serializeMessage(message));
+        }
+        coll.insert(dbObjects);
+    }
+
     private BasicDBObject serializeMessage(Message message) {
         return new BasicDBObject()
                 .append("_id", message.getId().getId())
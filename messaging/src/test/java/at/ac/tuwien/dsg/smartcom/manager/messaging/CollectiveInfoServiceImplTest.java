@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
+import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
+import at.ac.tuwien.dsg.smartcom.model.CollectiveInfo;
+import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.utils.PicoHelper;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CollectiveInfoServiceImplTest {
+
+    private PicoHelper pico;
+    private CollectiveInfoService service;
+    private CollectiveInfoCallbackImpl callback;
+
+    private final Identifier collective = Identifier.collective("collective");
+
+    @Before
+    public void setUp() throws Exception {
+        pico = new PicoHelper();
+        pico.addComponent(ShortRefreshCollectiveInfoService.class);
+        pico.addComponent(new CollectiveInfoCallbackImpl());
+
+        service = pico.getComponent(CollectiveInfoService.class);
+        callback = pico.getComponent(CollectiveInfoCallbackImpl.class);
+
+        pico.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pico.stop();
+    }
+
+    @Test
+    public void testGetCollectiveInfo() throws Exception {
+        callback.setMembers(collective, Identifier.peer("peer1"), Identifier.peer("peer2"));
+
+        for (int i = 0; i < 10; i++) {
+            CollectiveInfo info = service.getCollectiveInfo(collective);
+            assertThat(info.getPeers(), Matchers.contains(Identifier.peer("peer1"), Identifier.peer("peer2")));
+        }
+        assertEquals(1, callback.getRetrieveCounter());
+
+        try {
+            service.getCollectiveInfo(Identifier.collective("unknown"));
+            fail("Collective should not exist");
+        } catch (NoSuchCollectiveException ignored) {
+        }
+    }
+
+    @Test
+    public void testMembershipChanges() throws Exception {
+        callback.setMembers(collective, Identifier.peer("peer1"), Identifier.peer("peer2"));
+        CollectiveInfo cached = service.getCollectiveInfo(collective);
+
+        service.memberAdded(collective, Identifier.peer("peer3"));
+        service.memberAdded(collective, Identifier.peer("peer3"));
+        service.memberRemoved(collective, Identifier.peer("peer1"));
+
+        //the changes are applied without reloading the collective
+        assertThat(service.getCollectiveInfo(collective).getPeers(), Matchers.contains(Identifier.peer("peer2"), Identifier.peer("peer3")));
+        assertEquals(1, callback.getRetrieveCounter());
+
+        //the entry that has been handed out before is not modified
+        assertThat(cached.getPeers(), Matchers.contains(Identifier.peer("peer1"), Identifier.peer("peer2")));
+
+        //other changes reload the collective
+        callback.setMembers(collective, Identifier.peer("peer4"));
+        service.collectiveChanged(collective);
+        assertThat(service.getCollectiveInfo(collective).getPeers(), Matchers.contains(Identifier.peer("peer4")));
+        assertEquals(2, callback.getRetrieveCounter());
+    }
+
+    @Test(timeout = 5000)
+    public void testRefreshAhead() throws Exception {
+        callback.setMembers(collective, Identifier.peer("peer1"));
+        service.getCollectiveInfo(collective);
+
+        callback.setMembers(collective, Identifier.peer("peer2"));
+        CountDownLatch loading = callback.block();
+        Thread.sleep(ShortRefreshCollectiveInfoService.REFRESH * 2);
+
+        //the old entry is served while the new one is loaded in the background
+        assertThat(service.getCollectiveInfo(collective).getPeers(), Matchers.contains(Identifier.peer("peer1")));
+        loading.countDown();
+
+        while (!service.getCollectiveInfo(collective).getPeers().contains(Identifier.peer("peer2"))) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, callback.getRetrieveCounter());
+    }
+
+    @Test(timeout = 5000)
+    public void testMembershipChangeDuringLoad() throws Exception {
+        callback.setMembers(collective, Identifier.peer("peer1"));
+        CountDownLatch loading = callback.block();
+
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    service.getCollectiveInfo(collective);
+                } catch (NoSuchCollectiveException ignored) {
+                }
+            }
+        };
+        loader.start();
+        while (callback.getRetrieveCounter() == 0) {
+            Thread.sleep(10);
+        }
+
+        //the members have been read by the pending load before the change
+        callback.setMembers(collective, Identifier.peer("peer1"), Identifier.peer("peer2"));
+        service.memberAdded(collective, Identifier.peer("peer2"));
+        loading.countDown();
+        loader.join();
+
+        assertThat(service.getCollectiveInfo(collective).getPeers(), Matchers.contains(Identifier.peer("peer1"), Identifier.peer("peer2")));
+    }
+
+    @Test(timeout = 5000)
+    public void testMembershipChangeDuringRefresh() throws Exception {
+        callback.setMembers(collective, Identifier.peer("peer1"));
+        service.getCollectiveInfo(collective);
+
+        CountDownLatch loading = callback.block();
+        Thread.sleep(ShortRefreshCollectiveInfoService.REFRESH * 2);
+        service.getCollectiveInfo(collective);
+        while (callback.getRetrieveCounter() < 2) {
+            Thread.sleep(10);
+        }
+
+        //the members have been read by the refresh before the change
+        callback.setMembers(collective, Identifier.peer("peer1"), Identifier.peer("peer2"));
+        service.memberAdded(collective, Identifier.peer("peer2"));
+        loading.countDown();
+        Thread.sleep(ShortRefreshCollectiveInfoService.REFRESH);
+
+        assertThat(service.getCollectiveInfo(collective).getPeers(), Matchers.contains(Identifier.peer("peer1"), Identifier.peer("peer2")));
+    }
+
+    public static class ShortRefreshCollectiveInfoService extends CollectiveInfoServiceImpl {
+        static final long REFRESH = 50;
+
+        public ShortRefreshCollectiveInfoService() {
+            super(10, REFRESH, 60000);
+        }
+
+        //the lifecycle annotations of the super class are not considered by the container
+        @PostConstruct
+        @Override
+        public void init() {
+            super.init();
+        }
+
+        @PreDestroy
+        @Override
+        public void destroy() {
+            super.destroy();
+        }
+    }
+
+    private class CollectiveInfoCallbackImpl implements CollectiveInfoCallback {
+
+        private final Map<Identifier, List<Identifier>> members = new ConcurrentHashMap<>();
+        private final AtomicInteger retrieveCounter = new AtomicInteger(0);
+        private volatile CountDownLatch blocker;
+
+        @Override
+        public CollectiveInfo getCollectiveInfo(Identifier collective) throws NoSuchCollectiveException {
+            List<Identifier> peers = members.get(collective);
+            retrieveCounter.incrementAndGet();
+            CountDownLatch latch = blocker;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (peers == null) {
+                throw new NoSuchCollectiveException();
+            }
+            return new CollectiveInfo(collective, new ArrayList<>(peers), DeliveryPolicy.Collective.TO_ANY);
+        }
+
+        void setMembers(Identifier collective, Identifier... peers) {
+            members.put(collective, Arrays.asList(peers));
+        }
+
+        /**
+         * Blocks the following requests until the returned latch is released.
+         */
+        CountDownLatch block() {
+            blocker = new CountDownLatch(1);
+            return blocker;
+        }
+
+        int getRetrieveCounter() {
+            return retrieveCounter.intValue();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
 import at.ac.tuwien.dsg.smartcom.SimpleMessageBroker;
+import at.ac.tuwien.dsg.smartcom.broker.BackpressureConfiguration;
 import at.ac.tuwien.dsg.smartcom.callback.CollectiveInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.NotificationCallback;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
@@ -74,6 +75,7 @@ public class MessagingAndRoutingManagerIT {
         pico.addComponent(MessagingAndRoutingManagerImpl.class);
         pico.addComponent(new PeerInfoServiceImpl_TestLocal());
         pico.addComponent(new CollectiveInfoCallback_TestLocal());
+        pico.addComponent(CollectiveInfoServiceImpl.class);
         pico.addComponent(SimpleMessageBroker.class);
         
         pico.addComponent(AdapterManagerImpl.class);
@@ -82,6 +84,9 @@ public class MessagingAndRoutingManagerIT {
         pico.addComponent(new MongoDBPeerChannelAddressResolverDAO(mongo, "test-resolver", "resolver"));
         pico.addComponent(StatisticBean.class);
 		pico.addComponent(MessageLogLevel.class, MessageLogLevel.NONE);
+		pico.addComponent(new BackpressureConfiguration());
+		pico.addComponent(new DeliveryConfiguration());
+		pico.addComponent(new PipelineConfiguration());
         
     	peerInfoService = pico.getComponent(PeerInfoService.class);
     	mrMgr = pico.getComponent(MessagingAndRoutingManager.class);
@@ -281,6 +286,18 @@ public class MessagingAndRoutingManagerIT {
             return peerInfoMap.get(id);
         }
 
+        @Override
+        public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids) {
+            Map<Identifier, PeerInfo> result = new HashMap<>();
+            for (Identifier id : ids) {
+                retrieveCounter.incrementAndGet();
+                if (peerInfoMap.containsKey(id)) {
+                    result.put(id, peerInfoMap.get(id));
+                }
+            }
+            return result;
+        }
+
         public int getRetrieveCounter() {
             return retrieveCounter.intValue();
         }
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.SimpleMessageBroker;
+import at.ac.tuwien.dsg.smartcom.adapter.InputPullAdapter;
+import at.ac.tuwien.dsg.smartcom.adapter.InputPushAdapter;
+import at.ac.tuwien.dsg.smartcom.adapter.InputAdapter;
+import at.ac.tuwien.dsg.smartcom.adapter.OutputAdapter;
+import at.ac.tuwien.dsg.smartcom.broker.BackpressureConfiguration;
+import at.ac.tuwien.dsg.smartcom.broker.MessageBroker;
+import at.ac.tuwien.dsg.smartcom.broker.MessageListener;
+import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchCollectiveException;
+import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchPeerException;
+import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
+import at.ac.tuwien.dsg.smartcom.manager.AdapterManager;
+import at.ac.tuwien.dsg.smartcom.manager.MessagingAndRoutingManager;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.policies.privacy.peer.AlwaysFailsDummyPeerPrivacyPolicy;
+import at.ac.tuwien.dsg.smartcom.model.*;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
+import at.ac.tuwien.dsg.smartcom.utils.PicoHelper;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MessagingAndRoutingManagerImplTest {
+
+    private final Identifier sender = Identifier.component("sender");
+
+    private PicoHelper pico;
+    private TestPeerInfoService peerInfoService;
+    private TestAdapterManager adapterManager;
+    private MessagingAndRoutingManager manager;
+    private MessageBroker broker;
+    private StatisticBean statistic;
+
+    @Before
+    public void setUp() throws Exception {
+        peerInfoService = new TestPeerInfoService();
+        adapterManager = new TestAdapterManager();
+
+        pico = new PicoHelper();
+        pico.addComponent(MessagingAndRoutingManagerImpl.class);
+        pico.addComponent(peerInfoService);
+        pico.addComponent(new TestCollectiveInfoService());
+        pico.addComponent(adapterManager);
+        pico.addComponent(SimpleMessageBroker.class);
+        pico.addComponent(StatisticBean.class);
+        pico.addComponent(MessageLogLevel.class, MessageLogLevel.NONE);
+        pico.addComponent(new BackpressureConfiguration());
+        pico.addComponent(new DeliveryConfiguration());
+        pico.addComponent(new PipelineConfiguration());
+
+        manager = pico.getComponent(MessagingAndRoutingManager.class);
+        broker = pico.getComponent(MessageBroker.class);
+        statistic = pico.getComponent(StatisticBean.class);
+        pico.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pico.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeOfDeliveryRejectedByPrivacyPolicy() throws Exception {
+        Identifier peer = Identifier.peer("peer");
+        peerInfoService.addPeer(createPeerInfo(peer, DeliveryPolicy.Peer.TO_ALL_CHANNELS,
+                Collections.<PrivacyPolicy>singletonList(new AlwaysFailsDummyPeerPrivacyPolicy()), "channel"));
+
+        ListenableFuture<DeliveryResult> outcome = manager.sendAsync(createMessage(peer), 0);
+
+        DeliveryResult result = outcome.get();
+        assertEquals(DeliveryResult.Status.FAILED, result.getStatus());
+        assertNotNull(result.getReason());
+    }
+
+    @Test(timeout = 5000)
+    public void testAdaptersAreCached() throws Exception {
+        Identifier peer = Identifier.peer("peer");
+        peerInfoService.addPeer(createPeerInfo(peer, DeliveryPolicy.Peer.TO_ALL_CHANNELS, Collections.<PrivacyPolicy>emptyList(), "channel1"));
+        BlockingQueue<Message> output = listenToOutput("channel1");
+
+        manager.send(createMessage(peer));
+        assertNotNull(output.poll(1, TimeUnit.SECONDS));
+        manager.send(createMessage(peer));
+        assertNotNull(output.poll(1, TimeUnit.SECONDS));
+
+        assertEquals("Adapters should have been created only once!", 1, adapterManager.endpoints.get());
+        assertEquals(1, statistic.getStatistic().getAdapterCacheMisses());
+        assertEquals(1, statistic.getStatistic().getAdapterCacheHits());
+    }
+
+    @Test(timeout = 5000)
+    public void testChangedPeerInfoInvalidatesAdapters() throws Exception {
+        Identifier peer = Identifier.peer("peer");
+        peerInfoService.addPeer(createPeerInfo(peer, DeliveryPolicy.Peer.TO_ALL_CHANNELS, Collections.<PrivacyPolicy>emptyList(), "channel1"));
+        BlockingQueue<Message> output1 = listenToOutput("channel1");
+        BlockingQueue<Message> output2 = listenToOutput("channel2");
+
+        manager.send(createMessage(peer));
+        assertNotNull(output1.poll(1, TimeUnit.SECONDS));
+
+        //the peer has a new address
+        peerInfoService.addPeer(createPeerInfo(peer, DeliveryPolicy.Peer.TO_ALL_CHANNELS, Collections.<PrivacyPolicy>emptyList(), "channel1", "channel2"));
+
+        manager.send(createMessage(peer));
+        assertNotNull(output1.poll(1, TimeUnit.SECONDS));
+        assertNotNull("New adapter has not been used!", output2.poll(1, TimeUnit.SECONDS));
+
+        assertEquals("Adapters should have been created anew!", 2, adapterManager.endpoints.get());
+        assertEquals(2, statistic.getStatistic().getAdapterCacheMisses());
+        assertEquals(0, statistic.getStatistic().getAdapterCacheHits());
+    }
+
+    @Test(timeout = 5000)
+    public void testPreferredAdapterOnCacheHit() throws Exception {
+        Identifier peer = Identifier.peer("peer");
+        peerInfoService.addPeer(createPeerInfo(peer, DeliveryPolicy.Peer.PREFERRED, Collections.<PrivacyPolicy>emptyList(), "channel1", "channel2"));
+        BlockingQueue<Message> output1 = listenToOutput("channel1");
+        BlockingQueue<Message> output2 = listenToOutput("channel2");
+
+        for (int i = 0; i < 2; i++) {
+            manager.send(createMessage(peer));
+            assertNotNull("Message has not been sent to the preferred adapter!", output1.poll(1, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, statistic.getStatistic().getAdapterCacheHits());
+        assertNull("Message has been sent to an adapter other than the preferred one!", output2.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private BlockingQueue<Message> listenToOutput(String channel) {
+        final BlockingQueue<Message> output = new LinkedBlockingQueue<>();
+        broker.registerOutputListener(Identifier.adapter(channel), new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                output.add(message);
+            }
+        });
+        return output;
+    }
+
+    private Message createMessage(Identifier receiver) {
+        return new Message.MessageBuilder()
+                .setSenderId(sender)
+                .setReceiverId(receiver)
+                .setContent("content")
+                .setDeliveryPolicy(DeliveryPolicy.Message.ACKNOWLEDGED)
+                .create();
+    }
+
+    @SuppressWarnings("unchecked")
+    private PeerInfo createPeerInfo(Identifier peer, DeliveryPolicy.Peer policy, List<PrivacyPolicy> privacyPolicies, String... channels) {
+        List<PeerChannelAddress> addresses = new ArrayList<>();
+        for (String channel : channels) {
+            addresses.add(new PeerChannelAddress(peer, Identifier.channelType(channel), Collections.EMPTY_LIST));
+        }
+        return new PeerInfo(peer, policy, privacyPolicies, addresses);
+    }
+
+    private class TestPeerInfoService implements PeerInfoService {
+        private final Map<Identifier, PeerInfo> peers = new ConcurrentHashMap<>();
+
+        void addPeer(PeerInfo peerInfo) {
+            peers.put(peerInfo.getId(), peerInfo);
+        }
+
+        @Override
+        public PeerInfo getPeerInfo(Identifier id) throws NoSuchPeerException {
+            return peers.get(id);
+        }
+
+        @Override
+        public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids) {
+            Map<Identifier, PeerInfo> result = new HashMap<>();
+            for (Identifier id : ids) {
+                if (peers.containsKey(id)) {
+                    result.put(id, peers.get(id));
+                }
+            }
+            return result;
+        }
+    }
+
+    private class TestCollectiveInfoService implements CollectiveInfoService {
+
+        @Override
+        public CollectiveInfo getCollectiveInfo(Identifier collective) throws NoSuchCollectiveException {
+            throw new NoSuchCollectiveException();
+        }
+
+        @Override
+        public void memberAdded(Identifier collective, Identifier peer) {
+        }
+
+        @Override
+        public void memberRemoved(Identifier collective, Identifier peer) {
+        }
+
+        @Override
+        public void collectiveChanged(Identifier collective) {
+        }
+    }
+
+    private class TestAdapterManager implements AdapterManager {
+        private final AtomicInteger endpoints = new AtomicInteger(0);
+
+        @Override
+        public List<Identifier> createEndpointForPeer(PeerInfo peerInfo) {
+            endpoints.incrementAndGet();
+            List<Identifier> adapters = new ArrayList<>();
+            for (PeerChannelAddress address : peerInfo.getAddresses()) {
+                adapters.add(Identifier.adapter(address.getChannelType().getId()));
+            }
+            return adapters;
+        }
+
+        @Override
+        public Identifier addPushAdapter(InputPushAdapter adapter) {
+            return null;
+        }
+
+        @Override
+        public Identifier addPullAdapter(InputPullAdapter adapter, long period, boolean deleteIfSuccessful) {
+            return null;
+        }
+
+        @Override
+        public InputAdapter removeInputAdapter(Identifier adapterId) {
+            return null;
+        }
+
+        @Override
+        public Identifier registerOutputAdapter(Class<? extends OutputAdapter> adapter) throws CommunicationException {
+            return null;
+        }
+
+        @Override
+        public void removeOutputAdapter(Identifier adapterId) {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.manager.messaging.policies.delivery.peer.SimplePreferredPeerPolicy;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PeerDeliveryRecordTest {
+
+    @Test
+    public void testSlots() throws Exception {
+        PeerDeliveryRecord record = new PeerDeliveryRecord(Arrays.asList(
+                Identifier.peer("peer1"), Identifier.peer("peer2"), Identifier.peer("peer1")), true);
+
+        assertEquals(0, record.slot(Identifier.peer("peer1")));
+        assertEquals(1, record.slot(Identifier.peer("peer2")));
+        assertEquals(-1, record.slot(Identifier.peer("peer3")));
+        assertEquals(Identifier.peer("peer2"), record.getPeer(1));
+        assertTrue(record.isIntendedForCollective());
+    }
+
+    @Test
+    public void testStateTransitions() throws Exception {
+        PeerDeliveryRecord record = new PeerDeliveryRecord(Arrays.asList(Identifier.peer("peer1"), Identifier.peer("peer2")), false);
+
+        assertEquals(PeerDeliveryRecord.UNREGISTERED, record.getState(0));
+        assertNull(record.getPolicy(0));
+        assertFalse(record.resolve(0, true));
+
+        SimplePreferredPeerPolicy policy = new SimplePreferredPeerPolicy();
+        assertTrue(record.register(0, policy));
+        assertFalse(record.register(0, new SimplePreferredPeerPolicy()));
+        assertTrue(record.register(1, new SimplePreferredPeerPolicy()));
+        assertEquals(PeerDeliveryRecord.PENDING, record.getState(0));
+        assertSame("A repeated registration must not replace the policy!", policy, record.getPolicy(0));
+        assertEquals(2, record.getPending());
+
+        assertTrue(record.resolve(0, true));
+        assertFalse(record.resolve(0, false));
+        assertEquals(PeerDeliveryRecord.ACKNOWLEDGED, record.getState(0));
+        assertNull(record.getPolicy(0));
+        assertFalse(record.isResolved());
+
+        record.resolveAll();
+        assertEquals(PeerDeliveryRecord.FAILED, record.getState(1));
+        assertEquals(1, record.getAcknowledged());
+        assertEquals(1, record.getFailed());
+        assertTrue(record.isResolved());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentResolutionHappensExactlyOnce() throws Exception {
+        final int members = 1000;
+        List<Identifier> peers = new ArrayList<>();
+        for (int i = 0; i < members; i++) {
+            peers.add(Identifier.peer("peer" + i));
+        }
+
+        final PeerDeliveryRecord record = new PeerDeliveryRecord(peers, true);
+        for (int i = 0; i < members; i++) {
+            record.register(i, new SimplePreferredPeerPolicy());
+        }
+
+        //every slot is resolved by all threads, only one of them may succeed
+        final int threads = 8;
+        final AtomicInteger resolved = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final boolean success = t % 2 == 0;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < members; i++) {
+                        if (record.resolve(i, success)) {
+                            resolved.incrementAndGet();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        latch.await();
+        assertEquals(members, resolved.get());
+        assertEquals(members, record.getAcknowledged() + record.getFailed());
+        assertEquals(0, record.getPending());
+        assertTrue(record.isResolved());
+    }
+}
@@ -17,6 +17,7 @@
  */
 package at.ac.tuwien.dsg.smartcom.manager.messaging;
 
+import at.ac.tuwien.dsg.smartcom.callback.BulkPeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.PeerInfoCallback;
 import at.ac.tuwien.dsg.smartcom.callback.exception.NoSuchPeerException;
 import at.ac.tuwien.dsg.smartcom.manager.dao.PeerChannelAddressResolverDAO;
@@ -24,16 +25,20 @@ import at.ac.tuwien.dsg.smartcom.model.DeliveryPolicy;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.PeerChannelAddress;
 import at.ac.tuwien.dsg.smartcom.model.PeerInfo;
+import at.ac.tuwien.dsg.smartcom.statistic.CacheStatistic;
+import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
 import at.ac.tuwien.dsg.smartcom.utils.PicoHelper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class PeerInfoServiceImplTest {
 
@@ -48,6 +53,8 @@ public class PeerInfoServiceImplTest {
         pico.addComponent(PeerInfoServiceImpl.class);
         pico.addComponent(new PeerInfoCallbackImpl());
         pico.addComponent(new AddressResolver());
+        pico.addComponent(new PeerInfoConfiguration());
+        pico.addComponent(StatisticBean.class);
 
         peerInfoService = pico.getComponent(PeerInfoService.class);
         callback = pico.getComponent(PeerInfoCallbackImpl.class);
@@ -81,12 +88,189 @@ public class PeerInfoServiceImplTest {
         assertEquals(PEER_COUNT, callback.getRetrieveCounter());
     }
 
+    @Test
+    public void testGetPeerInfos() throws Exception {
+        List<Identifier> peers = new ArrayList<>();
+        for (int i = 0; i < PEER_COUNT; i++) {
+            peers.add(Identifier.peer("peer" + i));
+        }
+        peers.add(Identifier.peer("unknown"));
+
+        assertNotNull(peerInfoService.getPeerInfo(Identifier.peer("peer0")));
+
+        //the callback does not support bulk requests, the missing peers are loaded one by one
+        Map<Identifier, PeerInfo> peerInfos = peerInfoService.getPeerInfos(peers);
+        assertEquals(PEER_COUNT, peerInfos.size());
+        assertNull(peerInfos.get(Identifier.peer("unknown")));
+        assertEquals(PEER_COUNT + 1, callback.getRetrieveCounter());
+
+        //the unknown peer is not requested again
+        assertNull(peerInfoService.getPeerInfo(Identifier.peer("unknown")));
+        assertEquals(PEER_COUNT, peerInfoService.getPeerInfos(peers).size());
+        assertEquals(PEER_COUNT + 1, callback.getRetrieveCounter());
+
+        peerInfos = peerInfoService.getPeerInfos(peers.subList(0, PEER_COUNT));
+        assertEquals(PEER_COUNT, peerInfos.size());
+        assertEquals(PEER_COUNT + 1, callback.getRetrieveCounter());
+    }
+
+    @Test
+    public void testUnknownPeers() throws Exception {
+        Identifier unknown = Identifier.peer("unknown");
+        for (int i = 0; i < 5; i++) {
+            assertNull(peerInfoService.getPeerInfo(unknown));
+        }
+        assertEquals(1, callback.getRetrieveCounter());
+
+        Map<String, CacheStatistic> statistics = new HashMap<>();
+        for (CacheStatistic statistic : pico.getComponent(StatisticBean.class).getCacheStatistics()) {
+            statistics.put(statistic.getName(), statistic);
+        }
+        assertEquals(1, statistics.get(PeerInfoServiceImpl.UNKNOWN_PEER_CACHE_NAME).getSize());
+        assertEquals(4, statistics.get(PeerInfoServiceImpl.UNKNOWN_PEER_CACHE_NAME).getHitCount());
+        assertEquals(1, statistics.get(PeerInfoServiceImpl.CACHE_NAME).getMissCount());
+        assertEquals(1, statistics.get(PeerInfoServiceImpl.CACHE_NAME).getLoadExceptionCount());
+    }
+
+    @Test(timeout = 5000)
+    public void testRefresh() throws Exception {
+        PeerInfoConfiguration configuration = new PeerInfoConfiguration();
+        configuration.setRefresh(50);
+
+        PicoHelper refreshPico = new PicoHelper();
+        refreshPico.addComponent(PeerInfoServiceImpl.class);
+        refreshPico.addComponent(new PeerInfoCallbackImpl());
+        refreshPico.addComponent(new AddressResolver());
+        refreshPico.addComponent(configuration);
+        refreshPico.addComponent(StatisticBean.class);
+        refreshPico.start();
+
+        try {
+            PeerInfoService service = refreshPico.getComponent(PeerInfoService.class);
+            PeerInfoCallbackImpl refreshCallback = refreshPico.getComponent(PeerInfoCallbackImpl.class);
+
+            Identifier peer = Identifier.peer("peer0");
+            assertEquals(DeliveryPolicy.Peer.PREFERRED, service.getPeerInfo(peer).getDeliveryPolicy());
+
+            PeerInfo changed = refreshCallback.peerInfoMap.get(peer);
+            refreshCallback.peerInfoMap.put(peer, new PeerInfo(peer, DeliveryPolicy.Peer.TO_ALL_CHANNELS, changed.getPrivacyPolicies(), changed.getAddresses()));
+            Thread.sleep(100);
+
+            //the entry is reloaded in the background after the refresh interval
+            while (service.getPeerInfo(peer).getDeliveryPolicy() != DeliveryPolicy.Peer.TO_ALL_CHANNELS) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, refreshCallback.getRetrieveCounter());
+        } finally {
+            refreshPico.stop();
+        }
+    }
+
+    @Test
+    public void testGetPeerInfosBulk() throws Exception {
+        PicoHelper bulkPico = new PicoHelper();
+        bulkPico.addComponent(PeerInfoServiceImpl.class);
+        bulkPico.addComponent(new BulkPeerInfoCallbackImpl());
+        bulkPico.addComponent(new AddressResolver());
+        bulkPico.addComponent(new PeerInfoConfiguration());
+        bulkPico.addComponent(StatisticBean.class);
+        bulkPico.start();
+
+        try {
+            PeerInfoService service = bulkPico.getComponent(PeerInfoService.class);
+            BulkPeerInfoCallbackImpl bulkCallback = bulkPico.getComponent(BulkPeerInfoCallbackImpl.class);
+
+            List<Identifier> peers = new ArrayList<>();
+            for (int i = 0; i < PEER_COUNT; i++) {
+                peers.add(Identifier.peer("peer" + i));
+            }
+
+            Map<Identifier, PeerInfo> peerInfos = service.getPeerInfos(peers);
+            assertEquals(PEER_COUNT, peerInfos.size());
+            for (Identifier peer : peers) {
+                assertEquals(peer, peerInfos.get(peer).getId());
+            }
+            assertEquals(1, bulkCallback.getBulkRetrieveCounter());
+            assertEquals(0, bulkCallback.getRetrieveCounter());
+
+            //all peers are cached now
+            assertEquals(PEER_COUNT, service.getPeerInfos(peers).size());
+            assertNotNull(service.getPeerInfo(Identifier.peer("peer1")));
+            assertEquals(1, bulkCallback.getBulkRetrieveCounter());
+            assertEquals(0, bulkCallback.getRetrieveCounter());
+        } finally {
+            bulkPico.stop();
+        }
+    }
+
+    @Test
+    public void testGetPeerInfosBulkFallback() throws Exception {
+        PicoHelper bulkPico = new PicoHelper();
+        bulkPico.addComponent(PeerInfoServiceImpl.class);
+        bulkPico.addComponent(new BulkPeerInfoCallbackImpl(true));
+        bulkPico.addComponent(new AddressResolver());
+        bulkPico.addComponent(new PeerInfoConfiguration());
+        bulkPico.addComponent(StatisticBean.class);
+        bulkPico.start();
+
+        try {
+            PeerInfoService service = bulkPico.getComponent(PeerInfoService.class);
+            BulkPeerInfoCallbackImpl bulkCallback = bulkPico.getComponent(BulkPeerInfoCallbackImpl.class);
+
+            List<Identifier> peers = new ArrayList<>();
+            for (int i = 0; i < PEER_COUNT; i++) {
+                peers.add(Identifier.peer("peer" + i));
+            }
+
+            //the peers are loaded one by one if the bulk request fails
+            Map<Identifier, PeerInfo> peerInfos = service.getPeerInfos(peers);
+            assertEquals(PEER_COUNT, peerInfos.size());
+            assertEquals(1, bulkCallback.getBulkRetrieveCounter());
+            assertEquals(PEER_COUNT, bulkCallback.getRetrieveCounter());
+        } finally {
+            bulkPico.stop();
+        }
+    }
+
+    private class BulkPeerInfoCallbackImpl extends PeerInfoCallbackImpl implements BulkPeerInfoCallback {
+
+        private AtomicInteger bulkRetrieveCounter = new AtomicInteger(0);
+        private final boolean failing;
+
+        BulkPeerInfoCallbackImpl() {
+            this(false);
+        }
+
+        BulkPeerInfoCallbackImpl(boolean failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public Map<Identifier, PeerInfo> getPeerInfos(Collection<Identifier> ids) {
+            bulkRetrieveCounter.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Peer manager does not support bulk requests");
+            }
+            Map<Identifier, PeerInfo> result = new HashMap<>();
+            for (Identifier id : ids) {
+                if (peerInfoMap.containsKey(id)) {
+                    result.put(id, peerInfoMap.get(id));
+                }
+            }
+            return result;
+        }
+
+        public int getBulkRetrieveCounter() {
+            return bulkRetrieveCounter.intValue();
+        }
+    }
+
     private class PeerInfoCallbackImpl implements PeerInfoCallback {
 
-        private Map<Identifier, PeerInfo> peerInfoMap = new HashMap<>();
+        Map<Identifier, PeerInfo> peerInfoMap = new ConcurrentHashMap<>();
         private AtomicInteger retrieveCounter = new AtomicInteger(0);
 
-        private PeerInfoCallbackImpl() {
+        PeerInfoCallbackImpl() {
             for (int i = 0; i < PEER_COUNT; i++) {
                 Identifier peerId = Identifier.peer("peer"+i);
                 List<PeerChannelAddress> addresses = new ArrayList<>();
@@ -114,6 +298,11 @@ public class PeerInfoServiceImplTest {
 
         }
 
+        @Override
+        public void insertAll(Collection<PeerChannelAddress> addresses) {
+
+        }
+
         @Override
         public PeerChannelAddress find(Identifier peerId, Identifier adapterId) {
             return null;
@@ -123,5 +312,10 @@ public class PeerInfoServiceImplTest {
         public void remove(Identifier peerId, Identifier adapterId) {
 
         }
+
+        @Override
+        public Iterator<PeerChannelAddress> findRecent(int limit, int batchSize) {
+            return Collections.<PeerChannelAddress>emptyList().iterator();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.broker.MessagePriority;
+import at.ac.tuwien.dsg.smartcom.statistic.StageStatistic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+
+    private PipelineStage stage;
+    private CountDownLatch blocked;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() throws Exception {
+        stage = new PipelineStage("test", 1, 2, Thread.NORM_PRIORITY);
+        blocked = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        stage.shutdown();
+    }
+
+    /**
+     * Occupies the only worker of the stage until the release latch is opened.
+     */
+    private void blockWorker() throws InterruptedException {
+        assertTrue(stage.offer(MessagePriority.DATA, new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+    }
+
+    private Runnable record(final List<String> order, final String value, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(value);
+                done.countDown();
+            }
+        };
+    }
+
+    @Test(timeout = 5000)
+    public void testPriorityOrder() throws Exception {
+        blockWorker();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(4);
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data1", done)));
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data2", done)));
+        assertTrue(stage.offer(MessagePriority.AUTH, record(order, "auth", done)));
+        assertTrue(stage.offer(MessagePriority.CONTROL, record(order, "control", done)));
+        assertEquals(4, stage.getQueueSize());
+
+        release.countDown();
+        done.await();
+
+        assertEquals(4, order.size());
+        assertEquals("control", order.get(0));
+        assertEquals("auth", order.get(1));
+        assertEquals("data1", order.get(2));
+        assertEquals("data2", order.get(3));
+    }
+
+    @Test(timeout = 5000)
+    public void testBoundedQueue() throws Exception {
+        blockWorker();
+
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data1", done)));
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data2", done)));
+
+        //data messages do not take away the space of control messages
+        assertFalse(stage.offer(MessagePriority.DATA, record(order, "data3", done)));
+        assertFalse(stage.offer(MessagePriority.DATA, record(order, "data3", done), 10));
+        assertTrue(stage.offer(MessagePriority.CONTROL, record(order, "control", done)));
+
+        //the caller executes the task if the queue is full
+        final Thread caller = Thread.currentThread();
+        final List<Thread> executors = new ArrayList<>();
+        stage.execute(MessagePriority.DATA, new Runnable() {
+            @Override
+            public void run() {
+                executors.add(Thread.currentThread());
+            }
+        });
+        assertEquals(1, executors.size());
+        assertSame(caller, executors.get(0));
+
+        release.countDown();
+        done.await();
+
+        StageStatistic statistic = stage.getStatistic();
+        assertEquals("test", statistic.getName());
+        assertEquals(2, statistic.getRejected());
+        assertEquals(1, statistic.getCallerRuns());
+        assertTrue(statistic.getCompleted() >= 3);
+        assertEquals(2 * MessagePriority.values().length, statistic.getQueueCapacity());
+    }
+
+    @Test(timeout = 5000)
+    public void testSetWorkers() throws Exception {
+        blockWorker();
+
+        stage.setWorkers(3);
+        assertEquals(3, stage.getWorkers());
+        assertEquals(3, stage.getStatistic().getWorkers());
+
+        //the new workers take the tasks although the first worker is still blocked
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data1", done)));
+        assertTrue(stage.offer(MessagePriority.DATA, record(order, "data2", done)));
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+
+        stage.setWorkers(1);
+        assertEquals(1, stage.getWorkers());
+
+        try {
+            stage.setWorkers(0);
+            fail("Zero workers should not be accepted");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            stage.setWorkers(PipelineConfiguration.DEFAULT_MAX_WORKERS + 1);
+            fail("More workers than the maximum should not be accepted");
+        } catch (IllegalArgumentException ignored) {
+        }
+        assertEquals(1, stage.getWorkers());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        stage.shutdown();
+
+        assertTrue(stage.isShutdown());
+        assertFalse(stage.offer(MessagePriority.CONTROL, new Runnable() {
+            @Override
+            public void run() {
+                fail("Stage has been shut down");
+            }
+        }));
+        stage.execute(MessagePriority.CONTROL, new Runnable() {
+            @Override
+            public void run() {
+                fail("Stage has been shut down");
+            }
+        });
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging;
+
+import at.ac.tuwien.dsg.smartcom.model.*;
+import at.ac.tuwien.dsg.smartcom.utils.PredefinedMessageHelper;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PolicyEnforcerTest {
+
+    private final BlockingQueue<Message> sent = new LinkedBlockingQueue<>();
+    private final Identifier sender = Identifier.component("sender");
+
+    private DeliveryConfiguration configuration;
+    private PolicyEnforcer enforcer;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new DeliveryConfiguration();
+        configuration.setPeerTimeout(100);
+        configuration.setCollectiveTimeout(TimeUnit.HOURS.toMillis(1));
+        configuration.setTimerTick(10);
+
+        enforcer = new PolicyEnforcer(new MessagingAndRoutingManagerImpl() {
+            @Override
+            void sendInternal(Message message) {
+                sent.add(message);
+            }
+
+            @Override
+            protected void handleMessage(Message msg) {
+                sent.add(msg);
+            }
+        }, configuration);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        enforcer.destroy();
+    }
+
+    @Test(timeout = 5000)
+    public void testPeerDeliveryTimesOut() throws Exception {
+        Message msg = createMessage(Identifier.peer("peer"));
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+        assertEquals(1, enforcer.getPendingTimeouts());
+
+        Message timeout = sent.take();
+        assertEquals(PredefinedMessageHelper.TIMEOUT_SUBTYPE, timeout.getSubtype());
+        assertEquals(msg.getId(), timeout.getRefersTo());
+        assertEquals(Identifier.peer("peer"), timeout.getSenderId());
+        assertEquals(0, enforcer.getPendingTimeouts());
+
+        //a late acknowledgement is ignored
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(msg));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testAcknowledgedDeliveryDoesNotTimeOut() throws Exception {
+        Message msg = createMessage(Identifier.peer("peer"));
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(msg));
+        assertEquals(0, enforcer.getPendingTimeouts());
+        assertEquals(PredefinedMessageHelper.ACK_SUBTYPE_CHECKED, sent.take().getSubtype());
+
+        assertNull(sent.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testTtlOverridesDefaultTimeout() throws Exception {
+        configuration.setPeerTimeout(TimeUnit.HOURS.toMillis(1));
+
+        Message msg = createMessage(Identifier.peer("peer"));
+        msg.setTtl(100);
+        msg.setExpiration(System.currentTimeMillis() + msg.getTtl());
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+
+        Message timeout = sent.take();
+        assertEquals(PredefinedMessageHelper.TIMEOUT_SUBTYPE, timeout.getSubtype());
+        assertEquals(msg.getId(), timeout.getRefersTo());
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutOfMemberFailsCollectiveDelivery() throws Exception {
+        Identifier collective = Identifier.collective("collective");
+        Message msg = createMessage(collective);
+        enforcer.registerCollectiveMessageDeliveryAttempt(msg, new CollectiveInfo(collective,
+                new ArrayList<>(Arrays.asList(Identifier.peer("peer1"), Identifier.peer("peer2"))), DeliveryPolicy.Collective.TO_ALL_MEMBERS));
+
+        for (String peer : Arrays.asList("peer1", "peer2")) {
+            Message localMessage = msg.clone();
+            localMessage.setReceiverId(Identifier.peer(peer));
+            enforcer.registerPeerMessageDeliveryAttempt(localMessage, createPeerInfo(peer), true);
+        }
+        assertEquals(3, enforcer.getPendingTimeouts());
+
+        //peer1 acknowledges, peer2 does not respond
+        Message ack = msg.clone();
+        ack.setReceiverId(Identifier.peer("peer1"));
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(ack));
+
+        Message timeout = sent.take();
+        assertEquals(PredefinedMessageHelper.TIMEOUT_SUBTYPE, timeout.getSubtype());
+        assertEquals(msg.getId(), timeout.getRefersTo());
+        assertEquals(Identifier.peer("peer2"), timeout.getSenderId());
+        assertNull(timeout.getReceiverId());
+
+        //all entries have been purged and the timeout of the collective has been cancelled
+        assertEquals(0, enforcer.getPendingTimeouts());
+        assertFalse(enforcer.collectiveDeliveryPolicyHasEntry(PredefinedMessageHelper.createAcknowledgeMessage(msg)));
+        assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeOfAcknowledgedPeerDelivery() throws Exception {
+        Message msg = createMessage(Identifier.peer("peer"));
+        ListenableFuture<DeliveryResult> outcome = enforcer.registerDeliveryOutcome(msg, 0);
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+        assertFalse(outcome.isDone());
+
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(msg));
+
+        DeliveryResult result = outcome.get();
+        assertEquals(DeliveryResult.Status.DELIVERED, result.getStatus());
+        assertEquals(msg.getId(), result.getMessageId());
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeOfFailedPeerDelivery() throws Exception {
+        Message msg = createMessage(Identifier.peer("peer"));
+        ListenableFuture<DeliveryResult> outcome = enforcer.registerDeliveryOutcome(msg, 0);
+
+        //a single failed channel fails the delivery to all channels
+        PeerInfo peerInfo = new PeerInfo(Identifier.peer("peer"), DeliveryPolicy.Peer.TO_ALL_CHANNELS, Collections.<PrivacyPolicy>emptyList(),
+                Collections.singletonList(new PeerChannelAddress(Identifier.peer("peer"), Identifier.channelType("channel"), Collections.EMPTY_LIST)));
+        enforcer.registerPeerMessageDeliveryAttempt(msg, peerInfo, false);
+
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createCommunicationErrorMessage(msg, "error"));
+
+        DeliveryResult result = outcome.get();
+        assertEquals(DeliveryResult.Status.FAILED, result.getStatus());
+        assertNotNull(result.getReason());
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeOfTimedOutPeerDelivery() throws Exception {
+        Message msg = createMessage(Identifier.peer("peer"));
+        ListenableFuture<DeliveryResult> outcome = enforcer.registerDeliveryOutcome(msg, 0);
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+
+        assertEquals(DeliveryResult.Status.TIMEOUT, outcome.get().getStatus());
+        assertEquals(PredefinedMessageHelper.TIMEOUT_SUBTYPE, sent.take().getSubtype());
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeOfCollectiveDelivery() throws Exception {
+        Identifier collective = Identifier.collective("collective");
+        Message msg = createMessage(collective);
+        ListenableFuture<DeliveryResult> outcome = enforcer.registerDeliveryOutcome(msg, 0);
+        enforcer.registerCollectiveMessageDeliveryAttempt(msg, new CollectiveInfo(collective,
+                new ArrayList<>(Arrays.asList(Identifier.peer("peer1"), Identifier.peer("peer2"))), DeliveryPolicy.Collective.TO_ALL_MEMBERS));
+
+        for (String peer : Arrays.asList("peer1", "peer2")) {
+            Message localMessage = msg.clone();
+            localMessage.setReceiverId(Identifier.peer(peer));
+            enforcer.registerPeerMessageDeliveryAttempt(localMessage, createPeerInfo(peer), true);
+        }
+
+        for (String peer : Arrays.asList("peer1", "peer2")) {
+            assertFalse("Outcome should not be available before all members acknowledged the message!", outcome.isDone());
+
+            Message ack = msg.clone();
+            ack.setReceiverId(Identifier.peer(peer));
+            enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(ack));
+        }
+
+        assertEquals(DeliveryResult.Status.DELIVERED, outcome.get().getStatus());
+    }
+
+    @Test(timeout = 5000)
+    public void testOutcomeTimeout() throws Exception {
+        configuration.setPeerTimeout(TimeUnit.HOURS.toMillis(1));
+
+        Message msg = createMessage(Identifier.peer("peer"));
+        ListenableFuture<DeliveryResult> outcome = enforcer.registerDeliveryOutcome(msg, 100);
+        enforcer.registerPeerMessageDeliveryAttempt(msg, createPeerInfo("peer"), false);
+
+        DeliveryResult result = outcome.get();
+        assertEquals(DeliveryResult.Status.TIMEOUT, result.getStatus());
+        assertEquals("Timeout of the outcome should have been cancelled!", 1, enforcer.getPendingTimeouts());
+
+        //the delivery itself is still pending
+        enforcer.enforcePeerDeliveryPolicy(PredefinedMessageHelper.createAcknowledgeMessage(msg));
+        assertEquals(PredefinedMessageHelper.ACK_SUBTYPE_CHECKED, sent.take().getSubtype());
+    }
+
+    private Message createMessage(Identifier receiver) {
+        Message msg = new Message.MessageBuilder()
+                .setId(Identifier.message("msg" + System.nanoTime()))
+                .setSenderId(sender)
+                .setReceiverId(receiver)
+                .setType("type")
+                .setSubtype("subtype")
+                .setContent("content")
+                .create();
+        msg.setDelivery(DeliveryPolicy.Message.ACKNOWLEDGED);
+        return msg;
+    }
+
+    private PeerInfo createPeerInfo(String id) {
+        return new PeerInfo(Identifier.peer(id), DeliveryPolicy.Peer.PREFERRED,
+                Collections.<PrivacyPolicy>emptyList(), Collections.<PeerChannelAddress>emptyList());
+    }
+}
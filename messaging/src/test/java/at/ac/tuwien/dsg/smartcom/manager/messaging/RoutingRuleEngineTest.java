@@ -20,6 +20,7 @@ package at.ac.tuwien.dsg.smartcom.manager.messaging;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.model.RoutingPredicate;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -357,6 +358,60 @@ public class RoutingRuleEngineTest {
         assertThat(result, Matchers.hasItem(Identifier.peer("receiver17")));
     }
 
+    @Test
+    public void testPerformRouting_changedRules() throws Exception {
+        createAndAddRoute("type", null, null, null, "receiver1");
+        Identifier delete = createAndAddRoute("type", "subtype", null, null, "receiver2");
+        createAndAddRoute(null, "subtype", null, null, "receiver1");
+
+        Collection<Identifier> result = engine.performRouting(createMessage("type", "subtype", "peer", "sender"));
+        assertThat(result, Matchers.hasSize(2));
+        assertThat(result, Matchers.hasItems(Identifier.peer("receiver1"), Identifier.peer("receiver2")));
+
+        engine.removeRouting(delete);
+        result = engine.performRouting(createMessage("type", "subtype", "peer", "sender"));
+        assertThat(result, Matchers.hasSize(1));
+        assertThat(result, Matchers.hasItem(Identifier.peer("receiver1")));
+
+        createAndAddRoute("type", "subtype", "peer", "sender", "receiver3");
+        result = engine.performRouting(createMessage("type", "subtype", "peer", "sender"));
+        assertThat(result, Matchers.hasSize(2));
+        assertThat(result, Matchers.hasItems(Identifier.peer("receiver1"), Identifier.peer("receiver3")));
+
+        engine.clear();
+        assertThat(engine.performRouting(createMessage("type", "subtype", "peer", "sender")), Matchers.hasSize(0));
+    }
+
+    @Test
+    public void testPerformRouting_predicates() throws Exception {
+        engine.addRouting(new RoutingRule("type", null, null, null, RoutingPredicate.contentPrefix("order:"), Identifier.peer("orders")));
+        engine.addRouting(new RoutingRule("type", null, null, null, RoutingPredicate.contentRegex("urgent|asap"), Identifier.peer("urgent")));
+        engine.addRouting(new RoutingRule(null, null, null, null, RoutingPredicate.conversationIdRegex("^audit-"), Identifier.peer("audit")));
+        createAndAddRoute("type", null, null, null, "receiver");
+
+        Collection<Identifier> result = engine.performRouting(createMessage("type", "subtype", "peer", "sender"));
+        assertThat(result, Matchers.hasSize(1));
+        assertThat(result, Matchers.hasItem(Identifier.peer("receiver")));
+
+        Message message = createMessage("type", "subtype", "peer", "sender");
+        message.setContent("order: 42, asap");
+        result = engine.performRouting(message);
+        assertThat(result, Matchers.hasSize(3));
+        assertThat(result, Matchers.hasItems(Identifier.peer("receiver"), Identifier.peer("orders"), Identifier.peer("urgent")));
+
+        message = createMessage("other", "subtype", "peer", "sender");
+        message.setContent("order: 42, asap");
+        message.setConversationId("audit-1");
+        result = engine.performRouting(message);
+        assertThat(result, Matchers.hasSize(1));
+        assertThat(result, Matchers.hasItem(Identifier.peer("audit")));
+    }
+
+    @Test(expected = InvalidRuleException.class)
+    public void testAddRouting_invalidPredicate() throws Exception {
+        engine.addRouting(new RoutingRule("type", null, null, null, RoutingPredicate.contentRegex("(unclosed"), Identifier.peer("receiver")));
+    }
+
     @Test
      public void testRemoveRouting() throws Exception {
         createAndAddRoute("type1", "subtype", "peer", "sender", "receiver");
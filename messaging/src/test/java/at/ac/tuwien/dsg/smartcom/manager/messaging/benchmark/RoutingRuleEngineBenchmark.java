@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.manager.messaging.benchmark;
+
+import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.manager.messaging.RoutingRuleEngine;
+import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.Message;
+import at.ac.tuwien.dsg.smartcom.model.RoutingPredicate;
+import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the routing of a message with 10000 routing rules. The rules are spread
+ * over 100 types, 10 subtypes per type and 1000 receivers, a tenth of them leaves
+ * out the sender and some rules only define the type or the receiver. The same
+ * messages are routed by a second engine where every second rule additionally
+ * has a predicate on the content or the conversation id of the message.
+ *
+ * The benchmark can be started using the main method with the test classpath.
+ *
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RoutingRuleEngineBenchmark {
+
+    private static final int RULES = 10000;
+
+    private RoutingRuleEngine engine;
+    private RoutingRuleEngine predicateEngine;
+
+    private Message singleMatch;
+    private Message multipleMatches;
+    private Message noMatch;
+
+    @Setup
+    public void setUp() throws InvalidRuleException {
+        engine = createEngine(false);
+        predicateEngine = createEngine(true);
+
+        singleMatch = createMessage("type1", "subtype1", "peer1", Identifier.component("component1"));
+        multipleMatches = createMessage("type42", "subtype2", "peer142", Identifier.component("component2"));
+        noMatch = createMessage("unknown", "subtype1", "peer1", Identifier.component("component1"));
+
+        //compile the indexes before the measurement
+        engine.performRouting(singleMatch);
+        predicateEngine.performRouting(singleMatch);
+    }
+
+    private static RoutingRuleEngine createEngine(boolean predicates) throws InvalidRuleException {
+        RoutingRuleEngine engine = new RoutingRuleEngine();
+
+        for (int i = 0; i < RULES; i++) {
+            String type = "type" + (i % 100);
+            String subtype = "subtype" + (i % 10);
+            Identifier receiver = Identifier.peer("peer" + (i % 1000));
+            Identifier sender = (i % 10 == 0) ? null : Identifier.component("component" + (i % 7));
+
+            RoutingPredicate predicate = null;
+            if (predicates && i % 2 == 1) {
+                predicate = (i % 4 == 1) ? RoutingPredicate.contentPrefix("Do some") : RoutingPredicate.conversationIdRegex("^conversation-\\d+$");
+            }
+            engine.addRouting(new RoutingRule(type, subtype, receiver, sender, predicate, Identifier.peer("route" + i)));
+        }
+
+        //rules that match many messages
+        engine.addRouting(new RoutingRule("type42", null, null, null, Identifier.peer("audit")));
+        engine.addRouting(new RoutingRule(null, null, Identifier.peer("peer142"), null, Identifier.peer("mirror")));
+
+        return engine;
+    }
+
+    @Benchmark
+    public Collection<Identifier> singleMatch() {
+        return engine.performRouting(singleMatch);
+    }
+
+    @Benchmark
+    public Collection<Identifier> multipleMatches() {
+        return engine.performRouting(multipleMatches);
+    }
+
+    @Benchmark
+    public Collection<Identifier> noMatch() {
+        return engine.performRouting(noMatch);
+    }
+
+    @Benchmark
+    public Collection<Identifier> singleMatchWithPredicates() {
+        return predicateEngine.performRouting(singleMatch);
+    }
+
+    @Benchmark
+    public Collection<Identifier> multipleMatchesWithPredicates() {
+        return predicateEngine.performRouting(multipleMatches);
+    }
+
+    @Benchmark
+    public Collection<Identifier> noMatchWithPredicates() {
+        return predicateEngine.performRouting(noMatch);
+    }
+
+    private static Message createMessage(String type, String subtype, String receiver, Identifier sender) {
+        return new Message.MessageBuilder()
+                .setType(type)
+                .setSubtype(subtype)
+                .setReceiverId(Identifier.peer(receiver))
+                .setSenderId(sender)
+                .setContent("Do some stuff and respond!")
+                .setConversationId("conversation-42")
+                .create();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RoutingRuleEngineBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -104,6 +104,11 @@ public class LoggingServiceTest {
             messages.add(message);
         }
 
+        @Override
+        public void persist(List<Message> messages) {
+            this.messages.addAll(messages);
+        }
+
         public long size() {
             return messages.size();
         }
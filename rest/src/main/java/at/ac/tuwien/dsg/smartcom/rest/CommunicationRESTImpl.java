@@ -21,12 +21,14 @@ import at.ac.tuwien.dsg.smartcom.Communication;
 import at.ac.tuwien.dsg.smartcom.callback.NotificationCallback;
 import at.ac.tuwien.dsg.smartcom.exception.CommunicationException;
 import at.ac.tuwien.dsg.smartcom.exception.InvalidRuleException;
+import at.ac.tuwien.dsg.smartcom.exception.MessageRejectedException;
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
 import at.ac.tuwien.dsg.smartcom.model.Message;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
 import at.ac.tuwien.dsg.smartcom.rest.model.MessageDTO;
 import at.ac.tuwien.dsg.smartcom.rest.model.NotificationDTO;
 import at.ac.tuwien.dsg.smartcom.rest.model.RoutingRuleDTO;
+import at.ac.tuwien.dsg.smartcom.statistic.StageStatistic;
 import at.ac.tuwien.dsg.smartcom.statistic.Statistic;
 import at.ac.tuwien.dsg.smartcom.statistic.StatisticBean;
 import jersey.repackaged.com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -63,6 +65,7 @@ import java.util.concurrent.TimeUnit;
 @Produces(MediaType.APPLICATION_JSON)
 public class CommunicationRESTImpl {
     private static final Logger log = LoggerFactory.getLogger(CommunicationRESTImpl.class);
+    private static final int RETRY_AFTER_SECONDS = 1;
 
     private HttpServer server;
     private final URI serverURI;
@@ -128,7 +131,14 @@ public class CommunicationRESTImpl {
             throw new WebApplicationException();
         }
 
-        Identifier id = communication.send(message.create());
+        Identifier id;
+        try {
+            id = communication.send(message.create());
+        } catch (MessageRejectedException e) {
+            //the middleware is overloaded, the client should retry later
+            throw new WebApplicationException(e, Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", RETRY_AFTER_SECONDS).entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build());
+        }
 
         if (id == null) {
             return null;
@@ -173,6 +183,25 @@ public class CommunicationRESTImpl {
         return statistic.getStatistic();
     }
 
+    @PUT
+    @Path("statistic/stage/{stage}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public StageStatistic setStageWorkers(@PathParam("stage") String stage, @QueryParam("workers") int workers) {
+        StageStatistic stageStatistic;
+        try {
+            stageStatistic = statistic.setStageWorkers(stage, workers);
+        } catch (IllegalArgumentException e) {
+            //the number of workers is not positive or exceeds the maximum of the stage
+            throw new WebApplicationException(e, Response.status(Response.Status.BAD_REQUEST)
+                    .entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build());
+        }
+
+        if (stageStatistic == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        return stageStatistic;
+    }
+
     @POST
     @Path("notification")
     @Consumes(MediaType.APPLICATION_JSON)
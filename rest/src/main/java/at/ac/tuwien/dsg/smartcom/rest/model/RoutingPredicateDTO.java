@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014 Technische Universitat Wien (TUW), Distributed Systems Group E184 (http://dsg.tuwien.ac.at)
+ *
+ * This work was partially supported by the EU FP7 FET SmartSociety (http://www.smart-society-project.eu/).
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package at.ac.tuwien.dsg.smartcom.rest.model;
+
+import at.ac.tuwien.dsg.smartcom.model.RoutingPredicate;
+
+/**
+ * @author Philipp Zeppezauer (philipp.zeppezauer@gmail.com)
+ * @version 1.0
+ */
+public class RoutingPredicateDTO {
+
+    private String field;
+    private String operator;
+    private String value;
+
+    public RoutingPredicateDTO() {
+    }
+
+    public RoutingPredicateDTO(RoutingPredicate predicate) {
+        this.field = predicate.getField() == null ? null : predicate.getField().name();
+        this.operator = predicate.getOperator() == null ? null : predicate.getOperator().name();
+        this.value = predicate.getValue();
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public RoutingPredicate create() {
+        RoutingPredicate.Field field = this.field == null ? null : RoutingPredicate.Field.valueOf(this.field);
+        RoutingPredicate.Operator operator = this.operator == null ? null : RoutingPredicate.Operator.valueOf(this.operator);
+        return new RoutingPredicate(field, operator, value);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingPredicateDTO{" +
+                "field='" + field + '\'' +
+                ", operator='" + operator + '\'' +
+                ", value='" + value + '\'' +
+                '}';
+    }
+}
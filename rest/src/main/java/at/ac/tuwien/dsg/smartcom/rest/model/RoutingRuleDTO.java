@@ -18,6 +18,7 @@
 package at.ac.tuwien.dsg.smartcom.rest.model;
 
 import at.ac.tuwien.dsg.smartcom.model.Identifier;
+import at.ac.tuwien.dsg.smartcom.model.RoutingPredicate;
 import at.ac.tuwien.dsg.smartcom.model.RoutingRule;
 
 /**
@@ -30,6 +31,7 @@ public class RoutingRuleDTO {
     private String subtype;
     private IdentifierDTO receiver;
     private IdentifierDTO sender;
+    private RoutingPredicateDTO predicate;
 
     private IdentifierDTO route;
 
@@ -48,6 +50,10 @@ public class RoutingRuleDTO {
             this.sender = new IdentifierDTO(rule.getSender());
         }
 
+        if (rule.getPredicate() != null) {
+            this.predicate = new RoutingPredicateDTO(rule.getPredicate());
+        }
+
         if (rule.getRoute() != null) {
             this.route = new IdentifierDTO(rule.getRoute());
         }
@@ -69,6 +75,10 @@ public class RoutingRuleDTO {
         return sender;
     }
 
+    public RoutingPredicateDTO getPredicate() {
+        return predicate;
+    }
+
     public IdentifierDTO getRoute() {
         return route;
     }
@@ -89,6 +99,10 @@ public class RoutingRuleDTO {
         this.sender = sender;
     }
 
+    public void setPredicate(RoutingPredicateDTO predicate) {
+        this.predicate = predicate;
+    }
+
     public void setRoute(IdentifierDTO route) {
         this.route = route;
     }
@@ -109,7 +123,12 @@ public class RoutingRuleDTO {
             route = this.route.create();
         }
 
-        return new RoutingRule(type, subtype, receiver, sender, route);
+        RoutingPredicate predicate = null;
+        if (this.predicate != null) {
+            predicate = this.predicate.create();
+        }
+
+        return new RoutingRule(type, subtype, receiver, sender, predicate, route);
     }
 
     @Override
@@ -119,6 +138,7 @@ public class RoutingRuleDTO {
                 ", subtype='" + subtype + '\'' +
                 ", receiver='" + receiver + '\'' +
                 ", sender='" + sender + '\'' +
+                ", predicate=" + predicate +
                 ", route='" + route + '\'' +
                 '}';
     }